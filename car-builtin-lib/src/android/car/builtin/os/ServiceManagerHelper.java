@@ -20,7 +20,14 @@ import android.annotation.NonNull;
 import android.annotation.Nullable;
 import android.annotation.SystemApi;
 import android.os.IBinder;
+import android.os.IServiceCallback;
+import android.os.RemoteException;
 import android.os.ServiceManager;
+import android.os.SystemClock;
+import android.util.ArrayMap;
+import android.util.Log;
+
+import com.android.internal.annotations.GuardedBy;
 
 /**
  * Helper class for {@code ServiceManager} API
@@ -30,6 +37,14 @@ import android.os.ServiceManager;
 @SystemApi(client = SystemApi.Client.MODULE_LIBRARIES)
 public final class ServiceManagerHelper {
 
+    private static final String TAG = ServiceManagerHelper.class.getSimpleName();
+
+    private static final Object sLock = new Object();
+    // Watchers of the services waited for in this process, by service name. A null watcher means
+    // that the registration notifications are not available for the service.
+    @GuardedBy("sLock")
+    private static final ArrayMap<String, RegistrationWatcher> sWatchers = new ArrayMap<>();
+
     private ServiceManagerHelper()  {
         throw new UnsupportedOperationException();
     }
@@ -52,6 +67,43 @@ public final class ServiceManagerHelper {
         return ServiceManager.waitForDeclaredService(name);
     }
 
+    /**
+     * Waits up to {@code timeoutMs} for the service to be registered in {@code ServiceManager},
+     * returning as soon as {@code ServiceManager} notifies the registration.
+     *
+     * <p>The service is looked up again once the notifications are watched, so a registration
+     * happening after the caller's own lookup is not missed. The caller should still retry its
+     * lookup after a timeout. If the registration notifications are not available, this sleeps
+     * for {@code timeoutMs}.
+     *
+     * @return whether the service is registered
+     */
+    public static boolean waitForServiceRegistration(@NonNull String name, long timeoutMs)
+            throws InterruptedException {
+        RegistrationWatcher watcher;
+        synchronized (sLock) {
+            if (sWatchers.containsKey(name)) {
+                watcher = sWatchers.get(name);
+            } else {
+                watcher = new RegistrationWatcher();
+                try {
+                    // The watcher stays registered for the life of the process, so that it is
+                    // only registered once per service.
+                    ServiceManager.registerForNotifications(name, watcher);
+                } catch (RemoteException | RuntimeException e) {
+                    Log.w(TAG, "Cannot register for the registration of " + name, e);
+                    watcher = null;
+                }
+                sWatchers.put(name, watcher);
+            }
+        }
+        if (watcher == null) {
+            Thread.sleep(timeoutMs);
+            return false;
+        }
+        return watcher.awaitRegistration(name, timeoutMs);
+    }
+
     /** Check {@link ServiceManager#addService(String, IBinder)} */
     public static void addService(@NonNull String name, @NonNull IBinder service) {
         ServiceManager.addService(name, service);
@@ -62,4 +114,39 @@ public final class ServiceManagerHelper {
     public static String[] getDeclaredInstances(@NonNull String iface) {
         return ServiceManager.getDeclaredInstances(iface);
     }
+
+    private static final class RegistrationWatcher extends IServiceCallback.Stub {
+        private final Object mLock = new Object();
+        @GuardedBy("mLock")
+        private int mNumRegistrations;
+
+        @Override
+        public void onRegistration(String name, IBinder binder) {
+            synchronized (mLock) {
+                mNumRegistrations++;
+                mLock.notifyAll();
+            }
+        }
+
+        boolean awaitRegistration(String name, long timeoutMs) throws InterruptedException {
+            long deadlineMs = SystemClock.uptimeMillis() + timeoutMs;
+            int numRegistrations;
+            synchronized (mLock) {
+                numRegistrations = mNumRegistrations;
+            }
+            // The service may have been registered between the caller's lookup and the snapshot
+            // above, in which case no notification will come.
+            if (ServiceManager.checkService(name) != null) {
+                return true;
+            }
+            synchronized (mLock) {
+                long remainingMs = deadlineMs - SystemClock.uptimeMillis();
+                while (mNumRegistrations == numRegistrations && remainingMs > 0) {
+                    mLock.wait(remainingMs);
+                    remainingMs = deadlineMs - SystemClock.uptimeMillis();
+                }
+                return mNumRegistrations != numRegistrations;
+            }
+        }
+    }
 }
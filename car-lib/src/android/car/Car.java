@@ -84,6 +84,7 @@ import android.os.IBinder;
 import android.os.Looper;
 import android.os.Process;
 import android.os.RemoteException;
+import android.os.SystemClock;
 import android.os.TransactionTooLargeException;
 import android.util.ArrayMap;
 import android.util.Log;
@@ -106,6 +107,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  *   Top level car API for embedded Android Auto deployments.
@@ -1545,6 +1547,9 @@ public final class Car implements ICarBase {
     private static final long CAR_SERVICE_BINDER_POLLING_INTERVAL_MS = 50;
     private static final long CAR_SERVICE_BINDER_POLLING_MAX_RETRY = 100;
 
+    // Whether the latency of the first car manager of the process was logged.
+    private static final AtomicBoolean sFirstCarManagerLogged = new AtomicBoolean();
+
     private static final int STATE_DISCONNECTED = 0;
     private static final int STATE_CONNECTING = 1;
     private static final int STATE_CONNECTED = 2;
@@ -1612,6 +1617,9 @@ public final class Car implements ICarBase {
     private int mConnectionState;
     @GuardedBy("mLock")
     private int mConnectionRetryCount;
+    // Time spent in createCar waiting for car_service to register its binder.
+    @GuardedBy("mLock")
+    private long mCarServiceWaitMs;
 
     private final Runnable mConnectionRetryRunnable = new Runnable() {
         @Override
@@ -1902,6 +1910,7 @@ public final class Car implements ICarBase {
         IBinder service = null;
         boolean started = false;
         int retryCount = 0;
+        long waitStartMs = SystemClock.uptimeMillis();
         while (true) {
             service = ServiceManagerHelper.getService(CAR_SERVICE_BINDER_SERVICE_NAME);
             if (car == null) {
@@ -1930,7 +1939,7 @@ public final class Car implements ICarBase {
                 return null;
             }
             try {
-                Thread.sleep(CAR_SERVICE_BINDER_POLLING_INTERVAL_MS);
+                waitForCarServiceBinder();
             } catch (InterruptedException e) {
                 Log.e(CarLibLog.TAG_CAR, "interrupted while waiting for car_service",
                         new RuntimeException());
@@ -1939,11 +1948,10 @@ public final class Car implements ICarBase {
         }
         // Can be accessed from mServiceConnectionListener in main thread.
         synchronized (car.mLock) {
+            car.mCarServiceWaitMs = SystemClock.uptimeMillis() - waitStartMs;
             if (car.mService == null) {
                 car.mService = ICar.Stub.asInterface(service);
-                Log.w(TAG_CAR,
-                        "waited for car_service (ms):"
-                                + CAR_SERVICE_BINDER_POLLING_INTERVAL_MS * retryCount,
+                Log.w(TAG_CAR, "waited for car_service (ms):" + car.mCarServiceWaitMs,
                         new RuntimeException());
             }
             car.mConnectionState = STATE_CONNECTED;
@@ -2011,6 +2019,7 @@ public final class Car implements ICarBase {
             }
         }
         boolean isMainThread = Looper.myLooper() == Looper.getMainLooper();
+        long waitStartMs = SystemClock.uptimeMillis();
         while (true) {
             service = ServiceManagerHelper.getService(CAR_SERVICE_BINDER_SERVICE_NAME);
             if (car == null) {
@@ -2038,7 +2047,7 @@ public final class Car implements ICarBase {
                     && retryCount % CAR_SERVICE_BINDER_POLLING_MAX_RETRY == 0) {
                 // Log warning if car service is not alive even for waiting forever case.
                 Log.w(TAG_CAR, "car_service not ready, waited for car service (ms):"
-                                + retryCount * CAR_SERVICE_BINDER_POLLING_INTERVAL_MS,
+                                + (SystemClock.uptimeMillis() - waitStartMs),
                         new RuntimeException());
             } else if (waitTimeoutMs >= 0 && retryCount > maxRetryCount) {
                 if (waitTimeoutMs > 0) {
@@ -2050,7 +2059,7 @@ public final class Car implements ICarBase {
             }
 
             try {
-                Thread.sleep(CAR_SERVICE_BINDER_POLLING_INTERVAL_MS);
+                waitForCarServiceBinder();
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 Log.w(TAG_CAR, "interrupted", new RuntimeException());
@@ -2059,9 +2068,8 @@ public final class Car implements ICarBase {
         }
         // Can be accessed from mServiceConnectionListener in main thread.
         synchronized (car.mLock) {
-            Log.w(TAG_CAR,
-                    "waited for car_service (ms):"
-                            + retryCount * CAR_SERVICE_BINDER_POLLING_INTERVAL_MS,
+            car.mCarServiceWaitMs = SystemClock.uptimeMillis() - waitStartMs;
+            Log.w(TAG_CAR, "waited for car_service (ms):" + car.mCarServiceWaitMs,
                     new RuntimeException());
             // ServiceConnection has handled everything.
             if (car.mService != null) {
@@ -2077,6 +2085,15 @@ public final class Car implements ICarBase {
         return car;
     }
 
+    /**
+     * Waits for car_service to register its binder, up to the polling interval. Returns as soon as
+     * the registration is notified, and falls back to polling if notifications are not available.
+     */
+    private static void waitForCarServiceBinder() throws InterruptedException {
+        ServiceManagerHelper.waitForServiceRegistration(CAR_SERVICE_BINDER_SERVICE_NAME,
+                CAR_SERVICE_BINDER_POLLING_INTERVAL_MS);
+    }
+
     private static void assertNonNullContext(Context context) {
         Objects.requireNonNull(context);
         if (context instanceof ContextWrapper
@@ -2275,6 +2292,13 @@ public final class Car implements ICarBase {
                         return null;
                     }
                     mServiceMap.put(serviceName, manager);
+                    if (sFirstCarManagerLogged.compareAndSet(false, true)) {
+                        // Measures how long the app waits for car services, mostly at boot.
+                        Log.i(TAG_CAR, "First car manager " + serviceName + " created "
+                                + (SystemClock.uptimeMillis() - Process.getStartUptimeMillis())
+                                + " ms after process start, waited for car_service (ms):"
+                                + mCarServiceWaitMs);
+                    }
                 } catch (RemoteException e) {
                     handleRemoteExceptionFromCarService(e);
                 }
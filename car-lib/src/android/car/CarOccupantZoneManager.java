@@ -16,6 +16,10 @@
 
 package android.car;
 
+import static android.car.OccupantZoneCache.GROUP_AUDIO;
+import static android.car.OccupantZoneCache.GROUP_DISPLAY;
+import static android.car.OccupantZoneCache.GROUP_USER;
+
 import static com.android.car.internal.ExcludeFromCodeCoverageGeneratedReport.BOILERPLATE_CODE;
 
 import android.annotation.IntDef;
@@ -60,6 +64,21 @@ public class CarOccupantZoneManager extends CarManagerBase {
 
     private static final String TAG = CarOccupantZoneManager.class.getSimpleName();
 
+    private static final int QUERY_ALL_OCCUPANT_ZONES = 1;
+    private static final int QUERY_ALL_DISPLAYS_FOR_OCCUPANT = 2;
+    private static final int QUERY_DISPLAY_FOR_OCCUPANT = 3;
+    private static final int QUERY_DISPLAY_ID_FOR_DRIVER = 4;
+    private static final int QUERY_AUDIO_ZONE_ID_FOR_OCCUPANT = 5;
+    private static final int QUERY_OCCUPANT_FOR_AUDIO_ZONE_ID = 6;
+    private static final int QUERY_DISPLAY_TYPE = 7;
+    private static final int QUERY_USER_FOR_OCCUPANT = 8;
+    private static final int QUERY_USER_FOR_DISPLAY_ID = 9;
+    private static final int QUERY_OCCUPANT_ZONE_FOR_DISPLAY_ID = 10;
+    private static final int QUERY_MY_OCCUPANT_ZONE = 11;
+    private static final int QUERY_OCCUPANT_ZONE_FOR_USER = 12;
+    private static final int QUERY_HAS_DRIVER_ZONE = 13;
+    private static final int QUERY_HAS_PASSENGER_ZONES = 14;
+
     /**
      * Display type is not known. In some system, some displays may be just public display without
      * any additional information and such displays will be treated as unknown.
@@ -373,6 +392,12 @@ public class CarOccupantZoneManager extends CarManagerBase {
     private final CopyOnWriteArrayList<OccupantZoneConfigChangeListener> mListeners =
             new CopyOnWriteArrayList<>();
 
+    private final OccupantZoneCache mCache = new OccupantZoneCache();
+
+    // Guards the decision to register or unregister mBinderCallback, which depends on both
+    // mListeners and whether mCache is enabled.
+    private final Object mCallbackLock = new Object();
+
     /**
      * Gets an instance of the CarOccupantZoneManager.
      *
@@ -395,7 +420,14 @@ public class CarOccupantZoneManager extends CarManagerBase {
     @NonNull
     public List<OccupantZoneInfo> getAllOccupantZones() {
         try {
-            return mService.getAllOccupantZones();
+            // Copied, as the cached list and zones must not be modified by the caller.
+            List<OccupantZoneInfo> zones = mCache.get(QUERY_ALL_OCCUPANT_ZONES, GROUP_DISPLAY,
+                    /* arg1= */ 0, /* arg2= */ 0, mService::getAllOccupantZones);
+            List<OccupantZoneInfo> copies = new ArrayList<>(zones.size());
+            for (int i = 0; i < zones.size(); i++) {
+                copies.add(copyOf(zones.get(i)));
+            }
+            return copies;
         } catch (RemoteException e) {
             return handleRemoteExceptionFromCarService(e, Collections.emptyList());
         }
@@ -409,7 +441,9 @@ public class CarOccupantZoneManager extends CarManagerBase {
     public List<Display> getAllDisplaysForOccupant(@NonNull OccupantZoneInfo occupantZone) {
         assertNonNullOccupant(occupantZone);
         try {
-            int[] displayIds = mService.getAllDisplaysForOccupantZone(occupantZone.zoneId);
+            int[] displayIds = mCache.get(QUERY_ALL_DISPLAYS_FOR_OCCUPANT, GROUP_DISPLAY,
+                    occupantZone.zoneId, /* arg2= */ 0,
+                    () -> mService.getAllDisplaysForOccupantZone(occupantZone.zoneId));
             ArrayList<Display> displays = new ArrayList<>(displayIds.length);
             for (int i = 0; i < displayIds.length; i++) {
                 // quick confidence check while getDisplay can still handle invalid display
@@ -439,7 +473,9 @@ public class CarOccupantZoneManager extends CarManagerBase {
             @DisplayTypeEnum int displayType) {
         assertNonNullOccupant(occupantZone);
         try {
-            int displayId = mService.getDisplayForOccupant(occupantZone.zoneId, displayType);
+            int displayId = mCache.get(QUERY_DISPLAY_FOR_OCCUPANT, GROUP_DISPLAY,
+                    occupantZone.zoneId, displayType,
+                    () -> mService.getDisplayForOccupant(occupantZone.zoneId, displayType));
             // quick confidence check while getDisplay can still handle invalid display
             if (displayId == Display.INVALID_DISPLAY) {
                 return null;
@@ -466,7 +502,9 @@ public class CarOccupantZoneManager extends CarManagerBase {
     @RequiresPermission(Car.ACCESS_PRIVATE_DISPLAY_ID)
     public int getDisplayIdForDriver(@DisplayTypeEnum int displayType) {
         try {
-            return mService.getDisplayIdForDriver(displayType);
+            // The driver zone is assigned to the current user.
+            return mCache.get(QUERY_DISPLAY_ID_FOR_DRIVER, GROUP_USER, displayType,
+                    /* arg2= */ 0, () -> mService.getDisplayIdForDriver(displayType));
         } catch (RemoteException e) {
             return handleRemoteExceptionFromCarService(e, Display.INVALID_DISPLAY);
         }
@@ -484,7 +522,9 @@ public class CarOccupantZoneManager extends CarManagerBase {
     public int getAudioZoneIdForOccupant(@NonNull OccupantZoneInfo occupantZone) {
         assertNonNullOccupant(occupantZone);
         try {
-            return mService.getAudioZoneIdForOccupant(occupantZone.zoneId);
+            return mCache.get(QUERY_AUDIO_ZONE_ID_FOR_OCCUPANT, GROUP_AUDIO,
+                    occupantZone.zoneId, /* arg2= */ 0,
+                    () -> mService.getAudioZoneIdForOccupant(occupantZone.zoneId));
         } catch (RemoteException e) {
             return handleRemoteExceptionFromCarService(e, null);
         }
@@ -501,7 +541,8 @@ public class CarOccupantZoneManager extends CarManagerBase {
     @RequiresPermission(Car.PERMISSION_CAR_CONTROL_AUDIO_SETTINGS)
     public OccupantZoneInfo getOccupantForAudioZoneId(int audioZoneId) {
         try {
-            return mService.getOccupantForAudioZoneId(audioZoneId);
+            return copyOf(mCache.get(QUERY_OCCUPANT_FOR_AUDIO_ZONE_ID, GROUP_AUDIO, audioZoneId,
+                    /* arg2= */ 0, () -> mService.getOccupantForAudioZoneId(audioZoneId)));
         } catch (RemoteException e) {
             return handleRemoteExceptionFromCarService(e, null);
         }
@@ -515,7 +556,9 @@ public class CarOccupantZoneManager extends CarManagerBase {
     public int getDisplayType(@NonNull Display display) {
         assertNonNullDisplay(display);
         try {
-            return mService.getDisplayType(display.getDisplayId());
+            int displayId = display.getDisplayId();
+            return mCache.get(QUERY_DISPLAY_TYPE, GROUP_DISPLAY, displayId, /* arg2= */ 0,
+                    () -> mService.getDisplayType(displayId));
         } catch (RemoteException e) {
             return handleRemoteExceptionFromCarService(e, DISPLAY_TYPE_UNKNOWN);
         }
@@ -529,7 +572,8 @@ public class CarOccupantZoneManager extends CarManagerBase {
     public int getUserForOccupant(@NonNull OccupantZoneInfo occupantZone) {
         assertNonNullOccupant(occupantZone);
         try {
-            return mService.getUserForOccupant(occupantZone.zoneId);
+            return mCache.get(QUERY_USER_FOR_OCCUPANT, GROUP_USER, occupantZone.zoneId,
+                    /* arg2= */ 0, () -> mService.getUserForOccupant(occupantZone.zoneId));
         } catch (RemoteException e) {
             return handleRemoteExceptionFromCarService(e, INVALID_USER_ID);
         }
@@ -545,7 +589,8 @@ public class CarOccupantZoneManager extends CarManagerBase {
     @UserIdInt
     public int getUserForDisplayId(int displayId) {
         try {
-            return mService.getUserForDisplayId(displayId);
+            return mCache.get(QUERY_USER_FOR_DISPLAY_ID, GROUP_USER, displayId, /* arg2= */ 0,
+                    () -> mService.getUserForDisplayId(displayId));
         } catch (RemoteException e) {
             return handleRemoteExceptionFromCarService(e, INVALID_USER_ID);
         }
@@ -566,7 +611,8 @@ public class CarOccupantZoneManager extends CarManagerBase {
     @Nullable
     public OccupantZoneInfo getOccupantZoneForDisplayId(int displayId) {
         try {
-            return mService.getOccupantZoneForDisplayId(displayId);
+            return copyOf(mCache.get(QUERY_OCCUPANT_ZONE_FOR_DISPLAY_ID, GROUP_DISPLAY, displayId,
+                    /* arg2= */ 0, () -> mService.getOccupantZoneForDisplayId(displayId)));
         } catch (RemoteException e) {
             return handleRemoteExceptionFromCarService(e, null);
         }
@@ -595,7 +641,10 @@ public class CarOccupantZoneManager extends CarManagerBase {
             @UserIdInt int userId) {
         assertNonNullOccupant(occupantZone);
         try {
-            return mService.assignProfileUserToOccupantZone(occupantZone.zoneId, userId);
+            boolean assigned = mService.assignProfileUserToOccupantZone(occupantZone.zoneId,
+                    userId);
+            mCache.invalidate(ZONE_CONFIG_CHANGE_FLAG_USER);
+            return assigned;
         } catch (RemoteException e) {
             return handleRemoteExceptionFromCarService(e, false);
         }
@@ -639,7 +688,9 @@ public class CarOccupantZoneManager extends CarManagerBase {
             @NonNull UserHandle user) {
         assertNonNullOccupant(occupantZone);
         try {
-            return mService.assignVisibleUserToOccupantZone(occupantZone.zoneId, user);
+            int result = mService.assignVisibleUserToOccupantZone(occupantZone.zoneId, user);
+            mCache.invalidate(ZONE_CONFIG_CHANGE_FLAG_USER);
+            return result;
         } catch (RemoteException e) {
             // Return any error code if car service is gone.
             return handleRemoteExceptionFromCarService(e,
@@ -664,7 +715,9 @@ public class CarOccupantZoneManager extends CarManagerBase {
     @UserAssignmentResult
     public int unassignOccupantZone(@NonNull OccupantZoneInfo occupantZone) {
         try {
-            return mService.unassignOccupantZone(occupantZone.zoneId);
+            int result = mService.unassignOccupantZone(occupantZone.zoneId);
+            mCache.invalidate(ZONE_CONFIG_CHANGE_FLAG_USER);
+            return result;
         } catch (RemoteException e) {
             // Return any error code if car service is gone.
             return handleRemoteExceptionFromCarService(e, USER_ASSIGNMENT_RESULT_FAIL_DRIVER_ZONE);
@@ -689,12 +742,15 @@ public class CarOccupantZoneManager extends CarManagerBase {
      */
     public void registerOccupantZoneConfigChangeListener(
             @NonNull OccupantZoneConfigChangeListener listener) {
-        if (mListeners.addIfAbsent(listener)) {
-            if (mListeners.size() == 1) {
-                try {
-                    mService.registerCallback(mBinderCallback);
-                } catch (RemoteException e) {
-                    handleRemoteExceptionFromCarService(e);
+        synchronized (mCallbackLock) {
+            if (mListeners.addIfAbsent(listener)) {
+                // The callback is already registered while the cache is enabled.
+                if (mListeners.size() == 1 && !mCache.isEnabled()) {
+                    try {
+                        mService.registerCallback(mBinderCallback);
+                    } catch (RemoteException e) {
+                        handleRemoteExceptionFromCarService(e);
+                    }
                 }
             }
         }
@@ -705,8 +761,43 @@ public class CarOccupantZoneManager extends CarManagerBase {
      */
     public void unregisterOccupantZoneConfigChangeListener(
             @NonNull OccupantZoneConfigChangeListener listener) {
-        if (mListeners.remove(listener)) {
-            if (mListeners.size() == 0) {
+        synchronized (mCallbackLock) {
+            if (mListeners.remove(listener)) {
+                if (mListeners.size() == 0 && !mCache.isEnabled()) {
+                    try {
+                        mService.unregisterCallback(mBinderCallback);
+                    } catch (RemoteException ignored) {
+                        // ignore for unregistering
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Enables or disables caching the results of occupant zone queries in this process.
+     *
+     * <p>While enabled, results are cached until the car service reports an occupant zone config
+     * change affecting them, so repeated queries do not need a binder call.
+     *
+     * @hide
+     */
+    public void setCacheEnabled(boolean enabled) {
+        synchronized (mCallbackLock) {
+            if (enabled == mCache.isEnabled()) {
+                return;
+            }
+            // The cache must not be filled before config changes are reported.
+            if (enabled && mListeners.isEmpty()) {
+                try {
+                    mService.registerCallback(mBinderCallback);
+                } catch (RemoteException e) {
+                    handleRemoteExceptionFromCarService(e);
+                    return;
+                }
+            }
+            mCache.setEnabled(enabled);
+            if (!enabled && mListeners.isEmpty()) {
                 try {
                     mService.unregisterCallback(mBinderCallback);
                 } catch (RemoteException ignored) {
@@ -716,6 +807,26 @@ public class CarOccupantZoneManager extends CarManagerBase {
         }
     }
 
+    /**
+     * Returns a copy of {@code info}, as the zones returned by the cache are shared and their
+     * fields are mutable.
+     */
+    @Nullable
+    private static OccupantZoneInfo copyOf(@Nullable OccupantZoneInfo info) {
+        return info == null ? null
+                : new OccupantZoneInfo(info.zoneId, info.occupantType, info.seat);
+    }
+
+    /**
+     * Returns the ratio of occupant zone queries answered from the cache, out of all the queries
+     * made while the cache was enabled.
+     *
+     * @hide
+     */
+    public float getCacheHitRatio() {
+        return mCache.getHitRatio();
+    }
+
     /**
      * Returns {@link OccupantZoneInfo} for the calling process's android user.
      * It will return {@code null} if there is no occupant zone assigned for the user.
@@ -730,7 +841,8 @@ public class CarOccupantZoneManager extends CarManagerBase {
     @Nullable
     public OccupantZoneInfo getMyOccupantZone() {
         try {
-            return mService.getMyOccupantZone();
+            return copyOf(mCache.get(QUERY_MY_OCCUPANT_ZONE, GROUP_USER, /* arg1= */ 0,
+                    /* arg2= */ 0, mService::getMyOccupantZone));
         } catch (RemoteException e) {
             return handleRemoteExceptionFromCarService(e, null);
         }
@@ -748,7 +860,8 @@ public class CarOccupantZoneManager extends CarManagerBase {
     @Nullable
     public OccupantZoneInfo getOccupantZoneForUser(@NonNull UserHandle user) {
         try {
-            return mService.getOccupantZoneForUser(user);
+            return copyOf(mCache.get(QUERY_OCCUPANT_ZONE_FOR_USER, GROUP_USER, user.getIdentifier(),
+                    /* arg2= */ 0, () -> mService.getOccupantZoneForUser(user)));
         } catch (RemoteException e) {
             return handleRemoteExceptionFromCarService(e, /* returnValue= */null);
         }
@@ -791,7 +904,8 @@ public class CarOccupantZoneManager extends CarManagerBase {
      */
     public boolean hasDriverZone() {
         try {
-            return mService.hasDriverZone();
+            return mCache.get(QUERY_HAS_DRIVER_ZONE, GROUP_DISPLAY, /* arg1= */ 0,
+                    /* arg2= */ 0, mService::hasDriverZone);
         } catch (RemoteException e) {
             return handleRemoteExceptionFromCarService(e, false);
         }
@@ -803,7 +917,8 @@ public class CarOccupantZoneManager extends CarManagerBase {
      */
     public boolean hasPassengerZones() {
         try {
-            return mService.hasPassengerZones();
+            return mCache.get(QUERY_HAS_PASSENGER_ZONES, GROUP_DISPLAY, /* arg1= */ 0,
+                    /* arg2= */ 0, mService::hasPassengerZones);
         } catch (RemoteException e) {
             return handleRemoteExceptionFromCarService(e, false);
         }
@@ -850,6 +965,8 @@ public class CarOccupantZoneManager extends CarManagerBase {
         public void onOccupantZoneConfigChanged(int flags) {
             CarOccupantZoneManager manager = mManager.get();
             if (manager != null) {
+                // Invalidated before the listeners run, so they read the new config.
+                manager.mCache.invalidate(flags);
                 manager.mEventHandler.dispatchOnOccupantZoneConfigChanged(flags);
             }
         }
@@ -858,7 +975,10 @@ public class CarOccupantZoneManager extends CarManagerBase {
     /** @hide */
     @Override
     public void onCarDisconnected() {
-        // nothing to do
+        // Config changes are no longer reported, so results can not be cached anymore.
+        synchronized (mCallbackLock) {
+            mCache.setEnabled(false);
+        }
     }
 
     /**
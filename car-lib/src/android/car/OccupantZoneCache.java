@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.car;
+
+import android.os.RemoteException;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+
+import com.android.car.internal.util.PairSparseArray;
+import com.android.internal.annotations.GuardedBy;
+
+/**
+ * Client-side cache of occupant zone query results for {@link CarOccupantZoneManager}.
+ *
+ * <p>Results are grouped by what they depend on, and each group has a generation that is bumped
+ * when the car service reports a matching
+ * {@link CarOccupantZoneManager.OccupantZoneConfigChangeListener change}. A result is only
+ * stored if its group's generation did not change while the car service was queried, so a
+ * result computed before a change is never served after it.
+ *
+ * @hide
+ */
+final class OccupantZoneCache {
+
+    /** Results depending on the displays and the zone configuration. */
+    static final int GROUP_DISPLAY = 0;
+    /** Results depending on the users assigned to zones. */
+    static final int GROUP_USER = 1;
+    /** Results depending on the audio zones assigned to zones. */
+    static final int GROUP_AUDIO = 2;
+    private static final int NUM_GROUPS = 3;
+
+    // Generations are never negative.
+    private static final int NO_GENERATION = -1;
+
+    /** Queries the car service, when the result is not in the cache. */
+    interface RemoteQuery<T> {
+        T query() throws RemoteException;
+    }
+
+    private final Object mLock = new Object();
+    @GuardedBy("mLock")
+    private boolean mEnabled;
+    @GuardedBy("mLock")
+    private final int[] mGenerations = new int[NUM_GROUPS];
+    // key: query id, value: results by query arguments
+    @GuardedBy("mLock")
+    private final SparseArray<PairSparseArray<Object>> mResults = new SparseArray<>();
+    // key: query id, value: group of the query
+    @GuardedBy("mLock")
+    private final SparseIntArray mQueryGroups = new SparseIntArray();
+    @GuardedBy("mLock")
+    private long mHits;
+    @GuardedBy("mLock")
+    private long mMisses;
+
+    /**
+     * Enables or disables the cache, dropping any cached result.
+     *
+     * @return whether the state changed
+     */
+    boolean setEnabled(boolean enabled) {
+        synchronized (mLock) {
+            if (mEnabled == enabled) {
+                return false;
+            }
+            mEnabled = enabled;
+            invalidateAllLocked();
+            return true;
+        }
+    }
+
+    boolean isEnabled() {
+        synchronized (mLock) {
+            return mEnabled;
+        }
+    }
+
+    /**
+     * Returns the cached result of a query, or queries the car service and caches the result.
+     *
+     * @param queryId identifies the query, must always be used with the same group
+     */
+    @SuppressWarnings("unchecked")
+    <T> T get(int queryId, int group, int arg1, int arg2, RemoteQuery<T> remoteQuery)
+            throws RemoteException {
+        int generation;
+        synchronized (mLock) {
+            if (!mEnabled) {
+                generation = NO_GENERATION;
+            } else {
+                PairSparseArray<Object> results = mResults.get(queryId);
+                if (results != null && results.contains(arg1, arg2)) {
+                    mHits++;
+                    return (T) results.get(arg1, arg2);
+                }
+                mMisses++;
+                generation = mGenerations[group];
+            }
+        }
+        // The lock is not held while calling the car service.
+        T result = remoteQuery.query();
+        if (generation == NO_GENERATION) {
+            return result;
+        }
+        synchronized (mLock) {
+            if (mEnabled && mGenerations[group] == generation) {
+                PairSparseArray<Object> results = mResults.get(queryId);
+                if (results == null) {
+                    results = new PairSparseArray<>();
+                    mResults.put(queryId, results);
+                    mQueryGroups.put(queryId, group);
+                }
+                results.put(arg1, arg2, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Drops the cached results affected by an occupant zone config change.
+     *
+     * @param changeFlags combination of the {@code ZONE_CONFIG_CHANGE_FLAG_} constants of
+     *                    {@link CarOccupantZoneManager}
+     */
+    void invalidate(int changeFlags) {
+        synchronized (mLock) {
+            // Users and audio zones are reassigned when displays change.
+            if ((changeFlags & CarOccupantZoneManager.ZONE_CONFIG_CHANGE_FLAG_DISPLAY) != 0) {
+                invalidateAllLocked();
+                return;
+            }
+            if ((changeFlags & CarOccupantZoneManager.ZONE_CONFIG_CHANGE_FLAG_USER) != 0) {
+                invalidateGroupLocked(GROUP_USER);
+            }
+            if ((changeFlags & CarOccupantZoneManager.ZONE_CONFIG_CHANGE_FLAG_AUDIO) != 0) {
+                invalidateGroupLocked(GROUP_AUDIO);
+            }
+        }
+    }
+
+    /**
+     * Returns the ratio of queries answered from the cache while it was enabled, or {@code 0}
+     * if there was no query.
+     */
+    float getHitRatio() {
+        synchronized (mLock) {
+            long total = mHits + mMisses;
+            return total == 0 ? 0f : (float) mHits / total;
+        }
+    }
+
+    @GuardedBy("mLock")
+    private void invalidateAllLocked() {
+        for (int group = 0; group < NUM_GROUPS; group++) {
+            bumpGenerationLocked(group);
+        }
+        mResults.clear();
+        mQueryGroups.clear();
+    }
+
+    @GuardedBy("mLock")
+    private void invalidateGroupLocked(int group) {
+        bumpGenerationLocked(group);
+        for (int i = mQueryGroups.size() - 1; i >= 0; i--) {
+            if (mQueryGroups.valueAt(i) == group) {
+                mResults.remove(mQueryGroups.keyAt(i));
+                mQueryGroups.removeAt(i);
+            }
+        }
+    }
+
+    @GuardedBy("mLock")
+    private void bumpGenerationLocked(int group) {
+        mGenerations[group] = mGenerations[group] == Integer.MAX_VALUE
+                ? 0 : mGenerations[group] + 1;
+    }
+}
@@ -49,6 +49,7 @@ import java.io.CharArrayWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
@@ -201,6 +202,61 @@ public final class CarUxRestrictionsConfiguration implements Parcelable {
         return createUxRestrictionsEvent(restriction.mReqOpt, restriction.mRestrictions);
     }
 
+    /**
+     * Returns the sorted, distinct speeds at which the restrictions returned by
+     * {@link #getUxRestrictions(int, float, String)} can change for the given driving state and
+     * restriction mode.
+     *
+     * <p>The restrictions are constant within {@code [boundaries[i], boundaries[i + 1])} and
+     * within {@code [boundaries[length - 1], MAX_SPEED)}. The first boundary is always {@code 0}.
+     * Boundaries of the baseline mode are included since a mode falls back to baseline for the
+     * speeds it does not cover. {@link Builder.SpeedRange#MAX_SPEED} is never included.
+     *
+     * @param drivingState Driving state.
+     *                     See values in {@link CarDrivingStateEvent.CarDrivingState}.
+     * @param mode         UX Restriction mode.
+     * @hide
+     */
+    @NonNull
+    public float[] getSpeedRangeBoundaries(@CarDrivingState int drivingState,
+            @NonNull String mode) {
+        Objects.requireNonNull(mode, "mode must not be null");
+
+        List<Float> boundaries = new ArrayList<>();
+        boundaries.add(0f);
+        if (mRestrictionModes.containsKey(mode)) {
+            addSpeedRangeBoundaries(boundaries,
+                    mRestrictionModes.get(mode).getRestrictionsForDriveState(drivingState));
+        }
+        addSpeedRangeBoundaries(boundaries, mRestrictionModes.get(UX_RESTRICTION_MODE_BASELINE)
+                .getRestrictionsForDriveState(drivingState));
+        Collections.sort(boundaries);
+
+        float[] result = new float[boundaries.size()];
+        int size = 0;
+        for (int i = 0; i < boundaries.size(); i++) {
+            float boundary = boundaries.get(i);
+            if (size == 0 || Float.compare(result[size - 1], boundary) != 0) {
+                result[size++] = boundary;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private static void addSpeedRangeBoundaries(List<Float> boundaries,
+            List<RestrictionsPerSpeedRange> restrictions) {
+        for (int i = 0; i < restrictions.size(); i++) {
+            Builder.SpeedRange speedRange = restrictions.get(i).mSpeedRange;
+            if (speedRange == null) {
+                continue;
+            }
+            boundaries.add(speedRange.mMinSpeed);
+            if (speedRange.mMaxSpeed != Builder.SpeedRange.MAX_SPEED) {
+                boundaries.add(speedRange.mMaxSpeed);
+            }
+        }
+    }
+
     /**
      * Returns the port this configuration applies to.
      *
@@ -31,6 +31,7 @@ import android.os.Message;
 import android.os.RemoteException;
 import android.os.UserManager;
 import android.util.Log;
+import android.util.SparseArray;
 import android.view.Display;
 
 import com.android.internal.annotations.GuardedBy;
@@ -68,6 +69,17 @@ public final class CarUxRestrictionsManager extends CarManagerBase {
     private OnUxRestrictionsChangedListener mUxRListener;
     @GuardedBy("mLock")
     private CarUxRestrictionsChangeListenerToService mListenerToService;
+    @GuardedBy("mLock")
+    private int mListenerDisplayId = Display.INVALID_DISPLAY;
+
+    // Current restrictions per display, kept up to date by mCacheListenersToService so that
+    // getCurrentCarUxRestrictions() only crosses binder on the first call for a display.
+    @GuardedBy("mLock")
+    private final SparseArray<CarUxRestrictions> mCachedUxRestrictions = new SparseArray<>();
+    // key: display id, value: internal listener feeding mCachedUxRestrictions
+    @GuardedBy("mLock")
+    private final SparseArray<CarUxRestrictionsCacheListenerToService> mCacheListenersToService =
+            new SparseArray<>();
 
     /** @hide */
     public CarUxRestrictionsManager(@NonNull Car car, @NonNull IBinder service) {
@@ -85,6 +97,9 @@ public final class CarUxRestrictionsManager extends CarManagerBase {
         synchronized (mLock) {
             mListenerToService = null;
             mUxRListener = null;
+            mListenerDisplayId = Display.INVALID_DISPLAY;
+            mCachedUxRestrictions.clear();
+            mCacheListenersToService.clear();
         }
     }
 
@@ -136,6 +151,7 @@ public final class CarUxRestrictionsManager extends CarManagerBase {
                 return;
             }
             mUxRListener = listener;
+            mListenerDisplayId = displayId;
             if (mListenerToService == null) {
                 mListenerToService = new CarUxRestrictionsChangeListenerToService(this);
             }
@@ -163,6 +179,7 @@ public final class CarUxRestrictionsManager extends CarManagerBase {
                 return;
             }
             mUxRListener = null;
+            mListenerDisplayId = Display.INVALID_DISPLAY;
             serviceListener = mListenerToService;
         }
         try {
@@ -215,11 +232,66 @@ public final class CarUxRestrictionsManager extends CarManagerBase {
     @Nullable
     @SystemApi
     public CarUxRestrictions getCurrentCarUxRestrictions(int displayId) {
+        CarUxRestrictionsCacheListenerToService cacheListener = null;
+        synchronized (mLock) {
+            CarUxRestrictions cached = mCachedUxRestrictions.get(displayId);
+            if (cached != null) {
+                return cached;
+            }
+            if (!mCacheListenersToService.contains(displayId)) {
+                cacheListener = new CarUxRestrictionsCacheListenerToService(this, displayId);
+                mCacheListenersToService.put(displayId, cacheListener);
+            }
+        }
+
+        // Registers the cache listener before querying the current restrictions, so that no
+        // transition is missed between the two calls.
+        if (cacheListener != null) {
+            try {
+                mUxRService.registerUxRestrictionsChangeListener(cacheListener, displayId);
+            } catch (RemoteException e) {
+                synchronized (mLock) {
+                    mCacheListenersToService.remove(displayId);
+                }
+                return handleRemoteExceptionFromCarService(e, null);
+            }
+        }
+
+        CarUxRestrictions restrictions;
         try {
-            return mUxRService.getCurrentUxRestrictions(displayId);
+            restrictions = mUxRService.getCurrentUxRestrictions(displayId);
         } catch (RemoteException e) {
             return handleRemoteExceptionFromCarService(e, null);
         }
+        if (restrictions == null) {
+            return null;
+        }
+        synchronized (mLock) {
+            if (!mCacheListenersToService.contains(displayId)) {
+                // The registration failed or the car service disconnected meanwhile.
+                return restrictions;
+            }
+            // A transition may have been received while querying the car service.
+            return updateCachedUxRestrictionsLocked(displayId, restrictions);
+        }
+    }
+
+    /**
+     * Stores the given restrictions unless newer ones are already cached, and returns the
+     * restrictions that are cached afterwards.
+     *
+     * <p>Each listener is dispatched from its own car service thread, so updates for the same
+     * display can arrive out of order on different listeners.
+     */
+    @GuardedBy("mLock")
+    private CarUxRestrictions updateCachedUxRestrictionsLocked(int displayId,
+            CarUxRestrictions restrictions) {
+        CarUxRestrictions cached = mCachedUxRestrictions.get(displayId);
+        if (cached != null && cached.getTimeStamp() > restrictions.getTimeStamp()) {
+            return cached;
+        }
+        mCachedUxRestrictions.put(displayId, restrictions);
+        return restrictions;
     }
 
     /**
@@ -348,14 +420,63 @@ public final class CarUxRestrictionsManager extends CarManagerBase {
         }
     }
 
+    /**
+     * Class that keeps the cached restrictions of one display up to date, independently of the
+     * listener registered by the client.
+     */
+    private static final class CarUxRestrictionsCacheListenerToService extends
+            ICarUxRestrictionsChangeListener.Stub {
+        private final WeakReference<CarUxRestrictionsManager> mUxRestrictionsManager;
+        private final int mDisplayId;
+
+        CarUxRestrictionsCacheListenerToService(CarUxRestrictionsManager manager,
+                int displayId) {
+            mUxRestrictionsManager = new WeakReference<>(manager);
+            mDisplayId = displayId;
+        }
+
+        @Override
+        public void onUxRestrictionsChanged(CarUxRestrictions restrictionInfo) {
+            CarUxRestrictionsManager manager = mUxRestrictionsManager.get();
+            if (manager != null) {
+                manager.handleCachedUxRestrictionsChanged(this, mDisplayId, restrictionInfo);
+            }
+        }
+    }
+
+    private void handleCachedUxRestrictionsChanged(
+            CarUxRestrictionsCacheListenerToService cacheListener, int displayId,
+            CarUxRestrictions restrictionInfo) {
+        if (restrictionInfo == null) {
+            return;
+        }
+        synchronized (mLock) {
+            // Ignores listeners left over from before a car service disconnection.
+            if (mCacheListenersToService.get(displayId) != cacheListener) {
+                return;
+            }
+            updateCachedUxRestrictionsLocked(displayId, restrictionInfo);
+        }
+    }
+
     /**
      * Gets the {@link CarUxRestrictions} from the service listener
      * {@link CarUxRestrictionsChangeListenerToService} and dispatches it to a handler provided
      * to the manager.
      *
+     * <p>The cached restrictions are updated first, so that the client gets the new restrictions
+     * from {@link #getCurrentCarUxRestrictions()} once it is notified.
+     *
      * @param restrictionInfo {@link CarUxRestrictions} that has been registered to listen on
      */
     private void handleUxRestrictionsChanged(CarUxRestrictions restrictionInfo) {
+        if (restrictionInfo != null) {
+            synchronized (mLock) {
+                if (mCacheListenersToService.contains(mListenerDisplayId)) {
+                    updateCachedUxRestrictionsLocked(mListenerDisplayId, restrictionInfo);
+                }
+            }
+        }
         // send a message to the handler
         mEventCallbackHandler.sendMessage(mEventCallbackHandler.obtainMessage(
                 MSG_HANDLE_UX_RESTRICTIONS_CHANGE, restrictionInfo));
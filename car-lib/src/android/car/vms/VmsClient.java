@@ -29,7 +29,9 @@ import android.os.IBinder;
 import android.os.RemoteException;
 import android.os.SharedMemory;
 import android.system.ErrnoException;
+import android.util.ArrayMap;
 import android.util.Log;
+import android.util.SparseArray;
 
 import com.android.internal.annotations.GuardedBy;
 
@@ -37,6 +39,7 @@ import java.lang.ref.WeakReference;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.Executor;
@@ -76,6 +79,11 @@ public final class VmsClient {
     private VmsSubscriptionState mSubscriptionState = DEFAULT_SUBSCRIPTIONS;
     @GuardedBy("mLock")
     private boolean mMonitoringEnabled;
+    @GuardedBy("mLock")
+    private final ArrayMap<VmsLayer, SparseArray<VmsPacketRingBuffer>> mPacketRingBuffers =
+            new ArrayMap<>();
+    @GuardedBy("mLock")
+    private boolean mPacketRingBufferLatestOnly;
 
     /**
      * @hide
@@ -163,6 +171,23 @@ public final class VmsClient {
         }
     }
 
+    /**
+     * Sets whether only the latest packet is delivered for layers published through a packet
+     * ring buffer.
+     *
+     * <p>By default, every packet still in the ring when the client is signaled is delivered in
+     * order. If enabled, older pending packets are skipped, which suits layers where only the
+     * latest state matters.
+     *
+     * @hide
+     */
+    @RequiresPermission(Car.PERMISSION_VMS_SUBSCRIBER)
+    public void setPacketRingBufferLatestOnly(boolean latestOnly) {
+        synchronized (mLock) {
+            mPacketRingBufferLatestOnly = latestOnly;
+        }
+    }
+
     /**
      * Returns the most recently received data layer availability.
      */
@@ -232,6 +257,54 @@ public final class VmsClient {
         }
     }
 
+    /**
+     * Publishes the packets of a layer through a ring buffer in shared memory.
+     *
+     * <p>Once enabled, packets of up to {@code maxPacketSize} bytes published through
+     * {@link #publishPacket(int, VmsLayer, byte[])} are written into the ring and the Vehicle Map
+     * Service only signals their sequence number, so subscribers read them from shared memory
+     * instead of receiving a copy through binder. Larger packets are published as before.
+     *
+     * <p>Subscribers that fall more than {@code slotCount} packets behind lose the overwritten
+     * packets. Calling this again for the same provider and layer replaces the ring.
+     *
+     * @param providerId    Packet provider
+     * @param layer         Packet layer
+     * @param slotCount     Number of packets kept in the ring
+     * @param maxPacketSize Size of the largest packet published through the ring
+     * @throws IllegalArgumentException if the client does not offer the layer as the provider, or
+     *                                  if the ring dimensions are out of range
+     * @hide
+     */
+    @RequiresPermission(Car.PERMISSION_VMS_PUBLISHER)
+    public void enablePacketRingBuffer(int providerId, @NonNull VmsLayer layer, int slotCount,
+            int maxPacketSize) {
+        Objects.requireNonNull(layer, "layer cannot be null");
+        if (DBG) Log.d(TAG, "Enabling packet ring buffer for " + layer + " as " + providerId);
+        VmsPacketRingBuffer ringBuffer = VmsPacketRingBuffer.create("VmsClient", slotCount,
+                maxPacketSize);
+        try {
+            mService.registerPacketRingBuffer(mClientToken, providerId, layer,
+                    ringBuffer.getSharedMemory());
+        } catch (RemoteException e) {
+            Log.e(TAG, "While enabling packet ring buffer as " + providerId, e);
+            ringBuffer.close();
+            mExceptionHandler.accept(e);
+            return;
+        } catch (RuntimeException e) {
+            ringBuffer.close();
+            throw e;
+        }
+
+        VmsPacketRingBuffer previousRingBuffer;
+        synchronized (mLock) {
+            previousRingBuffer = putRingBuffer(mPacketRingBuffers, providerId, layer, ringBuffer);
+        }
+        if (previousRingBuffer != null) {
+            previousRingBuffer.close();
+        }
+    }
+
     /**
      * Publishes a Vehicle Maps Service packet.
      *
@@ -247,8 +320,16 @@ public final class VmsClient {
         if (DBG) {
             Log.d(TAG, "Publishing packet as " + providerId + " (" + packet.length + " bytes)");
         }
+        VmsPacketRingBuffer ringBuffer;
+        synchronized (mLock) {
+            ringBuffer = getRingBuffer(mPacketRingBuffers, providerId, layer);
+        }
         try {
-            if (packet.length < LARGE_PACKET_THRESHOLD) {
+            if (ringBuffer != null && packet.length <= ringBuffer.getMaxPacketSize()) {
+                long sequenceNumber = ringBuffer.write(packet);
+                mService.publishPacketRingBufferFrame(mClientToken, providerId, layer,
+                        sequenceNumber, packet.length);
+            } else if (packet.length < LARGE_PACKET_THRESHOLD) {
                 mService.publishPacket(mClientToken, providerId, layer, packet);
             } else {
                 try (SharedMemory largePacket = packetToSharedMemory(packet)) {
@@ -293,13 +374,26 @@ public final class VmsClient {
      * @hide
      */
     public void unregister() throws RemoteException {
-        mService.unregisterClient(mClientToken);
+        try {
+            mService.unregisterClient(mClientToken);
+        } finally {
+            synchronized (mLock) {
+                closeRingBuffers(mPacketRingBuffers);
+            }
+            ((IVmsClientCallbackImpl) mClientCallback).closePacketRingBuffers();
+        }
     }
 
     private static class IVmsClientCallbackImpl extends IVmsClientCallback.Stub {
         private final WeakReference<VmsClient> mClient;
         private final boolean mAutoCloseMemory;
 
+        private final Object mLock = new Object();
+        // Rings mapped from publishers, read when the broker signals new packets.
+        @GuardedBy("mLock")
+        private final ArrayMap<VmsLayer, SparseArray<VmsPacketRingBuffer>> mPacketRingBuffers =
+                new ArrayMap<>();
+
         private IVmsClientCallbackImpl(VmsClient client, boolean autoCloseMemory) {
             mClient = new WeakReference<>(client);
             mAutoCloseMemory = autoCloseMemory;
@@ -355,6 +449,68 @@ public final class VmsClient {
                     callback.onPacketReceived(providerId, layer, largePacket));
         }
 
+        @Override
+        public void onPacketRingBufferAvailable(int providerId, VmsLayer layer,
+                SharedMemory ringBuffer) {
+            if (DBG) {
+                Log.d(TAG, "Received packet ring buffer from " + providerId + " for: " + layer);
+            }
+            VmsPacketRingBuffer mappedRingBuffer;
+            try {
+                mappedRingBuffer = VmsPacketRingBuffer.map(ringBuffer);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Unable to map packet ring buffer from " + providerId, e);
+                return;
+            }
+            VmsPacketRingBuffer previousRingBuffer;
+            synchronized (mLock) {
+                previousRingBuffer = putRingBuffer(mPacketRingBuffers, providerId, layer,
+                        mappedRingBuffer);
+            }
+            if (previousRingBuffer != null) {
+                previousRingBuffer.close();
+            }
+        }
+
+        @Override
+        public void onPacketRingBufferFrameAvailable(int providerId, VmsLayer layer,
+                long sequenceNumber) {
+            VmsPacketRingBuffer ringBuffer;
+            synchronized (mLock) {
+                ringBuffer = getRingBuffer(mPacketRingBuffers, providerId, layer);
+            }
+            VmsClient client = mClient.get();
+            if (ringBuffer == null || client == null) {
+                Log.w(TAG, "No packet ring buffer from " + providerId + " for: " + layer);
+                return;
+            }
+            boolean latestOnly;
+            synchronized (client.mLock) {
+                latestOnly = client.mPacketRingBufferLatestOnly;
+            }
+
+            if (latestOnly) {
+                byte[] packet = ringBuffer.readLatest(sequenceNumber);
+                if (packet != null) {
+                    executeCallback((c, callback) ->
+                            callback.onPacketReceived(providerId, layer, packet));
+                }
+                return;
+            }
+            List<byte[]> packets = ringBuffer.readPending(sequenceNumber);
+            for (int i = 0; i < packets.size(); i++) {
+                byte[] packet = packets.get(i);
+                executeCallback((c, callback) ->
+                        callback.onPacketReceived(providerId, layer, packet));
+            }
+        }
+
+        private void closePacketRingBuffers() {
+            synchronized (mLock) {
+                closeRingBuffers(mPacketRingBuffers);
+            }
+        }
+
         private void executeCallback(BiConsumer<VmsClient, VmsClientCallback> callbackOperation) {
             final VmsClient client = mClient.get();
             if (client == null) {
@@ -371,6 +527,39 @@ public final class VmsClient {
         }
     }
 
+    @Nullable
+    private static VmsPacketRingBuffer getRingBuffer(
+            ArrayMap<VmsLayer, SparseArray<VmsPacketRingBuffer>> ringBuffers, int providerId,
+            VmsLayer layer) {
+        SparseArray<VmsPacketRingBuffer> providerRingBuffers = ringBuffers.get(layer);
+        return providerRingBuffers == null ? null : providerRingBuffers.get(providerId);
+    }
+
+    @Nullable
+    private static VmsPacketRingBuffer putRingBuffer(
+            ArrayMap<VmsLayer, SparseArray<VmsPacketRingBuffer>> ringBuffers, int providerId,
+            VmsLayer layer, VmsPacketRingBuffer ringBuffer) {
+        SparseArray<VmsPacketRingBuffer> providerRingBuffers = ringBuffers.get(layer);
+        if (providerRingBuffers == null) {
+            providerRingBuffers = new SparseArray<>();
+            ringBuffers.put(layer, providerRingBuffers);
+        }
+        VmsPacketRingBuffer previousRingBuffer = providerRingBuffers.get(providerId);
+        providerRingBuffers.put(providerId, ringBuffer);
+        return previousRingBuffer;
+    }
+
+    private static void closeRingBuffers(
+            ArrayMap<VmsLayer, SparseArray<VmsPacketRingBuffer>> ringBuffers) {
+        for (int i = 0; i < ringBuffers.size(); i++) {
+            SparseArray<VmsPacketRingBuffer> providerRingBuffers = ringBuffers.valueAt(i);
+            for (int j = 0; j < providerRingBuffers.size(); j++) {
+                providerRingBuffers.valueAt(j).close();
+            }
+        }
+        ringBuffers.clear();
+    }
+
     private static SharedMemory packetToSharedMemory(byte[] packet) {
         SharedMemory shm;
         try {
@@ -0,0 +1,351 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.car.vms;
+
+import static android.system.OsConstants.PROT_READ;
+
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+import android.os.SharedMemory;
+import android.system.ErrnoException;
+
+import com.android.internal.annotations.GuardedBy;
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed-size ring of Vehicle Map Service packets stored in shared memory.
+ *
+ * <p>The provider process owns the only writable mapping and writes each packet into the next
+ * slot, numbering packets from 1. Every other process maps the ring read-only and reads packets
+ * by sequence number after the broker signals that they are available, so packet contents never
+ * go through binder.
+ *
+ * <p>Readers that fall more than a ring length behind lose the overwritten packets. A packet is
+ * only returned if the writer did not start overwriting its slot before the copy completed.
+ * The write-started and slot sequence numbers are accessed with release/acquire semantics and
+ * fences, so that a reader can't see them out of order with the payload.
+ *
+ * <p>Memory layout, in native byte order:
+ * <pre>
+ * header: int magic, int slotCount, int maxPacketSize, int reserved,
+ *         long writeStartedSequence, long writeCompletedSequence
+ * slot:   long sequence, int length, int reserved, byte[maxPacketSize] payload (8-byte aligned)
+ * </pre>
+ */
+final class VmsPacketRingBuffer implements AutoCloseable {
+    @VisibleForTesting
+    static final int MAX_SLOT_COUNT = 1024;
+    @VisibleForTesting
+    static final int MAX_PACKET_SIZE = 1024 * 1024; // 1 MB
+
+    private static final int MAGIC = 0x564d5352; // "VMSR"
+
+    private static final int OFFSET_MAGIC = 0;
+    private static final int OFFSET_SLOT_COUNT = 4;
+    private static final int OFFSET_MAX_PACKET_SIZE = 8;
+    private static final int OFFSET_WRITE_STARTED = 16;
+    private static final int OFFSET_WRITE_COMPLETED = 24;
+    private static final int HEADER_SIZE = 32;
+
+    private static final int SLOT_OFFSET_SEQUENCE = 0;
+    private static final int SLOT_OFFSET_LENGTH = 8;
+    private static final int SLOT_HEADER_SIZE = 16;
+
+    // The sequence numbers are 8-byte aligned, which atomic access through the view requires.
+    private static final VarHandle LONG_VIEW = MethodHandles.byteBufferViewVarHandle(
+            long[].class, ByteOrder.nativeOrder());
+
+    private final SharedMemory mSharedMemory;
+    private final ByteBuffer mBuffer;
+    private final boolean mWritable;
+    private final int mSlotCount;
+    private final int mMaxPacketSize;
+    private final int mSlotSize;
+
+    private final Object mLock = new Object();
+    @GuardedBy("mLock")
+    private long mLastReadSequence;
+    @GuardedBy("mLock")
+    private long mNumDropped;
+    @GuardedBy("mLock")
+    private boolean mClosed;
+
+    private VmsPacketRingBuffer(SharedMemory sharedMemory, ByteBuffer buffer, boolean writable,
+            int slotCount, int maxPacketSize) {
+        mSharedMemory = sharedMemory;
+        mBuffer = buffer.order(ByteOrder.nativeOrder());
+        mWritable = writable;
+        mSlotCount = slotCount;
+        mMaxPacketSize = maxPacketSize;
+        mSlotSize = getSlotSize(maxPacketSize);
+    }
+
+    /**
+     * Creates a ring in new shared memory, mapped for writing by the calling process only.
+     *
+     * @throws IllegalArgumentException if the dimensions are out of range
+     * @throws IllegalStateException if the shared memory cannot be allocated
+     */
+    @NonNull
+    static VmsPacketRingBuffer create(@NonNull String name, int slotCount, int maxPacketSize) {
+        if (slotCount < 2 || slotCount > MAX_SLOT_COUNT) {
+            throw new IllegalArgumentException("slotCount must be in [2, " + MAX_SLOT_COUNT
+                    + "]: " + slotCount);
+        }
+        if (maxPacketSize <= 0 || maxPacketSize > MAX_PACKET_SIZE) {
+            throw new IllegalArgumentException("maxPacketSize must be in [1, " + MAX_PACKET_SIZE
+                    + "]: " + maxPacketSize);
+        }
+        SharedMemory shm;
+        try {
+            shm = SharedMemory.create(name, HEADER_SIZE + slotCount * getSlotSize(maxPacketSize));
+        } catch (ErrnoException e) {
+            throw new IllegalStateException("Failed to allocate shared memory", e);
+        }
+
+        ByteBuffer buffer;
+        try {
+            buffer = shm.mapReadWrite();
+        } catch (ErrnoException e) {
+            shm.close();
+            throw new IllegalStateException("Failed to create write buffer", e);
+        }
+        // Existing mappings are not affected, so only this process can write to the ring.
+        if (!shm.setProtect(PROT_READ)) {
+            SharedMemory.unmap(buffer);
+            shm.close();
+            throw new SecurityException("Failed to set read-only protection on shared memory");
+        }
+
+        VmsPacketRingBuffer ring = new VmsPacketRingBuffer(shm, buffer, /* writable= */ true,
+                slotCount, maxPacketSize);
+        ring.mBuffer.putInt(OFFSET_MAGIC, MAGIC);
+        ring.mBuffer.putInt(OFFSET_SLOT_COUNT, slotCount);
+        ring.mBuffer.putInt(OFFSET_MAX_PACKET_SIZE, maxPacketSize);
+        return ring;
+    }
+
+    /**
+     * Maps a ring created by another process for reading.
+     *
+     * <p>The ring takes ownership of the shared memory.
+     *
+     * @throws IllegalArgumentException if the shared memory does not hold a valid ring
+     * @throws IllegalStateException if the shared memory cannot be mapped
+     */
+    @NonNull
+    static VmsPacketRingBuffer map(@NonNull SharedMemory shm) {
+        ByteBuffer buffer;
+        try {
+            buffer = shm.mapReadOnly();
+        } catch (ErrnoException e) {
+            shm.close();
+            throw new IllegalStateException("Failed to create read buffer", e);
+        }
+        buffer.order(ByteOrder.nativeOrder());
+        int slotCount = buffer.capacity() >= HEADER_SIZE ? buffer.getInt(OFFSET_SLOT_COUNT) : 0;
+        int maxPacketSize = buffer.capacity() >= HEADER_SIZE
+                ? buffer.getInt(OFFSET_MAX_PACKET_SIZE) : 0;
+        if (buffer.capacity() < HEADER_SIZE
+                || buffer.getInt(OFFSET_MAGIC) != MAGIC
+                || slotCount < 2 || slotCount > MAX_SLOT_COUNT
+                || maxPacketSize <= 0 || maxPacketSize > MAX_PACKET_SIZE
+                || buffer.capacity() < HEADER_SIZE + slotCount * getSlotSize(maxPacketSize)) {
+            SharedMemory.unmap(buffer);
+            shm.close();
+            throw new IllegalArgumentException("Invalid packet ring buffer");
+        }
+        return new VmsPacketRingBuffer(shm, buffer, /* writable= */ false, slotCount,
+                maxPacketSize);
+    }
+
+    /**
+     * Returns the shared memory backing the ring, to be sent to other processes.
+     */
+    @NonNull
+    SharedMemory getSharedMemory() {
+        return mSharedMemory;
+    }
+
+    int getMaxPacketSize() {
+        return mMaxPacketSize;
+    }
+
+    /**
+     * Writes a packet into the next slot.
+     *
+     * @return sequence number of the packet
+     * @throws IllegalArgumentException if the packet is larger than the maximum packet size
+     */
+    long write(@NonNull byte[] packet) {
+        if (!mWritable) {
+            throw new IllegalStateException("Packet ring buffer is read-only");
+        }
+        if (packet.length > mMaxPacketSize) {
+            throw new IllegalArgumentException("Packet too large for ring buffer: "
+                    + packet.length + " > " + mMaxPacketSize);
+        }
+        synchronized (mLock) {
+            if (mClosed) {
+                throw new IllegalStateException("Packet ring buffer is closed");
+            }
+            long sequence = mBuffer.getLong(OFFSET_WRITE_COMPLETED) + 1;
+            // Readers check this after copying a slot, to detect that it was being overwritten,
+            // so it must be visible before any store to the slot.
+            LONG_VIEW.setVolatile(mBuffer, OFFSET_WRITE_STARTED, sequence);
+            VarHandle.storeStoreFence();
+            int slotOffset = getSlotOffset(sequence);
+            mBuffer.putInt(slotOffset + SLOT_OFFSET_LENGTH, packet.length);
+            ByteBuffer payload = mBuffer.duplicate();
+            payload.position(slotOffset + SLOT_HEADER_SIZE);
+            payload.put(packet);
+            // Publishes the length and payload to readers that acquire the slot sequence.
+            LONG_VIEW.setRelease(mBuffer, slotOffset + SLOT_OFFSET_SEQUENCE, sequence);
+            LONG_VIEW.setRelease(mBuffer, OFFSET_WRITE_COMPLETED, sequence);
+            return sequence;
+        }
+    }
+
+    /**
+     * Reads every packet written after the last packet read, up to the given sequence number.
+     *
+     * <p>Packets overwritten before they could be read are counted as dropped.
+     */
+    @NonNull
+    List<byte[]> readPending(long upToSequence) {
+        if (upToSequence <= 0) {
+            return new ArrayList<>();
+        }
+        synchronized (mLock) {
+            startReadingLocked(upToSequence);
+            long first = Math.max(mLastReadSequence + 1, upToSequence - mSlotCount + 1);
+            List<byte[]> packets = new ArrayList<>((int) Math.max(upToSequence - first + 1, 0));
+            for (long sequence = first; sequence <= upToSequence; sequence++) {
+                byte[] packet = readLocked(sequence);
+                if (packet != null) {
+                    packets.add(packet);
+                }
+            }
+            markReadLocked(upToSequence, packets.size());
+            return packets;
+        }
+    }
+
+    /**
+     * Reads the packet with the given sequence number, skipping every pending packet before it.
+     *
+     * @return the packet, or {@code null} if it was already read or overwritten
+     */
+    @Nullable
+    byte[] readLatest(long sequence) {
+        if (sequence <= 0) {
+            return null;
+        }
+        synchronized (mLock) {
+            startReadingLocked(sequence);
+            if (sequence <= mLastReadSequence) {
+                return null;
+            }
+            byte[] packet = readLocked(sequence);
+            markReadLocked(sequence, packet == null ? 0 : 1);
+            return packet;
+        }
+    }
+
+    /**
+     * Returns the number of packets that were skipped or overwritten before they could be read.
+     */
+    long getNumDropped() {
+        synchronized (mLock) {
+            return mNumDropped;
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (mLock) {
+            if (mClosed) {
+                return;
+            }
+            mClosed = true;
+        }
+        SharedMemory.unmap(mBuffer);
+        mSharedMemory.close();
+    }
+
+    @GuardedBy("mLock")
+    @Nullable
+    private byte[] readLocked(long sequence) {
+        if (mClosed) {
+            return null;
+        }
+        int slotOffset = getSlotOffset(sequence);
+        if ((long) LONG_VIEW.getAcquire(mBuffer, slotOffset + SLOT_OFFSET_SEQUENCE)
+                != sequence) {
+            return null;
+        }
+        int length = mBuffer.getInt(slotOffset + SLOT_OFFSET_LENGTH);
+        if (length < 0 || length > mMaxPacketSize) {
+            return null;
+        }
+        byte[] packet = new byte[length];
+        ByteBuffer payload = mBuffer.duplicate();
+        payload.position(slotOffset + SLOT_HEADER_SIZE);
+        payload.get(packet);
+        // The copy must complete before the write-started sequence is read again.
+        VarHandle.loadLoadFence();
+        if ((long) LONG_VIEW.getAcquire(mBuffer, OFFSET_WRITE_STARTED)
+                >= sequence + mSlotCount) {
+            // The slot was (being) overwritten while copying.
+            return null;
+        }
+        return packet;
+    }
+
+    @GuardedBy("mLock")
+    private void startReadingLocked(long sequence) {
+        // Packets written before the first signal this reader received were not meant for it.
+        if (mLastReadSequence == 0) {
+            mLastReadSequence = sequence - 1;
+        }
+    }
+
+    @GuardedBy("mLock")
+    private void markReadLocked(long sequence, int numReturned) {
+        if (sequence <= mLastReadSequence) {
+            return;
+        }
+        // Every packet after the last read one that was not returned is lost.
+        mNumDropped += sequence - mLastReadSequence - numReturned;
+        mLastReadSequence = sequence;
+    }
+
+    private int getSlotOffset(long sequence) {
+        return HEADER_SIZE + (int) ((sequence - 1) % mSlotCount) * mSlotSize;
+    }
+
+    private static int getSlotSize(int maxPacketSize) {
+        return (SLOT_HEADER_SIZE + maxPacketSize + 7) & ~7;
+    }
+}
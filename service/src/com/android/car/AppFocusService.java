@@ -146,7 +146,8 @@ public class AppFocusService extends IAppFocus.Stub implements CarServiceBase,
         if (owner == null) {
             return Collections.EMPTY_LIST;
         }
-        String[] packageNames = mContext.getPackageManager().getPackagesForUid(owner.getUid());
+        String[] packageNames = CarServiceUtils.getPackagesForUid(
+                mContext.getPackageManager(), owner.getUid());
         if (packageNames == null) {
             return Collections.EMPTY_LIST;
         }
@@ -88,7 +88,6 @@ import com.android.internal.annotations.VisibleForTesting;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
-import java.util.Collections;
 import java.util.List;
 import java.util.function.BooleanSupplier;
 import java.util.function.IntSupplier;
@@ -135,6 +134,22 @@ public class CarInputService extends ICarInput.Stub
                 @VehicleAreaSeat.Enum int seat) {
             // No op
         }
+
+        /**
+         * Called when a key is pressed several times in a row, e.g. for the clicks of a rotary
+         * controller, so that the presses can be handled as a single action.
+         *
+         * @param event       the key down event of the last press
+         * @param count       the number of presses
+         * @param displayType target display the event is associated with
+         * @param seat        the area id this event is occurring from
+         * @return whether the presses were handled; otherwise each press is delivered as key
+         *         events
+         */
+        default boolean onRepeatedKeyEvent(KeyEvent event, int count,
+                @DisplayTypeEnum int displayType, @VehicleAreaSeat.Enum int seat) {
+            return false;
+        }
     }
 
     /** An interface to receive {@link MotionEvent}s as they occur. */
@@ -197,6 +212,50 @@ public class CarInputService extends ICarInput.Stub
         }
     }
 
+    /**
+     * Immutable copy of the key event listeners and handlers, so that input events are routed
+     * without taking {@code mLock}.
+     */
+    private static final class KeyEventRouting {
+        static final KeyEventRouting EMPTY = new KeyEventRouting(new SparseArray<>(),
+                /* projectionKeyEventHandler= */ null, new BitSet(),
+                /* instrumentClusterKeyListener= */ null);
+
+        final SparseArray<KeyEventListener> mListeners;
+        @Nullable
+        final CarProjectionManager.ProjectionKeyEventHandler mProjectionKeyEventHandler;
+        final BitSet mProjectionKeyEventsSubscribed;
+        @Nullable
+        final KeyEventListener mInstrumentClusterKeyListener;
+
+        KeyEventRouting(SparseArray<KeyEventListener> listeners,
+                @Nullable CarProjectionManager.ProjectionKeyEventHandler projectionKeyEventHandler,
+                BitSet projectionKeyEventsSubscribed,
+                @Nullable KeyEventListener instrumentClusterKeyListener) {
+            // Copied pair by pair, as a clone of a SparseArray with deleted entries would compact
+            // itself on its first read, which isn't safe without a lock.
+            int size = listeners.size();
+            mListeners = new SparseArray<>(size);
+            for (int i = 0; i < size; i++) {
+                mListeners.append(listeners.keyAt(i), listeners.valueAt(i));
+            }
+            mProjectionKeyEventHandler = projectionKeyEventHandler;
+            mProjectionKeyEventsSubscribed = (BitSet) projectionKeyEventsSubscribed.clone();
+            mInstrumentClusterKeyListener = instrumentClusterKeyListener;
+        }
+
+        @Nullable
+        KeyEventListener getListener(int keyCode) {
+            return mListeners.get(keyCode);
+        }
+
+        @Nullable
+        CarProjectionManager.ProjectionKeyEventHandler getProjectionKeyEventHandler(
+                @CarProjectionManager.KeyEventNum int event) {
+            return mProjectionKeyEventsSubscribed.get(event) ? mProjectionKeyEventHandler : null;
+        }
+    }
+
     private final VoiceInteractionSessionShowCallbackHelper mShowCallback;
     static final VoiceInteractionSessionShowCallbackHelper sDefaultShowCallback =
             new VoiceInteractionSessionShowCallbackHelper() {
@@ -255,12 +314,18 @@ public class CarInputService extends ICarInput.Stub
     @GuardedBy("mLock")
     private final SparseArray<KeyEventListener> mListeners = new SparseArray<>();
 
+    // Read without locking on the input path, and replaced under mLock whenever a listener or
+    // handler above changes.
+    private volatile KeyEventRouting mKeyEventRouting = KeyEventRouting.EMPTY;
+
     private final InputCaptureClientController mCaptureController;
 
     private int mDriverSeat = VehicleAreaSeat.SEAT_UNKNOWN;
 
     private boolean mHasDriver;
 
+    private boolean mBatchRotaryVolumeClicks;
+
     // key: seat, value: power key handled by ACTION_DOWN.
     // {@code true} if the screen was turned on with the power key ACTION_DOWN. In this case,
     // we need to block the power key's ACTION_UP to prevent the device from going back to sleep.
@@ -378,6 +443,7 @@ public class CarInputService extends ICarInput.Stub
             if (events != null) {
                 mProjectionKeyEventsSubscribed.or(events);
             }
+            updateKeyEventRoutingLocked();
         }
     }
 
@@ -407,6 +473,7 @@ public class CarInputService extends ICarInput.Stub
             for (int i = 0; i < keyCodesOfInterest.size(); i++) {
                 mListeners.put(keyCodesOfInterest.get(i), listener);
             }
+            updateKeyEventRoutingLocked();
         }
     }
 
@@ -433,6 +500,7 @@ public class CarInputService extends ICarInput.Stub
             for (int c = 0; c < keysToRemove.size(); c++) {
                 mListeners.delete(keysToRemove.get(c));
             }
+            updateKeyEventRoutingLocked();
         }
         return true;
     }
@@ -443,9 +511,16 @@ public class CarInputService extends ICarInput.Stub
     public void setInstrumentClusterKeyListener(KeyEventListener listener) {
         synchronized (mLock) {
             mInstrumentClusterKeyListener = listener;
+            updateKeyEventRoutingLocked();
         }
     }
 
+    @GuardedBy("mLock")
+    private void updateKeyEventRoutingLocked() {
+        mKeyEventRouting = new KeyEventRouting(mListeners, mProjectionKeyEventHandler,
+                mProjectionKeyEventsSubscribed, mInstrumentClusterKeyListener);
+    }
+
     @Override
     public void init() {
         if (!mInputHalService.isKeyInputSupported()) {
@@ -459,6 +534,8 @@ public class CarInputService extends ICarInput.Stub
         mUserService.addUserLifecycleListener(userSwitchingEventFilter, mUserLifecycleListener);
         mDriverSeat = mCarOccupantZoneService.getDriverSeat();
         mHasDriver = (mDriverSeat != VehicleAreaSeat.SEAT_UNKNOWN);
+        mBatchRotaryVolumeClicks = mContext.getResources().getBoolean(
+                R.bool.config_batchRotaryVolumeClicks);
     }
 
     @Override
@@ -468,6 +545,7 @@ public class CarInputService extends ICarInput.Stub
             mProjectionKeyEventsSubscribed.clear();
             mInstrumentClusterKeyListener = null;
             mListeners.clear();
+            updateKeyEventRoutingLocked();
         }
         mUserService.removeUserLifecycleListener(mUserLifecycleListener);
     }
@@ -557,10 +635,7 @@ public class CarInputService extends ICarInput.Stub
     }
 
     private void notifyKeyEventListener(KeyEvent event, int targetDisplay, int seat) {
-        KeyEventListener keyEventListener;
-        synchronized (mLock) {
-            keyEventListener = mListeners.get(event.getKeyCode());
-        }
+        KeyEventListener keyEventListener = mKeyEventRouting.getListener(event.getKeyCode());
         if (keyEventListener == null) {
             if (DBG) {
                 Slogf.d(TAG, "Key event listener not found for event %s",
@@ -609,12 +684,54 @@ public class CarInputService extends ICarInput.Stub
 
     @Override
     public void onRotaryEvent(RotaryEvent event, @DisplayTypeEnum int targetDisplay) {
-        if (!mCaptureController.onRotaryEvent(targetDisplay, event)) {
-            List<KeyEvent> keyEvents = rotaryEventToKeyEvents(event);
-            for (KeyEvent keyEvent : keyEvents) {
-                onKeyEvent(keyEvent, targetDisplay);
-            }
+        if (mCaptureController.onRotaryEvent(targetDisplay, event)) {
+            return;
+        }
+        int keyCode = rotaryEventToKeyCode(event);
+        if (keyCode == KeyEvent.KEYCODE_UNKNOWN
+                || dispatchBatchedRotaryEvent(event, keyCode, targetDisplay)) {
+            return;
         }
+        // Key events are dispatched as they are created, without collecting them first.
+        for (int i = 0; i < event.getNumberOfClicks(); i++) {
+            long uptime = event.getUptimeMillisForClick(i);
+            onKeyEvent(createKeyEvent(/* down= */ true, uptime, uptime, keyCode), targetDisplay);
+            onKeyEvent(createKeyEvent(/* down= */ false, uptime, uptime, keyCode), targetDisplay);
+        }
+    }
+
+    /**
+     * Delivers all the clicks of a rotary volume event to the listener of its key code at once,
+     * if enabled by {@code config_batchRotaryVolumeClicks}.
+     *
+     * <p>The clicks are only batched when no key event capture client would receive the volume
+     * key events and the event doesn't target the instrument cluster, so that the clients and
+     * the cluster keep receiving a key event pair per click.
+     *
+     * @return whether the listener handled the clicks
+     */
+    private boolean dispatchBatchedRotaryEvent(RotaryEvent event, int keyCode,
+            @DisplayTypeEnum int targetDisplay) {
+        int numClicks = event.getNumberOfClicks();
+        if (!mBatchRotaryVolumeClicks || numClicks < 2
+                || event.getInputType() != CarInputManager.INPUT_TYPE_ROTARY_VOLUME
+                || targetDisplay == CarOccupantZoneManager.DISPLAY_TYPE_INSTRUMENT_CLUSTER
+                || mCaptureController.hasKeyEventCapturer(targetDisplay, keyCode)) {
+            return false;
+        }
+        KeyEventListener keyEventListener = mKeyEventRouting.getListener(keyCode);
+        if (keyEventListener == null) {
+            return false;
+        }
+        long uptime = event.getUptimeMillisForClick(numClicks - 1);
+        KeyEvent keyEvent = createKeyEvent(/* down= */ true, uptime, uptime, keyCode);
+        assignDisplayId(keyEvent, targetDisplay);
+        if (!keyEventListener.onRepeatedKeyEvent(keyEvent, numClicks, targetDisplay,
+                mDriverSeat)) {
+            return false;
+        }
+        notifyUserActivity(keyEvent, targetDisplay, mDriverSeat);
+        return true;
     }
 
     @Override
@@ -626,35 +743,21 @@ public class CarInputService extends ICarInput.Stub
         Slogf.d(TAG, "Succeed injecting (%s)", event);
     }
 
-    private static List<KeyEvent> rotaryEventToKeyEvents(RotaryEvent event) {
-        int numClicks = event.getNumberOfClicks();
-        int numEvents = numClicks * 2; // up / down per each click
+    private static int rotaryEventToKeyCode(RotaryEvent event) {
         boolean clockwise = event.isClockwise();
-        int keyCode;
         switch (event.getInputType()) {
             case CarInputManager.INPUT_TYPE_ROTARY_NAVIGATION:
-                keyCode = clockwise
+                return clockwise
                         ? KeyEvent.KEYCODE_NAVIGATE_NEXT
                         : KeyEvent.KEYCODE_NAVIGATE_PREVIOUS;
-                break;
             case CarInputManager.INPUT_TYPE_ROTARY_VOLUME:
-                keyCode = clockwise
+                return clockwise
                         ? KeyEvent.KEYCODE_VOLUME_UP
                         : KeyEvent.KEYCODE_VOLUME_DOWN;
-                break;
             default:
                 Slogf.e(TAG, "Unknown rotary input type: %d", event.getInputType());
-                return Collections.EMPTY_LIST;
-        }
-        ArrayList<KeyEvent> keyEvents = new ArrayList<>(numEvents);
-        for (int i = 0; i < numClicks; i++) {
-            long uptime = event.getUptimeMillisForClick(i);
-            KeyEvent downEvent = createKeyEvent(/* down= */ true, uptime, uptime, keyCode);
-            KeyEvent upEvent = createKeyEvent(/* down= */ false, uptime, uptime, keyCode);
-            keyEvents.add(downEvent);
-            keyEvents.add(upEvent);
+                return KeyEvent.KEYCODE_UNKNOWN;
         }
-        return keyEvents;
     }
 
     private static KeyEvent createKeyEvent(boolean down, long downTime, long eventTime,
@@ -919,13 +1022,11 @@ public class CarInputService extends ICarInput.Stub
     }
 
     private boolean dispatchProjectionKeyEvent(@CarProjectionManager.KeyEventNum int event) {
-        CarProjectionManager.ProjectionKeyEventHandler projectionKeyEventHandler;
-        synchronized (mLock) {
-            projectionKeyEventHandler = mProjectionKeyEventHandler;
-            if (projectionKeyEventHandler == null || !mProjectionKeyEventsSubscribed.get(event)) {
-                // No event handler, or event handler doesn't want this event - we're done.
-                return false;
-            }
+        CarProjectionManager.ProjectionKeyEventHandler projectionKeyEventHandler =
+                mKeyEventRouting.getProjectionKeyEventHandler(event);
+        if (projectionKeyEventHandler == null) {
+            // No event handler, or event handler doesn't want this event - we're done.
+            return false;
         }
 
         projectionKeyEventHandler.onKeyEvent(event);
@@ -995,10 +1096,7 @@ public class CarInputService extends ICarInput.Stub
      * InstrumentClusterKeyListener.
      */
     private boolean handleInstrumentClusterKey(KeyEvent event) {
-        KeyEventListener listener;
-        synchronized (mLock) {
-            listener = mInstrumentClusterKeyListener;
-        }
+        KeyEventListener listener = mKeyEventRouting.mInstrumentClusterKeyListener;
         if (listener == null) {
             return false;
         }
@@ -1032,6 +1130,12 @@ public class CarInputService extends ICarInput.Stub
         writer.println("Long-press delay: " + mLongPressDelaySupplier.getAsInt() + "ms");
         writer.println("Call button ends ongoing call: "
                 + mShouldCallButtonEndOngoingCallSupplier.getAsBoolean());
+        KeyEventRouting routing = mKeyEventRouting;
+        writer.println("Key event listeners: " + routing.mListeners.size() + " key codes");
+        writer.println("Projection key events: " + routing.mProjectionKeyEventsSubscribed
+                + (routing.mProjectionKeyEventHandler == null ? " (no handler)" : ""));
+        writer.println("Instrument cluster key listener set: "
+                + (routing.mInstrumentClusterKeyListener != null));
         mCaptureController.dump(writer);
     }
 
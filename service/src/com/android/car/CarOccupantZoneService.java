@@ -220,6 +220,10 @@ public final class CarOccupantZoneService extends ICarOccupantZone.Stub
     @GuardedBy("mLock")
     private int mDriverZoneId = OccupantZoneInfo.INVALID_ZONE_ID;
 
+    // Rebuilt under mLock after every change to the zones, displays, users or audio zones above,
+    // and read without locking by the frequent queries.
+    private volatile OccupantZoneTopology mTopology = OccupantZoneTopology.EMPTY;
+
     @VisibleForTesting
     final UserLifecycleListener mUserLifecycleListener = event -> {
         if (DBG) Slogf.d(TAG, "onEvent(%s)", event);
@@ -302,6 +306,7 @@ public final class CarOccupantZoneService extends ICarOccupantZone.Stub
             handleActiveDisplaysLocked();
             handleAudioZoneChangesLocked();
             handleUserChangesLocked();
+            updateTopologyLocked();
         }
         mCarUserService = CarLocalServices.getService(CarUserService.class);
         UserLifecycleEventFilter userEventFilter = new UserLifecycleEventFilter.Builder()
@@ -349,6 +354,7 @@ public final class CarOccupantZoneService extends ICarOccupantZone.Stub
                         return false;
                     }
                     zoneConfig.userId = userId;
+                    updateTopologyLocked();
                     return true;
                 }
             }
@@ -360,6 +366,7 @@ public final class CarOccupantZoneService extends ICarOccupantZone.Stub
                         OccupantConfig config = mActiveOccupantConfigs.valueAt(i);
                         if (config.userId == userId) {
                             config.userId = CarOccupantZoneManager.INVALID_USER_ID;
+                            updateTopologyLocked();
                             break;
                         }
                     }
@@ -402,6 +409,7 @@ public final class CarOccupantZoneService extends ICarOccupantZone.Stub
             mDisplayUniqueIdConfigs.clear();
             mAudioZoneIdToOccupantZoneIdMapping.clear();
             mActiveOccupantConfigs.clear();
+            updateTopologyLocked();
         }
     }
 
@@ -483,6 +491,7 @@ public final class CarOccupantZoneService extends ICarOccupantZone.Stub
             writer.println("mEnableProfileUserAssignmentForMultiDisplay:"
                     + mEnableProfileUserAssignmentForMultiDisplay);
             writer.println("hasDriverZone: " + hasDriverZone());
+            writer.println("topologyVersion: " + mTopology.getVersion());
         }
     }
 
@@ -532,30 +541,13 @@ public final class CarOccupantZoneService extends ICarOccupantZone.Stub
 
     @Override
     public List<OccupantZoneInfo> getAllOccupantZones() {
-        synchronized (mLock) {
-            List<OccupantZoneInfo> infos = new ArrayList<>();
-            for (int i = 0; i < mActiveOccupantConfigs.size(); ++i) {
-                int zoneId = mActiveOccupantConfigs.keyAt(i);
-                // no need for deep copy as OccupantZoneInfo itself is static.
-                infos.add(mOccupantsConfig.get(zoneId));
-            }
-            return infos;
-        }
+        // no need for deep copy as OccupantZoneInfo itself is static.
+        return new ArrayList<>(mTopology.getActiveZones());
     }
 
     @Override
     public int[] getAllDisplaysForOccupantZone(int occupantZoneId) {
-        synchronized (mLock) {
-            OccupantConfig config = mActiveOccupantConfigs.get(occupantZoneId);
-            if (config == null) {
-                return EMPTY_INT_ARRAY;
-            }
-            int[] displayIds = new int[config.displayInfos.size()];
-            for (int i = 0; i < config.displayInfos.size(); i++) {
-                displayIds[i] = config.displayInfos.get(i).display.getDisplayId();
-            }
-            return displayIds;
-        }
+        return mTopology.getDisplayIds(occupantZoneId);
     }
 
     /**
@@ -582,18 +574,7 @@ public final class CarOccupantZoneService extends ICarOccupantZone.Stub
 
     @Override
     public int getDisplayForOccupant(int occupantZoneId, int displayType) {
-        synchronized (mLock) {
-            OccupantConfig config = mActiveOccupantConfigs.get(occupantZoneId);
-            if (config == null) {
-                return Display.INVALID_DISPLAY;
-            }
-            for (int i = 0; i < config.displayInfos.size(); i++) {
-                if (displayType == config.displayInfos.get(i).displayType) {
-                    return config.displayInfos.get(i).display.getDisplayId();
-                }
-            }
-        }
-        return Display.INVALID_DISPLAY;
+        return mTopology.getDisplayId(occupantZoneId, displayType);
     }
 
     public IntArray getAllDisplayIdsForDriver(int displayType) {
@@ -616,80 +597,20 @@ public final class CarOccupantZoneService extends ICarOccupantZone.Stub
     @Override
     public int getDisplayIdForDriver(@DisplayTypeEnum int displayType) {
         enforcePermission(Car.ACCESS_PRIVATE_DISPLAY_ID);
-        synchronized (mLock) {
-            int driverUserId = getDriverUserId();
-            DisplayInfo displayInfo = findDisplayForDriverLocked(driverUserId, displayType);
-            if (displayInfo == null) {
-                return Display.INVALID_DISPLAY;
-            }
-            return displayInfo.display.getDisplayId();
-        }
-    }
-
-    @GuardedBy("mLock")
-    @Nullable
-    private DisplayInfo findDisplayForDriverLocked(@UserIdInt int driverUserId,
-            @DisplayTypeEnum int displayType) {
-        for (OccupantZoneInfo zoneInfo : getAllOccupantZones()) {
-            if (zoneInfo.occupantType == CarOccupantZoneManager.OCCUPANT_TYPE_DRIVER) {
-                OccupantConfig config = mActiveOccupantConfigs.get(zoneInfo.zoneId);
-                if (config == null) {
-                    //No active display for zone, just continue...
-                    continue;
-                }
-
-                if (config.userId == driverUserId) {
-                    for (DisplayInfo displayInfo : config.displayInfos) {
-                        if (displayInfo.displayType == displayType) {
-                            return displayInfo;
-                        }
-                    }
-                }
-            }
-        }
-        return null;
+        return mTopology.getDriverDisplayId(getDriverUserId(), displayType);
     }
 
     @Override
     public int getAudioZoneIdForOccupant(int occupantZoneId) {
         enforcePermission(Car.PERMISSION_CAR_CONTROL_AUDIO_SETTINGS);
-        synchronized (mLock) {
-            OccupantConfig config = mActiveOccupantConfigs.get(occupantZoneId);
-            if (config != null) {
-                return config.audioZoneId;
-            }
-            // check if the occupant id exist at all
-            if (!mOccupantsConfig.contains(occupantZoneId)) {
-                return CarAudioManager.INVALID_AUDIO_ZONE;
-            }
-            // Exist but not active
-            return getAudioZoneIdForOccupantLocked(occupantZoneId);
-        }
-    }
-
-    @GuardedBy("mLock")
-    private int getAudioZoneIdForOccupantLocked(int occupantZoneId) {
-        for (int index = 0; index < mAudioZoneIdToOccupantZoneIdMapping.size(); index++) {
-            int audioZoneId = mAudioZoneIdToOccupantZoneIdMapping.keyAt(index);
-            if (occupantZoneId == mAudioZoneIdToOccupantZoneIdMapping.get(audioZoneId)) {
-                return audioZoneId;
-            }
-        }
-        return CarAudioManager.INVALID_AUDIO_ZONE;
+        return mTopology.getAudioZoneForZone(occupantZoneId);
     }
 
     @Override
     public OccupantZoneInfo getOccupantForAudioZoneId(int audioZoneId) {
         enforcePermission(Car.PERMISSION_CAR_CONTROL_AUDIO_SETTINGS);
-        synchronized (mLock) {
-            int occupantZoneId = mAudioZoneIdToOccupantZoneIdMapping.get(audioZoneId,
-                    OccupantZoneInfo.INVALID_ZONE_ID);
-            if (occupantZoneId == OccupantZoneInfo.INVALID_ZONE_ID) {
-                return null;
-            }
-            // To support headless zones return the occupant configuration.
-            return mOccupantsConfig.get(occupantZoneId);
-        }
+        // To support headless zones return the occupant configuration.
+        return mTopology.getOccupantForAudioZone(audioZoneId);
     }
 
     /**
@@ -754,28 +675,17 @@ public final class CarOccupantZoneService extends ICarOccupantZone.Stub
 
     @Override
     public int getUserForOccupant(int occupantZoneId) {
-        synchronized (mLock) {
-            OccupantConfig config = mActiveOccupantConfigs.get(occupantZoneId);
-            if (config == null) {
-                return CarOccupantZoneManager.INVALID_USER_ID;
-            }
-            return config.userId;
-        }
+        return mTopology.getUserForZone(occupantZoneId);
     }
 
     @Override
     public int getOccupantZoneIdForUserId(@UserIdInt int userId) {
-        synchronized (mLock) {
-            for (int i = 0; i < mActiveOccupantConfigs.size(); ++i) {
-                OccupantConfig config = mActiveOccupantConfigs.valueAt(i);
-                if (config.userId == userId) {
-                    return mActiveOccupantConfigs.keyAt(i);
-                }
-            }
+        int zoneId = mTopology.getZoneForUser(userId);
+        if (zoneId == OccupantZoneInfo.INVALID_ZONE_ID) {
             Slogf.w(TAG, "Could not find occupantZoneId for userId%d returning invalid "
                     + "occupant zone id %d", userId, OccupantZoneInfo.INVALID_ZONE_ID);
-            return OccupantZoneInfo.INVALID_ZONE_ID;
         }
+        return zoneId;
     }
 
     @Override
@@ -826,6 +736,7 @@ public final class CarOccupantZoneService extends ICarOccupantZone.Stub
             }
             //If there are any active displays for the zone send change event
             handleAudioZoneChangesLocked();
+            updateTopologyLocked();
         }
         sendConfigChangeEvent(CarOccupantZoneManager.ZONE_CONFIG_CHANGE_FLAG_AUDIO);
     }
@@ -946,6 +857,7 @@ public final class CarOccupantZoneService extends ICarOccupantZone.Stub
             }
             if (DBG) Slogf.d(TAG, "Assigned user %d to zone %d", userId, occupantZoneId);
             config.userId = userId;
+            updateTopologyLocked();
         }
 
         sendConfigChangeEvent(CarOccupantZoneManager.ZONE_CONFIG_CHANGE_FLAG_USER);
@@ -999,6 +911,7 @@ public final class CarOccupantZoneService extends ICarOccupantZone.Stub
             }
             if (DBG) Slogf.d(TAG, "Unassigned zone:%d", occupantZoneId);
             config.userId = CarOccupantZoneManager.INVALID_USER_ID;
+            updateTopologyLocked();
         }
         sendConfigChangeEvent(CarOccupantZoneManager.ZONE_CONFIG_CHANGE_FLAG_USER);
 
@@ -1011,13 +924,10 @@ public final class CarOccupantZoneService extends ICarOccupantZone.Stub
         // UserHandle.getUserId(uid) can do this in one step but it is hidden API.
         UserHandle user = UserHandle.getUserHandleForUid(uid);
         int userId = user.getIdentifier();
-        synchronized (mLock) {
-            for (int i = 0; i < mActiveOccupantConfigs.size(); i++) {
-                OccupantConfig config = mActiveOccupantConfigs.valueAt(i);
-                if (config.userId == userId) {
-                    int zoneId = mActiveOccupantConfigs.keyAt(i);
-                    return mOccupantsConfig.get(zoneId);
-                }
+        int zoneId = mTopology.getZoneForUser(userId);
+        if (zoneId != OccupantZoneInfo.INVALID_ZONE_ID) {
+            synchronized (mLock) {
+                return mOccupantsConfig.get(zoneId);
             }
         }
         Slogf.w(TAG, "getMyOccupantZone: No assigned zone for uid:%d", uid);
@@ -1067,21 +977,7 @@ public final class CarOccupantZoneService extends ICarOccupantZone.Stub
      * @return The occupant zone id for the given seat
      */
     public int getOccupantZoneIdForSeat(@VehicleAreaSeat.Enum int seat) {
-        synchronized (mLock) {
-            return getOccupantZoneIdForSeatLocked(seat);
-        }
-    }
-
-    @GuardedBy("mLock")
-    private int getOccupantZoneIdForSeatLocked(@VehicleAreaSeat.Enum int seat) {
-        for (int i = 0; i < mActiveOccupantConfigs.size(); i++) {
-            int zoneId = mActiveOccupantConfigs.keyAt(i);
-            OccupantZoneInfo info = mOccupantsConfig.get(zoneId);
-            if (seat == info.seat) {
-                return zoneId;
-            }
-        }
-        return OccupantZoneInfo.INVALID_ZONE_ID;
+        return mTopology.getZoneForSeat(seat);
     }
 
     @Override
@@ -1105,18 +1001,11 @@ public final class CarOccupantZoneService extends ICarOccupantZone.Stub
     @Override
     @UserIdInt
     public int getUserForDisplayId(int displayId) {
-        synchronized (mLock) {
-            for (int i = 0; i < mActiveOccupantConfigs.size(); i++) {
-                OccupantConfig config = mActiveOccupantConfigs.valueAt(i);
-                for (int j = 0; j < config.displayInfos.size(); j++) {
-                    if (config.displayInfos.get(j).display.getDisplayId() == displayId) {
-                        return config.userId;
-                    }
-                }
-            }
+        int userId = mTopology.getUserForDisplay(displayId);
+        if (userId == CarOccupantZoneManager.INVALID_USER_ID) {
+            Slogf.w(TAG, "Could not find OccupantZone for display Id %d", displayId);
         }
-        Slogf.w(TAG, "Could not find OccupantZone for display Id %d", displayId);
-        return CarOccupantZoneManager.INVALID_USER_ID;
+        return userId;
     }
 
     /** Returns number of passenger zones in the device. */
@@ -1628,6 +1517,18 @@ public final class CarOccupantZoneService extends ICarOccupantZone.Stub
         }
     }
 
+    @GuardedBy("mLock")
+    private void updateTopologyLocked() {
+        mTopology = new OccupantZoneTopology(mTopology.getVersion() + 1, mOccupantsConfig,
+                mActiveOccupantConfigs, mAudioZoneIdToOccupantZoneIdMapping, mDriverZoneId);
+    }
+
+    /** Returns the version of the occupant zone topology, which changes on every update. */
+    @VisibleForTesting
+    long getTopologyVersion() {
+        return mTopology.getVersion();
+    }
+
     private void sendConfigChangeEvent(int changeFlags) {
         boolean updateDisplay = false;
         boolean updateUser = false;
@@ -1659,6 +1560,9 @@ public final class CarOccupantZoneService extends ICarOccupantZone.Stub
         boolean changed;
         synchronized (mLock) {
             changed = handleUserChangesLocked();
+            if (changed) {
+                updateTopologyLocked();
+            }
         }
         if (changed) {
             sendConfigChangeEvent(CarOccupantZoneManager.ZONE_CONFIG_CHANGE_FLAG_USER);
@@ -1680,6 +1584,7 @@ public final class CarOccupantZoneService extends ICarOccupantZone.Stub
             handleAudioZoneChangesLocked();
             // User should be re-checked for changed displays
             handleUserChangesLocked();
+            updateTopologyLocked();
         }
         sendConfigChangeEvent(CarOccupantZoneManager.ZONE_CONFIG_CHANGE_FLAG_DISPLAY);
     }
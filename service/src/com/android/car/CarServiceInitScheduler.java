@@ -0,0 +1,263 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.car;
+
+import static com.android.car.CarServiceImpl.CAR_SERVICE_INIT_TIMING_MIN_DURATION_MS;
+import static com.android.car.CarServiceImpl.CAR_SERVICE_INIT_TIMING_TAG;
+
+import android.car.builtin.os.TraceHelper;
+import android.car.builtin.util.Slogf;
+import android.os.SystemClock;
+import android.util.ArrayMap;
+
+import com.android.car.util.LimitedTimingsTraceLog;
+import com.android.internal.annotations.GuardedBy;
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Calls {@link CarSystemService#init()} on every car service, running the services that declared
+ * their init dependencies on a bounded thread pool.
+ *
+ * <p>A service with declared dependencies is initialized once all of them are initialized. Such a
+ * service must not be needed by the init of any service that does not declare it as a dependency.
+ * Every other service is initialized on the calling thread, in the given order, as when no thread
+ * pool is used.
+ *
+ * <p>Once all services are initialized, the longest chain of dependent inits is logged.
+ */
+final class CarServiceInitScheduler {
+
+    private static final String TAG = CarLog.tagFor(CarServiceInitScheduler.class);
+
+    private final CarSystemService[] mServicesInInitOrder;
+    // key: service, value: services that must be initialized before it
+    private final ArrayMap<CarSystemService, CarSystemService[]> mDependencies;
+    private final int mThreadPoolSize;
+
+    private final Object mLock = new Object();
+    @GuardedBy("mLock")
+    private final ArrayMap<CarSystemService, Long> mInitStartTimesMs = new ArrayMap<>();
+    @GuardedBy("mLock")
+    private final ArrayMap<CarSystemService, Long> mInitEndTimesMs = new ArrayMap<>();
+
+    /**
+     * @param dependencies   services that must be initialized before a service, by service.
+     *                       Every dependency must come before the service in
+     *                       {@code servicesInInitOrder}.
+     * @param threadPoolSize number of threads initializing the services with dependencies, or
+     *                       {@code 0} to initialize all services on the calling thread
+     */
+    CarServiceInitScheduler(CarSystemService[] servicesInInitOrder,
+            ArrayMap<CarSystemService, CarSystemService[]> dependencies, int threadPoolSize) {
+        mServicesInInitOrder = servicesInInitOrder;
+        mDependencies = dependencies;
+        mThreadPoolSize = threadPoolSize;
+        validateDependencies();
+    }
+
+    /** Initializes all services, returning once all of them are initialized. */
+    void initAll(LimitedTimingsTraceLog t) {
+        if (mThreadPoolSize <= 0 || mDependencies.isEmpty()) {
+            for (CarSystemService service : mServicesInInitOrder) {
+                t.traceBegin(service.getClass().getSimpleName());
+                service.init();
+                t.traceEnd();
+            }
+            return;
+        }
+
+        ArrayMap<CarSystemService, CountDownLatch> initDone = new ArrayMap<>(
+                mServicesInInitOrder.length);
+        for (CarSystemService service : mServicesInInitOrder) {
+            initDone.put(service, new CountDownLatch(1));
+        }
+        long startTimeMs = SystemClock.uptimeMillis();
+        List<Future<?>> tasks = new ArrayList<>(mDependencies.size());
+        // Tasks are queued in init order and only wait for services earlier in that order, so
+        // the oldest pending task is always running and the pool can't deadlock.
+        ExecutorService executor = Executors.newFixedThreadPool(mThreadPoolSize);
+        try {
+            for (CarSystemService service : mServicesInInitOrder) {
+                CarSystemService[] dependencies = mDependencies.get(service);
+                if (dependencies == null) {
+                    t.traceBegin(service.getClass().getSimpleName());
+                    long serviceStartTimeMs = SystemClock.uptimeMillis();
+                    service.init();
+                    recordInit(service, serviceStartTimeMs);
+                    t.traceEnd();
+                    initDone.get(service).countDown();
+                    continue;
+                }
+                tasks.add(executor.submit(() -> {
+                    awaitInit(initDone, dependencies);
+                    LimitedTimingsTraceLog threadTraceLog = new LimitedTimingsTraceLog(
+                            CAR_SERVICE_INIT_TIMING_TAG, TraceHelper.TRACE_TAG_CAR_SERVICE,
+                            CAR_SERVICE_INIT_TIMING_MIN_DURATION_MS);
+                    threadTraceLog.traceBegin(service.getClass().getSimpleName());
+                    long serviceStartTimeMs = SystemClock.uptimeMillis();
+                    service.init();
+                    recordInit(service, serviceStartTimeMs);
+                    threadTraceLog.traceEnd();
+                    initDone.get(service).countDown();
+                }));
+            }
+            t.traceBegin("awaitParallelInit");
+            for (int i = 0; i < tasks.size(); i++) {
+                awaitTask(tasks.get(i));
+            }
+            t.traceEnd();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        String criticalPath = describe(getCriticalPath());
+        Slogf.i(TAG, "Car service init critical path: %s", criticalPath);
+        t.logDuration("CarService.initCriticalPath:" + criticalPath,
+                SystemClock.uptimeMillis() - startTimeMs);
+    }
+
+    /**
+     * Returns the chain of services that ended last, each service being preceded by the
+     * dependency it waited for the longest.
+     *
+     * <p>A service without declared dependencies waits for the previous such service.
+     */
+    @VisibleForTesting
+    List<CarSystemService> getCriticalPath() {
+        synchronized (mLock) {
+            CarSystemService last = null;
+            for (int i = 0; i < mInitEndTimesMs.size(); i++) {
+                if (last == null || mInitEndTimesMs.valueAt(i) > mInitEndTimesMs.get(last)) {
+                    last = mInitEndTimesMs.keyAt(i);
+                }
+            }
+            List<CarSystemService> path = new ArrayList<>();
+            for (CarSystemService service = last; service != null;
+                    service = getLastEndedPredecessorLocked(service)) {
+                path.add(0, service);
+            }
+            return path;
+        }
+    }
+
+    @GuardedBy("mLock")
+    private CarSystemService getLastEndedPredecessorLocked(CarSystemService service) {
+        CarSystemService[] dependencies = mDependencies.get(service);
+        if (dependencies == null) {
+            for (int i = indexOf(service) - 1; i >= 0; i--) {
+                if (!mDependencies.containsKey(mServicesInInitOrder[i])) {
+                    return mServicesInInitOrder[i];
+                }
+            }
+            return null;
+        }
+        CarSystemService predecessor = null;
+        for (CarSystemService dependency : dependencies) {
+            if (predecessor == null
+                    || mInitEndTimesMs.get(dependency) > mInitEndTimesMs.get(predecessor)) {
+                predecessor = dependency;
+            }
+        }
+        return predecessor;
+    }
+
+    private void validateDependencies() {
+        for (int i = 0; i < mDependencies.size(); i++) {
+            CarSystemService service = mDependencies.keyAt(i);
+            int index = indexOf(service);
+            if (index < 0) {
+                throw new IllegalArgumentException(service.getClass().getSimpleName()
+                        + " has dependencies but is not initialized");
+            }
+            for (CarSystemService dependency : mDependencies.valueAt(i)) {
+                int dependencyIndex = indexOf(dependency);
+                if (dependencyIndex < 0 || dependencyIndex >= index) {
+                    throw new IllegalArgumentException(service.getClass().getSimpleName()
+                            + " depends on " + dependency.getClass().getSimpleName()
+                            + ", which is not initialized before it");
+                }
+            }
+        }
+    }
+
+    private int indexOf(CarSystemService service) {
+        for (int i = 0; i < mServicesInInitOrder.length; i++) {
+            if (mServicesInInitOrder[i] == service) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void recordInit(CarSystemService service, long startTimeMs) {
+        long endTimeMs = SystemClock.uptimeMillis();
+        synchronized (mLock) {
+            mInitStartTimesMs.put(service, startTimeMs);
+            mInitEndTimesMs.put(service, endTimeMs);
+        }
+    }
+
+    private static void awaitInit(ArrayMap<CarSystemService, CountDownLatch> initDone,
+            CarSystemService[] services) throws InterruptedException {
+        for (CarSystemService service : services) {
+            initDone.get(service).await();
+        }
+    }
+
+    private static void awaitTask(Future<?> task) {
+        try {
+            task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while initializing car services", e);
+        } catch (ExecutionException e) {
+            // Fails the same way as when the service is initialized on the calling thread.
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private String describe(List<CarSystemService> services) {
+        StringBuilder builder = new StringBuilder();
+        synchronized (mLock) {
+            for (int i = 0; i < services.size(); i++) {
+                CarSystemService service = services.get(i);
+                if (i > 0) {
+                    builder.append("->");
+                }
+                builder.append(service.getClass().getSimpleName()).append('(')
+                        .append(mInitEndTimesMs.get(service) - mInitStartTimesMs.get(service))
+                        .append("ms)");
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -59,6 +59,7 @@ import android.util.Log;
 
 import com.android.car.internal.ExcludeFromCodeCoverageGeneratedReport;
 import com.android.car.internal.common.CommonConstants.UserLifecycleEventType;
+import com.android.car.pm.PackageMetadataCache;
 import com.android.internal.annotations.VisibleForTesting;
 import com.android.internal.util.Preconditions;
 
@@ -297,6 +298,16 @@ public final class CarServiceUtils {
         }
     }
 
+    /**
+     * Returns the packages of the given UID from the shared {@link PackageMetadataCache}, or from
+     * {@code pm} when the cache is not running, e.g. in tests.
+     */
+    @Nullable
+    public static String[] getPackagesForUid(PackageManager pm, int uid) {
+        PackageMetadataCache cache = CarLocalServices.getService(PackageMetadataCache.class);
+        return cache != null ? cache.getPackagesForUid(uid) : pm.getPackagesForUid(uid);
+    }
+
     /**
      * Execute a runnable on the main thread
      *
@@ -249,6 +249,7 @@ final class CarShellCommand extends BasicShellCommandHandler {
     private static final String COMMAND_APPLY_CTS_VERIFIER_POWER_ON_POLICY =
             "apply-cts-verifier-power-on-policy";
     private static final String COMMAND_POWER_OFF = "power-off";
+    private static final String COMMAND_GET_POWER_TRANSITIONS = "get-power-transitions";
     private static final String COMMAND_SILENT_MODE = "silent-mode";
     // Used with COMMAND_SILENT_MODE for forced silent: "forced-silent"
     private static final String SILENT_MODE_FORCED_SILENT =
@@ -371,6 +372,8 @@ final class CarShellCommand extends BasicShellCommandHandler {
         USER_BUILD_COMMAND_TO_PERMISSION_MAP.put(COMMAND_HIBERNATE, PERMISSION_CAR_POWER);
         USER_BUILD_COMMAND_TO_PERMISSION_MAP.put(COMMAND_SET_DISPLAY_STATE, PERMISSION_CAR_POWER);
         USER_BUILD_COMMAND_TO_PERMISSION_MAP.put(COMMAND_POWER_OFF, PERMISSION_CAR_POWER);
+        USER_BUILD_COMMAND_TO_PERMISSION_MAP.put(COMMAND_GET_POWER_TRANSITIONS,
+                PERMISSION_CAR_POWER);
         USER_BUILD_COMMAND_TO_PERMISSION_MAP.put(COMMAND_DEFINE_POWER_POLICY, PERMISSION_CAR_POWER);
         USER_BUILD_COMMAND_TO_PERMISSION_MAP.put(COMMAND_APPLY_POWER_POLICY,
                 PERMISSION_CONTROL_CAR_POWER_POLICY);
@@ -870,6 +873,11 @@ final class CarShellCommand extends BasicShellCommandHandler {
         pw.printf("\t%s [%s] [%s]\n", COMMAND_POWER_OFF, PARAM_SKIP_GARAGEMODE, PARAM_REBOOT);
         pw.println("\t  Powers off the car.");
 
+        pw.printf("\t%s\n", COMMAND_GET_POWER_TRANSITIONS);
+        pw.println("\t  Prints how long each step of the last power state transitions took, e.g."
+                + " applying");
+        pw.println("\t  the power policy or notifying the listeners when resuming.");
+
         pw.printf("\t%s <REARVIEW_CAMERA_ID>\n", COMMAND_SET_REARVIEW_CAMERA_ID);
         pw.println("\t  Configures a target camera device CarEvsService to use.");
         pw.println("\t  If CAMEAR_ID is \"default\", this command will configure CarEvsService ");
@@ -1442,6 +1450,12 @@ final class CarShellCommand extends BasicShellCommandHandler {
             case COMMAND_POWER_OFF:
                 powerOff(args, writer);
                 break;
+            case COMMAND_GET_POWER_TRANSITIONS:
+                if (args.length != 1) {
+                    return showInvalidArguments(writer);
+                }
+                mCarPowerManagementService.dumpPowerTransitions(writer);
+                break;
             case COMMAND_SET_REARVIEW_CAMERA_ID:
                 setRearviewCameraId(args, writer);
                 break;
@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.car;
+
+import static com.android.car.internal.ExcludeFromCodeCoverageGeneratedReport.DUMP_INFO;
+
+import android.annotation.NonNull;
+import android.car.builtin.util.Slogf;
+import android.car.drivingstate.CarUxRestrictions;
+import android.car.drivingstate.ICarUxRestrictionsChangeListener;
+import android.os.IBinder;
+import android.os.RemoteException;
+import android.os.SystemClock;
+import android.util.ArrayMap;
+
+import com.android.car.internal.ExcludeFromCodeCoverageGeneratedReport;
+import com.android.car.internal.util.IndentingPrintWriter;
+import com.android.internal.annotations.GuardedBy;
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Delivers UX restrictions changes to each {@link ICarUxRestrictionsChangeListener} through its
+ * own queue.
+ *
+ * <p>Every client has at most one delivery in flight. While it is in flight, newer restrictions
+ * replace the pending ones, so a slow client only receives the latest restrictions once it
+ * catches up, and never delays other clients when a thread pool is used.
+ *
+ * <p>Without a thread pool, restrictions are delivered on the calling thread one client after
+ * the other, as before, but latency is still tracked per client.
+ *
+ * <p>Restrictions are only delivered to clients added with {@link #addClient} and not removed
+ * since, as the dispatching thread may still see a client that was just removed.
+ */
+final class CarUxRestrictionsClientDispatcher {
+    private static final String TAG = CarLog.tagFor(CarUxRestrictionsClientDispatcher.class);
+
+    @VisibleForTesting
+    static final int MAX_THREAD_POOL_SIZE = 8;
+
+    private final Object mLock = new Object();
+    private final int mThreadPoolSize;
+
+    // Created on first use, so that it can be shut down on release and created again.
+    @GuardedBy("mLock")
+    private ExecutorService mExecutor;
+
+    @GuardedBy("mLock")
+    private final ArrayMap<IBinder, ClientState> mClientStates = new ArrayMap<>();
+
+    /**
+     * @param threadPoolSize number of threads used to deliver in parallel. {@code 0} delivers on
+     *                       the thread calling {@link #dispatch}.
+     */
+    CarUxRestrictionsClientDispatcher(int threadPoolSize) {
+        if (threadPoolSize > MAX_THREAD_POOL_SIZE) {
+            Slogf.w(TAG, "Thread pool size %d is too large, using %d", threadPoolSize,
+                    MAX_THREAD_POOL_SIZE);
+            threadPoolSize = MAX_THREAD_POOL_SIZE;
+        }
+        mThreadPoolSize = Math.max(threadPoolSize, 0);
+    }
+
+    /**
+     * Starts delivering restrictions to the listener.
+     */
+    void addClient(@NonNull ICarUxRestrictionsChangeListener listener) {
+        synchronized (mLock) {
+            IBinder binder = listener.asBinder();
+            if (!mClientStates.containsKey(binder)) {
+                mClientStates.put(binder, new ClientState(listener));
+            }
+        }
+    }
+
+    /**
+     * Queues the restrictions for delivery to the listener, replacing any restrictions that are
+     * still pending for it. Does nothing if the listener was not added or was removed.
+     */
+    void dispatch(@NonNull ICarUxRestrictionsChangeListener listener,
+            @NonNull CarUxRestrictions restrictions) {
+        ClientState state;
+        ExecutorService executor;
+        synchronized (mLock) {
+            state = mClientStates.get(listener.asBinder());
+            if (state == null) {
+                return;
+            }
+            if (state.mPendingRestrictions != null) {
+                state.mNumSuperseded++;
+            }
+            state.mPendingRestrictions = restrictions;
+            state.mPendingSinceMs = SystemClock.uptimeMillis();
+            if (state.mDelivering) {
+                return;
+            }
+            state.mDelivering = true;
+            executor = getExecutorLocked();
+        }
+        ClientState clientState = state;
+        if (executor == null) {
+            deliverPending(clientState);
+            return;
+        }
+        executor.execute(() -> deliverPending(clientState));
+    }
+
+    /**
+     * Stops tracking every client and shuts the thread pool down.
+     */
+    void release() {
+        ExecutorService executor;
+        synchronized (mLock) {
+            for (int i = 0; i < mClientStates.size(); i++) {
+                mClientStates.valueAt(i).mPendingRestrictions = null;
+            }
+            mClientStates.clear();
+            executor = mExecutor;
+            mExecutor = null;
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Stops tracking the listener, dropping any restrictions pending for it.
+     */
+    void removeClient(@NonNull IBinder binder) {
+        synchronized (mLock) {
+            ClientState state = mClientStates.remove(binder);
+            if (state != null) {
+                state.mPendingRestrictions = null;
+            }
+        }
+    }
+
+    @GuardedBy("mLock")
+    private ExecutorService getExecutorLocked() {
+        if (mThreadPoolSize > 0 && mExecutor == null) {
+            mExecutor = Executors.newFixedThreadPool(mThreadPoolSize);
+        }
+        return mExecutor;
+    }
+
+    private void deliverPending(ClientState state) {
+        boolean delivered = false;
+        try {
+            while (true) {
+                CarUxRestrictions restrictions;
+                long pendingSinceMs;
+                synchronized (mLock) {
+                    restrictions = state.mPendingRestrictions;
+                    if (restrictions == null) {
+                        state.mDelivering = false;
+                        delivered = true;
+                        return;
+                    }
+                    pendingSinceMs = state.mPendingSinceMs;
+                    state.mPendingRestrictions = null;
+                }
+                long startMs = SystemClock.uptimeMillis();
+                boolean success = true;
+                try {
+                    state.mListener.onUxRestrictionsChanged(restrictions);
+                } catch (RemoteException e) {
+                    Slogf.e(TAG, "Dispatch to listener %s failed for restrictions (%s)",
+                            state.mListener, restrictions);
+                    success = false;
+                }
+                long endMs = SystemClock.uptimeMillis();
+                synchronized (mLock) {
+                    state.record(success, endMs - pendingSinceMs, endMs - startMs);
+                }
+            }
+        } finally {
+            if (!delivered) {
+                // Listener threw; let the next dispatch start a new delivery.
+                synchronized (mLock) {
+                    state.mDelivering = false;
+                }
+            }
+        }
+    }
+
+    @ExcludeFromCodeCoverageGeneratedReport(reason = DUMP_INFO)
+    void dump(IndentingPrintWriter writer) {
+        synchronized (mLock) {
+            writer.printf("Dispatch mode: %s\n", mThreadPoolSize > 0
+                    ? "parallel (" + mThreadPoolSize + " threads)" : "sequential");
+            writer.println("Per-client dispatch stats:");
+            writer.increaseIndent();
+            for (int i = 0; i < mClientStates.size(); i++) {
+                writer.printf("%s: %s\n", mClientStates.keyAt(i), mClientStates.valueAt(i));
+            }
+            writer.decreaseIndent();
+        }
+    }
+
+    private static final class ClientState {
+        final ICarUxRestrictionsChangeListener mListener;
+
+        CarUxRestrictions mPendingRestrictions;
+        long mPendingSinceMs;
+        boolean mDelivering;
+
+        int mNumDelivered;
+        int mNumFailed;
+        int mNumSuperseded;
+        // Time from queueing to the end of the callback.
+        long mLastLatencyMs;
+        long mMaxLatencyMs;
+        long mTotalLatencyMs;
+        // Time spent in the callback itself.
+        long mMaxCallbackDurationMs;
+
+        ClientState(ICarUxRestrictionsChangeListener listener) {
+            mListener = listener;
+        }
+
+        void record(boolean success, long latencyMs, long callbackDurationMs) {
+            if (success) {
+                mNumDelivered++;
+            } else {
+                mNumFailed++;
+            }
+            mLastLatencyMs = latencyMs;
+            mMaxLatencyMs = Math.max(mMaxLatencyMs, latencyMs);
+            mTotalLatencyMs += latencyMs;
+            mMaxCallbackDurationMs = Math.max(mMaxCallbackDurationMs, callbackDurationMs);
+        }
+
+        @Override
+        public String toString() {
+            int numDispatched = mNumDelivered + mNumFailed;
+            return "delivered=" + mNumDelivered + " failed=" + mNumFailed
+                    + " superseded=" + mNumSuperseded
+                    + " latencyMs(last=" + mLastLatencyMs + " max=" + mMaxLatencyMs
+                    + " avg=" + (numDispatched == 0 ? 0 : mTotalLatencyMs / numDispatched) + ")"
+                    + " maxCallbackMs=" + mMaxCallbackDurationMs
+                    + (mDelivering ? " delivering" : "");
+        }
+    }
+}
@@ -155,7 +155,14 @@ public class CarUxRestrictionsManagerService extends ICarUxRestrictionsManager.S
             getClass().getSimpleName());
     private final Handler mClientDispatchHandler  = new Handler(mClientDispatchThread.getLooper());
     private final RemoteCallbackList<ICarUxRestrictionsChangeListener> mUxRClients =
-            new RemoteCallbackList<>();
+            new RemoteCallbackList<>() {
+                @Override
+                public void onCallbackDied(ICarUxRestrictionsChangeListener listener,
+                        Object cookie) {
+                    mClientDispatcher.removeClient(listener.asBinder());
+                }
+            };
+    private final CarUxRestrictionsClientDispatcher mClientDispatcher;
 
     /**
      * Metadata associated with a binder callback.
@@ -215,6 +222,22 @@ public class CarUxRestrictionsManagerService extends ICarUxRestrictionsManager.S
     @GuardedBy("mLock")
     private Map<DisplayIdentifier, CarUxRestrictionsConfiguration> mCarUxRestrictionsConfigurations;
 
+    // Compiled form of mCarUxRestrictionsConfigurations, key'ed by DisplayIdentifier.
+    @GuardedBy("mLock")
+    private Map<DisplayIdentifier, CarUxRestrictionsSpeedLookup> mSpeedLookups;
+
+    // Compiled config resolved for each logical display id. Cleared when displays change.
+    @GuardedBy("mLock")
+    private final SparseArray<CarUxRestrictionsSpeedLookup> mSpeedLookupsByDisplay =
+            new SparseArray<>(INITIAL_DISPLAYS_SIZE);
+
+    // Interned restrictions from the speed lookup that the current Ux Restrictions of each
+    // logical display id were derived from. Used to skip speed updates that stay in the same
+    // speed range without comparing or allocating restrictions.
+    @GuardedBy("mLock")
+    private final SparseArray<CarUxRestrictions> mResolvedUxRestrictions =
+            new SparseArray<>(INITIAL_DISPLAYS_SIZE);
+
     // Current Ux Restrictions, key'ed by logical display id.
     @GuardedBy("mLock")
     private SparseArray<CarUxRestrictions> mCurrentUxRestrictions;
@@ -225,6 +248,10 @@ public class CarUxRestrictionsManagerService extends ICarUxRestrictionsManager.S
     @GuardedBy("mLock")
     private float mCurrentMovingSpeed;
 
+    // Drops speed changes that can't change the restrictions of any display.
+    @GuardedBy("mLock")
+    private CarUxRestrictionsSpeedFilter mSpeedFilter;
+
     // DisplayIdentifier for the default display.
     @GuardedBy("mLock")
     private DisplayIdentifier mDefaultDisplayIdentifier;
@@ -266,6 +293,8 @@ public class CarUxRestrictionsManagerService extends ICarUxRestrictionsManager.S
                     IntArray newlyAddedDisplayIds = new IntArray(8);
                     CarUxRestrictions unrestrictedRestrictions = createUnrestrictedRestrictions();
                     synchronized (mLock) {
+                        // Display to DisplayIdentifier mapping may have changed.
+                        mSpeedLookupsByDisplay.clear();
                         for (int i = 0; i < occupantZoneInfos.size(); i++) {
                             OccupantZoneInfo occupantZoneInfo = occupantZoneInfos.get(i);
                             int zoneId = occupantZoneInfo.zoneId;
@@ -285,6 +314,7 @@ public class CarUxRestrictionsManagerService extends ICarUxRestrictionsManager.S
                                 }
                                 // UxR will be updated in initializeUxRestrictions below.
                                 mCurrentUxRestrictions.put(displayId, unrestrictedRestrictions);
+                                mResolvedUxRestrictions.remove(displayId);
                             }
                         }
                         // Remove UxR for removed displays from
@@ -296,6 +326,7 @@ public class CarUxRestrictionsManagerService extends ICarUxRestrictionsManager.S
                                     Slogf.d(TAG, "Removing UxR for display %d", displayId);
                                 }
                                 mCurrentUxRestrictions.remove(displayId);
+                                mResolvedUxRestrictions.remove(displayId);
                             }
                         }
 
@@ -319,6 +350,8 @@ public class CarUxRestrictionsManagerService extends ICarUxRestrictionsManager.S
         mDrivingStateService = drvService;
         mCarPropertyService = propertyService;
         mCarOccupantZoneService = carOccupantZoneService;
+        mClientDispatcher = new CarUxRestrictionsClientDispatcher(mContext.getResources()
+                .getInteger(R.integer.config_uxRestrictionsClientDispatchThreadPoolSize));
     }
 
     @Override
@@ -342,6 +375,10 @@ public class CarUxRestrictionsManagerService extends ICarUxRestrictionsManager.S
             // Load the prod config, or if there is a staged one, promote that first only if the
             // current driving state, as provided by the driving state service, is parked.
             mCarUxRestrictionsConfigurations = convertToMapLocked(loadConfig());
+            mSpeedLookups = compileConfigsLocked(mCarUxRestrictionsConfigurations);
+
+            mSpeedFilter = new CarUxRestrictionsSpeedFilter(getSpeedHysteresis());
+            mSpeedFilter.setBoundaries(collectSpeedBoundariesLocked());
         }
 
         // Subscribe to driving state changes.
@@ -504,6 +541,7 @@ public class CarUxRestrictionsManagerService extends ICarUxRestrictionsManager.S
                 mUxRClients.unregister(client);
             }
         }
+        mClientDispatcher.release();
         mDrivingStateService.unregisterDrivingStateChangeListener(
                 mICarDrivingStateChangeEventListener);
     }
@@ -524,7 +562,12 @@ public class CarUxRestrictionsManagerService extends ICarUxRestrictionsManager.S
             Slogf.e(TAG, "registerUxRestrictionsChangeListener(): listener null");
             throw new IllegalArgumentException("Listener is null");
         }
-        mUxRClients.register(listener, new RemoteCallbackListCookie(displayId));
+        // Added first, so that the listener receives every change once registered.
+        mClientDispatcher.addClient(listener);
+        if (!mUxRClients.register(listener, new RemoteCallbackListCookie(displayId))) {
+            // The listener is already dead.
+            mClientDispatcher.removeClient(listener.asBinder());
+        }
     }
 
     /**
@@ -540,6 +583,7 @@ public class CarUxRestrictionsManagerService extends ICarUxRestrictionsManager.S
         }
 
         mUxRClients.unregister(listener);
+        mClientDispatcher.removeClient(listener.asBinder());
     }
 
     /**
@@ -856,6 +900,7 @@ public class CarUxRestrictionsManagerService extends ICarUxRestrictionsManager.S
             writer.println("UX Restrictions Clients:");
             writer.increaseIndent();
             BinderHelper.dumpRemoteCallbackList(mUxRClients, writer);
+            mClientDispatcher.dump(writer);
             writer.decreaseIndent();
             for (int i = 0; i < mCurrentUxRestrictions.size(); i++) {
                 writer.printf("Display id: %d UXR: %s\n", mCurrentUxRestrictions.keyAt(i),
@@ -869,6 +914,20 @@ public class CarUxRestrictionsManagerService extends ICarUxRestrictionsManager.S
                     mCarUxRestrictionsConfigurations.values()) {
                 config.dump(writer);
             }
+            writer.println("UX Restriction speed filter:");
+            writer.increaseIndent();
+            mSpeedFilter.dump(writer);
+            writer.decreaseIndent();
+            writer.println("Compiled UX Restriction speed lookups:");
+            writer.increaseIndent();
+            for (Map.Entry<DisplayIdentifier, CarUxRestrictionsSpeedLookup> entry :
+                    mSpeedLookups.entrySet()) {
+                writer.println(entry.getKey());
+                writer.increaseIndent();
+                entry.getValue().dump(writer);
+                writer.decreaseIndent();
+            }
+            writer.decreaseIndent();
             writer.println("UX Restriction change log:");
             for (TransitionLog tlog : mTransitionLogs) {
                 writer.println(tlog);
@@ -978,6 +1037,10 @@ public class CarUxRestrictionsManagerService extends ICarUxRestrictionsManager.S
             // Ignore speed changes if the vehicle is not moving
             return;
         }
+        if (!mSpeedFilter.shouldEvaluate(newSpeed)) {
+            // Ignore if no display's restrictions can change at this speed
+            return;
+        }
         handleDispatchUxRestrictionsLocked(currentDrivingState, mCurrentMovingSpeed, mDisplayIds);
     }
 
@@ -1004,10 +1067,17 @@ public class CarUxRestrictionsManagerService extends ICarUxRestrictionsManager.S
             return;
         }
 
-        // keep track of only those changed UxR for dispatching.
-        SparseArray<CarUxRestrictions> updatedUxRestrictions = new SparseArray<>(
-                INITIAL_DISPLAYS_SIZE);
-        IntArray displaysToDispatch = new IntArray(INITIAL_DISPLAYS_SIZE);
+        if (displayIds == mDisplayIds) {
+            mSpeedFilter.onEvaluated(speed);
+        } else {
+            // Only some displays are evaluated; let the next speed change reach all of them.
+            mSpeedFilter.invalidate();
+        }
+
+        // keep track of only those changed UxR for dispatching. Allocated on first change so
+        // that an update which stays in the same speed range does not allocate.
+        SparseArray<CarUxRestrictions> updatedUxRestrictions = null;
+        IntArray displaysToDispatch = null;
         for (int i = 0; i < displayIds.size(); i++) {
             int displayId = displayIds.get(i);
             if (DBG) {
@@ -1017,41 +1087,26 @@ public class CarUxRestrictionsManagerService extends ICarUxRestrictionsManager.S
             }
 
             CarUxRestrictions uxRestrictions;
-            // Map logical display to DisplayIdentifier to get UxR from config based on
-            // DisplayIdentifier.
-            DisplayIdentifier displayIdentifier = getDisplayIdentifier(displayId);
-            if (displayIdentifier == null) {
-                Slogf.w(TAG,
-                        "handleDispatchUxRestrictionsLocked: cannot map display id %d to"
-                        + " DisplayIdentifier based on which to get UxR from config,"
-                        + " defaulting to fully restricted restrictions",
-                        displayId);
+            CarUxRestrictionsSpeedLookup speedLookup = getSpeedLookupLocked(displayId);
+            if (speedLookup == null) {
                 uxRestrictions = createFullyRestrictedRestrictions();
+                mResolvedUxRestrictions.remove(displayId);
             } else {
-                if (DBG) {
-                    Slogf.d(TAG,
-                            "handleDispatchUxRestrictionsLocked: mapped display id %d to"
-                            + " DisplayIdentifier %s", displayId, displayIdentifier);
-                }
-                CarUxRestrictionsConfiguration config = mCarUxRestrictionsConfigurations.get(
-                        displayIdentifier);
-                if (config == null) {
-                    Slogf.w(TAG,
-                            "handleDispatchUxRestrictionsLocked: cannot find UxR"
-                            + " DisplayIdentifier %s from config, defaulting to fully restricted"
-                            + " restrictions", displayIdentifier);
-                    // If UxR config is not found for a physical port, assume it's fully restricted.
-                    uxRestrictions = createFullyRestrictedRestrictions();
-                } else {
-                    uxRestrictions = config.getUxRestrictions(
-                            currentDrivingState, speed, mRestrictionMode);
+                CarUxRestrictions resolvedUxRestrictions = speedLookup.getUxRestrictions(
+                        currentDrivingState, speed, mRestrictionMode);
+                if (resolvedUxRestrictions == mResolvedUxRestrictions.get(displayId)) {
+                    // Still in the same speed range, nothing to update.
+                    continue;
                 }
+                mResolvedUxRestrictions.put(displayId, resolvedUxRestrictions);
+                uxRestrictions = resolvedUxRestrictions;
             }
 
             if (!mCurrentUxRestrictions.contains(displayId)) {
                 // This should never happen.
                 Slogf.wtf(TAG, "handleDispatchUxRestrictionsLocked: Unrecognized display %d:"
                         + " in new UxR", displayId);
+                mResolvedUxRestrictions.remove(displayId);
                 continue;
             }
             CarUxRestrictions currentUxRestrictions = mCurrentUxRestrictions.get(displayId);
@@ -1067,8 +1122,16 @@ public class CarUxRestrictionsManagerService extends ICarUxRestrictionsManager.S
                 if (DBG) {
                     Slogf.d(TAG, "Updating UxR on display %d", displayId);
                 }
+                if (speedLookup != null) {
+                    // Interned restrictions carry the timestamp of the config compilation.
+                    uxRestrictions = copyWithCurrentTimestamp(uxRestrictions);
+                }
                 // Update UxR for displayId in place.
                 mCurrentUxRestrictions.put(displayId, uxRestrictions);
+                if (displaysToDispatch == null) {
+                    updatedUxRestrictions = new SparseArray<>(INITIAL_DISPLAYS_SIZE);
+                    displaysToDispatch = new IntArray(INITIAL_DISPLAYS_SIZE);
+                }
                 // Ignore dispatching if the restrictions have not changed.
                 displaysToDispatch.add(displayId);
                 updatedUxRestrictions.put(displayId, uxRestrictions);
@@ -1076,11 +1139,102 @@ public class CarUxRestrictionsManagerService extends ICarUxRestrictionsManager.S
             }
         }
 
-        if (displaysToDispatch.size() != 0) {
+        if (displaysToDispatch != null) {
             dispatchRestrictionsToClientsLocked(updatedUxRestrictions, displaysToDispatch);
         }
     }
 
+    /**
+     * Returns the compiled config for the given logical display id, or {@code null} if the
+     * display can't be mapped to a config.
+     */
+    @GuardedBy("mLock")
+    @Nullable
+    private CarUxRestrictionsSpeedLookup getSpeedLookupLocked(int displayId) {
+        CarUxRestrictionsSpeedLookup speedLookup = mSpeedLookupsByDisplay.get(displayId);
+        if (speedLookup != null) {
+            return speedLookup;
+        }
+        // Map logical display to DisplayIdentifier to get UxR from config based on
+        // DisplayIdentifier.
+        DisplayIdentifier displayIdentifier = getDisplayIdentifier(displayId);
+        if (displayIdentifier == null) {
+            Slogf.w(TAG,
+                    "getSpeedLookupLocked: cannot map display id %d to"
+                    + " DisplayIdentifier based on which to get UxR from config,"
+                    + " defaulting to fully restricted restrictions",
+                    displayId);
+            return null;
+        }
+        if (DBG) {
+            Slogf.d(TAG, "getSpeedLookupLocked: mapped display id %d to DisplayIdentifier %s",
+                    displayId, displayIdentifier);
+        }
+        speedLookup = mSpeedLookups.get(displayIdentifier);
+        if (speedLookup == null) {
+            Slogf.w(TAG,
+                    "getSpeedLookupLocked: cannot find UxR DisplayIdentifier %s from config,"
+                    + " defaulting to fully restricted restrictions", displayIdentifier);
+            // If UxR config is not found for a physical port, assume it's fully restricted.
+            return null;
+        }
+        mSpeedLookupsByDisplay.put(displayId, speedLookup);
+        return speedLookup;
+    }
+
+    /**
+     * Returns the speeds at which the restrictions of any display can change while moving, in
+     * any restriction mode.
+     */
+    @GuardedBy("mLock")
+    private float[] collectSpeedBoundariesLocked() {
+        List<Float> boundaries = new ArrayList<>();
+        for (CarUxRestrictionsConfiguration config : mCarUxRestrictionsConfigurations.values()) {
+            addSpeedBoundaries(boundaries, config, UX_RESTRICTION_MODE_BASELINE);
+            for (String mode : config.getSupportedRestrictionModes()) {
+                addSpeedBoundaries(boundaries, config, mode);
+            }
+        }
+        float[] result = new float[boundaries.size()];
+        for (int i = 0; i < boundaries.size(); i++) {
+            result[i] = boundaries.get(i);
+        }
+        return result;
+    }
+
+    private static void addSpeedBoundaries(List<Float> boundaries,
+            CarUxRestrictionsConfiguration config, String mode) {
+        float[] modeBoundaries = config.getSpeedRangeBoundaries(DRIVING_STATE_MOVING, mode);
+        for (int i = 0; i < modeBoundaries.length; i++) {
+            boundaries.add(modeBoundaries[i]);
+        }
+    }
+
+    private float getSpeedHysteresis() {
+        int hysteresisCmPerSec = mContext.getResources().getInteger(
+                R.integer.config_uxRestrictionsSpeedHysteresisCmPerSec);
+        if (hysteresisCmPerSec < 0) {
+            Slogf.w(TAG, "Invalid config_uxRestrictionsSpeedHysteresisCmPerSec %d, using 0",
+                    hysteresisCmPerSec);
+            return 0f;
+        }
+        return hysteresisCmPerSec / 100f;
+    }
+
+    @GuardedBy("mLock")
+    private Map<DisplayIdentifier, CarUxRestrictionsSpeedLookup> compileConfigsLocked(
+            Map<DisplayIdentifier, CarUxRestrictionsConfiguration> configs) {
+        Map<DisplayIdentifier, CarUxRestrictionsSpeedLookup> result = new ArrayMap<>(
+                configs.size());
+        for (Map.Entry<DisplayIdentifier, CarUxRestrictionsConfiguration> entry :
+                configs.entrySet()) {
+            result.put(entry.getKey(), new CarUxRestrictionsSpeedLookup(entry.getValue()));
+        }
+        mSpeedLookupsByDisplay.clear();
+        mResolvedUxRestrictions.clear();
+        return result;
+    }
+
     private void dispatchRestrictionsToClientsLocked(
             SparseArray<CarUxRestrictions> updatedUxRestrictions,
             IntArray displaysToDispatch) {
@@ -1105,12 +1259,7 @@ public class CarUxRestrictionsManagerService extends ICarUxRestrictionsManager.S
                     Slogf.d(TAG, "Dispatching UxR change %s to display %d", restrictions,
                             cookie.mDisplayId);
                 }
-                try {
-                    callback.onUxRestrictionsChanged(restrictions);
-                } catch (RemoteException e) {
-                    Slogf.e(TAG, "Dispatch to listener %s failed for restrictions (%s)", callback,
-                            restrictions);
-                }
+                mClientDispatcher.dispatch(callback, restrictions);
             }
             mUxRClients.finishBroadcast();
         });
@@ -1280,6 +1429,15 @@ public class CarUxRestrictionsManagerService extends ICarUxRestrictionsManager.S
         }
     }
 
+    private static CarUxRestrictions copyWithCurrentTimestamp(CarUxRestrictions restrictions) {
+        return new CarUxRestrictions.Builder(restrictions.isRequiresDistractionOptimization(),
+                restrictions.getActiveRestrictions(), SystemClock.elapsedRealtimeNanos())
+                .setMaxStringLength(restrictions.getMaxRestrictedStringLength())
+                .setMaxCumulativeContentItems(restrictions.getMaxCumulativeContentItems())
+                .setMaxContentDepth(restrictions.getMaxContentDepth())
+                .build();
+    }
+
     private CarUxRestrictions createUnrestrictedRestrictions() {
         return new CarUxRestrictions.Builder(/* reqOpt= */ false,
                 CarUxRestrictions.UX_RESTRICTIONS_BASELINE, SystemClock.elapsedRealtimeNanos())
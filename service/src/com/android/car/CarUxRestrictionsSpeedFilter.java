@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.car;
+
+import static android.car.drivingstate.CarUxRestrictionsConfiguration.Builder.SpeedRange.MAX_SPEED;
+
+import android.annotation.FloatRange;
+import android.annotation.NonNull;
+
+import com.android.car.internal.util.IndentingPrintWriter;
+
+import java.util.Arrays;
+
+/**
+ * Decides whether a speed change can change the UX restrictions of any display.
+ *
+ * <p>The filter is given the union of the speed range boundaries of all configurations. Between
+ * two consecutive boundaries the restrictions of every display are constant, so a speed change is
+ * only worth evaluating when it moves the speed into a different band.
+ *
+ * <p>Moving into a faster band is reported immediately so that tighter restrictions are never
+ * delayed. Moving into a slower band is only reported once the speed is below the lower bound of
+ * the band in which restrictions were last evaluated by more than the hysteresis, which keeps
+ * restrictions from flapping when the vehicle cruises around a boundary.
+ *
+ * <p>This class is not thread-safe.
+ */
+final class CarUxRestrictionsSpeedFilter {
+
+    private static final int NO_BAND = -1;
+
+    private final float mHysteresis;
+
+    // Sorted, distinct lower bounds of the speed bands. The first one is always 0.
+    private float[] mBoundaries = new float[]{0f};
+
+    // Band of the speed at which restrictions were last evaluated.
+    private int mEvaluatedBand = NO_BAND;
+
+    private long mNumEvaluatedSpeedChanges;
+    private long mNumFilteredSpeedChanges;
+
+    CarUxRestrictionsSpeedFilter(@FloatRange(from = 0f) float hysteresis) {
+        if (Float.isNaN(hysteresis) || hysteresis < 0f) {
+            throw new IllegalArgumentException("Invalid hysteresis: " + hysteresis);
+        }
+        mHysteresis = hysteresis;
+    }
+
+    /**
+     * Sets the speeds at which the restrictions of any display can change.
+     *
+     * <p>Forgets the last evaluated speed, so the next speed change is always evaluated.
+     */
+    void setBoundaries(@NonNull float[] boundaries) {
+        float[] sorted = new float[boundaries.length + 1];
+        sorted[0] = 0f;
+        System.arraycopy(boundaries, 0, sorted, 1, boundaries.length);
+        Arrays.sort(sorted);
+        int size = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (sorted[i] == MAX_SPEED || (size > 0 && sorted[size - 1] == sorted[i])) {
+                continue;
+            }
+            sorted[size++] = sorted[i];
+        }
+        mBoundaries = Arrays.copyOf(sorted, size);
+        mEvaluatedBand = NO_BAND;
+    }
+
+    /**
+     * Forgets the last evaluated speed, so the next speed change is always evaluated.
+     */
+    void invalidate() {
+        mEvaluatedBand = NO_BAND;
+    }
+
+    /**
+     * Records that restrictions have been evaluated at the given speed.
+     */
+    void onEvaluated(@FloatRange(from = 0f) float speed) {
+        mEvaluatedBand = findBand(speed);
+    }
+
+    /**
+     * Returns whether restrictions need to be evaluated for the new speed.
+     */
+    boolean shouldEvaluate(@FloatRange(from = 0f) float speed) {
+        boolean evaluate = shouldEvaluateInternal(speed);
+        if (evaluate) {
+            mNumEvaluatedSpeedChanges++;
+        } else {
+            mNumFilteredSpeedChanges++;
+        }
+        return evaluate;
+    }
+
+    private boolean shouldEvaluateInternal(float speed) {
+        if (mEvaluatedBand == NO_BAND || Float.isNaN(speed)) {
+            return true;
+        }
+        int band = findBand(speed);
+        if (band == mEvaluatedBand) {
+            return false;
+        }
+        if (band > mEvaluatedBand) {
+            return true;
+        }
+        return speed < mBoundaries[mEvaluatedBand] - mHysteresis;
+    }
+
+    private int findBand(float speed) {
+        if (speed >= MAX_SPEED) {
+            return mBoundaries.length - 1;
+        }
+        int index = Arrays.binarySearch(mBoundaries, speed);
+        if (index < 0) {
+            index = -index - 2;
+        }
+        // Negative speeds are not expected; treat them as the slowest band.
+        return Math.max(index, 0);
+    }
+
+    void dump(IndentingPrintWriter writer) {
+        writer.printf("Speed boundaries: %s\n", Arrays.toString(mBoundaries));
+        writer.printf("Hysteresis: %f m/s\n", mHysteresis);
+        writer.printf("Evaluated band: %d\n", mEvaluatedBand);
+        writer.printf("Speed changes evaluated: %d, filtered: %d\n", mNumEvaluatedSpeedChanges,
+                mNumFilteredSpeedChanges);
+    }
+}
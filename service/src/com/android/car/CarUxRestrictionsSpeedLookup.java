@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.car;
+
+import static android.car.drivingstate.CarDrivingStateEvent.DRIVING_STATE_IDLING;
+import static android.car.drivingstate.CarDrivingStateEvent.DRIVING_STATE_MOVING;
+import static android.car.drivingstate.CarDrivingStateEvent.DRIVING_STATE_PARKED;
+import static android.car.drivingstate.CarDrivingStateEvent.DRIVING_STATE_UNKNOWN;
+import static android.car.drivingstate.CarUxRestrictionsConfiguration.Builder.SpeedRange.MAX_SPEED;
+import static android.car.drivingstate.CarUxRestrictionsManager.UX_RESTRICTION_MODE_BASELINE;
+
+import android.annotation.FloatRange;
+import android.annotation.NonNull;
+import android.car.drivingstate.CarDrivingStateEvent.CarDrivingState;
+import android.car.drivingstate.CarUxRestrictions;
+import android.car.drivingstate.CarUxRestrictionsConfiguration;
+import android.util.ArrayMap;
+import android.util.SparseArray;
+
+import com.android.car.internal.util.IndentingPrintWriter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Compiled form of a {@link CarUxRestrictionsConfiguration} for a single display.
+ *
+ * <p>For every (restriction mode, driving state) pair, the speed ranges of the configuration are
+ * flattened into a sorted array of interval lower bounds and a parallel array of pre-built
+ * {@link CarUxRestrictions}, so a lookup is a binary search that does not allocate.
+ *
+ * <p>Equivalent restrictions are interned: the same instance is returned for every interval,
+ * driving state and mode that resolve to the same restrictions. Callers can therefore detect that
+ * nothing changed with a reference comparison.
+ *
+ * <p>The returned instances carry the timestamp of the compilation, not of the lookup.
+ *
+ * <p>This class is not thread-safe.
+ */
+final class CarUxRestrictionsSpeedLookup {
+
+    private static final int[] DRIVING_STATES = new int[]{
+            DRIVING_STATE_UNKNOWN,
+            DRIVING_STATE_PARKED,
+            DRIVING_STATE_IDLING,
+            DRIVING_STATE_MOVING,
+    };
+
+    private final CarUxRestrictionsConfiguration mConfig;
+
+    // Distinct restrictions returned by this lookup.
+    private final List<CarUxRestrictions> mInternedRestrictions = new ArrayList<>();
+
+    // Compiled tables keyed by restriction mode, then by driving state.
+    private final ArrayMap<String, SparseArray<SpeedTable>> mTablesByMode = new ArrayMap<>();
+
+    CarUxRestrictionsSpeedLookup(@NonNull CarUxRestrictionsConfiguration config) {
+        mConfig = Objects.requireNonNull(config, "config must not be null");
+        compileMode(UX_RESTRICTION_MODE_BASELINE);
+        for (String mode : config.getSupportedRestrictionModes()) {
+            compileMode(mode);
+        }
+    }
+
+    /**
+     * Returns the configuration this lookup was compiled from.
+     */
+    @NonNull
+    CarUxRestrictionsConfiguration getConfiguration() {
+        return mConfig;
+    }
+
+    /**
+     * Returns the interned restrictions for the given driving state, speed and mode.
+     *
+     * <p>Gives the same result as
+     * {@link CarUxRestrictionsConfiguration#getUxRestrictions(int, float, String)}, except that
+     * the timestamp is not refreshed.
+     */
+    @NonNull
+    CarUxRestrictions getUxRestrictions(@CarDrivingState int drivingState,
+            @FloatRange(from = 0f) float speed, @NonNull String mode) {
+        if (Float.isNaN(speed) || speed < 0f) {
+            // Let the configuration apply its own handling of invalid speed.
+            return mConfig.getUxRestrictions(drivingState, speed, mode);
+        }
+        SparseArray<SpeedTable> tables = mTablesByMode.get(mode);
+        if (tables == null) {
+            // Modes missing from the configuration fall back to baseline, but compile them
+            // anyway so that the next lookup in the same mode is a plain table search.
+            tables = compileMode(mode);
+        }
+        SpeedTable table = tables.get(drivingState);
+        if (table == null) {
+            return mConfig.getUxRestrictions(drivingState, speed, mode);
+        }
+        return table.lookup(speed);
+    }
+
+    /**
+     * Dumps the compiled tables.
+     */
+    void dump(IndentingPrintWriter writer) {
+        writer.printf("Interned restrictions: %d\n", mInternedRestrictions.size());
+        for (int i = 0; i < mTablesByMode.size(); i++) {
+            writer.printf("Mode: %s\n", mTablesByMode.keyAt(i));
+            writer.increaseIndent();
+            SparseArray<SpeedTable> tables = mTablesByMode.valueAt(i);
+            for (int j = 0; j < tables.size(); j++) {
+                writer.printf("Driving state %d: %s\n", tables.keyAt(j), tables.valueAt(j));
+            }
+            writer.decreaseIndent();
+        }
+    }
+
+    private SparseArray<SpeedTable> compileMode(String mode) {
+        SparseArray<SpeedTable> tables = new SparseArray<>(DRIVING_STATES.length);
+        for (int drivingState : DRIVING_STATES) {
+            tables.put(drivingState, compileTable(drivingState, mode));
+        }
+        mTablesByMode.put(mode, tables);
+        return tables;
+    }
+
+    private SpeedTable compileTable(@CarDrivingState int drivingState, String mode) {
+        float[] boundaries = mConfig.getSpeedRangeBoundaries(drivingState, mode);
+        float[] lowerBounds = new float[boundaries.length];
+        CarUxRestrictions[] restrictions = new CarUxRestrictions[boundaries.length];
+        int size = 0;
+        for (int i = 0; i < boundaries.length; i++) {
+            // Speed ranges are [min, max), so the restrictions at a boundary are the ones for the
+            // whole interval up to the next boundary.
+            CarUxRestrictions uxRestrictions = intern(
+                    mConfig.getUxRestrictions(drivingState, boundaries[i], mode));
+            if (size > 0 && restrictions[size - 1] == uxRestrictions) {
+                // Merge adjacent intervals with the same restrictions.
+                continue;
+            }
+            lowerBounds[size] = boundaries[i];
+            restrictions[size] = uxRestrictions;
+            size++;
+        }
+        CarUxRestrictions atMaxSpeed = intern(
+                mConfig.getUxRestrictions(drivingState, MAX_SPEED, mode));
+        return new SpeedTable(Arrays.copyOf(lowerBounds, size),
+                Arrays.copyOf(restrictions, size), atMaxSpeed);
+    }
+
+    private CarUxRestrictions intern(CarUxRestrictions uxRestrictions) {
+        // All restrictions come from the same configuration, so the content limits are the same
+        // and only the restriction flags need comparing.
+        for (int i = 0; i < mInternedRestrictions.size(); i++) {
+            CarUxRestrictions interned = mInternedRestrictions.get(i);
+            if (interned.isSameRestrictions(uxRestrictions)) {
+                return interned;
+            }
+        }
+        mInternedRestrictions.add(uxRestrictions);
+        return uxRestrictions;
+    }
+
+    /**
+     * Restrictions of one (mode, driving state) pair as sorted intervals.
+     */
+    private static final class SpeedTable {
+        private final float[] mLowerBounds;
+        private final CarUxRestrictions[] mRestrictions;
+        // MAX_SPEED is used when the speed is unknown while moving and resolves to the highest
+        // configured range, which is not necessarily the last interval of the table.
+        private final CarUxRestrictions mRestrictionsAtMaxSpeed;
+
+        SpeedTable(float[] lowerBounds, CarUxRestrictions[] restrictions,
+                CarUxRestrictions restrictionsAtMaxSpeed) {
+            mLowerBounds = lowerBounds;
+            mRestrictions = restrictions;
+            mRestrictionsAtMaxSpeed = restrictionsAtMaxSpeed;
+        }
+
+        CarUxRestrictions lookup(float speed) {
+            if (speed >= MAX_SPEED) {
+                return mRestrictionsAtMaxSpeed;
+            }
+            int index = Arrays.binarySearch(mLowerBounds, speed);
+            if (index < 0) {
+                // Not an exact boundary; take the interval that starts before the speed. The
+                // first lower bound is always 0, so this cannot be negative.
+                index = -index - 2;
+            }
+            return mRestrictions[index];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < mLowerBounds.length; i++) {
+                builder.append('[').append(mLowerBounds[i]).append("+: 0x")
+                        .append(Integer.toHexString(mRestrictions[i].getActiveRestrictions()))
+                        .append(mRestrictions[i].isRequiresDistractionOptimization()
+                                ? " DO" : " No DO")
+                        .append(']');
+            }
+            return builder.toString();
+        }
+    }
+}
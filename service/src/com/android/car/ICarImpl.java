@@ -85,6 +85,7 @@ import com.android.car.occupantconnection.CarRemoteDeviceService;
 import com.android.car.oem.CarOemProxyService;
 import com.android.car.os.CarPerformanceService;
 import com.android.car.pm.CarPackageManagerService;
+import com.android.car.pm.PackageMetadataCache;
 import com.android.car.power.CarPowerManagementService;
 import com.android.car.remoteaccess.CarRemoteAccessService;
 import com.android.car.stats.CarStatsService;
@@ -136,10 +137,13 @@ public class ICarImpl extends ICar.Stub {
     private final CarOemProxyService mCarOemService;
     private final SystemActivityMonitoringService mSystemActivityMonitoringService;
     private final CarPowerManagementService mCarPowerManagementService;
+    private final PackageMetadataCache mPackageMetadataCache;
     private final CarPackageManagerService mCarPackageManagerService;
     private final CarInputService mCarInputService;
     private final CarDrivingStateService mCarDrivingStateService;
     private final CarUxRestrictionsManagerService mCarUXRestrictionsService;
+    // Null when created lazily, see mLazyOccupantAwarenessService.
+    @Nullable
     private final OccupantAwarenessService mOccupantAwarenessService;
     private final CarAudioService mCarAudioService;
     private final CarProjectionService mCarProjectionService;
@@ -153,6 +157,8 @@ public class ICarImpl extends ICar.Stub {
     private final CarLocationService mCarLocationService;
     private final CarBluetoothService mCarBluetoothService;
     private final CarPerUserServiceHelper mCarPerUserServiceHelper;
+    // Null when created lazily, see mLazyCarDiagnosticService.
+    @Nullable
     private final CarDiagnosticService mCarDiagnosticService;
     private final CarStorageMonitoringService mCarStorageMonitoringService;
     private final CarMediaService mCarMediaService;
@@ -185,6 +191,18 @@ public class ICarImpl extends ICar.Stub {
     // Storing all the car services in the order of their init.
     private final CarSystemService[] mAllServicesInInitOrder;
 
+    // Optional services only created once a client asks for them, when
+    // config_lazyOptionalCarServices is enabled and their feature is enabled.
+    @Nullable
+    private final LazyCarService<OccupantAwarenessService> mLazyOccupantAwarenessService;
+    @Nullable
+    private final LazyCarService<CarDiagnosticService> mLazyCarDiagnosticService;
+    private final List<LazyCarService<?>> mLazyServices = new ArrayList<>();
+
+    // key: service initialized in parallel when enabled, value: services it needs in init()
+    private final ArrayMap<CarSystemService, CarSystemService[]> mInitDependencies =
+            new ArrayMap<>();
+
     private static final boolean DBG = Slogf.isLoggable(TAG, Log.DEBUG);
 
     private final Object mLock = new Object();
@@ -251,6 +269,7 @@ public class ICarImpl extends ICar.Stub {
         Resources res = mContext.getResources();
         String[] defaultEnabledFeatures = res.getStringArray(
                 R.array.config_allowed_optional_car_features);
+        boolean lazyOptionalServices = res.getBoolean(R.bool.config_lazyOptionalCarServices);
         final String[] disabledFromVhal = disabledFeaturesFromVhal;
         mFeatureController = constructWithTrace(t, CarFeatureController.class,
                 () -> new CarFeatureController(mContext, defaultEnabledFeatures,
@@ -269,6 +288,8 @@ public class ICarImpl extends ICar.Stub {
                         mCarPropertyService, mCarOccupantZoneService), allServices);
         mCarActivityService = constructWithTrace(t, CarActivityService.class,
                 () -> new CarActivityService(mContext), allServices);
+        mPackageMetadataCache = constructWithTrace(t, PackageMetadataCache.class,
+                () -> new PackageMetadataCache(mContext), allServices);
         mCarPackageManagerService = constructWithTrace(t, CarPackageManagerService.class,
                 () -> new CarPackageManagerService(mContext, mCarUXRestrictionsService,
                         mCarActivityService, mCarOccupantZoneService), allServices);
@@ -320,11 +341,17 @@ public class ICarImpl extends ICar.Stub {
         } else {
             mCarUserNoticeService = null;
         }
-        if (mFeatureController.isFeatureEnabled(Car.OCCUPANT_AWARENESS_SERVICE)) {
+        if (!mFeatureController.isFeatureEnabled(Car.OCCUPANT_AWARENESS_SERVICE)) {
+            mOccupantAwarenessService = null;
+            mLazyOccupantAwarenessService = null;
+        } else if (lazyOptionalServices) {
+            mOccupantAwarenessService = null;
+            mLazyOccupantAwarenessService = addLazyService(OccupantAwarenessService.class,
+                    () -> new OccupantAwarenessService(mContext));
+        } else {
             mOccupantAwarenessService = constructWithTrace(t, OccupantAwarenessService.class,
                     () -> new OccupantAwarenessService(mContext), allServices);
-        } else {
-            mOccupantAwarenessService = null;
+            mLazyOccupantAwarenessService = null;
         }
         mCarPerUserServiceHelper = constructWithTrace(
                 t, CarPerUserServiceHelper.class,
@@ -375,11 +402,17 @@ public class ICarImpl extends ICar.Stub {
         } else {
             mVmsBrokerService = null;
         }
-        if (mFeatureController.isFeatureEnabled(Car.DIAGNOSTIC_SERVICE)) {
+        if (!mFeatureController.isFeatureEnabled(Car.DIAGNOSTIC_SERVICE)) {
+            mCarDiagnosticService = null;
+            mLazyCarDiagnosticService = null;
+        } else if (lazyOptionalServices) {
+            mCarDiagnosticService = null;
+            mLazyCarDiagnosticService = addLazyService(CarDiagnosticService.class,
+                    () -> new CarDiagnosticService(mContext, mHal.getDiagnosticHal()));
+        } else {
             mCarDiagnosticService = constructWithTrace(t, CarDiagnosticService.class,
                     () -> new CarDiagnosticService(mContext, mHal.getDiagnosticHal()), allServices);
-        } else {
-            mCarDiagnosticService = null;
+            mLazyCarDiagnosticService = null;
         }
         if (mFeatureController.isFeatureEnabled(Car.STORAGE_MONITORING_SERVICE)) {
             mCarStorageMonitoringService = constructWithTrace(
@@ -499,6 +532,7 @@ public class ICarImpl extends ICar.Stub {
         }
 
         mAllServicesInInitOrder = allServices.toArray(new CarSystemService[allServices.size()]);
+        declareInitDependencies();
         mICarSystemServerClientImpl = new ICarSystemServerClientImpl();
 
         t.traceEnd(); // "ICarImpl.constructor"
@@ -515,11 +549,10 @@ public class ICarImpl extends ICar.Stub {
         }
 
         t.traceBegin("CarService.initAllServices");
-        for (CarSystemService service : mAllServicesInInitOrder) {
-            t.traceBegin(service.getClass().getSimpleName());
-            service.init();
-            t.traceEnd();
-        }
+        int initThreadPoolSize = mContext.getResources().getInteger(
+                R.integer.config_carServiceInitThreadPoolSize);
+        new CarServiceInitScheduler(mAllServicesInInitOrder, mInitDependencies,
+                initThreadPoolSize).initAll(t);
         t.traceEnd(); // "CarService.initAllServices"
 
         t.traceBegin("CarService.onInitComplete");
@@ -539,7 +572,37 @@ public class ICarImpl extends ICar.Stub {
         t.traceEnd(); // "ICarImpl.init"
     }
 
+    /**
+     * Declares the services whose init can run in parallel with the other services, once the
+     * services they use in init are initialized.
+     *
+     * <p>A service must only be declared here if no other service uses it in its own init.
+     */
+    private void declareInitDependencies() {
+        // Parses the audio zone configuration.
+        addInitDependencies(mCarAudioService, mCarOemService, mCarOccupantZoneService,
+                mCarInputService, mCarPowerManagementService);
+        // Reads the resource overuse database.
+        addInitDependencies(mCarWatchdogService, mCarPowerManagementService, mCarUserService,
+                mCarUXRestrictionsService);
+        // Loads the metrics configs.
+        addInitDependencies(mCarTelemetryService, mCarPowerManagementService,
+                mCarPropertyService);
+    }
+
+    private void addInitDependencies(@Nullable CarSystemService service,
+            CarSystemService... dependencies) {
+        if (service == null) {
+            return;
+        }
+        mInitDependencies.put(service, dependencies);
+    }
+
     void release() {
+        // Lazy services are created after all other services are initialized.
+        for (int i = mLazyServices.size() - 1; i >= 0; i--) {
+            mLazyServices.get(i).release();
+        }
         // release done in opposite order from init
         for (int i = mAllServicesInInitOrder.length - 1; i >= 0; i--) {
             mAllServicesInInitOrder[i].release();
@@ -638,7 +701,8 @@ public class ICarImpl extends ICar.Stub {
                 return mCarPackageManagerService;
             case Car.DIAGNOSTIC_SERVICE:
                 CarServiceUtils.assertAnyDiagnosticPermission(mContext);
-                return mCarDiagnosticService;
+                return getOptionalService(mCarDiagnosticService, mLazyCarDiagnosticService,
+                        serviceName);
             case Car.POWER_SERVICE:
                 return mCarPowerManagementService;
             case Car.CABIN_SERVICE:
@@ -680,7 +744,8 @@ public class ICarImpl extends ICar.Stub {
             case Car.CAR_UX_RESTRICTION_SERVICE:
                 return mCarUXRestrictionsService;
             case Car.OCCUPANT_AWARENESS_SERVICE:
-                return mOccupantAwarenessService;
+                return getOptionalService(mOccupantAwarenessService,
+                        mLazyOccupantAwarenessService, serviceName);
             case Car.CAR_MEDIA_SERVICE:
                 return mCarMediaService;
             case Car.CAR_OCCUPANT_ZONE_SERVICE:
@@ -740,6 +805,15 @@ public class ICarImpl extends ICar.Stub {
         }
     }
 
+    @Nullable
+    private static <T extends CarSystemService> T getOptionalService(@Nullable T service,
+            @Nullable LazyCarService<T> lazyService, String serviceName) {
+        if (lazyService == null) {
+            return service;
+        }
+        return lazyService.get("getCarService(" + serviceName + ")");
+    }
+
     @Override
     @ExcludeFromCodeCoverageGeneratedReport(reason = DEPRECATED_CODE)
     public int getCarConnectionType() {
@@ -983,9 +1057,23 @@ public class ICarImpl extends ICar.Stub {
         return super.onTransact(code, data, reply, flags);
     }
 
+    /** Returns the services in init order, followed by the lazy services created so far. */
+    private List<CarSystemService> getAllCreatedServices() {
+        List<CarSystemService> services = new ArrayList<>(
+                mAllServicesInInitOrder.length + mLazyServices.size());
+        services.addAll(Arrays.asList(mAllServicesInInitOrder));
+        for (int i = 0; i < mLazyServices.size(); i++) {
+            CarSystemService service = mLazyServices.get(i).getIfCreated();
+            if (service != null) {
+                services.add(service);
+            }
+        }
+        return services;
+    }
+
     private CarShellCommand newCarShellCommand() {
         Map<Class, CarSystemService> allServicesByClazz = new ArrayMap<>();
-        for (CarSystemService service : mAllServicesInInitOrder) {
+        for (CarSystemService service : getAllCreatedServices()) {
             allServicesByClazz.put(service.getClass(), service);
         }
 
@@ -998,16 +1086,27 @@ public class ICarImpl extends ICar.Stub {
         for (CarSystemService service : mAllServicesInInitOrder) {
             writer.println(service.getClass().getName());
         }
+        for (int i = 0; i < mLazyServices.size(); i++) {
+            writer.println(mLazyServices.get(i).getServiceClass().getName() + " (lazy)");
+        }
     }
 
     @ExcludeFromCodeCoverageGeneratedReport(reason = DUMP_INFO)
     private void dumpAllServices(IndentingPrintWriter writer) {
         writer.println("*Dump all services*");
-        for (CarSystemService service : mAllServicesInInitOrder) {
+        for (CarSystemService service : getAllCreatedServices()) {
             if (service instanceof CarServiceBase) {
                 dumpService(service, writer);
             }
         }
+        if (!mLazyServices.isEmpty()) {
+            writer.println("*Lazy services*");
+            writer.increaseIndent();
+            for (int i = 0; i < mLazyServices.size(); i++) {
+                mLazyServices.get(i).dump(writer);
+            }
+            writer.decreaseIndent();
+        }
         synchronized (mLock) {
             if (mCarTestService != null) {
                 dumpService(mCarTestService, writer);
@@ -1054,7 +1153,7 @@ public class ICarImpl extends ICar.Stub {
 
     @Nullable
     private CarSystemService getCarServiceBySubstring(String className) {
-        return Arrays.asList(mAllServicesInInitOrder).stream()
+        return getAllCreatedServices().stream()
                 .filter(s -> s.getClass().getSimpleName().equals(className))
                 .findFirst().orElse(null);
     }
@@ -1089,6 +1188,13 @@ public class ICarImpl extends ICar.Stub {
         return constructed;
     }
 
+    private <T extends CarSystemService> LazyCarService<T> addLazyService(Class<T> cls,
+            Callable<T> factory) {
+        LazyCarService<T> lazyService = new LazyCarService<>(cls, factory);
+        mLazyServices.add(lazyService);
+        return lazyService;
+    }
+
     private final class ICarSystemServerClientImpl extends ICarSystemServerClient.Stub {
         @Override
         public void onUserLifecycleEvent(int eventType, int fromUserId, int toUserId)
@@ -537,6 +537,26 @@ public class InputCaptureClientController {
         return true;
     }
 
+    /**
+     * Returns whether a capturing client would receive key events with the given key code.
+     *
+     * @param displayType the display type defined in {@code CarInputManager} such as
+     *                    {@link CarOccupantZoneManager#DISPLAY_TYPE_MAIN}
+     * @param keyCode     the key code of the events
+     */
+    public boolean hasKeyEventCapturer(@DisplayTypeEnum int displayType, int keyCode) {
+        if (!SUPPORTED_DISPLAY_TYPES.contains(displayType)) {
+            return false;
+        }
+        Integer inputType = KEY_EVENT_TO_INPUT_TYPE.get(keyCode);
+        if (inputType == null) { // not supported key
+            inputType = CarInputManager.INPUT_TYPE_ALL_INPUTS;
+        }
+        synchronized (mLock) {
+            return getClientForInputTypeLocked(displayType, inputType) != null;
+        }
+    }
+
     /**
      * Dispatches the given {@code RotaryEvent} to a capturing client if there is one.
      *
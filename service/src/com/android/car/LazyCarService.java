@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.car;
+
+import static com.android.car.internal.ExcludeFromCodeCoverageGeneratedReport.DUMP_INFO;
+
+import android.annotation.Nullable;
+import android.car.builtin.util.Slogf;
+import android.os.SystemClock;
+
+import com.android.car.internal.ExcludeFromCodeCoverageGeneratedReport;
+import com.android.car.internal.util.IndentingPrintWriter;
+import com.android.internal.annotations.GuardedBy;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Holds an optional car service that is only constructed and initialized the first time it is
+ * requested.
+ *
+ * <p>Only services that no other service uses directly can be created lazily, as they are
+ * created after every other service is initialized.
+ *
+ * @param <T> type of the service
+ */
+final class LazyCarService<T extends CarSystemService> {
+
+    private static final String TAG = CarLog.tagFor(LazyCarService.class);
+
+    private final Class<T> mServiceClass;
+    private final Callable<T> mFactory;
+
+    private final Object mLock = new Object();
+    @GuardedBy("mLock")
+    @Nullable
+    private T mService;
+    @GuardedBy("mLock")
+    private String mTrigger;
+    @GuardedBy("mLock")
+    private long mCreationUptimeMs;
+    @GuardedBy("mLock")
+    private long mCreationDurationMs;
+    @GuardedBy("mLock")
+    private long mCreationHeapBytes;
+
+    LazyCarService(Class<T> serviceClass, Callable<T> factory) {
+        mServiceClass = serviceClass;
+        mFactory = factory;
+    }
+
+    Class<T> getServiceClass() {
+        return mServiceClass;
+    }
+
+    /** Returns the service if it was already created, without creating it. */
+    @Nullable
+    T getIfCreated() {
+        synchronized (mLock) {
+            return mService;
+        }
+    }
+
+    /**
+     * Returns the service, constructing and initializing it first if needed.
+     *
+     * @param trigger what requested the service, for dumps
+     */
+    T get(String trigger) {
+        synchronized (mLock) {
+            if (mService != null) {
+                return mService;
+            }
+            Runtime runtime = Runtime.getRuntime();
+            long heapBytesBefore = runtime.totalMemory() - runtime.freeMemory();
+            long startTimeMs = SystemClock.uptimeMillis();
+            T service;
+            try {
+                service = mFactory.call();
+            } catch (Exception e) {
+                throw new RuntimeException("Crash while constructing:"
+                        + mServiceClass.getSimpleName(), e);
+            }
+            CarLocalServices.addService(mServiceClass, service);
+            service.init();
+            service.onInitComplete();
+            mCreationDurationMs = SystemClock.uptimeMillis() - startTimeMs;
+            mCreationHeapBytes = runtime.totalMemory() - runtime.freeMemory() - heapBytesBefore;
+            mCreationUptimeMs = startTimeMs;
+            mTrigger = trigger;
+            mService = service;
+            Slogf.i(TAG, "Created %s for %s in %d ms", mServiceClass.getSimpleName(), trigger,
+                    mCreationDurationMs);
+            return service;
+        }
+    }
+
+    /** Releases the service if it was created. */
+    void release() {
+        synchronized (mLock) {
+            if (mService == null) {
+                return;
+            }
+            mService.release();
+            mService = null;
+        }
+    }
+
+    @ExcludeFromCodeCoverageGeneratedReport(reason = DUMP_INFO)
+    void dump(IndentingPrintWriter writer) {
+        synchronized (mLock) {
+            if (mService == null) {
+                writer.printf("%s: not created\n", mServiceClass.getSimpleName());
+                return;
+            }
+            // The heap delta is approximate, as other threads allocate at the same time.
+            writer.printf("%s: created for %s at uptime %d ms, construction and init took %d ms"
+                    + " and ~%d bytes of heap\n", mServiceClass.getSimpleName(), mTrigger,
+                    mCreationUptimeMs, mCreationDurationMs, mCreationHeapBytes);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.car;
+
+import static com.android.car.internal.common.CommonConstants.EMPTY_INT_ARRAY;
+
+import android.annotation.Nullable;
+import android.annotation.UserIdInt;
+import android.car.CarOccupantZoneManager;
+import android.car.CarOccupantZoneManager.OccupantZoneInfo;
+import android.car.media.CarAudioManager;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+import android.view.Display;
+
+import com.android.car.CarOccupantZoneService.DisplayInfo;
+import com.android.car.CarOccupantZoneService.OccupantConfig;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable copy of the active occupant zones, their displays, users and audio zones.
+ *
+ * <p>{@link CarOccupantZoneService} builds a new topology whenever a display, user or audio zone
+ * assignment changes, so that frequent queries are answered from precomputed maps without
+ * locking.
+ */
+final class OccupantZoneTopology {
+
+    static final OccupantZoneTopology EMPTY = new OccupantZoneTopology(/* version= */ 0,
+            new SparseArray<>(), new SparseArray<>(), new SparseIntArray(),
+            OccupantZoneInfo.INVALID_ZONE_ID);
+
+    private final long mVersion;
+    private final int mDriverZoneId;
+    private final List<OccupantZoneInfo> mActiveZones;
+    // key: zone id, value: display ids in the order of the zone's displays
+    private final SparseArray<int[]> mZoneDisplayIds = new SparseArray<>();
+    // key: zone id, value: display id per display type
+    private final SparseArray<SparseIntArray> mZoneDisplayIdsByType = new SparseArray<>();
+    // key: zone id, value: user id
+    private final SparseIntArray mZoneUsers = new SparseIntArray();
+    // key: user id, value: zone id
+    private final SparseIntArray mUserZones = new SparseIntArray();
+    // key: display id, value: user id
+    private final SparseIntArray mDisplayUsers = new SparseIntArray();
+    // key: seat, value: zone id
+    private final SparseIntArray mSeatZones = new SparseIntArray();
+    // key: zone id, value: audio zone id
+    private final SparseIntArray mZoneAudioZones = new SparseIntArray();
+    // key: audio zone id, value: occupant zone
+    private final SparseArray<OccupantZoneInfo> mAudioZoneOccupants = new SparseArray<>();
+
+    /**
+     * @param occupantsConfig                    every configured zone, by zone id
+     * @param activeOccupantConfigs              zones with displays, by zone id
+     * @param audioZoneIdToOccupantZoneIdMapping occupant zone id, by audio zone id
+     */
+    OccupantZoneTopology(long version, SparseArray<OccupantZoneInfo> occupantsConfig,
+            SparseArray<OccupantConfig> activeOccupantConfigs,
+            SparseIntArray audioZoneIdToOccupantZoneIdMapping, int driverZoneId) {
+        mVersion = version;
+        mDriverZoneId = driverZoneId;
+
+        List<OccupantZoneInfo> activeZones = new ArrayList<>(activeOccupantConfigs.size());
+        for (int i = 0; i < activeOccupantConfigs.size(); i++) {
+            int zoneId = activeOccupantConfigs.keyAt(i);
+            OccupantConfig config = activeOccupantConfigs.valueAt(i);
+            OccupantZoneInfo info = occupantsConfig.get(zoneId);
+            activeZones.add(info);
+
+            int[] displayIds = new int[config.displayInfos.size()];
+            SparseIntArray displayIdsByType = new SparseIntArray();
+            for (int j = 0; j < config.displayInfos.size(); j++) {
+                DisplayInfo displayInfo = config.displayInfos.get(j);
+                int displayId = displayInfo.display.getDisplayId();
+                displayIds[j] = displayId;
+                // The first display of each type is the one reported for the zone.
+                if (displayIdsByType.indexOfKey(displayInfo.displayType) < 0) {
+                    displayIdsByType.put(displayInfo.displayType, displayId);
+                }
+                if (mDisplayUsers.indexOfKey(displayId) < 0) {
+                    mDisplayUsers.put(displayId, config.userId);
+                }
+            }
+            mZoneDisplayIds.put(zoneId, displayIds);
+            mZoneDisplayIdsByType.put(zoneId, displayIdsByType);
+            mZoneUsers.put(zoneId, config.userId);
+            mZoneAudioZones.put(zoneId, config.audioZoneId);
+            if (mUserZones.indexOfKey(config.userId) < 0) {
+                mUserZones.put(config.userId, zoneId);
+            }
+            if (info != null && mSeatZones.indexOfKey(info.seat) < 0) {
+                mSeatZones.put(info.seat, zoneId);
+            }
+        }
+        mActiveZones = Collections.unmodifiableList(activeZones);
+
+        for (int i = 0; i < audioZoneIdToOccupantZoneIdMapping.size(); i++) {
+            int audioZoneId = audioZoneIdToOccupantZoneIdMapping.keyAt(i);
+            int occupantZoneId = audioZoneIdToOccupantZoneIdMapping.valueAt(i);
+            mAudioZoneOccupants.put(audioZoneId, occupantsConfig.get(occupantZoneId));
+            // Configured zones without displays still report their audio zone.
+            if (occupantsConfig.contains(occupantZoneId)
+                    && mZoneAudioZones.indexOfKey(occupantZoneId) < 0) {
+                mZoneAudioZones.put(occupantZoneId, audioZoneId);
+            }
+        }
+    }
+
+    long getVersion() {
+        return mVersion;
+    }
+
+    /** Returns the active zones, in zone id order. */
+    List<OccupantZoneInfo> getActiveZones() {
+        return mActiveZones;
+    }
+
+    int[] getDisplayIds(int zoneId) {
+        int[] displayIds = mZoneDisplayIds.get(zoneId);
+        return displayIds == null ? EMPTY_INT_ARRAY : displayIds.clone();
+    }
+
+    int getDisplayId(int zoneId, int displayType) {
+        SparseIntArray displayIdsByType = mZoneDisplayIdsByType.get(zoneId);
+        if (displayIdsByType == null) {
+            return Display.INVALID_DISPLAY;
+        }
+        return displayIdsByType.get(displayType, Display.INVALID_DISPLAY);
+    }
+
+    /**
+     * Returns the driver's display of the given type, if the driver zone is assigned to the given
+     * user.
+     */
+    int getDriverDisplayId(@UserIdInt int driverUserId, int displayType) {
+        int index = mZoneUsers.indexOfKey(mDriverZoneId);
+        if (index < 0 || mZoneUsers.valueAt(index) != driverUserId) {
+            return Display.INVALID_DISPLAY;
+        }
+        return getDisplayId(mDriverZoneId, displayType);
+    }
+
+    @UserIdInt
+    int getUserForZone(int zoneId) {
+        return mZoneUsers.get(zoneId, CarOccupantZoneManager.INVALID_USER_ID);
+    }
+
+    int getZoneForUser(@UserIdInt int userId) {
+        return mUserZones.get(userId, OccupantZoneInfo.INVALID_ZONE_ID);
+    }
+
+    @UserIdInt
+    int getUserForDisplay(int displayId) {
+        return mDisplayUsers.get(displayId, CarOccupantZoneManager.INVALID_USER_ID);
+    }
+
+    int getZoneForSeat(int seat) {
+        return mSeatZones.get(seat, OccupantZoneInfo.INVALID_ZONE_ID);
+    }
+
+    int getAudioZoneForZone(int zoneId) {
+        return mZoneAudioZones.get(zoneId, CarAudioManager.INVALID_AUDIO_ZONE);
+    }
+
+    @Nullable
+    OccupantZoneInfo getOccupantForAudioZone(int audioZoneId) {
+        return mAudioZoneOccupants.get(audioZoneId);
+    }
+}
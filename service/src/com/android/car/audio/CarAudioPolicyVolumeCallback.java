@@ -74,11 +74,22 @@ final class CarAudioPolicyVolumeCallback extends AudioPolicy.AudioPolicyVolumeCa
     }
 
     void onVolumeAdjustment(int adjustment, int zoneId) {
+        onVolumeAdjustment(adjustment, zoneId, /* steps= */ 1);
+    }
+
+    /**
+     * Applies a volume adjustment repeated {@code steps} times, with a single volume change for
+     * raising or lowering the volume.
+     */
+    void onVolumeAdjustment(int adjustment, int zoneId, int steps) {
         if (isOemDuckingServiceAvailable()) {
-            evaluateVolumeAdjustmentExternal(adjustment, zoneId);
+            // The OEM service suggests the volume change for a single adjustment.
+            for (int i = 0; i < steps; i++) {
+                evaluateVolumeAdjustmentExternal(adjustment, zoneId);
+            }
             return;
         }
-        evaluateVolumeAdjustmentInternal(adjustment, zoneId);
+        evaluateVolumeAdjustmentInternal(adjustment, zoneId, steps);
     }
 
     private void evaluateVolumeAdjustmentExternal(int adjustment, int zoneId) {
@@ -144,7 +155,7 @@ final class CarAudioPolicyVolumeCallback extends AudioPolicy.AudioPolicyVolumeCa
                 .build();
     }
 
-    private void evaluateVolumeAdjustmentInternal(int adjustment, int zoneId) {
+    private void evaluateVolumeAdjustmentInternal(int adjustment, int zoneId, int steps) {
         int groupId = mCarVolumeInfo.getVolumeGroupIdForAudioZone(zoneId);
         boolean isMuted = isMuted(zoneId, groupId);
 
@@ -160,14 +171,14 @@ final class CarAudioPolicyVolumeCallback extends AudioPolicy.AudioPolicyVolumeCa
         int minGain = mCarVolumeInfo.getGroupMinVolume(zoneId, groupId);
         switch (adjustment) {
             case ADJUST_LOWER:
-                int minValue = Math.max(currentVolume - 1, minGain);
+                int minValue = Math.max(currentVolume - steps, minGain);
                 if (isMuted)  {
                     minValue = minGain;
                 }
                 mVolumeCallback.onGroupVolumeChange(zoneId, groupId, minValue, flags);
                 break;
             case ADJUST_RAISE:
-                int maxValue = Math.min(currentVolume + 1,
+                int maxValue = Math.min(currentVolume + steps,
                         mCarVolumeInfo.getGroupMaxVolume(zoneId, groupId));
                 if (isMuted)  {
                     maxValue = minGain;
@@ -26,6 +26,7 @@ import static android.car.media.CarAudioManager.AUDIO_FEATURE_VOLUME_GROUP_EVENT
 import static android.car.media.CarAudioManager.AUDIO_FEATURE_VOLUME_GROUP_MUTING;
 import static android.car.media.CarAudioManager.CONFIG_STATUS_CHANGED;
 import static android.car.media.CarAudioManager.CarAudioFeature;
+import static android.car.media.CarAudioManager.INVALID_AUDIO_ZONE;
 import static android.car.media.CarAudioManager.INVALID_REQUEST_ID;
 import static android.car.media.CarAudioManager.INVALID_VOLUME_GROUP_ID;
 import static android.car.media.CarAudioManager.PRIMARY_AUDIO_ZONE;
@@ -287,11 +288,8 @@ public final class CarAudioService extends ICarAudio.Stub implements CarServiceB
             if (event.getAction() != ACTION_DOWN) {
                 return;
             }
-            int audioZoneId = mOccupantZoneService.getAudioZoneIdForOccupant(
-                    mOccupantZoneService.getOccupantZoneIdForSeat(seat));
-            if (!isAudioZoneIdValid(audioZoneId)) {
-                Slogf.e(TAG, "Audio zone is invalid for event %s, displayType %d, and seat %d",
-                        event, displayType, seat);
+            int audioZoneId = getAudioZoneIdForKeyEvent(event, displayType, seat);
+            if (audioZoneId == INVALID_AUDIO_ZONE) {
                 return;
             }
             int adjustment;
@@ -313,6 +311,42 @@ public final class CarAudioService extends ICarAudio.Stub implements CarServiceB
                 mCarAudioPolicyVolumeCallback.onVolumeAdjustment(adjustment, audioZoneId);
             }
         }
+
+        @Override
+        public boolean onRepeatedKeyEvent(KeyEvent event, int count, int displayType, int seat) {
+            int adjustment;
+            switch (event.getKeyCode()) {
+                case KEYCODE_VOLUME_DOWN:
+                    adjustment = ADJUST_LOWER;
+                    break;
+                case KEYCODE_VOLUME_UP:
+                    adjustment = ADJUST_RAISE;
+                    break;
+                default:
+                    return false;
+            }
+            Slogf.i(TAG, "On %d repeated key events for audio with display type: %d and seat %d",
+                    count, displayType, seat);
+            int audioZoneId = getAudioZoneIdForKeyEvent(event, displayType, seat);
+            if (audioZoneId == INVALID_AUDIO_ZONE) {
+                return true;
+            }
+            synchronized (mImplLock) {
+                mCarAudioPolicyVolumeCallback.onVolumeAdjustment(adjustment, audioZoneId, count);
+            }
+            return true;
+        }
+
+        private int getAudioZoneIdForKeyEvent(KeyEvent event, int displayType, int seat) {
+            int audioZoneId = mOccupantZoneService.getAudioZoneIdForOccupant(
+                    mOccupantZoneService.getOccupantZoneIdForSeat(seat));
+            if (!isAudioZoneIdValid(audioZoneId)) {
+                Slogf.e(TAG, "Audio zone is invalid for event %s, displayType %d, and seat %d",
+                        event, displayType, seat);
+                return INVALID_AUDIO_ZONE;
+            }
+            return audioZoneId;
+        }
     };
 
     @GuardedBy("mImplLock")
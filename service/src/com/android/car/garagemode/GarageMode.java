@@ -106,6 +106,11 @@ class GarageMode {
     private int mAdditionalChecksToDo = ADDITIONAL_CHECKS_TO_DO;
     @GuardedBy("mLock")
     private boolean mIdleCheckerIsRunning;
+    // Numbers of idle jobs at the last check, only logged when they change.
+    @GuardedBy("mLock")
+    private int mLastNumberRunning = -1;
+    @GuardedBy("mLock")
+    private int mLastNumberReadyToRun = -1;
 
     private final GarageModeRecorder mGarageModeRecorder;
 
@@ -121,16 +126,34 @@ class GarageMode {
                 finish();
                 return;
             }
+            if (mController.isScheduledWorkRunning()) {
+                Slogf.d(TAG, "Scheduled work is still running. Need to wait more ...");
+                synchronized (mLock) {
+                    mAdditionalChecksToDo = ADDITIONAL_CHECKS_TO_DO;
+                }
+                mHandler.postDelayed(mRunnable, JOB_SNAPSHOT_UPDATE_FREQUENCY_MS);
+                return;
+            }
+            // JobScheduler doesn't notify other processes of job state changes, so the jobs are
+            // counted at each check.
             int numberRunning = JobSchedulerHelper.getRunningJobsAtIdle(mContext).size();
             if (numberRunning > 0) {
-                Slogf.d(TAG, "%d jobs are still running. Need to wait more ...", numberRunning);
                 synchronized (mLock) {
+                    if (numberRunning != mLastNumberRunning) {
+                        Slogf.d(TAG, "%d jobs are still running. Need to wait more ...",
+                                numberRunning);
+                    }
+                    mLastNumberRunning = numberRunning;
                     mAdditionalChecksToDo = ADDITIONAL_CHECKS_TO_DO;
                 }
             } else {
                 // No idle-mode jobs are running.
                 // Are there any scheduled idle jobs that could run now?
                 int numberReadyToRun = JobSchedulerHelper.getPendingJobs(mContext).size();
+                synchronized (mLock) {
+                    mLastNumberRunning = 0;
+                    mLastNumberReadyToRun = numberReadyToRun;
+                }
                 if (numberReadyToRun == 0) {
                     Slogf.d(TAG, "No jobs are running. No jobs are pending. Exiting Garage Mode.");
                     finish();
@@ -316,6 +339,8 @@ class GarageMode {
             }
             writer.printf("GarageMode idle checker is %srunning\n",
                     (mIdleCheckerIsRunning ? "" : "not "));
+            writer.printf("Last check: %d running jobs, %d pending jobs\n", mLastNumberRunning,
+                    mLastNumberReadyToRun);
         }
 
         List<JobInfo> jobs = JobSchedulerHelper.getRunningJobsAtIdle(mContext);
@@ -360,6 +385,7 @@ class GarageMode {
         CarStatsLogHelper.logGarageModeStart();
         EventLogHelper.writeGarageModeEvent(GARAGE_MODE_EVENT_LOG_START);
         startMonitoringThread();
+        mController.startScheduledWork();
         // If there is a previously scheduled stop bg user, don't do it.
         mHandler.removeCallbacks(mStopUserCheckRunnable);
         mHandler.removeCallbacks(mBackgroundUserStopTimeout);
@@ -469,6 +495,7 @@ class GarageMode {
             mBackgroundUserStopCompletor = completor;
         }
         stopMonitoringThread();
+        mController.cancelScheduledWork();
         CarStatsLogHelper.logGarageModeStop();
         Slogf.i(TAG, "Stopping of background user queued. Total background users to stop: "
                     + "%d", mStartedBackgroundUsers.size());
@@ -490,6 +517,8 @@ class GarageMode {
         synchronized (mLock) {
             mIdleCheckerIsRunning = true;
             mAdditionalChecksToDo = ADDITIONAL_CHECKS_TO_DO;
+            mLastNumberRunning = -1;
+            mLastNumberReadyToRun = -1;
         }
         mHandler.postDelayed(mRunnable, JOB_SNAPSHOT_INITIAL_UPDATE_MS);
     }
@@ -16,7 +16,9 @@
 
 package com.android.car.garagemode;
 
+import static com.android.car.CarServiceUtils.getHandlerThread;
 import static com.android.car.internal.ExcludeFromCodeCoverageGeneratedReport.DUMP_INFO;
+import static com.android.car.power.CarPowerManagementService.INVALID_TIMEOUT;
 
 import android.annotation.Nullable;
 import android.car.builtin.util.Slogf;
@@ -46,9 +48,14 @@ public class GarageModeController extends ICarPowerStateListener.Stub {
             + GarageModeController.class.getSimpleName();
     private static final boolean DBG = Slogf.isLoggable(TAG, Log.DEBUG);
 
+    private static final String WORK_HANDLER_THREAD_NAME = "GarageModeWork";
+
     private final GarageMode mGarageMode;
     private final Handler mHandler;
+    private final GarageModeWorkScheduler mWorkScheduler;
     private CarPowerManagementService mCarPowerService;
+    // Elapsed realtime by which the scheduled work should be done. Only accessed in mHandler.
+    private long mWorkDeadlineMs = INVALID_TIMEOUT;
 
     public GarageModeController(Context context, Looper looper) {
         this(context, looper, /* handler= */ null, /* garageMode= */ null);
@@ -58,6 +65,8 @@ public class GarageModeController extends ICarPowerStateListener.Stub {
             GarageMode garageMode) {
         mHandler = (handler == null) ? new Handler(looper) : handler;
         mGarageMode = (garageMode == null) ? new GarageMode(context, this) : garageMode;
+        mWorkScheduler = new GarageModeWorkScheduler(
+                new Handler(getHandlerThread(WORK_HANDLER_THREAD_NAME).getLooper()), mHandler);
     }
 
     /** init */
@@ -103,7 +112,7 @@ public class GarageModeController extends ICarPowerStateListener.Stub {
             case CarPowerManager.STATE_SHUTDOWN_PREPARE:
                 initiateGarageMode(
                         () -> mCarPowerService.completeHandlingPowerStateChange(state,
-                                GarageModeController.this));
+                                GarageModeController.this), expirationTimeMs);
                 break;
             default:
                 break;
@@ -123,6 +132,7 @@ public class GarageModeController extends ICarPowerStateListener.Stub {
     @ExcludeFromCodeCoverageGeneratedReport(reason = DUMP_INFO)
     void dump(IndentingPrintWriter writer) {
         mGarageMode.dump(writer);
+        mWorkScheduler.dump(writer);
     }
 
     /**
@@ -150,7 +160,42 @@ public class GarageModeController extends ICarPowerStateListener.Stub {
      * monitoring jobs which has idleness constraint enabled.
      */
     void initiateGarageMode(Runnable completor) {
-        mHandler.post(() -> mGarageMode.enterGarageMode(completor));
+        initiateGarageMode(completor, INVALID_TIMEOUT);
+    }
+
+    /**
+     * Initiates GarageMode flow, running the scheduled work until {@code workDeadlineMs}.
+     */
+    void initiateGarageMode(Runnable completor, long workDeadlineMs) {
+        mHandler.post(() -> {
+            mWorkDeadlineMs = workDeadlineMs;
+            mGarageMode.enterGarageMode(completor);
+        });
+    }
+
+    /** Registers work to run in the next Garage Mode sessions. */
+    void registerWork(GarageModeWork work) {
+        mWorkScheduler.registerWork(work);
+    }
+
+    void unregisterWork(String name) {
+        mWorkScheduler.unregisterWork(name);
+    }
+
+    /** Starts running the registered work. Must be called in mHandler. */
+    void startScheduledWork() {
+        mWorkScheduler.start(mWorkDeadlineMs);
+    }
+
+    void cancelScheduledWork() {
+        mWorkScheduler.cancel();
+    }
+
+    /**
+     * @return whether some registered work is running or waiting to run
+     */
+    boolean isScheduledWorkRunning() {
+        return mWorkScheduler.isRunning();
     }
 
     /**
@@ -102,4 +102,19 @@ public class GarageModeService implements CarServiceBase {
     public void stopAndResetGarageMode() {
         mController.resetGarageMode(null);
     }
+
+    /**
+     * Registers work to run in the next Garage Mode sessions, replacing the work with the same
+     * name if any. Used by other car services.
+     */
+    public void registerWork(GarageModeWork work) {
+        mController.registerWork(work);
+    }
+
+    /**
+     * Unregisters the work with the given name.
+     */
+    public void unregisterWork(String name) {
+        mController.unregisterWork(name);
+    }
 }
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.car.garagemode;
+
+import android.annotation.IntDef;
+import android.os.CancellationSignal;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Work that a system component wants to run while Garage Mode is active, e.g. flushing a database
+ * or uploading telemetry.
+ *
+ * <p>Work is registered through {@link GarageModeService#registerWork(GarageModeWork)} and run by
+ * priority within the shutdown prepare time. The task runs on the Garage Mode work thread, and
+ * should return early once the given {@link CancellationSignal} is cancelled.
+ */
+public final class GarageModeWork {
+
+    /** The work does not access the storage. */
+    public static final int IO_CLASS_NONE = 0;
+    /** The work does little storage I/O. */
+    public static final int IO_CLASS_LIGHT = 1;
+    /** The work does a lot of storage I/O, competing with the idle jobs for the flash. */
+    public static final int IO_CLASS_HEAVY = 2;
+
+    @IntDef(prefix = {"IO_CLASS_"}, value = {
+            IO_CLASS_NONE,
+            IO_CLASS_LIGHT,
+            IO_CLASS_HEAVY,
+    })
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface IoClass {}
+
+    private final String mName;
+    private final int mPriority;
+    private final long mEstimatedDurationMs;
+    @IoClass
+    private final int mIoClass;
+    private final Consumer<CancellationSignal> mTask;
+
+    /**
+     * @param name unique name of the work, used to learn its duration across Garage Mode sessions
+     * @param priority work with a higher priority runs first
+     * @param estimatedDurationMs duration used to plan the work until it has run once
+     * @param ioClass how much storage I/O the work does
+     * @param task the work to run
+     */
+    public GarageModeWork(String name, int priority, long estimatedDurationMs,
+            @IoClass int ioClass, Consumer<CancellationSignal> task) {
+        if (estimatedDurationMs < 0) {
+            throw new IllegalArgumentException("Estimated duration must be non-negative: "
+                    + estimatedDurationMs);
+        }
+        mName = Objects.requireNonNull(name, "Name cannot be null");
+        mPriority = priority;
+        mEstimatedDurationMs = estimatedDurationMs;
+        mIoClass = ioClass;
+        mTask = Objects.requireNonNull(task, "Task cannot be null");
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public int getPriority() {
+        return mPriority;
+    }
+
+    public long getEstimatedDurationMs() {
+        return mEstimatedDurationMs;
+    }
+
+    @IoClass
+    public int getIoClass() {
+        return mIoClass;
+    }
+
+    /** Returns the task run by the scheduler. */
+    public Consumer<CancellationSignal> getTask() {
+        return mTask;
+    }
+
+    static String ioClassToString(@IoClass int ioClass) {
+        switch (ioClass) {
+            case IO_CLASS_NONE:
+                return "NONE";
+            case IO_CLASS_LIGHT:
+                return "LIGHT";
+            case IO_CLASS_HEAVY:
+                return "HEAVY";
+            default:
+                return "UNKNOWN(" + ioClass + ")";
+        }
+    }
+}
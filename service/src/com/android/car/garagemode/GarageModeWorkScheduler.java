@@ -0,0 +1,298 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.car.garagemode;
+
+import static com.android.car.internal.ExcludeFromCodeCoverageGeneratedReport.DUMP_INFO;
+
+import android.annotation.Nullable;
+import android.car.builtin.util.Slogf;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.ArrayMap;
+
+import com.android.car.CarLog;
+import com.android.car.internal.ExcludeFromCodeCoverageGeneratedReport;
+import com.android.car.internal.util.IndentingPrintWriter;
+import com.android.internal.annotations.GuardedBy;
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+
+/**
+ * Runs the registered {@link GarageModeWork} one at a time while Garage Mode is active.
+ *
+ * <p>Work runs by decreasing priority and, for the same priority, by increasing I/O class, so
+ * that heavy I/O runs last. Work whose planned duration does not fit in the time left before the
+ * shutdown prepare deadline is skipped. The planned duration is the estimate of the work until
+ * it has run once, then the average of the previous estimate and of the last actual duration.
+ * Once the deadline passes, the running work is cancelled and the remaining work is dropped.
+ */
+final class GarageModeWorkScheduler {
+
+    private static final String TAG = CarLog.tagFor(GarageMode.class) + "_"
+            + GarageModeWorkScheduler.class.getSimpleName();
+
+    private static final Comparator<GarageModeWork> WORK_ORDER =
+            Comparator.comparingInt(GarageModeWork::getPriority).reversed()
+                    .thenComparingInt(GarageModeWork::getIoClass);
+
+    private final Handler mHandler;
+    // Not blocked by the running work, to cancel it at the deadline.
+    private final Handler mDeadlineHandler;
+    private final Object mLock = new Object();
+    // Registered work, in registration order.
+    @GuardedBy("mLock")
+    private final ArrayList<GarageModeWork> mWork = new ArrayList<>();
+    // Kept across sessions and registrations, by work name.
+    @GuardedBy("mLock")
+    private final ArrayMap<String, WorkStats> mStats = new ArrayMap<>();
+    // Work of the current session that did not run yet, in running order.
+    @GuardedBy("mLock")
+    private final ArrayList<GarageModeWork> mPendingWork = new ArrayList<>();
+    // Not null while a session is running.
+    @GuardedBy("mLock")
+    @Nullable
+    private CancellationSignal mSessionSignal;
+    @GuardedBy("mLock")
+    private long mDeadlineMs;
+    @GuardedBy("mLock")
+    @Nullable
+    private String mRunningWorkName;
+    // Posted in mDeadlineHandler while a session with a deadline is running.
+    @GuardedBy("mLock")
+    @Nullable
+    private Runnable mDeadlineRunnable;
+
+    /**
+     * @param handler handler of the thread running the work
+     * @param deadlineHandler handler of another thread, used to cancel the work at the deadline
+     */
+    GarageModeWorkScheduler(Handler handler, Handler deadlineHandler) {
+        mHandler = handler;
+        mDeadlineHandler = deadlineHandler;
+    }
+
+    /** Registers work, replacing the work with the same name if any. */
+    void registerWork(GarageModeWork work) {
+        synchronized (mLock) {
+            removeWorkLocked(work.getName());
+            mWork.add(work);
+        }
+    }
+
+    void unregisterWork(String name) {
+        synchronized (mLock) {
+            removeWorkLocked(name);
+        }
+    }
+
+    /**
+     * Starts running the registered work, cancelling the previous session if any.
+     *
+     * @param deadlineMs elapsed realtime by which the work should be done, or a negative value
+     *                   if there is no deadline
+     */
+    void start(long deadlineMs) {
+        CancellationSignal signal = new CancellationSignal();
+        synchronized (mLock) {
+            cancelLocked();
+            if (mWork.isEmpty()) {
+                return;
+            }
+            mPendingWork.addAll(mWork);
+            mPendingWork.sort(WORK_ORDER);
+            mDeadlineMs = deadlineMs;
+            mSessionSignal = signal;
+            if (deadlineMs >= 0) {
+                mDeadlineRunnable = () -> onDeadline(signal);
+                mDeadlineHandler.postDelayed(mDeadlineRunnable,
+                        Math.max(0, deadlineMs - SystemClock.elapsedRealtime()));
+            }
+            Slogf.i(TAG, "Scheduling %d Garage Mode work items, %s", mPendingWork.size(),
+                    deadlineMs < 0 ? "without deadline"
+                            : (deadlineMs - SystemClock.elapsedRealtime()) + " ms left");
+        }
+        mHandler.post(() -> runNextWork(signal));
+    }
+
+    /** Cancels the running work, and the work that did not run yet. */
+    void cancel() {
+        synchronized (mLock) {
+            cancelLocked();
+        }
+    }
+
+    /** Returns whether some work of the current session is running or did not run yet. */
+    boolean isRunning() {
+        synchronized (mLock) {
+            return mSessionSignal != null;
+        }
+    }
+
+    /** Returns the duration planned for {@code work} at its next run. */
+    @VisibleForTesting
+    long getPlannedDurationMs(GarageModeWork work) {
+        synchronized (mLock) {
+            return getPlannedDurationMsLocked(work);
+        }
+    }
+
+    @ExcludeFromCodeCoverageGeneratedReport(reason = DUMP_INFO)
+    void dump(IndentingPrintWriter writer) {
+        synchronized (mLock) {
+            writer.printf("Garage Mode work (%s):\n", mSessionSignal == null ? "idle"
+                    : "running " + mRunningWorkName + ", " + mPendingWork.size() + " pending");
+            writer.increaseIndent();
+            for (int i = 0; i < mWork.size(); i++) {
+                GarageModeWork work = mWork.get(i);
+                writer.printf("%s: priority %d, I/O class %s, estimated %d ms, planned %d ms\n",
+                        work.getName(), work.getPriority(),
+                        GarageModeWork.ioClassToString(work.getIoClass()),
+                        work.getEstimatedDurationMs(), getPlannedDurationMsLocked(work));
+            }
+            for (int i = 0; i < mStats.size(); i++) {
+                WorkStats stats = mStats.valueAt(i);
+                writer.printf("%s: %d runs, %d cancelled, %d skipped, last planned %d ms, "
+                        + "last took %d ms\n", mStats.keyAt(i), stats.mNumRuns,
+                        stats.mNumCancelled, stats.mNumSkipped, stats.mLastPlannedMs,
+                        stats.mLastActualMs);
+            }
+            writer.decreaseIndent();
+        }
+    }
+
+    private void runNextWork(CancellationSignal signal) {
+        GarageModeWork work = null;
+        long plannedMs = 0;
+        synchronized (mLock) {
+            if (mSessionSignal != signal) {
+                return;
+            }
+            long remainingMs = mDeadlineMs < 0 ? Long.MAX_VALUE
+                    : mDeadlineMs - SystemClock.elapsedRealtime();
+            while (work == null && !mPendingWork.isEmpty()) {
+                GarageModeWork next = mPendingWork.remove(0);
+                long nextPlannedMs = getPlannedDurationMsLocked(next);
+                if (nextPlannedMs <= remainingMs) {
+                    work = next;
+                    plannedMs = nextPlannedMs;
+                    continue;
+                }
+                Slogf.i(TAG, "Skipping Garage Mode work %s: planned %d ms, %d ms left",
+                        next.getName(), nextPlannedMs, remainingMs);
+                getStatsLocked(next.getName()).mNumSkipped++;
+            }
+            if (work == null) {
+                Slogf.i(TAG, "Garage Mode work is done");
+                mSessionSignal = null;
+                removeDeadlineLocked();
+                return;
+            }
+            mRunningWorkName = work.getName();
+        }
+        Slogf.i(TAG, "Running Garage Mode work %s, planned %d ms", work.getName(), plannedMs);
+        long startMs = SystemClock.elapsedRealtime();
+        try {
+            work.getTask().accept(signal);
+        } catch (RuntimeException e) {
+            Slogf.e(TAG, e, "Garage Mode work %s failed", work.getName());
+        }
+        long actualMs = SystemClock.elapsedRealtime() - startMs;
+        Slogf.i(TAG, "Garage Mode work %s took %d ms", work.getName(), actualMs);
+        synchronized (mLock) {
+            mRunningWorkName = null;
+            WorkStats stats = getStatsLocked(work.getName());
+            stats.mLastPlannedMs = plannedMs;
+            stats.mLastActualMs = actualMs;
+            if (signal.isCanceled()) {
+                // The work returned early, so its duration says nothing about the next run.
+                stats.mNumCancelled++;
+                return;
+            }
+            stats.mEstimateMs = stats.mNumRuns == 0 ? actualMs : (stats.mEstimateMs + actualMs) / 2;
+            stats.mNumRuns++;
+        }
+        mHandler.post(() -> runNextWork(signal));
+    }
+
+    private void onDeadline(CancellationSignal signal) {
+        synchronized (mLock) {
+            if (mSessionSignal != signal) {
+                return;
+            }
+            Slogf.w(TAG, "Garage Mode work deadline passed while running %s", mRunningWorkName);
+            cancelLocked();
+        }
+    }
+
+    @GuardedBy("mLock")
+    private void cancelLocked() {
+        if (mSessionSignal == null) {
+            return;
+        }
+        Slogf.i(TAG, "Cancelling Garage Mode work, %d items did not run", mPendingWork.size());
+        mSessionSignal.cancel();
+        mSessionSignal = null;
+        mPendingWork.clear();
+        removeDeadlineLocked();
+    }
+
+    @GuardedBy("mLock")
+    private void removeDeadlineLocked() {
+        if (mDeadlineRunnable != null) {
+            mDeadlineHandler.removeCallbacks(mDeadlineRunnable);
+            mDeadlineRunnable = null;
+        }
+    }
+
+    @GuardedBy("mLock")
+    private void removeWorkLocked(String name) {
+        for (int i = mWork.size() - 1; i >= 0; i--) {
+            if (mWork.get(i).getName().equals(name)) {
+                mWork.remove(i);
+            }
+        }
+    }
+
+    @GuardedBy("mLock")
+    private long getPlannedDurationMsLocked(GarageModeWork work) {
+        WorkStats stats = mStats.get(work.getName());
+        return stats == null || stats.mNumRuns == 0 ? work.getEstimatedDurationMs()
+                : stats.mEstimateMs;
+    }
+
+    @GuardedBy("mLock")
+    private WorkStats getStatsLocked(String name) {
+        WorkStats stats = mStats.get(name);
+        if (stats == null) {
+            stats = new WorkStats();
+            mStats.put(name, stats);
+        }
+        return stats;
+    }
+
+    private static final class WorkStats {
+        int mNumRuns;
+        int mNumCancelled;
+        int mNumSkipped;
+        long mEstimateMs;
+        long mLastPlannedMs;
+        long mLastActualMs;
+    }
+}
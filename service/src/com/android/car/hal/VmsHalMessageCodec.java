@@ -0,0 +1,366 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.car.hal;
+
+import android.car.vms.VmsAssociatedLayer;
+import android.car.vms.VmsAvailableLayers;
+import android.car.vms.VmsLayer;
+import android.car.vms.VmsLayerDependency;
+import android.car.vms.VmsSubscriptionState;
+import android.hardware.automotive.vehicle.VmsAvailabilityStateIntegerValuesIndex;
+import android.hardware.automotive.vehicle.VmsBaseMessageIntegerValuesIndex;
+import android.hardware.automotive.vehicle.VmsMessageType;
+import android.hardware.automotive.vehicle.VmsMessageWithLayerAndPublisherIdIntegerValuesIndex;
+import android.hardware.automotive.vehicle.VmsMessageWithLayerIntegerValuesIndex;
+import android.hardware.automotive.vehicle.VmsOfferingMessageIntegerValuesIndex;
+import android.hardware.automotive.vehicle.VmsSubscriptionsStateIntegerValuesIndex;
+import android.util.ArraySet;
+
+import com.android.internal.annotations.GuardedBy;
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Encodes and decodes the int32 values of {@code VEHICLE_MAP_SERVICE} property messages.
+ *
+ * <p>Messages are encoded into a reusable int array instead of a list of boxed integers, and only
+ * copied once into an array of the exact size for the property value. Received messages are
+ * decoded from a reusable {@link Message}.
+ *
+ * <p>The message formats are described in {@link VmsHalService}.
+ */
+final class VmsHalMessageCodec {
+    private static final int INITIAL_CAPACITY = 32;
+    private static final int NUM_INTEGERS_IN_VMS_LAYER = 3;
+
+    private final Object mLock = new Object();
+    @GuardedBy("mLock")
+    private int[] mBuffer = new int[INITIAL_CAPACITY];
+    @GuardedBy("mLock")
+    private int mSize;
+
+    /**
+     * Encodes a START_SESSION message.
+     */
+    int[] encodeStartSession(int coreId, int clientId) {
+        synchronized (mLock) {
+            startLocked(VmsMessageType.START_SESSION);
+            appendLocked(coreId);
+            appendLocked(clientId);
+            return toArrayLocked();
+        }
+    }
+
+    /**
+     * Encodes the int32 values of a DATA message.
+     */
+    int[] encodeData(VmsLayer layer, int publisherId) {
+        synchronized (mLock) {
+            startLocked(VmsMessageType.DATA);
+            appendLayerLocked(layer);
+            appendLocked(publisherId);
+            return toArrayLocked();
+        }
+    }
+
+    /**
+     * Encodes a PUBLISHER_ID_RESPONSE message.
+     */
+    int[] encodePublisherIdResponse(int publisherId) {
+        synchronized (mLock) {
+            startLocked(VmsMessageType.PUBLISHER_ID_RESPONSE);
+            appendLocked(publisherId);
+            return toArrayLocked();
+        }
+    }
+
+    /**
+     * Encodes the int32 values of a PUBLISHER_INFORMATION_RESPONSE message.
+     */
+    int[] encodePublisherInformationResponse() {
+        return new int[]{VmsMessageType.PUBLISHER_INFORMATION_RESPONSE};
+    }
+
+    /**
+     * Encodes a SUBSCRIPTIONS_CHANGE or SUBSCRIPTIONS_RESPONSE message.
+     */
+    int[] encodeSubscriptionState(int messageType, VmsSubscriptionState subscriptionState) {
+        Set<VmsLayer> layers = subscriptionState.getLayers();
+        Set<VmsAssociatedLayer> associatedLayers = subscriptionState.getAssociatedLayers();
+        synchronized (mLock) {
+            startLocked(messageType);
+            appendLocked(subscriptionState.getSequenceNumber());
+            appendLocked(layers.size());
+            appendLocked(associatedLayers.size());
+            for (VmsLayer layer : layers) {
+                appendLayerLocked(layer);
+            }
+            for (VmsAssociatedLayer layer : associatedLayers) {
+                appendAssociatedLayerLocked(layer);
+            }
+            return toArrayLocked();
+        }
+    }
+
+    /**
+     * Encodes an AVAILABILITY_CHANGE or AVAILABILITY_RESPONSE message.
+     */
+    int[] encodeAvailableLayers(int messageType, VmsAvailableLayers availableLayers) {
+        Set<VmsAssociatedLayer> associatedLayers = availableLayers.getAssociatedLayers();
+        synchronized (mLock) {
+            startLocked(messageType);
+            appendLocked(availableLayers.getSequence());
+            appendLocked(associatedLayers.size());
+            for (VmsAssociatedLayer layer : associatedLayers) {
+                appendAssociatedLayerLocked(layer);
+            }
+            return toArrayLocked();
+        }
+    }
+
+    /**
+     * Encodes an OFFERING message, which is only sent by HAL clients.
+     */
+    @VisibleForTesting
+    int[] encodeOffering(int publisherId, Set<VmsLayerDependency> offering) {
+        synchronized (mLock) {
+            startLocked(VmsMessageType.OFFERING);
+            appendLocked(publisherId);
+            appendLocked(offering.size());
+            for (VmsLayerDependency layerDependency : offering) {
+                appendLayerLocked(layerDependency.getLayer());
+                Set<VmsLayer> dependencies = layerDependency.getDependencies();
+                appendLocked(dependencies.size());
+                for (VmsLayer dependency : dependencies) {
+                    appendLayerLocked(dependency);
+                }
+            }
+            return toArrayLocked();
+        }
+    }
+
+    /**
+     * Decodes the offered layers of an OFFERING message.
+     *
+     * @throws IndexOutOfBoundsException if the message is truncated
+     */
+    static Set<VmsLayerDependency> decodeOffering(Message message) {
+        int numOfferings = message.getInt(VmsOfferingMessageIntegerValuesIndex.NUMBER_OF_OFFERS);
+        Set<VmsLayerDependency> offeredLayers = new ArraySet<>(Math.max(numOfferings, 0));
+        int index = VmsOfferingMessageIntegerValuesIndex.OFFERING_START;
+        for (int i = 0; i < numOfferings; i++) {
+            VmsLayer offeredLayer = message.getLayer(index);
+            index += NUM_INTEGERS_IN_VMS_LAYER;
+
+            int numDependencies = message.getInt(index++);
+            if (numDependencies <= 0) {
+                offeredLayers.add(new VmsLayerDependency(offeredLayer));
+                continue;
+            }
+            Set<VmsLayer> dependencies = new ArraySet<>(numDependencies);
+            for (int j = 0; j < numDependencies; j++) {
+                dependencies.add(message.getLayer(index));
+                index += NUM_INTEGERS_IN_VMS_LAYER;
+            }
+            offeredLayers.add(new VmsLayerDependency(offeredLayer, dependencies));
+        }
+        return offeredLayers;
+    }
+
+    /**
+     * Decodes a SUBSCRIPTIONS_CHANGE or SUBSCRIPTIONS_RESPONSE message, which are only sent to
+     * HAL clients.
+     *
+     * @throws IndexOutOfBoundsException if the message is truncated
+     */
+    @VisibleForTesting
+    static VmsSubscriptionState decodeSubscriptionState(Message message) {
+        int sequenceNumber = message.getInt(
+                VmsSubscriptionsStateIntegerValuesIndex.SEQUENCE_NUMBER);
+        int numLayers = message.getInt(VmsSubscriptionsStateIntegerValuesIndex.NUMBER_OF_LAYERS);
+        int numAssociatedLayers = message.getInt(
+                VmsSubscriptionsStateIntegerValuesIndex.NUMBER_OF_ASSOCIATED_LAYERS);
+        int index = VmsSubscriptionsStateIntegerValuesIndex.SUBSCRIPTIONS_START;
+        Set<VmsLayer> layers = new ArraySet<>(Math.max(numLayers, 0));
+        for (int i = 0; i < numLayers; i++) {
+            layers.add(message.getLayer(index));
+            index += NUM_INTEGERS_IN_VMS_LAYER;
+        }
+        Set<VmsAssociatedLayer> associatedLayers = new ArraySet<>(
+                Math.max(numAssociatedLayers, 0));
+        for (int i = 0; i < numAssociatedLayers; i++) {
+            index = decodeAssociatedLayer(message, index, associatedLayers);
+        }
+        return new VmsSubscriptionState(sequenceNumber, layers, associatedLayers);
+    }
+
+    /**
+     * Decodes an AVAILABILITY_CHANGE or AVAILABILITY_RESPONSE message, which are only sent to
+     * HAL clients.
+     *
+     * @throws IndexOutOfBoundsException if the message is truncated
+     */
+    @VisibleForTesting
+    static VmsAvailableLayers decodeAvailableLayers(Message message) {
+        int sequenceNumber = message.getInt(
+                VmsAvailabilityStateIntegerValuesIndex.SEQUENCE_NUMBER);
+        int numAssociatedLayers = message.getInt(
+                VmsAvailabilityStateIntegerValuesIndex.NUMBER_OF_ASSOCIATED_LAYERS);
+        int index = VmsAvailabilityStateIntegerValuesIndex.LAYERS_START;
+        Set<VmsAssociatedLayer> associatedLayers = new ArraySet<>(
+                Math.max(numAssociatedLayers, 0));
+        for (int i = 0; i < numAssociatedLayers; i++) {
+            index = decodeAssociatedLayer(message, index, associatedLayers);
+        }
+        return new VmsAvailableLayers(associatedLayers, sequenceNumber);
+    }
+
+    private static int decodeAssociatedLayer(Message message, int index,
+            Set<VmsAssociatedLayer> associatedLayers) {
+        VmsLayer layer = message.getLayer(index);
+        index += NUM_INTEGERS_IN_VMS_LAYER;
+        int numProviders = message.getInt(index++);
+        Set<Integer> providerIds = new ArraySet<>(Math.max(numProviders, 0));
+        for (int i = 0; i < numProviders; i++) {
+            providerIds.add(message.getInt(index++));
+        }
+        associatedLayers.add(new VmsAssociatedLayer(layer, providerIds));
+        return index;
+    }
+
+    @GuardedBy("mLock")
+    private void startLocked(int messageType) {
+        mSize = 0;
+        appendLocked(messageType);
+    }
+
+    @GuardedBy("mLock")
+    private void appendLocked(int value) {
+        if (mSize == mBuffer.length) {
+            mBuffer = Arrays.copyOf(mBuffer, mBuffer.length * 2);
+        }
+        mBuffer[mSize++] = value;
+    }
+
+    @GuardedBy("mLock")
+    private void appendLayerLocked(VmsLayer layer) {
+        appendLocked(layer.getType());
+        appendLocked(layer.getSubtype());
+        appendLocked(layer.getVersion());
+    }
+
+    @GuardedBy("mLock")
+    private void appendAssociatedLayerLocked(VmsAssociatedLayer layer) {
+        appendLayerLocked(layer.getVmsLayer());
+        Set<Integer> providerIds = layer.getProviderIds();
+        appendLocked(providerIds.size());
+        for (int providerId : providerIds) {
+            appendLocked(providerId);
+        }
+    }
+
+    @GuardedBy("mLock")
+    private int[] toArrayLocked() {
+        // The property value keeps the array, so it can't be the reusable buffer.
+        return Arrays.copyOf(mBuffer, mSize);
+    }
+
+    /**
+     * Reusable holder of the int32 values of a received message.
+     *
+     * <p>Not thread-safe; each thread handling messages needs its own instance.
+     */
+    static final class Message {
+        private int[] mValues = new int[INITIAL_CAPACITY];
+        private int mSize;
+
+        /**
+         * Replaces the message with the int32 values of a property value.
+         */
+        void readFrom(HalPropValue value) {
+            int size = value.getInt32ValuesSize();
+            ensureCapacity(size);
+            for (int i = 0; i < size; i++) {
+                mValues[i] = value.getInt32Value(i);
+            }
+            mSize = size;
+        }
+
+        /**
+         * Replaces the message with the given values.
+         */
+        @VisibleForTesting
+        void set(int[] values) {
+            ensureCapacity(values.length);
+            System.arraycopy(values, 0, mValues, 0, values.length);
+            mSize = values.length;
+        }
+
+        int size() {
+            return mSize;
+        }
+
+        /**
+         * @throws IndexOutOfBoundsException if the message is empty
+         */
+        int getMessageType() {
+            return getInt(VmsBaseMessageIntegerValuesIndex.MESSAGE_TYPE);
+        }
+
+        /**
+         * @throws IndexOutOfBoundsException if the index is beyond the end of the message
+         */
+        int getInt(int index) {
+            if (index < 0 || index >= mSize) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for "
+                        + "message of size " + mSize);
+            }
+            return mValues[index];
+        }
+
+        /**
+         * Returns the layer starting at the index.
+         *
+         * @throws IndexOutOfBoundsException if the layer is beyond the end of the message
+         */
+        VmsLayer getLayer(int index) {
+            return new VmsLayer(getInt(index), getInt(index + 1), getInt(index + 2));
+        }
+
+        /**
+         * Returns the layer of a message about a single layer.
+         */
+        VmsLayer getLayer() {
+            return getLayer(VmsMessageWithLayerIntegerValuesIndex.LAYER_TYPE);
+        }
+
+        /**
+         * Returns the publisher ID of a message about a single layer and publisher.
+         */
+        int getPublisherId() {
+            return getInt(VmsMessageWithLayerAndPublisherIdIntegerValuesIndex.PUBLISHER_ID);
+        }
+
+        private void ensureCapacity(int size) {
+            if (size > mValues.length) {
+                mValues = new int[Math.max(size, mValues.length * 2)];
+            }
+        }
+    }
+}
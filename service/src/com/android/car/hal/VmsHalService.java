@@ -37,8 +37,6 @@ import android.hardware.automotive.vehicle.VehiclePropertyGroup;
 import android.hardware.automotive.vehicle.VehiclePropertyStatus;
 import android.hardware.automotive.vehicle.VmsBaseMessageIntegerValuesIndex;
 import android.hardware.automotive.vehicle.VmsMessageType;
-import android.hardware.automotive.vehicle.VmsMessageWithLayerAndPublisherIdIntegerValuesIndex;
-import android.hardware.automotive.vehicle.VmsMessageWithLayerIntegerValuesIndex;
 import android.hardware.automotive.vehicle.VmsOfferingMessageIntegerValuesIndex;
 import android.hardware.automotive.vehicle.VmsPublisherInformationIntegerValuesIndex;
 import android.hardware.automotive.vehicle.VmsStartSessionMessageIntegerValuesIndex;
@@ -46,7 +44,6 @@ import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.RemoteException;
 import android.os.SystemClock;
-import android.util.ArraySet;
 import android.util.Log;
 
 import com.android.car.CarLocalServices;
@@ -63,10 +60,7 @@ import java.io.FileDescriptor;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.function.BiFunction;
@@ -85,7 +79,6 @@ public class VmsHalService extends HalServiceBase {
     private static final int[] SUPPORTED_PROPERTIES = new int[]{
             HAL_PROPERTY_ID
     };
-    private static final int NUM_INTEGERS_IN_VMS_LAYER = 3;
     private static final int UNKNOWN_CLIENT_ID = -1;
     private static final byte[] DEFAULT_PUBLISHER_INFO = EMPTY_BYTE_ARRAY;
 
@@ -107,6 +100,9 @@ public class VmsHalService extends HalServiceBase {
     private VmsClient mClient;
 
     private final HalPropValueBuilder mPropValueBuilder;
+    private final VmsHalMessageCodec mCodec = new VmsHalMessageCodec();
+    // Only used by onHalEvents(), which is never called concurrently.
+    private final VmsHalMessageCodec.Message mHalEventMessage = new VmsHalMessageCodec.Message();
 
     private final VmsClientCallback mClientCallback = new VmsClientCallback() {
         @Override
@@ -117,21 +113,21 @@ public class VmsHalService extends HalServiceBase {
         @Override
         public void onSubscriptionStateChanged(VmsSubscriptionState subscriptionState) {
             if (DBG) Slogf.d(TAG, "Handling a subscription state change");
-            setPropertyValue(createSubscriptionStateMessage(mPropValueBuilder,
+            setPropertyValue(createSubscriptionStateMessage(
                     VmsMessageType.SUBSCRIPTIONS_CHANGE, subscriptionState));
         }
 
         @Override
         public void onLayerAvailabilityChanged(VmsAvailableLayers availableLayers) {
             if (DBG) Slogf.d(TAG, "Handling a layer availability change");
-            setPropertyValue(createAvailableLayersMessage(mPropValueBuilder,
+            setPropertyValue(createAvailableLayersMessage(
                     VmsMessageType.AVAILABILITY_CHANGE, availableLayers));
         }
 
         @Override
         public void onPacketReceived(int providerId, VmsLayer layer, byte[] packet) {
             if (DBG) Slogf.d(TAG, "Handling a data message for Layer: " + layer);
-            setPropertyValue(createDataMessage(mPropValueBuilder, layer, providerId, packet));
+            setPropertyValue(createDataMessage(layer, providerId, packet));
         }
     };
 
@@ -208,8 +204,7 @@ public class VmsHalService extends HalServiceBase {
         mVehicleHal.subscribePropertySafe(this, HAL_PROPERTY_ID);
 
         mHandler.post(() ->
-                setPropertyValue(createStartSessionMessage(
-                        mPropValueBuilder, mCoreId, UNKNOWN_CLIENT_ID)));
+                setPropertyValue(createStartSessionMessage(mCoreId, UNKNOWN_CLIENT_ID)));
     }
 
     @Override
@@ -285,13 +280,11 @@ public class VmsHalService extends HalServiceBase {
     public void onHalEvents(List<HalPropValue> values) {
         if (DBG) Slogf.d(TAG, "Handling a VMS property change");
         for (HalPropValue v : values) {
-            ArrayList<Integer> vec = new ArrayList<Integer>(v.getInt32ValuesSize());
-            for (int i = 0; i < v.getInt32ValuesSize(); i++) {
-                vec.add(v.getInt32Value(i));
-            }
+            VmsHalMessageCodec.Message message = mHalEventMessage;
+            message.readFrom(v);
             int messageType;
             try {
-                messageType = v.getInt32Value(VmsBaseMessageIntegerValuesIndex.MESSAGE_TYPE);
+                messageType = message.getMessageType();
             } catch (IndexOutOfBoundsException e) {
                 Slogf.e(TAG, "Invalid event, no message type", e);
                 continue;
@@ -305,28 +298,28 @@ public class VmsHalService extends HalServiceBase {
             try {
                 switch (messageType) {
                     case VmsMessageType.DATA:
-                        handleDataEvent(vec, v.getByteArray());
+                        handleDataEvent(message, v.getByteArray());
                         break;
                     case VmsMessageType.SUBSCRIBE:
-                        handleSubscribeEvent(vec);
+                        handleSubscribeEvent(message);
                         break;
                     case VmsMessageType.UNSUBSCRIBE:
-                        handleUnsubscribeEvent(vec);
+                        handleUnsubscribeEvent(message);
                         break;
                     case VmsMessageType.SUBSCRIBE_TO_PUBLISHER:
-                        handleSubscribeToPublisherEvent(vec);
+                        handleSubscribeToPublisherEvent(message);
                         break;
                     case VmsMessageType.UNSUBSCRIBE_TO_PUBLISHER:
-                        handleUnsubscribeFromPublisherEvent(vec);
+                        handleUnsubscribeFromPublisherEvent(message);
                         break;
                     case VmsMessageType.PUBLISHER_ID_REQUEST:
                         handlePublisherIdRequest(v.getByteArray());
                         break;
                     case VmsMessageType.PUBLISHER_INFORMATION_REQUEST:
-                        handlePublisherInfoRequest(vec);
+                        handlePublisherInfoRequest(message);
                         break;
                     case VmsMessageType.OFFERING:
-                        handleOfferingEvent(vec);
+                        handleOfferingEvent(message);
                         break;
                     case VmsMessageType.AVAILABILITY_REQUEST:
                         handleAvailabilityRequestEvent();
@@ -335,7 +328,7 @@ public class VmsHalService extends HalServiceBase {
                         handleSubscriptionsRequestEvent();
                         break;
                     case VmsMessageType.START_SESSION:
-                        handleStartSessionEvent(vec);
+                        handleStartSessionEvent(message);
                         break;
                     default:
                         Slogf.e(TAG, "Unexpected message type: " + messageType);
@@ -400,9 +393,9 @@ public class VmsHalService extends HalServiceBase {
      * <li>Client ID
      * </ul>
      */
-    private void handleStartSessionEvent(List<Integer> message) {
-        int coreId = message.get(VmsStartSessionMessageIntegerValuesIndex.SERVICE_ID);
-        int clientId = message.get(VmsStartSessionMessageIntegerValuesIndex.CLIENT_ID);
+    private void handleStartSessionEvent(VmsHalMessageCodec.Message message) {
+        int coreId = message.getInt(VmsStartSessionMessageIntegerValuesIndex.SERVICE_ID);
+        int clientId = message.getInt(VmsStartSessionMessageIntegerValuesIndex.CLIENT_ID);
         Slogf.i(TAG, "Starting new session with coreId: " + coreId + " client: " + clientId);
 
         if (coreId != mCoreId) {
@@ -410,7 +403,7 @@ public class VmsHalService extends HalServiceBase {
             disconnectVmsClient();
             connectVmsClient();
             // Send acknowledgement message
-            setPropertyValue(createStartSessionMessage(mPropValueBuilder, mCoreId, clientId));
+            setPropertyValue(createStartSessionMessage(mCoreId, clientId));
         }
         mClientCallback.onLayerAvailabilityChanged(getVmsClient().getAvailableLayers());
     }
@@ -426,9 +419,9 @@ public class VmsHalService extends HalServiceBase {
      * <li>Payload
      * </ul>
      */
-    private void handleDataEvent(List<Integer> message, byte[] payload) {
-        VmsLayer vmsLayer = parseVmsLayerFromMessage(message);
-        int publisherId = parsePublisherIdFromMessage(message);
+    private void handleDataEvent(VmsHalMessageCodec.Message message, byte[] payload) {
+        VmsLayer vmsLayer = message.getLayer();
+        int publisherId = message.getPublisherId();
         if (DBG) {
             Slogf.d(TAG,
                     "Handling a data event for Layer: " + vmsLayer + " Publisher: " + publisherId);
@@ -449,8 +442,8 @@ public class VmsHalService extends HalServiceBase {
      * <li>Layer version
      * </ul>
      */
-    private void handleSubscribeEvent(List<Integer> message) {
-        VmsLayer vmsLayer = parseVmsLayerFromMessage(message);
+    private void handleSubscribeEvent(VmsHalMessageCodec.Message message) {
+        VmsLayer vmsLayer = message.getLayer();
         if (DBG) Slogf.d(TAG, "Handling a subscribe event for Layer: " + vmsLayer);
         mSubscriptionHelper.subscribe(vmsLayer);
     }
@@ -465,9 +458,9 @@ public class VmsHalService extends HalServiceBase {
      * <li>Publisher ID
      * </ul>
      */
-    private void handleSubscribeToPublisherEvent(List<Integer> message) {
-        VmsLayer vmsLayer = parseVmsLayerFromMessage(message);
-        int publisherId = parsePublisherIdFromMessage(message);
+    private void handleSubscribeToPublisherEvent(VmsHalMessageCodec.Message message) {
+        VmsLayer vmsLayer = message.getLayer();
+        int publisherId = message.getPublisherId();
         if (DBG) {
             Slogf.d(TAG, "Handling a subscribe event for Layer: " + vmsLayer
                     + " Publisher: " + publisherId);
@@ -484,8 +477,8 @@ public class VmsHalService extends HalServiceBase {
      * <li>Layer version
      * </ul>
      */
-    private void handleUnsubscribeEvent(List<Integer> message) {
-        VmsLayer vmsLayer = parseVmsLayerFromMessage(message);
+    private void handleUnsubscribeEvent(VmsHalMessageCodec.Message message) {
+        VmsLayer vmsLayer = message.getLayer();
         if (DBG) Slogf.d(TAG, "Handling an unsubscribe event for Layer: " + vmsLayer);
         mSubscriptionHelper.unsubscribe(vmsLayer);
     }
@@ -500,9 +493,9 @@ public class VmsHalService extends HalServiceBase {
      * <li>Publisher ID
      * </ul>
      */
-    private void handleUnsubscribeFromPublisherEvent(List<Integer> message) {
-        VmsLayer vmsLayer = parseVmsLayerFromMessage(message);
-        int publisherId = parsePublisherIdFromMessage(message);
+    private void handleUnsubscribeFromPublisherEvent(VmsHalMessageCodec.Message message) {
+        VmsLayer vmsLayer = message.getLayer();
+        int publisherId = message.getPublisherId();
         if (DBG) {
             Slogf.d(TAG, "Handling an unsubscribe event for Layer: " + vmsLayer
                     + " Publisher: " + publisherId);
@@ -537,9 +530,8 @@ public class VmsHalService extends HalServiceBase {
         }
 
         int publisherId = getVmsClient().registerProvider(payload);
-        HalPropValue vehicleProp = createVmsMessage(mPropValueBuilder,
-                VmsMessageType.PUBLISHER_ID_RESPONSE, new ArrayList<Integer>(
-                        Arrays.asList(publisherId)));
+        HalPropValue vehicleProp = createVmsMessage(
+                mCodec.encodePublisherIdResponse(publisherId));
 
         setPropertyValue(vehicleProp);
     }
@@ -558,17 +550,16 @@ public class VmsHalService extends HalServiceBase {
      * <li>Publisher info (bytes)
      * </ul>
      */
-    private void handlePublisherInfoRequest(List<Integer> message) {
+    private void handlePublisherInfoRequest(VmsHalMessageCodec.Message message) {
         if (DBG) Slogf.d(TAG, "Handling a publisher info request event");
-        int publisherId = message.get(VmsPublisherInformationIntegerValuesIndex.PUBLISHER_ID);
+        int publisherId = message.getInt(VmsPublisherInformationIntegerValuesIndex.PUBLISHER_ID);
 
         // Publisher Info
         byte[] publisherInfo = getVmsClient().getProviderDescription(publisherId);
         byte[] payload = publisherInfo != null ? publisherInfo : DEFAULT_PUBLISHER_INFO;
 
         HalPropValue vehicleProp =
-                createVmsMessage(mPropValueBuilder, VmsMessageType.PUBLISHER_INFORMATION_RESPONSE,
-                        /* values= */ new ArrayList<Integer>(), payload);
+                createVmsMessage(mCodec.encodePublisherInformationResponse(), payload);
         setPropertyValue(vehicleProp);
     }
 
@@ -593,37 +584,14 @@ public class VmsHalService extends HalServiceBase {
      * </ul>
      * </ul>
      */
-    private void handleOfferingEvent(List<Integer> message) {
+    private void handleOfferingEvent(VmsHalMessageCodec.Message message) {
         // Publisher ID for OFFERING is stored at a different index than in other message types
-        int publisherId = message.get(VmsOfferingMessageIntegerValuesIndex.PUBLISHER_ID);
-        int numLayerDependencies =
-                message.get(
-                        VmsOfferingMessageIntegerValuesIndex.NUMBER_OF_OFFERS);
+        int publisherId = message.getInt(VmsOfferingMessageIntegerValuesIndex.PUBLISHER_ID);
+        Set<VmsLayerDependency> offeredLayers = VmsHalMessageCodec.decodeOffering(message);
         if (DBG) {
-            Slogf.d(TAG, "Handling an offering event of " + numLayerDependencies
+            Slogf.d(TAG, "Handling an offering event of " + offeredLayers.size()
                     + " layers for Publisher: " + publisherId);
         }
-
-        Set<VmsLayerDependency> offeredLayers = new ArraySet<>(numLayerDependencies);
-        int idx = VmsOfferingMessageIntegerValuesIndex.OFFERING_START;
-        for (int i = 0; i < numLayerDependencies; i++) {
-            VmsLayer offeredLayer = parseVmsLayerAtIndex(message, idx);
-            idx += NUM_INTEGERS_IN_VMS_LAYER;
-
-            int numDependenciesForLayer = message.get(idx++);
-            if (numDependenciesForLayer == 0) {
-                offeredLayers.add(new VmsLayerDependency(offeredLayer));
-            } else {
-                Set<VmsLayer> dependencies = new HashSet<>();
-
-                for (int j = 0; j < numDependenciesForLayer; j++) {
-                    VmsLayer dependantLayer = parseVmsLayerAtIndex(message, idx);
-                    idx += NUM_INTEGERS_IN_VMS_LAYER;
-                    dependencies.add(dependantLayer);
-                }
-                offeredLayers.add(new VmsLayerDependency(offeredLayer, dependencies));
-            }
-        }
         getVmsClient().setProviderOfferings(publisherId, offeredLayers);
     }
 
@@ -634,8 +602,8 @@ public class VmsHalService extends HalServiceBase {
      * </ul>
      */
     private void handleAvailabilityRequestEvent() {
-        setPropertyValue(createAvailableLayersMessage(mPropValueBuilder,
-                VmsMessageType.AVAILABILITY_RESPONSE, getVmsClient().getAvailableLayers()));
+        setPropertyValue(createAvailableLayersMessage(VmsMessageType.AVAILABILITY_RESPONSE,
+                getVmsClient().getAvailableLayers()));
     }
 
     /**
@@ -645,8 +613,8 @@ public class VmsHalService extends HalServiceBase {
      * </ul>
      */
     private void handleSubscriptionsRequestEvent() {
-        setPropertyValue(createSubscriptionStateMessage(mPropValueBuilder,
-                VmsMessageType.SUBSCRIPTIONS_RESPONSE, getVmsClient().getSubscriptionState()));
+        setPropertyValue(createSubscriptionStateMessage(VmsMessageType.SUBSCRIPTIONS_RESPONSE,
+                getVmsClient().getSubscriptionState()));
     }
 
     private void setPropertyValue(HalPropValue vehicleProp) {
@@ -682,12 +650,8 @@ public class VmsHalService extends HalServiceBase {
      * <li>Client ID
      * </ul>
      */
-    private static HalPropValue createStartSessionMessage(HalPropValueBuilder builder, int coreId,
-            int clientId) {
-        // Message type + layer
-        HalPropValue vehicleProp = createVmsMessage(builder, VmsMessageType.START_SESSION,
-                new ArrayList<Integer>(Arrays.asList(coreId, clientId)));
-        return vehicleProp;
+    private HalPropValue createStartSessionMessage(int coreId, int clientId) {
+        return createVmsMessage(mCodec.encodeStartSession(coreId, clientId));
     }
 
     /**
@@ -707,15 +671,8 @@ public class VmsHalService extends HalServiceBase {
      * @param publisherId Publisher of message
      * @param payload Data message
      */
-    private static HalPropValue createDataMessage(HalPropValueBuilder builder, VmsLayer layer,
-            int publisherId, byte[] payload) {
-        // Message type + layer
-        List<Integer> message = new ArrayList<Integer>();
-        appendLayer(message, layer);
-        // Publisher ID
-        message.add(publisherId);
-
-        return createVmsMessage(builder, VmsMessageType.DATA, message, payload);
+    private HalPropValue createDataMessage(VmsLayer layer, int publisherId, byte[] payload) {
+        return createVmsMessage(mCodec.encodeData(layer, publisherId), payload);
     }
 
     /**
@@ -727,38 +684,28 @@ public class VmsHalService extends HalServiceBase {
      * <li>Sequence number
      * <li>Number of layers
      * <li>Number of associated layers
-     * <li>Layers (x number of layers) (see {@link #appendLayer})
-     * <li>Associated layers (x number of associated layers) (see {@link #appendAssociatedLayer})
+     * <li>Layers (x number of layers)
+     * <ul>
+     * <li>Layer ID
+     * <li>Layer subtype
+     * <li>Layer version
+     * </ul>
+     * <li>Associated layers (x number of associated layers)
+     * <ul>
+     * <li>Layer ID
+     * <li>Layer subtype
+     * <li>Layer version
+     * <li>Number of publishers
+     * <li>Publisher ID (x number of publishers)
+     * </ul>
      * </ul>
      *
      * @param messageType       Either SUBSCRIPTIONS_CHANGE or SUBSCRIPTIONS_RESPONSE.
      * @param subscriptionState The subscription state to encode in the message.
      */
-    private static HalPropValue createSubscriptionStateMessage(HalPropValueBuilder builder,
-            int messageType, VmsSubscriptionState subscriptionState) {
-        List<Integer> message = new ArrayList<Integer>();
-        // Sequence number
-        message.add(subscriptionState.getSequenceNumber());
-
-        Set<VmsLayer> layers = subscriptionState.getLayers();
-        Set<VmsAssociatedLayer> associatedLayers = subscriptionState.getAssociatedLayers();
-
-        // Number of layers
-        message.add(layers.size());
-        // Number of associated layers
-        message.add(associatedLayers.size());
-
-        // Layers
-        for (VmsLayer layer : layers) {
-            appendLayer(message, layer);
-        }
-
-        // Associated layers
-        for (VmsAssociatedLayer layer : associatedLayers) {
-            appendAssociatedLayer(message, layer);
-        }
-
-        return createVmsMessage(builder, messageType, message);
+    private HalPropValue createSubscriptionStateMessage(int messageType,
+            VmsSubscriptionState subscriptionState) {
+        return createVmsMessage(mCodec.encodeSubscriptionState(messageType, subscriptionState));
     }
 
     /**
@@ -769,119 +716,41 @@ public class VmsHalService extends HalServiceBase {
      * <li>Message type
      * <li>Sequence number.
      * <li>Number of associated layers.
-     * <li>Associated layers (x number of associated layers) (see {@link #appendAssociatedLayer})
+     * <li>Associated layers (x number of associated layers), in the same format as in
+     * SUBSCRIPTION_CHANGE messages
      * </ul>
      *
      * @param messageType     Either AVAILABILITY_CHANGE or AVAILABILITY_RESPONSE.
      * @param availableLayers The available layers to encode in the message.
      */
-    private static HalPropValue createAvailableLayersMessage(HalPropValueBuilder builder,
-            int messageType, VmsAvailableLayers availableLayers) {
-        List<Integer> message = new ArrayList<Integer>();
-        // Sequence number
-        message.add(availableLayers.getSequence());
-
-        // Number of associated layers
-        message.add(availableLayers.getAssociatedLayers().size());
-
-        // Associated layers
-        for (VmsAssociatedLayer layer : availableLayers.getAssociatedLayers()) {
-            appendAssociatedLayer(message, layer);
-        }
-        return createVmsMessage(builder, messageType, message);
+    private HalPropValue createAvailableLayersMessage(int messageType,
+            VmsAvailableLayers availableLayers) {
+        return createVmsMessage(mCodec.encodeAvailableLayers(messageType, availableLayers));
     }
 
     /**
-     * Creates a {@link HalPropValue} of the requested message type, and a list of values.
+     * Creates a {@link HalPropValue} from encoded values.
      *
-     * @param messageType Type of message, from {@link VmsMessageType}
-     * @param values A list of values.
+     * @param intValues Encoded values, starting with the message type. The property value keeps
+     *                  the array, so it must not be reused.
      */
-    private static HalPropValue createVmsMessage(HalPropValueBuilder builder,  int messageType,
-            List<Integer> values) {
-        int[] intValues = new int[values.size() + 1];
-        intValues[0] = messageType;
-        for (int i = 0; i < values.size(); i++) {
-            intValues[i + 1] = values.get(i);
-        }
-        return builder.build(HAL_PROPERTY_ID, VehicleAreaType.VEHICLE_AREA_TYPE_GLOBAL,
+    private HalPropValue createVmsMessage(int[] intValues) {
+        return mPropValueBuilder.build(HAL_PROPERTY_ID, VehicleAreaType.VEHICLE_AREA_TYPE_GLOBAL,
                 /*timestamp=*/0, VehiclePropertyStatus.AVAILABLE,
                 /*values=*/intValues);
     }
 
     /**
-     * Creates a {@link HalPropValue} of the requested message type, and a list of values.
+     * Creates a {@link HalPropValue} from encoded values and a payload.
      *
-     * @param messageType Type of message, from {@link VmsMessageType}
-     * @param values A list of values.
+     * @param intValues Encoded values, starting with the message type. The property value keeps
+     *                  the array, so it must not be reused.
      * @param payload The byte values.
      */
-    private static HalPropValue createVmsMessage(HalPropValueBuilder builder, int messageType,
-            List<Integer> values, byte[] payload) {
-        int[] intValues = new int[values.size() + 1];
-        intValues[0] = messageType;
-        for (int i = 0; i < values.size(); i++) {
-            intValues[i + 1] = values.get(i);
-        }
-        return builder.build(HAL_PROPERTY_ID, VehicleAreaType.VEHICLE_AREA_TYPE_GLOBAL,
+    private HalPropValue createVmsMessage(int[] intValues, byte[] payload) {
+        return mPropValueBuilder.build(HAL_PROPERTY_ID, VehicleAreaType.VEHICLE_AREA_TYPE_GLOBAL,
                 /*timestamp=*/ 0, VehiclePropertyStatus.AVAILABLE,
                 /*int32Values=*/ intValues, /*floatValues=*/ EMPTY_FLOAT_ARRAY,
                 /*int64Values=*/ EMPTY_LONG_ARRAY, /*stringValue=*/ "", /*byteValues=*/payload);
     }
-
-    /**
-     * Appends a {@link VmsLayer} to an encoded VMS message.
-     *
-     * Layer format:
-     * <ul>
-     * <li>Layer ID
-     * <li>Layer subtype
-     * <li>Layer version
-     * </ul>
-     *
-     * @param message Message to append to.
-     * @param layer   Layer to append.
-     */
-    private static void appendLayer(List<Integer> message, VmsLayer layer) {
-        message.add(layer.getType());
-        message.add(layer.getSubtype());
-        message.add(layer.getVersion());
-    }
-
-    /**
-     * Appends a {@link VmsAssociatedLayer} to an encoded VMS message.
-     *
-     * AssociatedLayer format:
-     * <ul>
-     * <li>Layer ID
-     * <li>Layer subtype
-     * <li>Layer version
-     * <li>Number of publishers
-     * <li>Publisher ID (x number of publishers)
-     * </ul>
-     *
-     * @param message Message to append to.
-     * @param layer   Layer to append.
-     */
-    private static void appendAssociatedLayer(List<Integer> message, VmsAssociatedLayer layer) {
-        message.add(layer.getVmsLayer().getType());
-        message.add(layer.getVmsLayer().getSubtype());
-        message.add(layer.getVmsLayer().getVersion());
-        message.add(layer.getProviderIds().size());
-        message.addAll(layer.getProviderIds());
-    }
-
-    private static VmsLayer parseVmsLayerFromMessage(List<Integer> message) {
-        return parseVmsLayerAtIndex(message,
-                VmsMessageWithLayerIntegerValuesIndex.LAYER_TYPE);
-    }
-
-    private static VmsLayer parseVmsLayerAtIndex(List<Integer> message, int index) {
-        List<Integer> layerValues = message.subList(index, index + NUM_INTEGERS_IN_VMS_LAYER);
-        return new VmsLayer(layerValues.get(0), layerValues.get(1), layerValues.get(2));
-    }
-
-    private static int parsePublisherIdFromMessage(List<Integer> message) {
-        return message.get(VmsMessageWithLayerAndPublisherIdIntegerValuesIndex.PUBLISHER_ID);
-    }
 }
@@ -34,6 +34,7 @@ import static android.content.pm.PackageManager.GET_SIGNING_CERTIFICATES;
 
 import static com.android.car.CarServiceUtils.assertPermission;
 import static com.android.car.CarServiceUtils.checkCalledByPackage;
+import static com.android.car.CarServiceUtils.getPackagesForUid;
 import static com.android.car.internal.ExcludeFromCodeCoverageGeneratedReport.DEBUGGING_CODE;
 import static com.android.car.internal.ExcludeFromCodeCoverageGeneratedReport.DUMP_INFO;
 
@@ -1048,7 +1049,7 @@ public class CarRemoteDeviceService extends ICarRemoteDevice.Stub implements
             // Note: userInfo must not be null here because it was initialized successfully.
             userInfo = mPerUserInfoMap.get(userId);
         }
-        String[] packageNames = userInfo.pm.getPackagesForUid(uid);
+        String[] packageNames = getPackagesForUid(userInfo.pm, uid);
         if (packageNames == null) {
             return null;
         }
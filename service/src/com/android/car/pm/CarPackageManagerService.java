@@ -27,6 +27,7 @@ import static android.car.user.CarUserManager.USER_LIFECYCLE_EVENT_TYPE_SWITCHIN
 
 import static com.android.car.CarServiceUtils.checkCalledByPackage;
 import static com.android.car.CarServiceUtils.getHandlerThread;
+import static com.android.car.CarServiceUtils.getPackagesForUid;
 import static com.android.car.CarServiceUtils.isEventOfType;
 import static com.android.car.internal.ExcludeFromCodeCoverageGeneratedReport.DUMP_INFO;
 
@@ -471,7 +472,7 @@ public final class CarPackageManagerService extends ICarPackageManager.Stub
         if (hasPermissionGranted(QUERY_ALL_PACKAGES, callingUid)) {
             return true;
         }
-        String[] packages = mPackageManager.getPackagesForUid(callingUid);
+        String[] packages = getPackagesForUid(mPackageManager, callingUid);
         if (packages != null && packages.length > 0) {
             for (int i = 0; i < packages.length; i++) {
                 if (Objects.equals(packageName, packages[i])) {
@@ -1693,7 +1694,18 @@ public final class CarPackageManagerService extends ICarPackageManager.Stub
      */
     public CarVersion getTargetCarVersion(UserHandle user, String packageName) {
         Context context = mContext.createContextAsUser(user, /* flags= */ 0);
-        return getTargetCarVersion(context, packageName);
+        PackageMetadataCache cache = CarLocalServices.getService(PackageMetadataCache.class);
+        if (cache == null) {
+            return getTargetCarVersion(context, packageName);
+        }
+        Objects.requireNonNull(packageName, "packageName cannot be Null");
+        checkQueryAllPackagesPermission(context, packageName);
+        CarVersion version = cache.getTargetCarVersion(packageName, user.getIdentifier());
+        if (version == null) {
+            throw new ServiceSpecificException(CarPackageManager.ERROR_CODE_NO_PACKAGE,
+                    "Package " + packageName + " not found for " + user);
+        }
+        return version;
     }
 
     /**
@@ -1701,12 +1713,20 @@ public final class CarPackageManagerService extends ICarPackageManager.Stub
      */
     @Nullable
     public static CarVersion getTargetCarVersion(Context context, String packageName) {
+        checkQueryAllPackagesPermission(context, packageName);
+        return readTargetCarVersion(context, packageName);
+    }
+
+    private static void checkQueryAllPackagesPermission(Context context, String packageName) {
         String permission = android.Manifest.permission.QUERY_ALL_PACKAGES;
         if (context.checkCallingOrSelfPermission(permission) != PackageManager.PERMISSION_GRANTED) {
             Slogf.w(TAG, "getTargetCarVersion(%s): UID %d doesn't have %s permission",
                     packageName, Binder.getCallingUid(), permission);
             throw new SecurityException("requires permission " + permission);
         }
+    }
+
+    private static CarVersion readTargetCarVersion(Context context, String packageName) {
         ApplicationInfo info = null;
         try {
             info = context.getPackageManager().getApplicationInfo(packageName,
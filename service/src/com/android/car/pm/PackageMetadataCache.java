@@ -0,0 +1,267 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.car.pm;
+
+import static android.car.builtin.os.UserManagerHelper.USER_NULL;
+
+import static com.android.car.internal.ExcludeFromCodeCoverageGeneratedReport.DUMP_INFO;
+
+import android.annotation.Nullable;
+import android.annotation.UserIdInt;
+import android.car.CarVersion;
+import android.car.builtin.util.Slogf;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.PackageManager.NameNotFoundException;
+import android.os.Process;
+import android.os.UserHandle;
+import android.util.ArrayMap;
+import android.util.Log;
+import android.util.SparseArray;
+import android.util.proto.ProtoOutputStream;
+
+import com.android.car.CarLog;
+import com.android.car.CarServiceBase;
+import com.android.car.internal.ExcludeFromCodeCoverageGeneratedReport;
+import com.android.car.internal.util.IndentingPrintWriter;
+import com.android.internal.annotations.GuardedBy;
+
+/**
+ * Caches the package metadata that car services look up repeatedly, to avoid a binder call to
+ * {@code PackageManager} for each lookup.
+ *
+ * <p>The cache is shared by the car services through {@code CarLocalServices}, and is
+ * invalidated by a single receiver of the package and user changes. It caches:
+ * <ul>
+ *   <li>the packages of each UID,
+ *   <li>the target car version of each package of each user.
+ * </ul>
+ *
+ * <p>Only immutable values are handed out. The other package metadata, such as the component
+ * type or the distraction optimized activities, is still looked up by its owners.
+ */
+public final class PackageMetadataCache implements CarServiceBase {
+
+    private static final String TAG = CarLog.tagFor(PackageMetadataCache.class);
+    private static final boolean DBG = Slogf.isLoggable(TAG, Log.DEBUG);
+
+    private final Context mContext;
+    private final PackageManager mPackageManager;
+
+    private final Object mLock = new Object();
+    // Packages of each UID that has packages. As for the target car versions, the UIDs without
+    // packages are not cached.
+    @GuardedBy("mLock")
+    private final SparseArray<String[]> mPackagesByUid = new SparseArray<>();
+    // Target car version of each installed package, by user. The packages that are not installed
+    // are not cached, as the package broadcasts are delivered asynchronously and a package could
+    // be reported missing until the broadcast of its installation is received.
+    @GuardedBy("mLock")
+    private final SparseArray<ArrayMap<String, CarVersion>> mTargetCarVersionsByUser =
+            new SparseArray<>();
+    // Incremented on each invalidation, so that a lookup racing with a package change does not
+    // cache the metadata from before the change.
+    @GuardedBy("mLock")
+    private int mGeneration;
+
+    @GuardedBy("mLock")
+    private long mNumUidHits;
+    @GuardedBy("mLock")
+    private long mNumUidMisses;
+    @GuardedBy("mLock")
+    private long mNumTargetCarVersionHits;
+    @GuardedBy("mLock")
+    private long mNumTargetCarVersionMisses;
+    @GuardedBy("mLock")
+    private long mNumInvalidations;
+
+    private final BroadcastReceiver mPackageChangeReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            String action = intent.getAction();
+            if (Intent.ACTION_USER_REMOVED.equals(action)) {
+                invalidateUser(intent.getIntExtra(Intent.EXTRA_USER_HANDLE, USER_NULL));
+                return;
+            }
+            if (intent.getData() == null) {
+                return;
+            }
+            invalidatePackage(intent.getData().getSchemeSpecificPart(),
+                    intent.getIntExtra(Intent.EXTRA_UID, Process.INVALID_UID));
+        }
+    };
+
+    public PackageMetadataCache(Context context) {
+        mContext = context;
+        mPackageManager = context.getPackageManager();
+    }
+
+    @Override
+    public void init() {
+        IntentFilter packageFilter = new IntentFilter();
+        packageFilter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        packageFilter.addDataScheme("package");
+        mContext.registerReceiverForAllUsers(mPackageChangeReceiver, packageFilter,
+                /* broadcastPermission= */ null, /* scheduler= */ null);
+        IntentFilter userFilter = new IntentFilter(Intent.ACTION_USER_REMOVED);
+        mContext.registerReceiverForAllUsers(mPackageChangeReceiver, userFilter,
+                /* broadcastPermission= */ null, /* scheduler= */ null);
+    }
+
+    @Override
+    public void release() {
+        mContext.unregisterReceiver(mPackageChangeReceiver);
+        synchronized (mLock) {
+            mPackagesByUid.clear();
+            mTargetCarVersionsByUser.clear();
+            mGeneration++;
+        }
+    }
+
+    /**
+     * Returns the packages of {@code uid} as {@link PackageManager#getPackagesForUid(int)}.
+     */
+    @Nullable
+    public String[] getPackagesForUid(int uid) {
+        int generation;
+        synchronized (mLock) {
+            int index = mPackagesByUid.indexOfKey(uid);
+            if (index >= 0) {
+                mNumUidHits++;
+                return mPackagesByUid.valueAt(index).clone();
+            }
+            mNumUidMisses++;
+            generation = mGeneration;
+        }
+        String[] packages = mPackageManager.getPackagesForUid(uid);
+        synchronized (mLock) {
+            if (packages != null && generation == mGeneration) {
+                mPackagesByUid.put(uid, packages.clone());
+            }
+        }
+        return packages;
+    }
+
+    /**
+     * Returns the target car version of {@code packageName} for {@code userId}, or {@code null}
+     * if the package is not installed for the user.
+     */
+    @Nullable
+    public CarVersion getTargetCarVersion(String packageName, @UserIdInt int userId) {
+        int generation;
+        synchronized (mLock) {
+            ArrayMap<String, CarVersion> versions = mTargetCarVersionsByUser.get(userId);
+            int index = versions == null ? -1 : versions.indexOfKey(packageName);
+            if (index >= 0) {
+                mNumTargetCarVersionHits++;
+                return versions.valueAt(index);
+            }
+            mNumTargetCarVersionMisses++;
+            generation = mGeneration;
+        }
+        CarVersion version = null;
+        try {
+            ApplicationInfo info = mPackageManager.getApplicationInfoAsUser(packageName,
+                    PackageManager.GET_META_DATA, UserHandle.of(userId));
+            version = CarVersionParser.getTargetCarVersion(info);
+        } catch (NameNotFoundException e) {
+            if (DBG) {
+                Slogf.d(TAG, "Package %s not found for user %d", packageName, userId);
+            }
+        }
+        synchronized (mLock) {
+            if (version == null || generation != mGeneration) {
+                return version;
+            }
+            ArrayMap<String, CarVersion> versions = mTargetCarVersionsByUser.get(userId);
+            if (versions == null) {
+                versions = new ArrayMap<>();
+                mTargetCarVersionsByUser.put(userId, versions);
+            }
+            versions.put(packageName, version);
+        }
+        return version;
+    }
+
+    @Override
+    @ExcludeFromCodeCoverageGeneratedReport(reason = DUMP_INFO)
+    public void dump(IndentingPrintWriter writer) {
+        synchronized (mLock) {
+            writer.println("*PackageMetadataCache*");
+            writer.increaseIndent();
+            writer.printf("Packages by UID: %d UIDs, %d hits, %d misses\n", mPackagesByUid.size(),
+                    mNumUidHits, mNumUidMisses);
+            int numVersions = 0;
+            for (int i = 0; i < mTargetCarVersionsByUser.size(); i++) {
+                numVersions += mTargetCarVersionsByUser.valueAt(i).size();
+            }
+            writer.printf("Target car versions: %d packages of %d users, %d hits, %d misses\n",
+                    numVersions, mTargetCarVersionsByUser.size(), mNumTargetCarVersionHits,
+                    mNumTargetCarVersionMisses);
+            writer.printf("Invalidations: %d\n", mNumInvalidations);
+            writer.decreaseIndent();
+        }
+    }
+
+    @Override
+    @ExcludeFromCodeCoverageGeneratedReport(reason = DUMP_INFO)
+    public void dumpProto(ProtoOutputStream proto) {}
+
+    private void invalidatePackage(String packageName, int uid) {
+        if (DBG) {
+            Slogf.d(TAG, "Invalidating package %s, UID %d", packageName, uid);
+        }
+        synchronized (mLock) {
+            mGeneration++;
+            mNumInvalidations++;
+            if (uid == Process.INVALID_UID) {
+                mPackagesByUid.clear();
+            } else {
+                mPackagesByUid.delete(uid);
+            }
+            // The broadcasts are not always sent for each user, e.g. when a system package is
+            // updated, so the package is invalidated for all users.
+            for (int i = 0; i < mTargetCarVersionsByUser.size(); i++) {
+                mTargetCarVersionsByUser.valueAt(i).remove(packageName);
+            }
+        }
+    }
+
+    private void invalidateUser(@UserIdInt int userId) {
+        if (DBG) {
+            Slogf.d(TAG, "Invalidating user %d", userId);
+        }
+        synchronized (mLock) {
+            mGeneration++;
+            mNumInvalidations++;
+            mTargetCarVersionsByUser.delete(userId);
+            for (int i = mPackagesByUid.size() - 1; i >= 0; i--) {
+                if (UserHandle.getUserHandleForUid(mPackagesByUid.keyAt(i)).getIdentifier()
+                        == userId) {
+                    mPackagesByUid.removeAt(i);
+                }
+            }
+        }
+    }
+}
@@ -55,6 +55,7 @@ import android.car.remoteaccess.CarRemoteAccessManager;
 import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
+import android.content.pm.PackageManager;
 import android.content.res.Resources;
 import android.frameworks.automotive.powerpolicy.internal.ICarPowerPolicySystemNotification;
 import android.frameworks.automotive.powerpolicy.internal.PolicyState;
@@ -66,6 +67,7 @@ import android.net.TetheringManager;
 import android.net.TetheringManager.TetheringRequest;
 import android.net.wifi.WifiManager;
 import android.os.Binder;
+import android.os.Build;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.IBinder;
@@ -97,6 +99,7 @@ import com.android.car.hal.PowerHalService;
 import com.android.car.hal.PowerHalService.BootupReason;
 import com.android.car.hal.PowerHalService.PowerState;
 import com.android.car.internal.ExcludeFromCodeCoverageGeneratedReport;
+import com.android.car.internal.os.HandlerExecutor;
 import com.android.car.internal.util.DebugUtils;
 import com.android.car.internal.util.IndentingPrintWriter;
 import com.android.car.internal.util.Lists;
@@ -127,9 +130,6 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -156,6 +156,7 @@ public class CarPowerManagementService extends ICarPower.Stub implements
 
     private static final String WIFI_STATE_FILENAME = "wifi_state";
     private static final String TETHERING_STATE_FILENAME = "tethering_state";
+    private static final String COMPILED_POWER_POLICIES_FILENAME = "compiled_power_policies";
     private static final String COMPONENT_STATE_MODIFIED = "forcibly_disabled";
     private static final String COMPONENT_STATE_ORIGINAL = "original";
     // If Suspend to RAM fails, we retry with an exponential back-off:
@@ -213,6 +214,16 @@ public class CarPowerManagementService extends ICarPower.Stub implements
     private final HandlerThread mBroadcastHandlerThread = CarServiceUtils.getHandlerThread(
             getClass().getSimpleName() + " broadcasts");
     private final Handler mBroadcastHandler = new Handler(mBroadcastHandlerThread.getLooper());
+    // The listeners that must complete the current power state change, see
+    // mPowerManagerListenersWithCompletion and mInternalPowerListeners.
+    private final ListenerCompletionTracker mListenerCompletionTracker =
+            new ListenerCompletionTracker(
+                    new Handler(CarServiceUtils.getHandlerThread(
+                            getClass().getSimpleName() + " completion timeouts").getLooper()),
+                    new HandlerExecutor(new Handler(CarServiceUtils.getHandlerThread(
+                            getClass().getSimpleName() + " completion").getLooper())));
+    private final PowerListenerNotifier mListenerNotifier;
+    private final PowerTransitionProfiler mTransitionProfiler = new PowerTransitionProfiler();
     // The listeners that complete simply by returning from onStateChanged()
     private final PowerManagerCallbackList<ICarPowerStateListener> mPowerManagerListeners =
             new PowerManagerCallbackList<>(
@@ -227,8 +238,6 @@ public class CarPowerManagementService extends ICarPower.Stub implements
     @GuardedBy("mLock")
     private final ArrayList<ICarPowerStateListener> mInternalPowerListeners = new ArrayList<>();
 
-    @GuardedBy("mLock")
-    private final ArraySet<IBinder> mListenersWeAreWaitingFor = new ArraySet<>();
     @GuardedBy("mLock")
     private final LinkedList<CpmsState> mPendingPowerStates = new LinkedList<>();
     @GuardedBy("mLock")
@@ -308,8 +317,6 @@ public class CarPowerManagementService extends ICarPower.Stub implements
     private boolean mHasControlOverDaemon;
     @GuardedBy("mLock")
     private CarPowerPolicy mCurrentAccumulatedPowerPolicy = getInitialAccumulatedPowerPolicy();
-    private AtomicBoolean mIsListenerWaitingCancelled = new AtomicBoolean(false);
-    private final Semaphore mListenerCompletionSem = new Semaphore(/* permits= */ 0);
     @GuardedBy("mLock")
     @CarPowerManager.CarPowerState
     private int mStateForCompletion = CarPowerManager.STATE_INVALID;
@@ -324,8 +331,14 @@ public class CarPowerManagementService extends ICarPower.Stub implements
     private boolean mIsEmergencyShutdown;
 
     private final PowerManagerCallbackList<ICarPowerPolicyListener> mPowerPolicyListeners =
-            new PowerManagerCallbackList<>(
-                    l -> CarPowerManagementService.this.mPowerPolicyListeners.unregister(l));
+            new PowerManagerCallbackList<>(l -> {
+                CarPowerManagementService.this.mPowerPolicyListeners.unregister(l);
+                CarPowerManagementService.this.mPowerPolicyListenerIndex.removeListener(l);
+            });
+    // Used to only notify the listeners interested in the changed components. The listeners
+    // stay in mPowerPolicyListeners to be notified of their death.
+    private final PowerPolicyListenerIndex mPowerPolicyListenerIndex =
+            new PowerPolicyListenerIndex();
 
     private final PowerComponentHandler mPowerComponentHandler;
     private final PolicyReader mPolicyReader = new PolicyReader();
@@ -393,6 +406,9 @@ public class CarPowerManagementService extends ICarPower.Stub implements
                 R.integer.maxGarageModeRunningDurationInSecs) * 1000;
         mSwitchGuestUserBeforeSleep = resources.getBoolean(
                 R.bool.config_switchGuestUserBeforeGoingSleep);
+        mListenerNotifier = new PowerListenerNotifier(
+                resources.getInteger(R.integer.config_powerListenerNotificationThreadPoolSize),
+                resources.getInteger(R.integer.config_powerListenerLatencyBudgetMs));
         if (mShutdownPrepareTimeMs < MIN_MAX_GARAGE_MODE_DURATION_MS) {
             Slogf.w(TAG,
                     "maxGarageModeRunningDurationInSecs smaller than minimum required, "
@@ -421,6 +437,7 @@ public class CarPowerManagementService extends ICarPower.Stub implements
                 new File(mSystemInterface.getSystemCarDir(), TETHERING_STATE_FILENAME));
         mWifiAdjustmentForSuspend = isWifiAdjustmentForSuspendConfig();
         mPowerComponentHandler = powerComponentHandler;
+        mPowerComponentHandler.setTransitionProfiler(mTransitionProfiler);
         mSilentModeHandler = new SilentModeHandler(this, mFeatureFlags, silentModeHwStatePath,
                 silentModeKernelStatePath, bootReason);
         mMaxSuspendWaitDurationMs = Math.max(MIN_SUSPEND_WAIT_DURATION_MS,
@@ -444,6 +461,22 @@ public class CarPowerManagementService extends ICarPower.Stub implements
         }
     }
 
+    /**
+     * Returns the platform build and the car service version, which change when the code
+     * compiling the power policies may have changed.
+     */
+    private String getCarServiceBuild() {
+        long versionCode = 0;
+        try {
+            versionCode = mContext.getPackageManager()
+                    .getPackageInfo(mContext.getPackageName(), /* flags= */ 0)
+                    .getLongVersionCode();
+        } catch (PackageManager.NameNotFoundException e) {
+            Slogf.w(TAG, "Cannot get the version of %s: %s", mContext.getPackageName(), e);
+        }
+        return Build.FINGERPRINT + ":" + versionCode;
+    }
+
     @VisibleForTesting
     protected HandlerThread getHandlerThread() {
         return mHandlerThread;
@@ -451,7 +484,9 @@ public class CarPowerManagementService extends ICarPower.Stub implements
 
     @Override
     public void init() {
-        mPolicyReader.init(mFeatureFlags);
+        mPolicyReader.init(mFeatureFlags, new AtomicFile(new File(
+                mSystemInterface.getSystemCarDir(), COMPILED_POWER_POLICIES_FILENAME)),
+                getCarServiceBuild());
         mPowerComponentHandler.init(mPolicyReader.getCustomComponents());
         mHal.setListener(this);
         mSystemInterface.init(this, mUserService);
@@ -482,11 +517,13 @@ public class CarPowerManagementService extends ICarPower.Stub implements
                 mCarPowerPolicyDaemon = null;
             }
             mHandler.cancelAll();
-            mListenersWeAreWaitingFor.clear();
         }
+        mListenerCompletionTracker.clearPendingListeners();
+        mListenerNotifier.release();
         mSystemInterface.stopDisplayStateMonitoring();
         mPowerManagerListeners.kill();
         mPowerPolicyListeners.kill();
+        mPowerPolicyListenerIndex.clear();
         forEachDisplay(mContext, mSystemInterface::releaseAllWakeLocks);
     }
 
@@ -517,7 +554,6 @@ public class CarPowerManagementService extends ICarPower.Stub implements
             writer.printf("# of power policy change listener: %d\n",
                     mPowerPolicyListeners.getRegisteredCallbackCount());
             writer.printf("mFactoryResetCallback: %s\n", mFactoryResetCallback);
-            writer.printf("mIsListenerWaitingCancelled: %b\n", mIsListenerWaitingCancelled.get());
             writer.printf("kernel support S2R: %b\n",
                     mSystemInterface.isSystemSupportingDeepSleep());
             writer.printf("kernel support S2D: %b\n",
@@ -534,6 +570,10 @@ public class CarPowerManagementService extends ICarPower.Stub implements
             writer.printf("mFreeMemoryBeforeSuspend: %b\n", mFreeMemoryBeforeSuspend);
         }
 
+        mListenerNotifier.dump(writer);
+        mPowerPolicyListenerIndex.dump(writer);
+        mTransitionProfiler.dump(writer);
+        mListenerCompletionTracker.dump(writer);
         mPolicyReader.dump(writer);
         mPowerComponentHandler.dump(writer);
         mSilentModeHandler.dump(writer);
@@ -578,8 +618,6 @@ public class CarPowerManagementService extends ICarPower.Stub implements
                     mPowerPolicyListeners.getRegisteredCallbackCount());
             proto.write(CarPowerDumpProto.FACTORY_RESET_CALLBACK,
                     mFactoryResetCallback != null ? mFactoryResetCallback.toString() : "");
-            proto.write(CarPowerDumpProto.IS_LISTENER_WAITING_CANCELLED,
-                    mIsListenerWaitingCancelled.get());
             proto.write(CarPowerDumpProto.KERNEL_SUPPORTS_DEEP_SLEEP,
                     mSystemInterface.isSystemSupportingDeepSleep());
             proto.write(CarPowerDumpProto.KERNEL_SUPPORTS_HIBERNATION,
@@ -598,6 +636,7 @@ public class CarPowerManagementService extends ICarPower.Stub implements
         mPowerComponentHandler.dumpProto(proto);
         mSilentModeHandler.dumpProto(proto);
         mScreenOffHandler.dumpProto(proto);
+        mTransitionProfiler.dumpProto(proto);
     }
 
     @Override
@@ -713,6 +752,15 @@ public class CarPowerManagementService extends ICarPower.Stub implements
         Slogf.i(TAG, "setCurrentState %s", newState);
         CarStatsLogHelper.logPowerState(newState.mState);
         EventLogHelper.writeCarPowerManagerStateChange(newState.mState);
+        mTransitionProfiler.startTransition(newState.name());
+        try {
+            handleNewPowerState(newState, prevState);
+        } finally {
+            mTransitionProfiler.finishTransition();
+        }
+    }
+
+    private void handleNewPowerState(CpmsState newState, CpmsState prevState) {
         switch (newState.mState) {
             case CpmsState.WAIT_FOR_VHAL:
                 handleWaitForVhal(newState);
@@ -812,8 +860,11 @@ public class CarPowerManagementService extends ICarPower.Stub implements
                 state.mCarPowerStateListenerState;
         // TODO(b/177478420): Restore Wifi, Audio, Location, and Bluetooth, if they are artificially
         // modified for S2R.
+        mTransitionProfiler.traceBegin("query silent mode");
         mSilentModeHandler.querySilentModeHwState();
+        mTransitionProfiler.traceEnd();
 
+        mTransitionProfiler.traceBegin("apply power policy");
         if (mFeatureFlags.carPowerPolicyRefactoring()) {
             notifyPowerStateChangeToDaemon(CarPowerManager.STATE_WAIT_FOR_VHAL);
         } else {
@@ -823,10 +874,12 @@ public class CarPowerManagementService extends ICarPower.Stub implements
                 cancelPreemptivePowerPolicy();
             }
         }
+        mTransitionProfiler.traceEnd();
 
         sendPowerManagerEvent(carPowerStateListenerState, INVALID_TIMEOUT);
         // Inspect CarPowerStateListenerState to decide which message to send via VHAL
         int lastShutdownState = CarRemoteAccessManager.NEXT_POWER_STATE_OFF;
+        mTransitionProfiler.traceBegin("report to VHAL");
         switch (carPowerStateListenerState) {
             case CarPowerManager.STATE_WAIT_FOR_VHAL:
                 lastShutdownState = CarRemoteAccessManager.NEXT_POWER_STATE_OFF;
@@ -853,11 +906,14 @@ public class CarPowerManagementService extends ICarPower.Stub implements
                         carPowerStateListenerState);
                 break;
         }
+        mTransitionProfiler.traceEnd();
         synchronized (mLock) {
             mLastShutdownState = lastShutdownState;
         }
         if (mWifiAdjustmentForSuspend) {
+            mTransitionProfiler.traceBegin("restore wifi");
             restoreWifiFully();
+            mTransitionProfiler.traceEnd();
         }
     }
 
@@ -894,6 +950,7 @@ public class CarPowerManagementService extends ICarPower.Stub implements
             updateCarUserNoticeServiceIfNecessary();
         }
 
+        mTransitionProfiler.traceBegin("apply power policy");
         if (mFeatureFlags.carPowerPolicyRefactoring()) {
             notifyPowerStateChangeToDaemon(CarPowerManager.STATE_ON);
         } else {
@@ -903,10 +960,13 @@ public class CarPowerManagementService extends ICarPower.Stub implements
             applyDefaultPowerPolicyForState(VehicleApPowerStateReport.ON,
                     PolicyReader.POWER_POLICY_ID_ALL_ON);
         }
+        mTransitionProfiler.traceEnd();
 
         sendPowerManagerEvent(CarPowerManager.STATE_ON, INVALID_TIMEOUT);
 
+        mTransitionProfiler.traceBegin("report to VHAL");
         mHal.sendOn();
+        mTransitionProfiler.traceEnd();
 
         synchronized (mLock) {
             if (!mShouldResumeUserService) {
@@ -917,10 +977,13 @@ public class CarPowerManagementService extends ICarPower.Stub implements
             }
         }
 
+        mTransitionProfiler.traceBegin("resume user service");
         try {
             mUserService.onResume();
         } catch (Exception e) {
             Slogf.e(TAG, e, "Could not switch user on resume");
+        } finally {
+            mTransitionProfiler.traceEnd();
         }
     }
 
@@ -1006,11 +1069,7 @@ public class CarPowerManagementService extends ICarPower.Stub implements
                     clearWaitingForCompletion(/*clearQueue=*/true);
                 } else if (prevState.mCarPowerStateListenerState == STATE_PRE_SHUTDOWN_PREPARE) {
                     // Update of state occurred while in PRE_SHUTDOWN_PREPARE
-                    boolean areListenersEmpty;
-                    synchronized (mLock) {
-                        areListenersEmpty = mListenersWeAreWaitingFor.isEmpty();
-                    }
-                    if (areListenersEmpty) {
+                    if (!mListenerCompletionTracker.hasPendingListeners()) {
                         handleCoreShutdownPrepare();
                     } else {
                         // PRE_SHUTDOWN_PREPARE is still being processed, no actions required
@@ -1367,86 +1426,37 @@ public class CarPowerManagementService extends ICarPower.Stub implements
 
     private void waitForCompletion(Runnable taskAtCompletion, Runnable taskAtInterval,
             long timeoutMs, long intervalMs) {
-        boolean isComplete = false;
-        synchronized (mLock) {
-            isComplete = mListenersWeAreWaitingFor.isEmpty();
-        }
-        if (isComplete) {
+        if (!mListenerCompletionTracker.hasPendingListeners()) {
             taskAtCompletion.run();
         } else {
-            // Reset a flag to signal that waiting for completion is cancelled.
-            mIsListenerWaitingCancelled.set(false);
-            waitForCompletionAsync(taskAtCompletion, taskAtInterval, timeoutMs, intervalMs);
+            // If {@code intervalMs} is non-positive value, it is ignored and the task at
+            // completion runs once all listeners complete or after {@code timeoutMs}.
+            mListenerCompletionTracker.waitForCompletion(taskAtCompletion, taskAtInterval,
+                    timeoutMs, intervalMs);
         }
     }
 
-    // Waits for listeners to complete.
-    // If {@code intervalMs} is non-positive value, it is ignored and the method waits up to
-    // {@code timeoutMs}.
-    private void waitForCompletionAsync(Runnable taskAtCompletion, Runnable taskAtInterval,
-            long timeoutMs, long intervalMs) {
-        ExecutorService executor = Executors.newSingleThreadExecutor();
-        executor.submit(() -> {
-            long startTimeMs = SystemClock.elapsedRealtime();
-            while (true) {
-                try {
-                    long waitTimeMs = timeoutMs - (SystemClock.elapsedRealtime() - startTimeMs);
-                    boolean isLastWait = true;
-                    if (intervalMs > 0 && waitTimeMs > intervalMs) {
-                        isLastWait = false;
-                        waitTimeMs = intervalMs;
-                    }
-                    boolean isNotified = mListenerCompletionSem.tryAcquire(waitTimeMs,
-                            TimeUnit.MILLISECONDS);
-                    mListenerCompletionSem.drainPermits();
-                    if (!isNotified) {
-                        if (isLastWait) {
-                            Slogf.w(TAG, "Waiting for listener completion is timeout(%d)",
-                                    waitTimeMs);
-                            taskAtCompletion.run();
-                            return;
-                        } else if (taskAtInterval != null) {
-                            taskAtInterval.run();
-                        }
-                    }
-                    boolean isComplete = false;
-                    synchronized (mLock) {
-                        if (mIsListenerWaitingCancelled.get()) {
-                            Slogf.i(TAG, "Waiting for listener completion is cancelled");
-                            mIsListenerWaitingCancelled.set(false);
-                            return;
-                        }
-                        isComplete = mListenersWeAreWaitingFor.isEmpty();
-                    }
-                    if (isComplete) {
-                        Slogf.i(TAG, "All listeners completed");
-                        taskAtCompletion.run();
-                        mIsListenerWaitingCancelled.set(false);
-                        return;
-                    }
-                } catch (InterruptedException e) {
-                    Slogf.w(TAG, e, "Thread interrupted while waiting for listener completion");
-                    Thread.currentThread().interrupt();
-                }
-            }
-        });
-        executor.shutdown();
-    }
-
     private void clearWaitingForCompletion(boolean clearQueue) {
         if (clearQueue) {
-            synchronized (mLock) {
-                mListenersWeAreWaitingFor.clear();
-            }
+            // Completes the waits, as no listener is pending anymore.
+            mListenerCompletionTracker.clearPendingListeners();
         } else {
-            mIsListenerWaitingCancelled.set(true);
+            mListenerCompletionTracker.cancelWaits();
         }
-
-        mListenerCompletionSem.release();
     }
 
     private void sendPowerManagerEvent(@CarPowerManager.CarPowerState int newState,
             long timeoutMs) {
+        mTransitionProfiler.traceBegin("notify listeners of " + powerStateToString(newState));
+        try {
+            broadcastPowerManagerEvent(newState, timeoutMs);
+        } finally {
+            mTransitionProfiler.traceEnd();
+        }
+    }
+
+    private void broadcastPowerManagerEvent(@CarPowerManager.CarPowerState int newState,
+            long timeoutMs) {
         // Broadcasts to the listeners that do not signal completion.
         notifyListeners(mPowerManagerListeners, newState, INVALID_TIMEOUT);
 
@@ -1455,7 +1465,7 @@ public class CarPowerManagementService extends ICarPower.Stub implements
         long internalListenerExpirationTimeMs = INVALID_TIMEOUT;
         long binderListenerExpirationTimeMs = INVALID_TIMEOUT;
 
-        // Fully populates mListenersWeAreWaitingFor before calling any onStateChanged()
+        // Fully populates mListenerCompletionTracker before calling any onStateChanged()
         // for the listeners that signal completion.
         // Otherwise, if the first listener calls finish() synchronously, we will
         // see the list go empty and we will think that we are done.
@@ -1480,12 +1490,13 @@ public class CarPowerManagementService extends ICarPower.Stub implements
                 mStateForCompletion = CarPowerManager.STATE_INVALID;
             }
 
-            mListenersWeAreWaitingFor.clear();
+            mListenerCompletionTracker.startRound(powerStateToString(newState));
             for (int i = 0; i < mInternalPowerListeners.size(); i++) {
                 ICarPowerStateListener listener = mInternalPowerListeners.get(i);
                 completingInternalListeners.register(listener);
                 if (allowCompletion) {
-                    mListenersWeAreWaitingFor.add(listener.asBinder());
+                    mListenerCompletionTracker.addPendingListener(listener.asBinder(),
+                            listener.getClass().getName());
                 }
             }
             mBroadcastHandler.post(() -> {
@@ -1496,16 +1507,15 @@ public class CarPowerManagementService extends ICarPower.Stub implements
                     completingBinderListeners.register(listener);
                     // For binder listeners, listener completion is not allowed for SHUTDOWN_PREPARE
                     if (allowCompletion && !isShutdownPrepare) {
-                        synchronized (mLock) {
-                            mListenersWeAreWaitingFor.add(listener.asBinder());
-                        }
+                        Object cookie = mPowerManagerListenersWithCompletion.getBroadcastCookie(
+                                idx);
+                        mListenerCompletionTracker.addPendingListener(listener.asBinder(),
+                                cookie == null ? listener.asBinder().toString() : "uid " + cookie);
                     }
                 }
                 mPowerManagerListenersWithCompletion.finishBroadcast();
             });
         }
-        // Resets the semaphore's available permits to 0.
-        mListenerCompletionSem.drainPermits();
         // Broadcasts to the listeners that DO signal completion.
         notifyListeners(completingInternalListeners, newState, internalListenerExpirationTimeMs);
         notifyListeners(completingBinderListeners, newState, binderListenerExpirationTimeMs);
@@ -1520,16 +1530,19 @@ public class CarPowerManagementService extends ICarPower.Stub implements
         CountDownLatch listenerLatch = new CountDownLatch(1);
         mBroadcastHandler.post(() -> {
             int idx = listenerList.beginBroadcast();
+            List<ICarPowerStateListener> listeners = new ArrayList<>(idx);
+            List<String> descriptions = new ArrayList<>(idx);
             while (idx-- > 0) {
                 ICarPowerStateListener listener = listenerList.getBroadcastItem(idx);
-                try {
-                    listener.onStateChanged(newState, expirationTimeMs);
-                } catch (RemoteException e) {
-                    // It's likely the connection snapped. Let binder death handle the situation.
-                    Slogf.e(TAG, e, "onStateChanged() call failed");
-                }
+                Object cookie = listenerList.getBroadcastCookie(idx);
+                listeners.add(listener);
+                descriptions.add(cookie != null ? "uid " + cookie
+                        : listener.asBinder() instanceof Binder ? listener.getClass().getName()
+                        : listener.asBinder().toString());
             }
             listenerList.finishBroadcast();
+            mListenerNotifier.notifyListeners(listeners, descriptions, newState,
+                    expirationTimeMs, DEFAULT_COMPLETION_WAIT_TIMEOUT);
             listenerLatch.countDown();
         });
         try {
@@ -1763,7 +1776,7 @@ public class CarPowerManagementService extends ICarPower.Stub implements
             found = mInternalPowerListeners.remove(listener);
         }
         if (found) {
-            removeListenerFromWaitingList(listener.asBinder());
+            mListenerCompletionTracker.removePendingListener(listener.asBinder());
         }
     }
 
@@ -1782,7 +1795,8 @@ public class CarPowerManagementService extends ICarPower.Stub implements
     @Override
     public void registerListener(ICarPowerStateListener listener) {
         CarServiceUtils.assertPermission(mContext, Car.PERMISSION_CAR_POWER);
-        mPowerManagerListeners.register(listener);
+        // The calling uid identifies the slowest listeners in dumps.
+        mPowerManagerListeners.register(listener, Binder.getCallingUid());
     }
 
     // Binder interface for Car services only.
@@ -1791,7 +1805,8 @@ public class CarPowerManagementService extends ICarPower.Stub implements
     public void registerListenerWithCompletion(ICarPowerStateListener listener) {
         CarServiceUtils.assertPermission(mContext, Car.PERMISSION_CONTROL_SHUTDOWN_PROCESS);
 
-        mPowerManagerListenersWithCompletion.register(listener);
+        // The calling uid identifies the slowest listeners in dumps.
+        mPowerManagerListenersWithCompletion.register(listener, Binder.getCallingUid());
         // TODO: Need to send current state to newly registered listener? If so, need to handle
         //       completion for SHUTDOWN_PREPARE state
     }
@@ -1935,7 +1950,9 @@ public class CarPowerManagementService extends ICarPower.Stub implements
     public void addPowerPolicyListener(CarPowerPolicyFilter filter,
             ICarPowerPolicyListener listener) {
         CarServiceUtils.assertPermission(mContext, Car.PERMISSION_READ_CAR_POWER_POLICY);
-        mPowerPolicyListeners.register(listener, filter);
+        if (mPowerPolicyListeners.register(listener, filter)) {
+            mPowerPolicyListenerIndex.addListener(listener, filter);
+        }
     }
 
     /**
@@ -1945,6 +1962,7 @@ public class CarPowerManagementService extends ICarPower.Stub implements
     public void removePowerPolicyListener(ICarPowerPolicyListener listener) {
         CarServiceUtils.assertPermission(mContext, Car.PERMISSION_READ_CAR_POWER_POLICY);
         mPowerPolicyListeners.unregister(listener);
+        mPowerPolicyListenerIndex.removeListener(listener);
     }
 
     /**
@@ -1994,7 +2012,7 @@ public class CarPowerManagementService extends ICarPower.Stub implements
                 return;
             }
         }
-        removeListenerFromWaitingList(listener.asBinder());
+        mListenerCompletionTracker.onListenerCompleted(listener.asBinder());
     }
 
 
@@ -2003,18 +2021,10 @@ public class CarPowerManagementService extends ICarPower.Stub implements
         boolean found = mPowerManagerListenersWithCompletion.unregister(listener);
         if (found) {
             // Remove this from the completion list (if it's there)
-            removeListenerFromWaitingList(listener.asBinder());
+            mListenerCompletionTracker.removePendingListener(listener.asBinder());
         }
     }
 
-    private void removeListenerFromWaitingList(IBinder binderListener) {
-        synchronized (mLock) {
-            mListenersWeAreWaitingFor.remove(binderListener);
-        }
-        // Signals a thread to check if all listeners complete.
-        mListenerCompletionSem.release();
-    }
-
     private void finishShutdownPrepare() {
         boolean shouldHandleProcessingComplete = false;
         synchronized (mLock) {
@@ -2530,23 +2540,19 @@ public class CarPowerManagementService extends ICarPower.Stub implements
             Slogf.wtf(TAG, "The new power policy(%s) should exist", policyId);
         }
         mBroadcastHandler.post(() -> {
-            int idx = mPowerPolicyListeners.beginBroadcast();
-
-            while (idx-- > 0) {
-                ICarPowerPolicyListener listener = mPowerPolicyListeners.getBroadcastItem(idx);
-                CarPowerPolicyFilter filter =
-                        (CarPowerPolicyFilter) mPowerPolicyListeners.getBroadcastCookie(idx);
-                if (!mPowerComponentHandler.isComponentChanged(filter)) {
-                    continue;
-                }
+            long startTimeMs = SystemClock.uptimeMillis();
+            List<ICarPowerPolicyListener> listeners = mPowerPolicyListenerIndex.getListeners(
+                    mPowerComponentHandler.getLastModifiedComponents());
+            for (int i = 0; i < listeners.size(); i++) {
                 try {
-                    listener.onPolicyChanged(appliedPolicy, accumulatedPolicy);
+                    listeners.get(i).onPolicyChanged(appliedPolicy, accumulatedPolicy);
                 } catch (RemoteException e) {
                     // It's likely the connection snapped. Let binder death handle the situation.
                     Slogf.e(TAG, e, "onPolicyChanged() call failed: policyId = %s", policyId);
                 }
             }
-            mPowerPolicyListeners.finishBroadcast();
+            mPowerPolicyListenerIndex.recordDispatch(listeners.size(),
+                    SystemClock.uptimeMillis() - startTimeMs);
         });
     }
 
@@ -3439,6 +3445,14 @@ public class CarPowerManagementService extends ICarPower.Stub implements
         mSilentModeHandler.dump(writer);
     }
 
+    /**
+     * Dumps how long each step of the last power state transitions took.
+     */
+    @ExcludeFromCodeCoverageGeneratedReport(reason = DUMP_INFO)
+    public void dumpPowerTransitions(IndentingPrintWriter writer) {
+        mTransitionProfiler.dump(writer);
+    }
+
     /**
      * Returns whether a listener completion is allowed for the given state.
      *
@@ -0,0 +1,300 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.car.power;
+
+import static com.android.car.internal.ExcludeFromCodeCoverageGeneratedReport.DUMP_INFO;
+
+import android.annotation.Nullable;
+import android.car.builtin.util.Slogf;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.SystemClock;
+import android.util.ArrayMap;
+
+import com.android.car.CarLog;
+import com.android.car.internal.ExcludeFromCodeCoverageGeneratedReport;
+import com.android.car.internal.util.IndentingPrintWriter;
+import com.android.internal.annotations.GuardedBy;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Tracks the power state listeners that must signal completion of a power state change.
+ *
+ * <p>A wait completes as soon as the last pending listener completes, or when its timeout
+ * expires. Timeouts share a single handler, so that no thread is created per power state change.
+ * The tasks run at completion and at each interval can block, so they are run on a separate
+ * executor and never delay the timeouts of the other waits.
+ *
+ * <p>The time each listener took to complete is kept for the last few power state changes.
+ */
+final class ListenerCompletionTracker {
+
+    private static final String TAG = CarLog.tagFor(CarPowerManagementService.class);
+
+    private static final int MAX_TRACKED_ROUNDS = 5;
+    private static final int MAX_DUMPED_LISTENERS_PER_ROUND = 3;
+
+    private final Object mLock = new Object();
+    private final Handler mTimeoutHandler;
+    private final Executor mTaskExecutor;
+
+    @GuardedBy("mLock")
+    private final ArrayMap<IBinder, String> mPendingListeners = new ArrayMap<>();
+    @GuardedBy("mLock")
+    private final List<Wait> mWaits = new ArrayList<>();
+    @GuardedBy("mLock")
+    private final ArrayDeque<Round> mRounds = new ArrayDeque<>(MAX_TRACKED_ROUNDS);
+    @GuardedBy("mLock")
+    @Nullable
+    private Round mCurrentRound;
+
+    /**
+     * @param timeoutHandler handler running the timeouts, which must not block
+     * @param taskExecutor   executor running the tasks run at completion and at each interval
+     */
+    ListenerCompletionTracker(Handler timeoutHandler, Executor taskExecutor) {
+        mTimeoutHandler = timeoutHandler;
+        mTaskExecutor = taskExecutor;
+    }
+
+    /** Starts tracking the listeners of a new power state, forgetting the pending listeners. */
+    void startRound(String powerState) {
+        synchronized (mLock) {
+            mPendingListeners.clear();
+            mCurrentRound = new Round(powerState, SystemClock.elapsedRealtime());
+            if (mRounds.size() == MAX_TRACKED_ROUNDS) {
+                mRounds.removeFirst();
+            }
+            mRounds.addLast(mCurrentRound);
+        }
+    }
+
+    /** Adds a listener that must complete the current power state change. */
+    void addPendingListener(IBinder listener, String description) {
+        synchronized (mLock) {
+            mPendingListeners.put(listener, description);
+        }
+    }
+
+    boolean hasPendingListeners() {
+        synchronized (mLock) {
+            return !mPendingListeners.isEmpty();
+        }
+    }
+
+    /**
+     * Records that a listener completed, and completes the waits if it was the last pending
+     * listener.
+     */
+    void onListenerCompleted(IBinder listener) {
+        synchronized (mLock) {
+            String description = mPendingListeners.remove(listener);
+            if (description != null && mCurrentRound != null) {
+                mCurrentRound.mCompletions.add(new Completion(description,
+                        SystemClock.elapsedRealtime() - mCurrentRound.mStartTimeMs));
+            }
+            completeWaitsIfDoneLocked();
+        }
+    }
+
+    /** Stops waiting for a listener that went away, e.g. was unregistered. */
+    void removePendingListener(IBinder listener) {
+        synchronized (mLock) {
+            mPendingListeners.remove(listener);
+            completeWaitsIfDoneLocked();
+        }
+    }
+
+    /** Stops waiting for all listeners, which completes the waits. */
+    void clearPendingListeners() {
+        synchronized (mLock) {
+            mPendingListeners.clear();
+            completeWaitsIfDoneLocked();
+        }
+    }
+
+    /** Cancels the waits, without running their tasks. */
+    void cancelWaits() {
+        synchronized (mLock) {
+            if (!mWaits.isEmpty()) {
+                Slogf.i(TAG, "Waiting for listener completion is cancelled");
+            }
+            for (int i = 0; i < mWaits.size(); i++) {
+                Wait wait = mWaits.get(i);
+                wait.stopTimersLocked();
+                wait.mFuture.cancel(/* mayInterruptIfRunning= */ false);
+            }
+            mWaits.clear();
+        }
+    }
+
+    /**
+     * Runs {@code taskAtCompletion} once no listener is pending, or after {@code timeoutMs}.
+     *
+     * <p>If {@code intervalMs} is positive, {@code taskAtInterval} is run every
+     * {@code intervalMs} while waiting.
+     *
+     * @return a future completed with {@code true} when all listeners completed, {@code false}
+     *         on timeout, or cancelled by {@link #cancelWaits()}
+     */
+    CompletableFuture<Boolean> waitForCompletion(Runnable taskAtCompletion,
+            @Nullable Runnable taskAtInterval, long timeoutMs, long intervalMs) {
+        synchronized (mLock) {
+            Wait wait = new Wait(taskAtCompletion, taskAtInterval, timeoutMs, intervalMs);
+            if (mPendingListeners.isEmpty()) {
+                finishLocked(wait, /* allCompleted= */ true);
+                return wait.mFuture;
+            }
+            mWaits.add(wait);
+            mTimeoutHandler.postDelayed(wait.mTimeoutRunnable, timeoutMs);
+            if (intervalMs > 0 && taskAtInterval != null) {
+                mTimeoutHandler.postDelayed(wait.mIntervalRunnable, intervalMs);
+            }
+            return wait.mFuture;
+        }
+    }
+
+    @ExcludeFromCodeCoverageGeneratedReport(reason = DUMP_INFO)
+    void dump(IndentingPrintWriter writer) {
+        synchronized (mLock) {
+            writer.println("Listener completion:");
+            writer.increaseIndent();
+            writer.printf("pending listeners: %d, active waits: %d\n", mPendingListeners.size(),
+                    mWaits.size());
+            List<String> noPendingListeners = new ArrayList<>();
+            for (Round round : mRounds) {
+                round.dump(writer, round == mCurrentRound ? new ArrayList<>(
+                        mPendingListeners.values()) : noPendingListeners);
+            }
+            writer.decreaseIndent();
+        }
+    }
+
+    @GuardedBy("mLock")
+    private void completeWaitsIfDoneLocked() {
+        if (!mPendingListeners.isEmpty() || mWaits.isEmpty()) {
+            return;
+        }
+        Slogf.i(TAG, "All listeners completed");
+        for (int i = 0; i < mWaits.size(); i++) {
+            finishLocked(mWaits.get(i), /* allCompleted= */ true);
+        }
+        mWaits.clear();
+    }
+
+    @GuardedBy("mLock")
+    private void finishLocked(Wait wait, boolean allCompleted) {
+        wait.stopTimersLocked();
+        if (mCurrentRound != null) {
+            mCurrentRound.mTimedOut |= !allCompleted;
+        }
+        mTaskExecutor.execute(() -> {
+            wait.mTaskAtCompletion.run();
+            wait.mFuture.complete(allCompleted);
+        });
+    }
+
+    private final class Wait {
+        final Runnable mTaskAtCompletion;
+        @Nullable
+        final Runnable mTaskAtInterval;
+        final long mTimeoutMs;
+        final long mIntervalMs;
+        final CompletableFuture<Boolean> mFuture = new CompletableFuture<>();
+        final Runnable mTimeoutRunnable = this::onTimeout;
+        final Runnable mIntervalRunnable = this::onInterval;
+
+        Wait(Runnable taskAtCompletion, @Nullable Runnable taskAtInterval, long timeoutMs,
+                long intervalMs) {
+            mTaskAtCompletion = taskAtCompletion;
+            mTaskAtInterval = taskAtInterval;
+            mTimeoutMs = timeoutMs;
+            mIntervalMs = intervalMs;
+        }
+
+        @GuardedBy("mLock")
+        void stopTimersLocked() {
+            mTimeoutHandler.removeCallbacks(mTimeoutRunnable);
+            mTimeoutHandler.removeCallbacks(mIntervalRunnable);
+        }
+
+        private void onTimeout() {
+            synchronized (mLock) {
+                if (!mWaits.remove(this)) {
+                    return;
+                }
+                Slogf.w(TAG, "Waiting for listener completion is timeout(%d), %d listeners did"
+                        + " not complete", mTimeoutMs, mPendingListeners.size());
+                finishLocked(this, /* allCompleted= */ false);
+            }
+        }
+
+        private void onInterval() {
+            synchronized (mLock) {
+                if (!mWaits.contains(this)) {
+                    return;
+                }
+                mTimeoutHandler.postDelayed(mIntervalRunnable, mIntervalMs);
+            }
+            mTaskExecutor.execute(mTaskAtInterval);
+        }
+    }
+
+    private static final class Completion {
+        final String mDescription;
+        final long mDurationMs;
+
+        Completion(String description, long durationMs) {
+            mDescription = description;
+            mDurationMs = durationMs;
+        }
+    }
+
+    private static final class Round {
+        final String mPowerState;
+        final long mStartTimeMs;
+        final List<Completion> mCompletions = new ArrayList<>();
+        boolean mTimedOut;
+
+        Round(String powerState, long startTimeMs) {
+            mPowerState = powerState;
+            mStartTimeMs = startTimeMs;
+        }
+
+        @ExcludeFromCodeCoverageGeneratedReport(reason = DUMP_INFO)
+        void dump(IndentingPrintWriter writer, List<String> pendingListeners) {
+            writer.printf("%s at %d: %d completed, %d pending%s\n", mPowerState, mStartTimeMs,
+                    mCompletions.size(), pendingListeners.size(), mTimedOut ? ", timed out" : "");
+            writer.increaseIndent();
+            for (int i = 0; i < pendingListeners.size(); i++) {
+                writer.printf("%s: pending\n", pendingListeners.get(i));
+            }
+            // Completions are recorded in order, so the slowest listeners are the last ones.
+            for (int i = mCompletions.size() - 1;
+                    i >= Math.max(0, mCompletions.size() - MAX_DUMPED_LISTENERS_PER_ROUND); i--) {
+                Completion completion = mCompletions.get(i);
+                writer.printf("%s: %d ms\n", completion.mDescription, completion.mDurationMs);
+            }
+            writer.decreaseIndent();
+        }
+    }
+}
@@ -40,6 +40,7 @@ import android.car.hardware.power.PowerComponent;
 import android.hardware.automotive.vehicle.VehicleApPowerStateReport;
 import android.util.ArrayMap;
 import android.util.ArraySet;
+import android.util.AtomicFile;
 import android.util.Log;
 import android.util.SparseArray;
 import android.util.SparseBooleanArray;
@@ -62,9 +63,21 @@ import com.android.internal.annotations.VisibleForTesting;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -123,6 +136,9 @@ public final class PolicyReader {
     private static final String POWER_ONOFF_ON = "on";
     private static final String POWER_ONOFF_OFF = "off";
     private static final String POWER_ONOFF_UNTOUCHED = "untouched";
+    // Must be increased whenever the format of the compiled policies file changes. Changes of the
+    // parsing or of the system policies are covered by the car service build in the digest.
+    private static final int COMPILED_POLICIES_VERSION = 1;
 
     private static final int[] ALL_COMPONENTS;
     private static final int[] NO_COMPONENTS = EMPTY_INT_ARRAY;
@@ -179,6 +195,9 @@ public final class PolicyReader {
     // TODO(b/286303350): remove once power policy refactor complete
     private String mDefaultPolicyGroupId;
     private ArrayMap<String, Integer> mCustomComponents = new ArrayMap<>();
+    @Nullable
+    private AtomicFile mCompiledPoliciesFile;
+    private String mCarServiceBuild = "";
 
     /**
      * Gets {@code CarPowerPolicy} corresponding to the given policy ID.
@@ -235,6 +254,22 @@ public final class PolicyReader {
         return mDefaultPolicyGroupId;
     }
 
+    /**
+     * Initializes the power policies like {@link #init(FeatureFlags)}, but reuses the policies
+     * compiled from the same vendor power policy XML file at a previous boot, if any.
+     *
+     * @param compiledPoliciesFile file caching the policies compiled from the vendor file, keyed
+     *                             by the hash of its content and of {@code carServiceBuild}
+     * @param carServiceBuild      identifies the build of the platform and of car service, so
+     *                             that the policies are compiled again after an update
+     */
+    void init(FeatureFlags featureFlags, @Nullable AtomicFile compiledPoliciesFile,
+            String carServiceBuild) {
+        mCompiledPoliciesFile = compiledPoliciesFile;
+        mCarServiceBuild = carServiceBuild;
+        init(featureFlags);
+    }
+
     void init(FeatureFlags fakeFeatureFlags) {
         mFeatureFlags = fakeFeatureFlags;
         Slogf.d(TAG, "PolicyReader is initializing, carPowerPolicyRefactoring = "
@@ -459,6 +494,15 @@ public final class PolicyReader {
     }
 
     private void readPowerPolicyConfiguration() {
+        if (mCompiledPoliciesFile != null) {
+            try {
+                readPowerPolicyWithCache(Files.readAllBytes(Paths.get(VENDOR_POLICY_PATH)));
+            } catch (IOException | XmlPullParserException | PolicyXmlException e) {
+                Slogf.w(TAG, "Proceed without registered policies: failed to parse %s: %s",
+                        VENDOR_POLICY_PATH, e);
+            }
+            return;
+        }
         try (InputStream inputStream = new FileInputStream(VENDOR_POLICY_PATH)) {
             readPowerPolicyFromXml(inputStream);
         } catch (IOException | XmlPullParserException | PolicyXmlException e) {
@@ -467,6 +511,167 @@ public final class PolicyReader {
         }
     }
 
+    /**
+     * Reads the policies compiled from {@code xml} at a previous boot, or parses {@code xml} and
+     * caches the compiled policies if they were not compiled yet, or from a different file.
+     */
+    @VisibleForTesting
+    void readPowerPolicyWithCache(byte[] xml) throws PolicyXmlException,
+            XmlPullParserException, IOException {
+        byte[] digest = getDigest(mCarServiceBuild, xml);
+        if (readCompiledPolicies(digest)) {
+            Slogf.i(TAG, "Read power policies compiled from %s at a previous boot",
+                    VENDOR_POLICY_PATH);
+            return;
+        }
+        readPowerPolicyFromXml(new ByteArrayInputStream(xml));
+        writeCompiledPolicies(digest);
+    }
+
+    private static byte[] getDigest(String carServiceBuild, byte[] content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(carServiceBuild.getBytes(StandardCharsets.UTF_8));
+            // Separates the build from the content, which could start with the same bytes.
+            digest.update((byte) 0);
+            return digest.digest(content);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+
+    private boolean readCompiledPolicies(byte[] digest) {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(mCompiledPoliciesFile.openRead()))) {
+            if (in.readInt() != COMPILED_POLICIES_VERSION) {
+                return false;
+            }
+            byte[] compiledDigest = new byte[readCount(in)];
+            in.readFully(compiledDigest);
+            if (!Arrays.equals(digest, compiledDigest)) {
+                return false;
+            }
+            String defaultPolicyGroupId = in.readBoolean() ? in.readUTF() : null;
+            ArrayMap<String, Integer> customComponents = new ArrayMap<>();
+            for (int i = readCount(in); i > 0; i--) {
+                customComponents.put(in.readUTF(), in.readInt());
+            }
+            ArrayMap<String, CarPowerPolicy> registeredPolicies = readCompiledPolicyMap(in);
+            ArrayMap<String, SparseArray<String>> policyGroups = new ArrayMap<>();
+            for (int i = readCount(in); i > 0; i--) {
+                String groupId = in.readUTF();
+                SparseArray<String> group = new SparseArray<>();
+                for (int j = readCount(in); j > 0; j--) {
+                    group.put(in.readInt(), in.readUTF());
+                }
+                policyGroups.put(groupId, group);
+            }
+            ArrayMap<String, CarPowerPolicy> preemptivePolicies = readCompiledPolicyMap(in);
+
+            mDefaultPolicyGroupId = defaultPolicyGroupId;
+            mCustomComponents = customComponents;
+            mRegisteredPowerPolicies = registeredPolicies;
+            registerBasicPowerPolicies();
+            mPolicyGroups = policyGroups;
+            mPreemptivePowerPolicies = preemptivePolicies;
+            return true;
+        } catch (FileNotFoundException e) {
+            return false;
+        } catch (IOException e) {
+            Slogf.w(TAG, "Failed to read compiled power policies, parsing %s instead: %s",
+                    VENDOR_POLICY_PATH, e);
+            return false;
+        }
+    }
+
+    private void writeCompiledPolicies(byte[] digest) {
+        FileOutputStream fos;
+        try {
+            fos = mCompiledPoliciesFile.startWrite();
+        } catch (IOException e) {
+            Slogf.e(TAG, e, "Cannot create %s", mCompiledPoliciesFile);
+            return;
+        }
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+            out.writeInt(COMPILED_POLICIES_VERSION);
+            out.writeInt(digest.length);
+            out.write(digest);
+            out.writeBoolean(mDefaultPolicyGroupId != null);
+            if (mDefaultPolicyGroupId != null) {
+                out.writeUTF(mDefaultPolicyGroupId);
+            }
+            out.writeInt(mCustomComponents.size());
+            for (int i = 0; i < mCustomComponents.size(); i++) {
+                out.writeUTF(mCustomComponents.keyAt(i));
+                out.writeInt(mCustomComponents.valueAt(i));
+            }
+            writeCompiledPolicyMap(out, mRegisteredPowerPolicies);
+            out.writeInt(mPolicyGroups.size());
+            for (int i = 0; i < mPolicyGroups.size(); i++) {
+                out.writeUTF(mPolicyGroups.keyAt(i));
+                SparseArray<String> group = mPolicyGroups.valueAt(i);
+                out.writeInt(group.size());
+                for (int j = 0; j < group.size(); j++) {
+                    out.writeInt(group.keyAt(j));
+                    out.writeUTF(group.valueAt(j));
+                }
+            }
+            writeCompiledPolicyMap(out, mPreemptivePowerPolicies);
+            out.flush();
+            mCompiledPoliciesFile.finishWrite(fos);
+        } catch (IOException e) {
+            mCompiledPoliciesFile.failWrite(fos);
+            Slogf.e(TAG, e, "Writing %s failed", mCompiledPoliciesFile);
+        }
+    }
+
+    private static ArrayMap<String, CarPowerPolicy> readCompiledPolicyMap(DataInputStream in)
+            throws IOException {
+        int size = readCount(in);
+        ArrayMap<String, CarPowerPolicy> policies = new ArrayMap<>(size);
+        for (int i = 0; i < size; i++) {
+            String policyId = in.readUTF();
+            policies.put(policyId, new CarPowerPolicy(policyId, readIntArray(in),
+                    readIntArray(in)));
+        }
+        return policies;
+    }
+
+    private static void writeCompiledPolicyMap(DataOutputStream out,
+            ArrayMap<String, CarPowerPolicy> policies) throws IOException {
+        out.writeInt(policies.size());
+        for (int i = 0; i < policies.size(); i++) {
+            CarPowerPolicy policy = policies.valueAt(i);
+            out.writeUTF(policy.getPolicyId());
+            writeIntArray(out, policy.getEnabledComponents());
+            writeIntArray(out, policy.getDisabledComponents());
+        }
+    }
+
+    private static int[] readIntArray(DataInputStream in) throws IOException {
+        int[] values = new int[readCount(in)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    private static void writeIntArray(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int i = 0; i < values.length; i++) {
+            out.writeInt(values[i]);
+        }
+    }
+
+    private static int readCount(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Invalid count " + count);
+        }
+        return count;
+    }
+
     @VisibleForTesting
     void readPowerPolicyFromXml(InputStream stream) throws PolicyXmlException,
             XmlPullParserException, IOException {
@@ -34,7 +34,6 @@ import android.car.builtin.app.AppOpsManagerHelper;
 import android.car.builtin.app.VoiceInteractionHelper;
 import android.car.builtin.util.Slogf;
 import android.car.hardware.power.CarPowerPolicy;
-import android.car.hardware.power.CarPowerPolicyFilter;
 import android.car.hardware.power.PowerComponent;
 import android.content.Context;
 import android.content.pm.PackageManager;
@@ -97,6 +96,9 @@ public final class PowerComponentHandler {
     //                    accumulated policy, and that will be done by CPPD
     @GuardedBy("mLock")
     private String mCurrentPolicyId = "";
+    @GuardedBy("mLock")
+    @Nullable
+    private PowerTransitionProfiler mTransitionProfiler;
 
     PowerComponentHandler(Context context, SystemInterface systemInterface) {
         this(context, systemInterface, new AtomicFile(new File(systemInterface.getSystemCarDir(),
@@ -111,6 +113,13 @@ public final class PowerComponentHandler {
         mOffComponentsByUserFile = componentStateFile;
     }
 
+    /** Sets the profiler recording how long each component takes to turn on or off. */
+    void setTransitionProfiler(PowerTransitionProfiler profiler) {
+        synchronized (mLock) {
+            mTransitionProfiler = profiler;
+        }
+    }
+
     void init(ArrayMap<String, Integer> customComponents) {
         AppOpsManagerHelper.setTurnScreenOnAllowed(mContext, Process.myUid(),
                 mContext.getOpPackageName(), /* isAllowed= */ true);
@@ -200,15 +209,14 @@ public final class PowerComponentHandler {
         }
     }
 
-    boolean isComponentChanged(CarPowerPolicyFilter filter) {
+    /** Returns the components whose state changed with the last applied power policy. */
+    int[] getLastModifiedComponents() {
         synchronized (mLock) {
-            int[] components = filter.getComponents();
+            int[] components = new int[mLastModifiedComponents.size()];
             for (int i = 0; i < components.length; i++) {
-                if (mLastModifiedComponents.get(components[i], false)) {
-                    return true;
-                }
+                components[i] = mLastModifiedComponents.keyAt(i);
             }
-            return false;
+            return components;
         }
     }
 
@@ -316,7 +324,17 @@ public final class PowerComponentHandler {
         }
 
         if (needPowerChange) {
-            mediator.setEnabled(enabled);
+            if (mTransitionProfiler != null) {
+                mTransitionProfiler.traceBegin(powerComponentToString(component)
+                        + (enabled ? " on" : " off"));
+            }
+            try {
+                mediator.setEnabled(enabled);
+            } finally {
+                if (mTransitionProfiler != null) {
+                    mTransitionProfiler.traceEnd();
+                }
+            }
         }
         return true;
     }
@@ -0,0 +1,274 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.car.power;
+
+import static com.android.car.internal.ExcludeFromCodeCoverageGeneratedReport.DUMP_INFO;
+
+import android.annotation.Nullable;
+import android.car.builtin.util.Slogf;
+import android.car.hardware.power.ICarPowerStateListener;
+import android.os.Binder;
+import android.os.IBinder;
+import android.os.RemoteException;
+import android.os.SystemClock;
+import android.util.ArrayMap;
+
+import com.android.car.CarLog;
+import com.android.car.internal.ExcludeFromCodeCoverageGeneratedReport;
+import com.android.car.internal.util.IndentingPrintWriter;
+import com.android.internal.annotations.GuardedBy;
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calls {@link ICarPowerStateListener#onStateChanged(int, long)} on power state listeners, and
+ * keeps how long each listener took to return.
+ *
+ * <p>The call is oneway for listeners in other processes, but it can still block, e.g. when the
+ * binder buffer of the listener process is full, which delays the listeners notified after it.
+ * With a thread pool, listeners in other processes are notified in parallel and such a listener
+ * only delays itself. Calls to each listener are queued, so a listener that didn't return in
+ * time still receives the power states in order. Listeners in the car service process are
+ * always notified one after the other on the calling thread, as they expect.
+ *
+ * <p>Listeners that take longer than the latency budget are logged and counted in dumps.
+ */
+final class PowerListenerNotifier {
+
+    private static final String TAG = CarLog.tagFor(CarPowerManagementService.class);
+
+    private static final long IDLE_THREAD_KEEP_ALIVE_MS = 60_000;
+    // Listeners are identified by uid or class name, so this is only reached if identifiers
+    // are not stable, e.g. for listeners registered without a uid.
+    private static final int MAX_TRACKED_LISTENERS = 64;
+
+    private final int mThreadPoolSize;
+    private final long mLatencyBudgetMs;
+
+    private final Object mLock = new Object();
+    @GuardedBy("mLock")
+    private final ArrayMap<String, ListenerLatency> mLatencies = new ArrayMap<>();
+    // Created on first use, so that it can be shut down on release and created again.
+    @GuardedBy("mLock")
+    @Nullable
+    private ThreadPoolExecutor mExecutor;
+    // Calls not yet run, for each listener with a call running on mExecutor.
+    @GuardedBy("mLock")
+    private final ArrayMap<IBinder, ArrayDeque<Runnable>> mPendingCalls = new ArrayMap<>();
+
+    /**
+     * @param threadPoolSize  number of threads notifying listeners in parallel, or 0 to notify
+     *                        them one after the other on the calling thread
+     * @param latencyBudgetMs time a listener is expected to return within, or 0 for no budget
+     */
+    PowerListenerNotifier(int threadPoolSize, long latencyBudgetMs) {
+        mThreadPoolSize = Math.max(threadPoolSize, 0);
+        mLatencyBudgetMs = latencyBudgetMs;
+    }
+
+    /**
+     * Notifies {@code listeners} of {@code state}, and returns once they all returned or after
+     * {@code timeoutMs}.
+     *
+     * @param descriptions identifies each listener of {@code listeners} in logs and dumps
+     */
+    void notifyListeners(List<ICarPowerStateListener> listeners, List<String> descriptions,
+            int state, long expirationTimeMs, long timeoutMs) {
+        if (mThreadPoolSize == 0) {
+            for (int i = 0; i < listeners.size(); i++) {
+                notifyListener(listeners.get(i), descriptions.get(i), state, expirationTimeMs);
+            }
+            return;
+        }
+        int numRemoteListeners = 0;
+        for (int i = 0; i < listeners.size(); i++) {
+            if (!isLocal(listeners.get(i))) {
+                numRemoteListeners++;
+            }
+        }
+        CountDownLatch latch = new CountDownLatch(numRemoteListeners);
+        // Listeners in other processes are queued first, so that they are notified while the
+        // local listeners run.
+        for (int i = 0; i < listeners.size(); i++) {
+            ICarPowerStateListener listener = listeners.get(i);
+            if (isLocal(listener)) {
+                continue;
+            }
+            String description = descriptions.get(i);
+            enqueueCall(listener.asBinder(), () -> {
+                try {
+                    notifyListener(listener, description, state, expirationTimeMs);
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+        for (int i = 0; i < listeners.size(); i++) {
+            if (isLocal(listeners.get(i))) {
+                notifyListener(listeners.get(i), descriptions.get(i), state, expirationTimeMs);
+            }
+        }
+        try {
+            if (!latch.await(timeoutMs, TimeUnit.MILLISECONDS)) {
+                Slogf.w(TAG, "%d of %d listeners did not return from onStateChanged(%d) within"
+                        + " %d ms", latch.getCount(), listeners.size(), state, timeoutMs);
+            }
+        } catch (InterruptedException e) {
+            Slogf.w(TAG, e, "Wait for power state listener notification interrupted");
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops the threads notifying listeners in parallel. Calls that didn't start are dropped.
+     */
+    void release() {
+        ThreadPoolExecutor executor;
+        synchronized (mLock) {
+            executor = mExecutor;
+            mExecutor = null;
+            mPendingCalls.clear();
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @VisibleForTesting
+    int getNumOverBudget(String description) {
+        synchronized (mLock) {
+            ListenerLatency latency = mLatencies.get(description);
+            return latency == null ? 0 : latency.mNumOverBudget;
+        }
+    }
+
+    @ExcludeFromCodeCoverageGeneratedReport(reason = DUMP_INFO)
+    void dump(IndentingPrintWriter writer) {
+        synchronized (mLock) {
+            writer.printf("Listener notification: %s, latency budget: %d ms\n",
+                    mThreadPoolSize == 0 ? "serial"
+                            : "parallel on " + mThreadPoolSize + " threads",
+                    mLatencyBudgetMs);
+            writer.increaseIndent();
+            for (int i = 0; i < mLatencies.size(); i++) {
+                ListenerLatency latency = mLatencies.valueAt(i);
+                writer.printf("%s: last %d ms, max %d ms, %d of %d over budget\n",
+                        mLatencies.keyAt(i), latency.mLastMs, latency.mMaxMs,
+                        latency.mNumOverBudget, latency.mNumNotifications);
+            }
+            writer.decreaseIndent();
+        }
+    }
+
+    /**
+     * Runs {@code call} on the thread pool once the previous calls to the same listener ran.
+     */
+    private void enqueueCall(IBinder binder, Runnable call) {
+        synchronized (mLock) {
+            ArrayDeque<Runnable> pendingCalls = mPendingCalls.get(binder);
+            if (pendingCalls != null) {
+                pendingCalls.add(call);
+                return;
+            }
+            mPendingCalls.put(binder, new ArrayDeque<>());
+            getExecutorLocked().execute(() -> runCalls(binder, call));
+        }
+    }
+
+    private void runCalls(IBinder binder, Runnable firstCall) {
+        Runnable call = firstCall;
+        while (call != null) {
+            try {
+                call.run();
+            } catch (RuntimeException e) {
+                // The next calls to the listener must still run.
+                Slogf.e(TAG, e, "onStateChanged() call failed");
+            }
+            synchronized (mLock) {
+                ArrayDeque<Runnable> pendingCalls = mPendingCalls.get(binder);
+                call = pendingCalls == null ? null : pendingCalls.poll();
+                if (call == null) {
+                    mPendingCalls.remove(binder);
+                }
+            }
+        }
+    }
+
+    @GuardedBy("mLock")
+    private ThreadPoolExecutor getExecutorLocked() {
+        if (mExecutor == null) {
+            mExecutor = new ThreadPoolExecutor(mThreadPoolSize, mThreadPoolSize,
+                    IDLE_THREAD_KEEP_ALIVE_MS, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+            // Power state changes are rare, so the threads don't need to outlive a change.
+            mExecutor.allowCoreThreadTimeOut(true);
+        }
+        return mExecutor;
+    }
+
+    private static boolean isLocal(ICarPowerStateListener listener) {
+        return listener.asBinder() instanceof Binder;
+    }
+
+    private void notifyListener(ICarPowerStateListener listener, String description, int state,
+            long expirationTimeMs) {
+        long startTimeMs = SystemClock.uptimeMillis();
+        try {
+            listener.onStateChanged(state, expirationTimeMs);
+        } catch (RemoteException e) {
+            // It's likely the connection snapped. Let binder death handle the situation.
+            Slogf.e(TAG, e, "onStateChanged() call failed");
+        }
+        recordLatency(description, state, SystemClock.uptimeMillis() - startTimeMs);
+    }
+
+    private void recordLatency(String description, int state, long latencyMs) {
+        boolean overBudget = mLatencyBudgetMs > 0 && latencyMs > mLatencyBudgetMs;
+        if (overBudget) {
+            Slogf.w(TAG, "Listener %s took %d ms to handle power state %d, over its %d ms budget",
+                    description, latencyMs, state, mLatencyBudgetMs);
+        }
+        synchronized (mLock) {
+            ListenerLatency latency = mLatencies.get(description);
+            if (latency == null) {
+                if (mLatencies.size() >= MAX_TRACKED_LISTENERS) {
+                    return;
+                }
+                latency = new ListenerLatency();
+                mLatencies.put(description, latency);
+            }
+            latency.mNumNotifications++;
+            latency.mLastMs = latencyMs;
+            latency.mMaxMs = Math.max(latency.mMaxMs, latencyMs);
+            if (overBudget) {
+                latency.mNumOverBudget++;
+            }
+        }
+    }
+
+    private static final class ListenerLatency {
+        int mNumNotifications;
+        int mNumOverBudget;
+        long mLastMs;
+        long mMaxMs;
+    }
+}
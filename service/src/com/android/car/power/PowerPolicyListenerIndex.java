@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.car.power;
+
+import static android.car.hardware.power.PowerComponentUtil.powerComponentToString;
+
+import static com.android.car.internal.ExcludeFromCodeCoverageGeneratedReport.DUMP_INFO;
+
+import android.car.hardware.power.CarPowerPolicyFilter;
+import android.car.hardware.power.ICarPowerPolicyListener;
+import android.os.IBinder;
+import android.util.ArrayMap;
+import android.util.SparseArray;
+
+import com.android.car.internal.ExcludeFromCodeCoverageGeneratedReport;
+import com.android.car.internal.util.IndentingPrintWriter;
+import com.android.internal.annotations.GuardedBy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Indexes the power policy listeners by the power components of their filter, so that a power
+ * policy change only visits the listeners interested in the components that changed.
+ */
+final class PowerPolicyListenerIndex {
+
+    private final Object mLock = new Object();
+    // Listeners whose filter contains the component, by component.
+    @GuardedBy("mLock")
+    private final SparseArray<ArrayMap<IBinder, ICarPowerPolicyListener>> mListenersByComponent =
+            new SparseArray<>();
+    // Components of the filter of each listener, to remove the listener from the index.
+    @GuardedBy("mLock")
+    private final ArrayMap<IBinder, int[]> mComponentsByListener = new ArrayMap<>();
+
+    @GuardedBy("mLock")
+    private int mNumDispatches;
+    @GuardedBy("mLock")
+    private long mNumNotifiedListeners;
+    @GuardedBy("mLock")
+    private long mLastDispatchDurationMs;
+    @GuardedBy("mLock")
+    private long mMaxDispatchDurationMs;
+
+    /** Adds a listener, replacing its filter if it was already added. */
+    void addListener(ICarPowerPolicyListener listener, CarPowerPolicyFilter filter) {
+        IBinder binder = listener.asBinder();
+        int[] components = filter.getComponents();
+        synchronized (mLock) {
+            removeListenerLocked(binder);
+            mComponentsByListener.put(binder, components);
+            for (int i = 0; i < components.length; i++) {
+                ArrayMap<IBinder, ICarPowerPolicyListener> listeners =
+                        mListenersByComponent.get(components[i]);
+                if (listeners == null) {
+                    listeners = new ArrayMap<>();
+                    mListenersByComponent.put(components[i], listeners);
+                }
+                listeners.put(binder, listener);
+            }
+        }
+    }
+
+    void removeListener(ICarPowerPolicyListener listener) {
+        synchronized (mLock) {
+            removeListenerLocked(listener.asBinder());
+        }
+    }
+
+    /** Removes all the listeners and resets the dispatch statistics. */
+    void clear() {
+        synchronized (mLock) {
+            mListenersByComponent.clear();
+            mComponentsByListener.clear();
+            mNumDispatches = 0;
+            mNumNotifiedListeners = 0;
+            mLastDispatchDurationMs = 0;
+            mMaxDispatchDurationMs = 0;
+        }
+    }
+
+    /**
+     * Returns the listeners whose filter contains at least one of {@code changedComponents}, each
+     * listener only once.
+     */
+    List<ICarPowerPolicyListener> getListeners(int[] changedComponents) {
+        synchronized (mLock) {
+            ArrayMap<IBinder, ICarPowerPolicyListener> affected = new ArrayMap<>();
+            for (int i = 0; i < changedComponents.length; i++) {
+                ArrayMap<IBinder, ICarPowerPolicyListener> listeners =
+                        mListenersByComponent.get(changedComponents[i]);
+                if (listeners != null) {
+                    affected.putAll(listeners);
+                }
+            }
+            return new ArrayList<>(affected.values());
+        }
+    }
+
+    /** Records that {@code numListeners} listeners were notified in {@code durationMs}. */
+    void recordDispatch(int numListeners, long durationMs) {
+        synchronized (mLock) {
+            mNumDispatches++;
+            mNumNotifiedListeners += numListeners;
+            mLastDispatchDurationMs = durationMs;
+            mMaxDispatchDurationMs = Math.max(mMaxDispatchDurationMs, durationMs);
+        }
+    }
+
+    @ExcludeFromCodeCoverageGeneratedReport(reason = DUMP_INFO)
+    void dump(IndentingPrintWriter writer) {
+        synchronized (mLock) {
+            writer.println("Power policy listeners by component:");
+            writer.increaseIndent();
+            for (int i = 0; i < mListenersByComponent.size(); i++) {
+                writer.printf("%s: %d\n", powerComponentToString(mListenersByComponent.keyAt(i)),
+                        mListenersByComponent.valueAt(i).size());
+            }
+            writer.printf("%d policy changes notified %d listeners, last took %d ms, max %d ms\n",
+                    mNumDispatches, mNumNotifiedListeners, mLastDispatchDurationMs,
+                    mMaxDispatchDurationMs);
+            writer.decreaseIndent();
+        }
+    }
+
+    @GuardedBy("mLock")
+    private void removeListenerLocked(IBinder binder) {
+        int[] components = mComponentsByListener.remove(binder);
+        if (components == null) {
+            return;
+        }
+        for (int i = 0; i < components.length; i++) {
+            ArrayMap<IBinder, ICarPowerPolicyListener> listeners =
+                    mListenersByComponent.get(components[i]);
+            if (listeners == null) {
+                continue;
+            }
+            listeners.remove(binder);
+            if (listeners.isEmpty()) {
+                mListenersByComponent.remove(components[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.car.power;
+
+import static com.android.car.internal.ExcludeFromCodeCoverageGeneratedReport.DUMP_INFO;
+
+import android.annotation.Nullable;
+import android.os.SystemClock;
+import android.util.proto.ProtoOutputStream;
+
+import com.android.car.internal.ExcludeFromCodeCoverageGeneratedReport;
+import com.android.car.internal.util.IndentingPrintWriter;
+import com.android.car.power.CarPowerDumpProto.PowerTransitionProto;
+import com.android.car.power.CarPowerDumpProto.PowerTransitionProto.SpanProto;
+import com.android.internal.annotations.GuardedBy;
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records how long each step of the last power state transitions took, e.g. applying the power
+ * policy or notifying the listeners when resuming from suspend to RAM.
+ *
+ * <p>Each transition is a tree of timed spans, whose root is the whole transition. Spans are
+ * only recorded on the thread that started the transition, so that steps also run outside of a
+ * transition, e.g. a power policy applied from a shell command, are ignored.
+ */
+final class PowerTransitionProfiler {
+
+    @VisibleForTesting
+    static final int MAX_TRANSITIONS = 10;
+
+    private final Object mLock = new Object();
+    @GuardedBy("mLock")
+    private final ArrayDeque<Transition> mTransitions = new ArrayDeque<>(MAX_TRANSITIONS);
+    // Spans of the current transition that are not finished, the innermost one being the last.
+    @GuardedBy("mLock")
+    private final ArrayList<Span> mOpenSpans = new ArrayList<>();
+    @GuardedBy("mLock")
+    @Nullable
+    private Thread mTransitionThread;
+
+    /**
+     * Starts recording a transition to {@code stateName}, finishing the current one if any.
+     */
+    void startTransition(String stateName) {
+        synchronized (mLock) {
+            finishTransitionLocked();
+            long nowMs = SystemClock.elapsedRealtime();
+            Transition previous = mTransitions.peekLast();
+            Transition transition = new Transition(stateName, nowMs,
+                    previous == null ? -1 : nowMs - previous.mRoot.mStartTimeMs);
+            if (mTransitions.size() == MAX_TRANSITIONS) {
+                mTransitions.removeFirst();
+            }
+            mTransitions.addLast(transition);
+            mOpenSpans.add(transition.mRoot);
+            mTransitionThread = Thread.currentThread();
+        }
+    }
+
+    /** Finishes the current transition, and the spans that were not finished. */
+    void finishTransition() {
+        synchronized (mLock) {
+            finishTransitionLocked();
+        }
+    }
+
+    /** Starts a span inside the innermost unfinished span of the current transition. */
+    void traceBegin(String name) {
+        synchronized (mLock) {
+            if (!isRecordingLocked()) {
+                return;
+            }
+            Span parent = mOpenSpans.get(mOpenSpans.size() - 1);
+            Span span = new Span(name, SystemClock.elapsedRealtime());
+            parent.mChildren.add(span);
+            mOpenSpans.add(span);
+        }
+    }
+
+    /** Finishes the span started by the last {@link #traceBegin(String)}. */
+    void traceEnd() {
+        synchronized (mLock) {
+            // The root span is only finished with the transition.
+            if (!isRecordingLocked() || mOpenSpans.size() <= 1) {
+                return;
+            }
+            mOpenSpans.remove(mOpenSpans.size() - 1).finish(SystemClock.elapsedRealtime());
+        }
+    }
+
+    @VisibleForTesting
+    List<String> getTransitionStateNames() {
+        synchronized (mLock) {
+            List<String> names = new ArrayList<>(mTransitions.size());
+            for (Transition transition : mTransitions) {
+                names.add(transition.mRoot.mName);
+            }
+            return names;
+        }
+    }
+
+    @ExcludeFromCodeCoverageGeneratedReport(reason = DUMP_INFO)
+    void dump(IndentingPrintWriter writer) {
+        synchronized (mLock) {
+            writer.println("Power state transitions (elapsed ms since transition start, "
+                    + "duration ms):");
+            writer.increaseIndent();
+            for (Transition transition : mTransitions) {
+                writer.printf("At %d ms, %d ms after the previous transition:\n",
+                        transition.mRoot.mStartTimeMs, transition.mSincePreviousMs);
+                writer.increaseIndent();
+                transition.mRoot.dump(writer, transition.mRoot.mStartTimeMs);
+                writer.decreaseIndent();
+            }
+            writer.decreaseIndent();
+        }
+    }
+
+    @ExcludeFromCodeCoverageGeneratedReport(reason = DUMP_INFO)
+    void dumpProto(ProtoOutputStream proto) {
+        synchronized (mLock) {
+            for (Transition transition : mTransitions) {
+                long transitionToken = proto.start(CarPowerDumpProto.POWER_TRANSITIONS);
+                proto.write(PowerTransitionProto.STATE_NAME, transition.mRoot.mName);
+                proto.write(PowerTransitionProto.START_TIME_MS, transition.mRoot.mStartTimeMs);
+                proto.write(PowerTransitionProto.SINCE_PREVIOUS_TRANSITION_MS,
+                        transition.mSincePreviousMs);
+                long rootToken = proto.start(PowerTransitionProto.ROOT_SPAN);
+                transition.mRoot.dumpProto(proto, transition.mRoot.mStartTimeMs);
+                proto.end(rootToken);
+                proto.end(transitionToken);
+            }
+        }
+    }
+
+    @GuardedBy("mLock")
+    private boolean isRecordingLocked() {
+        return !mOpenSpans.isEmpty() && mTransitionThread == Thread.currentThread();
+    }
+
+    @GuardedBy("mLock")
+    private void finishTransitionLocked() {
+        long nowMs = SystemClock.elapsedRealtime();
+        for (int i = mOpenSpans.size() - 1; i >= 0; i--) {
+            mOpenSpans.get(i).finish(nowMs);
+        }
+        mOpenSpans.clear();
+        mTransitionThread = null;
+    }
+
+    private static final class Transition {
+        final Span mRoot;
+        final long mSincePreviousMs;
+
+        Transition(String stateName, long startTimeMs, long sincePreviousMs) {
+            mRoot = new Span(stateName, startTimeMs);
+            mSincePreviousMs = sincePreviousMs;
+        }
+    }
+
+    private static final class Span {
+        final String mName;
+        final long mStartTimeMs;
+        final List<Span> mChildren = new ArrayList<>();
+        long mDurationMs = -1;
+
+        Span(String name, long startTimeMs) {
+            mName = name;
+            mStartTimeMs = startTimeMs;
+        }
+
+        void finish(long endTimeMs) {
+            mDurationMs = endTimeMs - mStartTimeMs;
+        }
+
+        @ExcludeFromCodeCoverageGeneratedReport(reason = DUMP_INFO)
+        void dump(IndentingPrintWriter writer, long transitionStartTimeMs) {
+            writer.printf("%s: +%d, %s\n", mName, mStartTimeMs - transitionStartTimeMs,
+                    mDurationMs < 0 ? "running" : mDurationMs);
+            writer.increaseIndent();
+            for (int i = 0; i < mChildren.size(); i++) {
+                mChildren.get(i).dump(writer, transitionStartTimeMs);
+            }
+            writer.decreaseIndent();
+        }
+
+        @ExcludeFromCodeCoverageGeneratedReport(reason = DUMP_INFO)
+        void dumpProto(ProtoOutputStream proto, long transitionStartTimeMs) {
+            proto.write(SpanProto.NAME, mName);
+            proto.write(SpanProto.OFFSET_MS, mStartTimeMs - transitionStartTimeMs);
+            proto.write(SpanProto.DURATION_MS, mDurationMs);
+            for (int i = 0; i < mChildren.size(); i++) {
+                long childToken = proto.start(SpanProto.CHILDREN);
+                mChildren.get(i).dumpProto(proto, transitionStartTimeMs);
+                proto.end(childToken);
+            }
+        }
+    }
+}
@@ -603,7 +603,8 @@ public final class CarRemoteAccessService extends ICarRemoteAccessService.Stub
     }
 
     private String getPackageNameForCallingUid(int callingUid) {
-        String[] packageNames = mPackageManager.getPackagesForUid(callingUid);
+        String[] packageNames = CarServiceUtils.getPackagesForUid(mPackageManager,
+                callingUid);
         if (packageNames.length != 1) {
             throw new IllegalStateException("Failed to get package name, "
                     + "sharedUserId must not be used by app.");
@@ -41,6 +41,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Registers pulled atoms with statsd via StatsManager.
@@ -63,6 +64,18 @@ public class CarStatsService implements CarSystemService {
                     entry.getConnectionStateCount(ConnectionState.TERMINATED),
                     entry.getConnectionStateCount(ConnectionState.CONNECTION_ERROR));
 
+    private static final String VMS_DELIVERY_QUEUE_STATS_DUMPSYS_HEADER =
+            "uid,packageName,queueDepth,maxQueueDepth,queueDroppedPackets";
+
+    private static final Function<VmsClientLogger, String>
+            VMS_DELIVERY_QUEUE_STATS_DUMPSYS_FORMAT =
+                    entry -> String.format(Locale.US,
+                            "%d,%s,%d,%d,%d",
+                            entry.getUid(), entry.getPackageName(),
+                            entry.getDeliveryQueueDepth(),
+                            entry.getMaxDeliveryQueueDepth(),
+                            entry.getDeliveryQueueDroppedPackets());
+
     private static final String VMS_CLIENT_STATS_DUMPSYS_HEADER =
             "uid,layerType,layerChannel,layerVersion,"
                     + "txBytes,txPackets,rxBytes,rxPackets,droppedBytes,droppedPackets";
@@ -150,6 +163,18 @@ public class CarStatsService implements CarSystemService {
             writer.println(VMS_CLIENT_STATS_DUMPSYS_HEADER);
             dumpVmsClientStats(entry -> writer.println(
                     VMS_CLIENT_STATS_DUMPSYS_FORMAT.apply(entry)));
+
+            // Delivery queues only exist if VMS packets are not delivered directly.
+            List<VmsClientLogger> queuedClients = mVmsClientStats.values().stream()
+                    .filter(entry -> entry.getMaxDeliveryQueueDepth() > 0)
+                    .sorted(Comparator.comparingInt(VmsClientLogger::getUid))
+                    .collect(Collectors.toList());
+            if (!queuedClients.isEmpty()) {
+                writer.println();
+                writer.println(VMS_DELIVERY_QUEUE_STATS_DUMPSYS_HEADER);
+                queuedClients.forEach(entry -> writer.println(
+                        VMS_DELIVERY_QUEUE_STATS_DUMPSYS_FORMAT.apply(entry)));
+            }
         }
     }
 
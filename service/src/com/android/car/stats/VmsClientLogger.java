@@ -64,6 +64,13 @@ public class VmsClientLogger {
     @GuardedBy("mLock")
     private final Map<VmsLayer, VmsClientStats> mLayerStats = new ArrayMap<>();
 
+    @GuardedBy("mLock")
+    private int mDeliveryQueueDepth;
+    @GuardedBy("mLock")
+    private int mMaxDeliveryQueueDepth;
+    @GuardedBy("mLock")
+    private long mDeliveryQueueDroppedPackets;
+
     VmsClientLogger(int clientUid, @Nullable String clientPackage) {
         mUid = clientUid;
         mPackageName = clientPackage != null ? clientPackage : "";
@@ -132,6 +139,50 @@ public class VmsClientLogger {
         getLayerEntry(layer).packetDropped(size);
     }
 
+    /**
+     * Logs the number of packets waiting in the client's delivery queue.
+     *
+     * @param depth Number of queued packets
+     */
+    public void logDeliveryQueueDepth(int depth) {
+        synchronized (mLock) {
+            mDeliveryQueueDepth = depth;
+            mMaxDeliveryQueueDepth = Math.max(mMaxDeliveryQueueDepth, depth);
+        }
+    }
+
+    /**
+     * Logs that a packet was dropped by the delivery policy because the client's delivery queue
+     * was full or held a newer packet.
+     *
+     * @param layer Layer of packet
+     * @param size Size of packet
+     */
+    public void logDeliveryQueueDropped(VmsLayer layer, long size) {
+        synchronized (mLock) {
+            mDeliveryQueueDroppedPackets++;
+        }
+        logPacketDropped(layer, size);
+    }
+
+    int getDeliveryQueueDepth() {
+        synchronized (mLock) {
+            return mDeliveryQueueDepth;
+        }
+    }
+
+    int getMaxDeliveryQueueDepth() {
+        synchronized (mLock) {
+            return mMaxDeliveryQueueDepth;
+        }
+    }
+
+    long getDeliveryQueueDroppedPackets() {
+        synchronized (mLock) {
+            return mDeliveryQueueDroppedPackets;
+        }
+    }
+
     Collection<VmsClientStats> getLayerEntries() {
         synchronized (mLock) {
             return mLayerStats.values().stream()
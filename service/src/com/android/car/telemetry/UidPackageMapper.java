@@ -34,10 +34,12 @@ import android.os.UserManager;
 import android.util.SparseArray;
 
 import com.android.car.CarLog;
+import com.android.car.CarServiceUtils;
 import com.android.internal.annotations.VisibleForTesting;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -116,12 +118,17 @@ public class UidPackageMapper {
     /**
      * Returns the list of packages for uid, including APEX and some uninstalled apps. May return
      * an empty list.
+     *
+     * <p>The package broadcasts are delivered asynchronously, so the UIDs that are not known yet
+     * are looked up in the shared {@code PackageMetadataCache}.
      */
     @NonNull
     public List<String> getPackagesForUid(int uid) {
         List<AppInfo> uidApps = mUidAppInfo.get(uid);
-        if (uidApps == null) {
-            return List.of();
+        if (uidApps == null || uidApps.isEmpty()) {
+            String[] packages = CarServiceUtils.getPackagesForUid(mContext.getPackageManager(),
+                    uid);
+            return packages == null ? List.of() : Arrays.asList(packages);
         }
         ArrayList<String> result = new ArrayList<>();
         for (int i = 0; i < uidApps.size(); i++) {
@@ -55,6 +55,11 @@ final class AppLifecycleListener {
      * A null list means that the filters always pass thus the receiver is called for all events.
      */
     private @Nullable ArrayList<UserLifecycleEventFilter> mFilters;
+    /**
+     * Whether the user created and removed events can be sent to the app, which depends on the
+     * platform version and on the target car version of the app.
+     */
+    private boolean mSupportsUserCreatedAndRemovedEvents;
 
     AppLifecycleListener(int uid, String packageName, ICarResultReceiver receiver,
             @Nullable UserLifecycleEventFilter filter, BinderDeathCallback binderDeathCallback) {
@@ -84,6 +89,14 @@ final class AppLifecycleListener {
         return mFilters;
     }
 
+    boolean supportsUserCreatedAndRemovedEvents() {
+        return mSupportsUserCreatedAndRemovedEvents;
+    }
+
+    void setSupportsUserCreatedAndRemovedEvents(boolean supported) {
+        mSupportsUserCreatedAndRemovedEvents = supported;
+    }
+
     void addFilter(@Nullable UserLifecycleEventFilter filter) {
         // There has been a null filter added. Ignore any other filters.
         if (mFilters == null) {
@@ -146,7 +159,8 @@ final class AppLifecycleListener {
 
     @ExcludeFromCodeCoverageGeneratedReport(reason = DUMP_INFO)
     void dump(PrintWriter writer) {
-        writer.printf("uid=%d, pkg=%s\n", uid, packageName);
+        writer.printf("uid=%d, pkg=%s, supportsUserCreatedAndRemovedEvents=%b\n", uid,
+                packageName, mSupportsUserCreatedAndRemovedEvents);
     }
 
     @ExcludeFromCodeCoverageGeneratedReport(reason = DEBUGGING_CODE)
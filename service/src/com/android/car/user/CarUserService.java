@@ -102,6 +102,7 @@ import android.os.NewUserRequest;
 import android.os.NewUserResponse;
 import android.os.Process;
 import android.os.RemoteException;
+import android.os.ServiceSpecificException;
 import android.os.UserHandle;
 import android.os.UserManager;
 import android.provider.Settings;
@@ -597,6 +598,10 @@ public final class CarUserService extends ICarUserService.Stub implements CarSer
             if (listener == null) {
                 listener = new AppLifecycleListener(uid, packageName, receiver, filter,
                         (l) -> onListenerDeath(l));
+                // The app and the platform don't change while the listener is alive, so this is
+                // only checked once instead of on each event.
+                listener.setSupportsUserCreatedAndRemovedEvents(
+                        supportsUserCreatedAndRemovedEvents(packageName));
                 Slogf.d(TAG, "Adding %s (using binder %s) with filter %s",
                         listener, receiverBinder, filter);
                 mAppLifecycleListeners.put(receiverBinder, listener);
@@ -609,6 +614,37 @@ public final class CarUserService extends ICarUserService.Stub implements CarSer
         });
     }
 
+    private boolean supportsUserCreatedAndRemovedEvents(String packageName) {
+        PlatformVersion platformVersion = Car.getPlatformVersion();
+        // Perform platform version check to ensure the support for these new events
+        // is consistent with the platform version declared in their ApiRequirements.
+        if (!platformVersion.isAtLeast(PlatformVersion.VERSION_CODES.TIRAMISU_1)) {
+            if (DBG) {
+                Slogf.d(TAG, "User created and removed events are not sent to %s due to"
+                        + " unsupported car platform version %s.", packageName, platformVersion);
+            }
+            return false;
+        }
+        // Perform target car version check to ensure only apps expecting the new
+        // lifecycle event types will have the events sent to them.
+        CarVersion targetCarVersion;
+        try {
+            targetCarVersion = mCarPackageManagerService.getTargetCarVersion(packageName);
+        } catch (ServiceSpecificException e) {
+            Slogf.w(TAG, "Cannot get the target car version of %s: %s", packageName, e);
+            return false;
+        }
+        if (targetCarVersion == null
+                || !targetCarVersion.isAtLeast(CarVersion.VERSION_CODES.TIRAMISU_1)) {
+            if (DBG) {
+                Slogf.d(TAG, "User created and removed events are not sent to %s due to"
+                        + " incompatible target car version %s.", packageName, targetCarVersion);
+            }
+            return false;
+        }
+        return true;
+    }
+
     private void onListenerDeath(AppLifecycleListener listener) {
         Slogf.i(TAG, "Removing listener %s on binder death", listener);
         mHandler.post(() -> mAppLifecycleListeners.remove(listener.receiver.asBinder()));
@@ -2636,31 +2672,14 @@ public final class CarUserService extends ICarUserService.Stub implements CarSer
         t.traceBegin("notify-app-listeners-user-" + userId + "-event-" + eventType);
         for (int i = 0; i < listenersSize; i++) {
             AppLifecycleListener listener = mAppLifecycleListeners.valueAt(i);
-            if (eventType == CarUserManager.USER_LIFECYCLE_EVENT_TYPE_CREATED
-                    || eventType == CarUserManager.USER_LIFECYCLE_EVENT_TYPE_REMOVED) {
-                PlatformVersion platformVersion = Car.getPlatformVersion();
-                // Perform platform version check to ensure the support for these new events
-                // is consistent with the platform version declared in their ApiRequirements.
-                if (!platformVersion.isAtLeast(PlatformVersion.VERSION_CODES.TIRAMISU_1)) {
-                    if (DBG) {
-                        Slogf.d(TAG, "Skipping app listener %s for event %s due to unsupported"
-                                + " car platform version %s.", listener, event, platformVersion);
-                    }
-                    continue;
-                }
-                // Perform target car version check to ensure only apps expecting the new
-                // lifecycle event types will have the events sent to them.
-                // TODO(b/235524989): Cache the target car version for packages in
-                // CarPackageManagerService.
-                CarVersion targetCarVersion = mCarPackageManagerService.getTargetCarVersion(
-                        listener.packageName);
-                if (!targetCarVersion.isAtLeast(CarVersion.VERSION_CODES.TIRAMISU_1)) {
-                    if (DBG) {
-                        Slogf.d(TAG, "Skipping app listener %s for event %s due to incompatible"
-                                + " target car version %s.", listener, event, targetCarVersion);
-                    }
-                    continue;
+            if ((eventType == CarUserManager.USER_LIFECYCLE_EVENT_TYPE_CREATED
+                    || eventType == CarUserManager.USER_LIFECYCLE_EVENT_TYPE_REMOVED)
+                    && !listener.supportsUserCreatedAndRemovedEvents()) {
+                if (DBG) {
+                    Slogf.d(TAG, "Skipping app listener %s for event %s due to unsupported car"
+                            + " platform version or target car version.", listener, event);
                 }
+                continue;
             }
             if (!listener.applyFilters(event)) {
                 if (DBG) {
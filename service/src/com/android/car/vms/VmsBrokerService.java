@@ -21,6 +21,7 @@ import static com.android.car.CarServiceUtils.assertVmsPublisherPermission;
 import static com.android.car.CarServiceUtils.assertVmsSubscriberPermission;
 import static com.android.car.internal.ExcludeFromCodeCoverageGeneratedReport.DUMP_INFO;
 
+import android.annotation.Nullable;
 import android.car.builtin.util.Slogf;
 import android.car.vms.IVmsBrokerService;
 import android.car.vms.IVmsClientCallback;
@@ -28,22 +29,25 @@ import android.car.vms.VmsAssociatedLayer;
 import android.car.vms.VmsAvailableLayers;
 import android.car.vms.VmsLayer;
 import android.car.vms.VmsLayerDependency;
-import android.car.vms.VmsLayersOffering;
 import android.car.vms.VmsProviderInfo;
 import android.car.vms.VmsRegistrationInfo;
 import android.car.vms.VmsSubscriptionState;
 import android.content.Context;
 import android.content.pm.PackageManager;
 import android.os.Binder;
+import android.os.Handler;
 import android.os.IBinder;
 import android.os.RemoteException;
 import android.os.SharedMemory;
 import android.util.ArrayMap;
 import android.util.ArraySet;
+import android.util.SparseArray;
 import android.util.proto.ProtoOutputStream;
 
 import com.android.car.CarLog;
 import com.android.car.CarServiceBase;
+import com.android.car.CarServiceUtils;
+import com.android.car.R;
 import com.android.car.internal.ExcludeFromCodeCoverageGeneratedReport;
 import com.android.car.internal.util.FunctionalUtils.ThrowingConsumer;
 import com.android.car.internal.util.IndentingPrintWriter;
@@ -59,8 +63,8 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.IntSupplier;
-import java.util.stream.Collectors;
 
 /**
  * Message broker service for routing Vehicle Map Service messages between clients.
@@ -79,15 +83,28 @@ public class VmsBrokerService extends IVmsBrokerService.Stub implements CarServi
 
     private final VmsProviderInfoStore mProviderInfoStore = new VmsProviderInfoStore();
     private final VmsLayerAvailability mAvailableLayers = new VmsLayerAvailability();
+    private final VmsSubscriberDispatcher mDispatcher;
 
     private final Object mLock = new Object();
     @GuardedBy("mLock")
     private final Map<IBinder /* clientToken */, VmsClientInfo> mClientMap = new ArrayMap<>();
     @GuardedBy("mLock")
-    private Set<VmsLayersOffering> mAllOfferings = Collections.emptySet();
+    private final VmsSubscriptionAggregator mSubscriptions = new VmsSubscriptionAggregator();
     @GuardedBy("mLock")
     private VmsSubscriptionState mSubscriptionState = new VmsSubscriptionState(0,
             Collections.emptySet(), Collections.emptySet());
+    // Updated under mLock for the client whose subscriptions change; read without lock when
+    // publishing.
+    private final VmsSubscriberRoutingTable mRoutingTable = new VmsSubscriberRoutingTable();
+    @GuardedBy("mLock")
+    private final Map<VmsLayer, SparseArray<PacketRingBuffer>> mPacketRingBuffers =
+            new ArrayMap<>();
+    @GuardedBy("mLock")
+    private long mAvailabilityNotificationDelayMs;
+    @GuardedBy("mLock")
+    private boolean mAvailabilityNotificationPending;
+    @GuardedBy("mLock")
+    private Handler mAvailabilityNotificationHandler;
 
     public VmsBrokerService(Context context, CarStatsService statsService) {
         this(context, statsService, Binder::getCallingUid);
@@ -102,14 +119,31 @@ public class VmsBrokerService extends IVmsBrokerService.Stub implements CarServi
         mPackageManager = context.getPackageManager();
         mStatsService = statsService;
         mGetCallingUid = getCallingUid;
+        mDispatcher = new VmsSubscriberDispatcher(statsService);
     }
 
     @Override
     public void init() {
+        mDispatcher.setPolicy(
+                mContext.getResources().getInteger(R.integer.config_vmsSubscriberDeliveryPolicy),
+                mContext.getResources().getInteger(
+                        R.integer.config_vmsSubscriberDeliveryQueueCapacity),
+                mContext.getResources().getInteger(
+                        R.integer.config_vmsSubscriberDeliveryBlockTimeoutMs));
+        long availabilityNotificationDelayMs = mContext.getResources().getInteger(
+                R.integer.config_vmsAvailabilityNotificationDelayMs);
+        synchronized (mLock) {
+            mAvailabilityNotificationDelayMs = availabilityNotificationDelayMs;
+            if (availabilityNotificationDelayMs > 0 && mAvailabilityNotificationHandler == null) {
+                mAvailabilityNotificationHandler = new Handler(CarServiceUtils.getHandlerThread(
+                        VmsBrokerService.class.getSimpleName()).getLooper());
+            }
+        }
     }
 
     @Override
     public void release() {
+        mDispatcher.release();
     }
 
     @Override
@@ -121,6 +155,16 @@ public class VmsBrokerService extends IVmsBrokerService.Stub implements CarServi
             writer.println();
             writer.println("mSubscriptionState: " + mSubscriptionState);
             writer.println();
+            writer.println("mPacketRingBuffers:");
+            mPacketRingBuffers.forEach((layer, providerRingBuffers) -> {
+                for (int i = 0; i < providerRingBuffers.size(); i++) {
+                    writer.println("  " + layer + " [" + providerRingBuffers.keyAt(i) + "]: "
+                            + providerRingBuffers.valueAt(i));
+                }
+            });
+            writer.println();
+            mDispatcher.dump(writer);
+            writer.println();
             writer.println("mClientMap:");
             mClientMap.values().stream()
                     .sorted(Comparator.comparingInt(VmsClientInfo::getUid))
@@ -154,13 +198,25 @@ public class VmsBrokerService extends IVmsBrokerService.Stub implements CarServi
             throw new IllegalStateException("Client callback is already dead");
         }
 
+        VmsClientInfo client = new VmsClientInfo(clientUid, clientPackage, callback,
+                legacyClient, deathRecipient);
+        // Added before the client can subscribe, so that it receives every routed packet.
+        mDispatcher.addSubscriber(client);
+        VmsClientInfo previousClient;
+        VmsRegistrationInfo registrationInfo;
         synchronized (mLock) {
-            mClientMap.put(clientToken, new VmsClientInfo(clientUid, clientPackage, callback,
-                    legacyClient, deathRecipient));
-            return new VmsRegistrationInfo(
+            previousClient = mClientMap.put(clientToken, client);
+            if (previousClient != null) {
+                mRoutingTable.removeClient(previousClient);
+            }
+            registrationInfo = new VmsRegistrationInfo(
                     mAvailableLayers.getAvailableLayers(),
                     mSubscriptionState);
         }
+        if (previousClient != null) {
+            mDispatcher.removeSubscriber(previousClient);
+        }
+        return registrationInfo;
     }
 
     @Override
@@ -179,14 +235,36 @@ public class VmsBrokerService extends IVmsBrokerService.Stub implements CarServi
     @Override
     public void setSubscriptions(IBinder clientToken, List<VmsAssociatedLayer> layers) {
         assertVmsSubscriberPermission(mContext);
-        getClient(clientToken).setSubscriptions(layers);
-        updateSubscriptionState();
+        VmsSubscriptionState subscriptionState;
+        synchronized (mLock) {
+            VmsClientInfo client = getClient(clientToken);
+            Set<VmsLayer> previousLayers = client.getLayerSubscriptions();
+            Map<VmsLayer, Set<Integer>> previousLayerAndProviders =
+                    client.getLayerAndProviderSubscriptions();
+            client.setSubscriptions(layers);
+            // Subscriptions kept by the client are added before being removed, so that they
+            // never look like changes.
+            mSubscriptions.add(client.getLayerSubscriptions(),
+                    client.getLayerAndProviderSubscriptions());
+            mSubscriptions.remove(previousLayers, previousLayerAndProviders);
+            // Routing depends on which client subscribes, which can change even if the fused
+            // subscription state does not.
+            mRoutingTable.updateClient(client);
+            subscriptionState = updateSubscriptionStateLocked();
+        }
+        if (subscriptionState != null) {
+            notifyOfSubscriptionChange(subscriptionState);
+        }
     }
 
     @Override
     public void setMonitoringEnabled(IBinder clientToken, boolean enabled) {
         assertVmsSubscriberPermission(mContext);
-        getClient(clientToken).setMonitoringEnabled(enabled);
+        synchronized (mLock) {
+            VmsClientInfo client = getClient(clientToken);
+            client.setMonitoringEnabled(enabled);
+            mRoutingTable.updateClient(client);
+        }
     }
 
     @Override
@@ -205,13 +283,22 @@ public class VmsBrokerService extends IVmsBrokerService.Stub implements CarServi
     public void setProviderOfferings(IBinder clientToken, int providerId,
             List<VmsLayerDependency> offerings) {
         assertVmsPublisherPermission(mContext);
-        VmsClientInfo client = getClient(clientToken);
-        if (!client.hasProviderId(providerId) && !client.isLegacyClient()) {
-            throw new IllegalArgumentException("Client not registered to offer layers as "
-                    + providerId);
+        boolean availabilityChanged;
+        synchronized (mLock) {
+            VmsClientInfo client = getClient(clientToken);
+            if (!client.hasProviderId(providerId) && !client.isLegacyClient()) {
+                throw new IllegalArgumentException("Client not registered to offer layers as "
+                        + providerId);
+            }
+            Set<VmsLayerDependency> previousOfferings = client.getProviderOfferings(providerId);
+            if (!client.setProviderOfferings(providerId, offerings)) {
+                return;
+            }
+            availabilityChanged = mAvailableLayers.updateOfferings(providerId, previousOfferings,
+                    offerings);
         }
-        if (client.setProviderOfferings(providerId, offerings)) {
-            updateAvailableLayers();
+        if (availabilityChanged) {
+            notifyOfAvailabilityChange();
         }
     }
 
@@ -219,69 +306,180 @@ public class VmsBrokerService extends IVmsBrokerService.Stub implements CarServi
     public void publishPacket(IBinder clientToken, int providerId, VmsLayer layer, byte[] packet) {
         assertVmsPublisherPermission(mContext);
         deliverToSubscribers(clientToken, providerId, layer, packet.length,
-                callback -> callback.onPacketReceived(providerId, layer, packet));
+                subscriber -> subscriber.getCallback().onPacketReceived(providerId, layer, packet));
     }
 
     @Override
     public void publishLargePacket(IBinder clientToken, int providerId, VmsLayer layer,
             SharedMemory packet) {
-        try (SharedMemory largePacket = packet) {
+        int packetLength = packet.getSize();
+        try {
             assertVmsPublisherPermission(mContext);
-            deliverToSubscribers(clientToken, providerId, layer, packet.getSize(),
-                    callback -> callback.onLargePacketReceived(providerId, layer, largePacket));
+        } catch (RuntimeException e) {
+            packet.close();
+            throw e;
         }
+        deliverToSubscribers(clientToken, providerId, layer, packetLength,
+                subscriber -> subscriber.getCallback().onLargePacketReceived(providerId,
+                        layer, packet), packet);
     }
 
-    private void deliverToSubscribers(IBinder clientToken, int providerId, VmsLayer layer,
-            int packetLength, ThrowingConsumer<IVmsClientCallback> callbackConsumer) {
-        VmsClientInfo client = getClient(clientToken);
-        if (!client.hasOffering(providerId, layer) && !client.isLegacyClient()) {
-            throw new IllegalArgumentException("Client does not offer " + layer + " as "
-                    + providerId);
+    @Override
+    public void registerPacketRingBuffer(IBinder clientToken, int providerId, VmsLayer layer,
+            SharedMemory ringBuffer) {
+        assertVmsPublisherPermission(mContext);
+        try {
+            assertOffering(getClient(clientToken), providerId, layer);
+        } catch (RuntimeException e) {
+            ringBuffer.close();
+            throw e;
         }
+        if (DBG) Slogf.d(TAG, "registerPacketRingBuffer %s as %d", layer, providerId);
 
-        mStatsService.getVmsClientLogger(client.getUid())
-                .logPacketSent(layer, packetLength);
+        PacketRingBuffer previousRingBuffer;
+        synchronized (mLock) {
+            SparseArray<PacketRingBuffer> providerRingBuffers =
+                    mPacketRingBuffers.computeIfAbsent(layer, ignored -> new SparseArray<>());
+            previousRingBuffer = providerRingBuffers.get(providerId);
+            providerRingBuffers.put(providerId, new PacketRingBuffer(clientToken, ringBuffer));
+        }
+        if (previousRingBuffer != null) {
+            previousRingBuffer.mSharedMemory.close();
+        }
+    }
 
-        Collection<VmsClientInfo> subscribers;
+    @Override
+    public void publishPacketRingBufferFrame(IBinder clientToken, int providerId, VmsLayer layer,
+            long sequenceNumber, int packetLength) {
+        assertVmsPublisherPermission(mContext);
+        PacketRingBuffer ringBuffer;
         synchronized (mLock) {
-            subscribers = mClientMap.values().stream()
-                    .filter(subscriber -> subscriber.isSubscribed(providerId, layer))
-                    .collect(Collectors.toList());
+            SparseArray<PacketRingBuffer> providerRingBuffers = mPacketRingBuffers.get(layer);
+            ringBuffer = providerRingBuffers == null ? null : providerRingBuffers.get(providerId);
+        }
+        if (ringBuffer == null || ringBuffer.mOwnerToken != clientToken) {
+            throw new IllegalStateException("No packet ring buffer registered for " + layer
+                    + " as " + providerId);
+        }
+        // Subscribers map the ring the first time they receive one of its packets, so only the
+        // sequence number goes through binder afterwards.
+        deliverToSubscribers(clientToken, providerId, layer, packetLength, subscriber -> {
+            IVmsClientCallback callback = subscriber.getCallback();
+            if (!ringBuffer.wasSentTo(subscriber)) {
+                callback.onPacketRingBufferAvailable(providerId, layer,
+                        ringBuffer.mSharedMemory);
+                synchronized (mLock) {
+                    // A subscriber unregistered during the call must not be kept in the set.
+                    if (mClientMap.containsValue(subscriber)) {
+                        ringBuffer.markSentTo(subscriber);
+                    }
+                }
+            }
+            callback.onPacketRingBufferFrameAvailable(providerId, layer, sequenceNumber);
+        }, /* sharedPacket= */ null);
+    }
+
+    /**
+     * Delivers a packet to its subscribers through the dispatcher.
+     *
+     * @param sharedPacket shared memory holding the packet, closed once delivered to every
+     *                     subscriber or dropped, as deliveries may be queued past this call
+     */
+    private void deliverToSubscribers(IBinder clientToken, int providerId, VmsLayer layer,
+            int packetLength, ThrowingConsumer<VmsClientInfo> subscriberConsumer,
+            @Nullable SharedMemory sharedPacket) {
+        VmsClientInfo[] subscribers;
+        try {
+            VmsClientInfo client = getClient(clientToken);
+            assertOffering(client, providerId, layer);
+
+            mStatsService.getVmsClientLogger(client.getUid())
+                    .logPacketSent(layer, packetLength);
+
+            subscribers = mRoutingTable.getSubscribers(providerId, layer);
+        } catch (RuntimeException e) {
+            closeSharedPacket(sharedPacket);
+            throw e;
         }
 
-        if (DBG) Slogf.d(TAG, "Number of subscribers: %d", subscribers.size());
+        if (DBG) Slogf.d(TAG, "Number of subscribers: %d", subscribers.length);
 
-        if (subscribers.isEmpty()) {
+        if (subscribers.length == 0) {
             // A negative UID signals that the packet had zero subscribers
             mStatsService.getVmsClientLogger(-1).logPacketDropped(layer, packetLength);
+            closeSharedPacket(sharedPacket);
             return;
         }
 
-        for (VmsClientInfo subscriber : subscribers) {
-            try {
-                callbackConsumer.accept(subscriber.getCallback());
-                mStatsService.getVmsClientLogger(subscriber.getUid())
-                        .logPacketReceived(layer, packetLength);
-            } catch (RuntimeException e) {
-                mStatsService.getVmsClientLogger(subscriber.getUid())
-                        .logPacketDropped(layer, packetLength);
-                Slogf.e(TAG, e, "Unable to publish to listener: %s", subscriber.getPackageName());
-            }
+        Runnable onDelivered = null;
+        if (sharedPacket != null) {
+            AtomicInteger pendingDeliveries = new AtomicInteger(subscribers.length);
+            onDelivered = () -> {
+                if (pendingDeliveries.decrementAndGet() == 0) {
+                    sharedPacket.close();
+                }
+            };
+        }
+        for (int i = 0; i < subscribers.length; i++) {
+            mDispatcher.dispatch(subscribers[i], providerId, layer, packetLength,
+                    subscriberConsumer, onDelivered);
+        }
+    }
+
+    private static void closeSharedPacket(@Nullable SharedMemory sharedPacket) {
+        if (sharedPacket != null) {
+            sharedPacket.close();
+        }
+    }
+
+    private static void assertOffering(VmsClientInfo client, int providerId, VmsLayer layer) {
+        if (!client.hasOffering(providerId, layer) && !client.isLegacyClient()) {
+            throw new IllegalArgumentException("Client does not offer " + layer + " as "
+                    + providerId);
         }
     }
 
     private void unregisterClient(IBinder clientToken, int connectionState) {
         VmsClientInfo client;
+        List<PacketRingBuffer> ownedRingBuffers = new ArrayList<>();
+        boolean availabilityChanged = false;
+        VmsSubscriptionState subscriptionState = null;
         synchronized (mLock) {
             client = mClientMap.remove(clientToken);
+            if (client != null) {
+                availabilityChanged = mAvailableLayers.removeOfferings(client.getAllOfferings());
+                mSubscriptions.remove(client.getLayerSubscriptions(),
+                        client.getLayerAndProviderSubscriptions());
+                mRoutingTable.removeClient(client);
+                subscriptionState = updateSubscriptionStateLocked();
+            }
+            for (SparseArray<PacketRingBuffer> providerRingBuffers :
+                    mPacketRingBuffers.values()) {
+                for (int i = providerRingBuffers.size() - 1; i >= 0; i--) {
+                    PacketRingBuffer ringBuffer = providerRingBuffers.valueAt(i);
+                    if (ringBuffer.mOwnerToken == clientToken) {
+                        ownedRingBuffers.add(ringBuffer);
+                        providerRingBuffers.removeAt(i);
+                    } else if (client != null) {
+                        ringBuffer.removeSubscriber(client);
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < ownedRingBuffers.size(); i++) {
+            ownedRingBuffers.get(i).mSharedMemory.close();
         }
         if (client != null) {
             client.getCallback().asBinder().unlinkToDeath(client.getDeathRecipient(), 0);
             mStatsService.getVmsClientLogger(client.getUid())
                     .logConnectionState(connectionState);
-            updateAvailableLayers();
-            updateSubscriptionState();
+            if (availabilityChanged) {
+                notifyOfAvailabilityChange();
+            }
+            if (subscriptionState != null) {
+                notifyOfSubscriptionChange(subscriptionState);
+            }
+            mDispatcher.removeSubscriber(client);
         }
     }
 
@@ -301,22 +499,28 @@ public class VmsBrokerService extends IVmsBrokerService.Stub implements CarServi
         }
     }
 
-    private void updateAvailableLayers() {
+    /**
+     * Notifies clients of the current layer availability, at most once per
+     * {@code config_vmsAvailabilityNotificationDelayMs}.
+     */
+    private void notifyOfAvailabilityChange() {
         synchronized (mLock) {
-            // Fuse layer offerings
-            Set<VmsLayersOffering> allOfferings = mClientMap.values().stream()
-                    .map(VmsClientInfo::getAllOfferings)
-                    .flatMap(Collection::stream)
-                    .collect(Collectors.toCollection(ArraySet::new));
-
-            // Ignore update if offerings are unchanged
-            if (mAllOfferings.equals(allOfferings)) {
+            if (mAvailabilityNotificationDelayMs > 0) {
+                if (!mAvailabilityNotificationPending) {
+                    mAvailabilityNotificationPending = true;
+                    mAvailabilityNotificationHandler.postDelayed(
+                            this::notifyOfPendingAvailabilityChange,
+                            mAvailabilityNotificationDelayMs);
+                }
                 return;
             }
+        }
+        notifyOfAvailabilityChange(mAvailableLayers.getAvailableLayers());
+    }
 
-            // Update offerings and compute available layers
-            mAllOfferings = allOfferings;
-            mAvailableLayers.setPublishersOffering(allOfferings);
+    private void notifyOfPendingAvailabilityChange() {
+        synchronized (mLock) {
+            mAvailabilityNotificationPending = false;
         }
         notifyOfAvailabilityChange(mAvailableLayers.getAvailableLayers());
     }
@@ -332,47 +536,25 @@ public class VmsBrokerService extends IVmsBrokerService.Stub implements CarServi
         }
     }
 
-    private void updateSubscriptionState() {
-        VmsSubscriptionState subscriptionState;
-        synchronized (mLock) {
-            Set<VmsLayer> layerSubscriptions = new ArraySet<>();
-            Map<VmsLayer, Set<Integer>> layerAndProviderSubscriptions = new ArrayMap<>();
-            // Fuse subscriptions
-            for (VmsClientInfo client : mClientMap.values()) {
-                layerSubscriptions.addAll(client.getLayerSubscriptions());
-                client.getLayerAndProviderSubscriptions().forEach((layer, providerIds) -> {
-                    Set<Integer> providerSubscriptions =
-                            layerAndProviderSubscriptions.computeIfAbsent(
-                                    layer,
-                                    ignored -> new ArraySet<>());
-                    providerSubscriptions.addAll(providerIds);
-                });
-            }
-
-            // Remove global layer subscriptions from provider-specific subscription state
-            layerSubscriptions.forEach(layerAndProviderSubscriptions::remove);
-
-            // Transform provider-specific subscriptions into VmsAssociatedLayers
-            Set<VmsAssociatedLayer> associatedLayers =
-                    layerAndProviderSubscriptions.entrySet().stream()
-                            .map(entry -> new VmsAssociatedLayer(entry.getKey(), entry.getValue()))
-                            .collect(Collectors.toCollection(ArraySet::new));
-
-            // Ignore update if subscriptions are unchanged
-            if (mSubscriptionState.getLayers().equals(layerSubscriptions)
-                    && mSubscriptionState.getAssociatedLayers().equals(associatedLayers)) {
-                return;
-            }
-
-            // Update subscription state
-            subscriptionState = new VmsSubscriptionState(
-                    mSubscriptionState.getSequenceNumber() + 1,
-                    layerSubscriptions,
-                    associatedLayers);
-            mSubscriptionState = subscriptionState;
+    /**
+     * Updates the fused subscription state.
+     *
+     * @return the new subscription state, or {@code null} if it is unchanged
+     */
+    @GuardedBy("mLock")
+    @Nullable
+    private VmsSubscriptionState updateSubscriptionStateLocked() {
+        VmsSubscriptionState subscriptionState = mSubscriptions.getStateIfChanged(
+                mSubscriptionState.getSequenceNumber() + 1);
+        // Ignore update if subscriptions are unchanged
+        if (subscriptionState == null
+                || (mSubscriptionState.getLayers().equals(subscriptionState.getLayers())
+                && mSubscriptionState.getAssociatedLayers().equals(
+                        subscriptionState.getAssociatedLayers()))) {
+            return null;
         }
-        // Notify clients of update
-        notifyOfSubscriptionChange(subscriptionState);
+        mSubscriptionState = subscriptionState;
+        return subscriptionState;
     }
 
     private void notifyOfSubscriptionChange(VmsSubscriptionState subscriptionState) {
@@ -385,4 +567,44 @@ public class VmsBrokerService extends IVmsBrokerService.Stub implements CarServi
             }
         }
     }
+
+    /** Packet ring buffer registered by a publisher, and the subscribers it was sent to. */
+    private static final class PacketRingBuffer {
+        final IBinder mOwnerToken;
+        final SharedMemory mSharedMemory;
+
+        private final Object mLock = new Object();
+        @GuardedBy("mLock")
+        private final Set<VmsClientInfo> mSubscribers = new ArraySet<>();
+
+        PacketRingBuffer(IBinder ownerToken, SharedMemory sharedMemory) {
+            mOwnerToken = ownerToken;
+            mSharedMemory = sharedMemory;
+        }
+
+        boolean wasSentTo(VmsClientInfo subscriber) {
+            synchronized (mLock) {
+                return mSubscribers.contains(subscriber);
+            }
+        }
+
+        void markSentTo(VmsClientInfo subscriber) {
+            synchronized (mLock) {
+                mSubscribers.add(subscriber);
+            }
+        }
+
+        void removeSubscriber(VmsClientInfo subscriber) {
+            synchronized (mLock) {
+                mSubscribers.remove(subscriber);
+            }
+        }
+
+        @Override
+        public String toString() {
+            synchronized (mLock) {
+                return "size=" + mSharedMemory.getSize() + " subscribers=" + mSubscribers.size();
+            }
+        }
+    }
 }
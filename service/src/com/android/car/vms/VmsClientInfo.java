@@ -18,6 +18,7 @@ package com.android.car.vms;
 
 import static com.android.car.internal.ExcludeFromCodeCoverageGeneratedReport.DUMP_INFO;
 
+import android.annotation.Nullable;
 import android.car.vms.IVmsClientCallback;
 import android.car.vms.VmsAssociatedLayer;
 import android.car.vms.VmsLayer;
@@ -105,6 +106,14 @@ final class VmsClientInfo {
         }
     }
 
+    @Nullable
+    Set<VmsLayerDependency> getProviderOfferings(int providerId) {
+        synchronized (mLock) {
+            Set<VmsLayerDependency> providerOfferings = mOfferings.get(providerId);
+            return providerOfferings == null ? null : new ArraySet<>(providerOfferings);
+        }
+    }
+
     boolean setProviderOfferings(int providerId, Collection<VmsLayerDependency> offerings) {
         synchronized (mLock) {
             Set<VmsLayerDependency> providerOfferings = mOfferings.get(providerId);
@@ -174,12 +183,9 @@ final class VmsClientInfo {
         }
     }
 
-    boolean isSubscribed(int providerId, VmsLayer layer) {
+    boolean isMonitoringEnabled() {
         synchronized (mLock) {
-            return mMonitoringEnabled
-                    || mLayerSubscriptions.contains(layer)
-                    || mLayerAndProviderSubscriptions.getOrDefault(layer, Collections.emptySet())
-                            .contains(providerId);
+            return mMonitoringEnabled;
         }
     }
 
@@ -16,23 +16,24 @@
 
 package com.android.car.vms;
 
+import android.annotation.Nullable;
 import android.car.builtin.util.Slogf;
 import android.car.vms.VmsAssociatedLayer;
 import android.car.vms.VmsAvailableLayers;
 import android.car.vms.VmsLayer;
 import android.car.vms.VmsLayerDependency;
 import android.car.vms.VmsLayersOffering;
+import android.util.ArrayMap;
+import android.util.ArraySet;
+import android.util.SparseIntArray;
 
 import com.android.car.CarLog;
 import com.android.internal.annotations.GuardedBy;
 
+import java.util.ArrayDeque;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 /**
  * Manages VMS availability for layers.
@@ -40,20 +41,30 @@ import java.util.stream.Collectors;
  * Each VMS publisher sets its layers offering which are a list of layers the publisher claims
  * it might publish. VmsLayersAvailability calculates from all the offering what are the
  * available layers.
+ *
+ * A layer is available if it is offered with a set of dependencies which are all available.
+ * Offerings are kept in a dependency graph, so that adding or removing an offering only
+ * recalculates the availability of the offered layer and of the layers depending on it.
  */
-
 class VmsLayerAvailability {
     private static final boolean DBG = false;
     private static final String TAG = CarLog.tagFor(VmsLayerAvailability.class);
 
     private final Object mLock = new Object();
+    // Number of clients setting each offering.
     @GuardedBy("mLock")
-    private final Map<VmsLayer, Set<Set<VmsLayer>>> mPotentialLayersAndDependencies =
-            new HashMap<>();
+    private final ArrayMap<VmsLayersOffering, Integer> mPublisherOfferingCounts =
+            new ArrayMap<>();
+    // Number of times each layer dependency is offered by each publisher.
     @GuardedBy("mLock")
-    private Set<VmsAssociatedLayer> mAvailableAssociatedLayers = Collections.emptySet();
+    private final ArrayMap<VmsLayerDependency, SparseIntArray> mOfferingCounts = new ArrayMap<>();
+    // Offered layers and the layers they depend on.
     @GuardedBy("mLock")
-    private Map<VmsLayer, Set<Integer>> mPotentialLayersAndPublishers = new HashMap<>();
+    private final ArrayMap<VmsLayer, LayerNode> mLayerNodes = new ArrayMap<>();
+    @GuardedBy("mLock")
+    private final ArrayMap<VmsLayer, VmsAssociatedLayer> mAvailableLayerMap = new ArrayMap<>();
+    @GuardedBy("mLock")
+    private Set<VmsAssociatedLayer> mAvailableAssociatedLayers = Collections.emptySet();
     @GuardedBy("mLock")
     private int mSeq = 0;
 
@@ -62,22 +73,61 @@ class VmsLayerAvailability {
      */
     void setPublishersOffering(Collection<VmsLayersOffering> publishersLayersOfferings) {
         synchronized (mLock) {
-            reset();
+            mPublisherOfferingCounts.clear();
+            mOfferingCounts.clear();
+            mLayerNodes.clear();
+            mAvailableLayerMap.clear();
 
+            Set<VmsLayer> changedLayers = new ArraySet<>();
             for (VmsLayersOffering offering : publishersLayersOfferings) {
-                for (VmsLayerDependency dependency : offering.getDependencies()) {
-                    VmsLayer layer = dependency.getLayer();
+                addPublisherOfferingLocked(offering, changedLayers);
+            }
+            calculateLayersLocked(changedLayers);
+            mSeq += 1;
+        }
+    }
 
-                    // Associate publishers with layers.
-                    mPotentialLayersAndPublishers.computeIfAbsent(layer, k -> new HashSet<>())
-                            .add(offering.getPublisherId());
+    /**
+     * Replaces the layers offered by a publisher on behalf of a single client.
+     *
+     * <p>Offerings are counted, so a layer stays offered by the publisher until every client
+     * offering it on its behalf withdraws it.
+     *
+     * @param previousOfferings offerings previously set by the client, or {@code null} if it
+     *                          never set any
+     * @return whether the combined offerings of all clients changed
+     */
+    boolean updateOfferings(int publisherId,
+            @Nullable Collection<VmsLayerDependency> previousOfferings,
+            Collection<VmsLayerDependency> offerings) {
+        synchronized (mLock) {
+            Set<VmsLayer> changedLayers = new ArraySet<>();
+            // Offerings kept by the client are added before being removed, so that they never
+            // look like changes.
+            boolean changed = addPublisherOfferingLocked(
+                    new VmsLayersOffering(new ArraySet<>(offerings), publisherId), changedLayers);
+            if (previousOfferings != null) {
+                changed |= removePublisherOfferingLocked(
+                        new VmsLayersOffering(new ArraySet<>(previousOfferings), publisherId),
+                        changedLayers);
+            }
+            return updateLayersLocked(changed, changedLayers);
+        }
+    }
 
-                    // Add dependencies for availability calculation.
-                    mPotentialLayersAndDependencies.computeIfAbsent(layer, k -> new HashSet<>())
-                            .add(dependency.getDependencies());
-                }
+    /**
+     * Removes the layers offered by publishers on behalf of a disconnected client.
+     *
+     * @return whether the combined offerings of all clients changed
+     */
+    boolean removeOfferings(Collection<VmsLayersOffering> publishersLayersOfferings) {
+        synchronized (mLock) {
+            Set<VmsLayer> changedLayers = new ArraySet<>();
+            boolean changed = false;
+            for (VmsLayersOffering offering : publishersLayersOfferings) {
+                changed |= removePublisherOfferingLocked(offering, changedLayers);
             }
-            calculateLayers();
+            return updateLayersLocked(changed, changedLayers);
         }
     }
 
@@ -90,83 +140,235 @@ class VmsLayerAvailability {
         }
     }
 
-    private void reset() {
-        synchronized (mLock) {
-            mPotentialLayersAndDependencies.clear();
-            mPotentialLayersAndPublishers.clear();
-            mAvailableAssociatedLayers = Collections.emptySet();
-            mSeq += 1;
+    @GuardedBy("mLock")
+    private boolean updateLayersLocked(boolean changed, Set<VmsLayer> changedLayers) {
+        if (!changed) {
+            return false;
         }
+        calculateLayersLocked(changedLayers);
+        mSeq += 1;
+        return true;
     }
 
-    private void calculateLayers() {
-        synchronized (mLock) {
-            Set<VmsLayer> availableLayersSet = new HashSet<>();
-            Set<VmsLayer> cyclicAvoidanceAuxiliarySet = new HashSet<>();
-
-            for (VmsLayer layer : mPotentialLayersAndDependencies.keySet()) {
-                addLayerToAvailabilityCalculationLocked(layer,
-                        availableLayersSet,
-                        cyclicAvoidanceAuxiliarySet);
-            }
+    /**
+     * @return whether no client set the offering before
+     */
+    @GuardedBy("mLock")
+    private boolean addPublisherOfferingLocked(VmsLayersOffering offering,
+            Set<VmsLayer> changedLayers) {
+        int count = mPublisherOfferingCounts.getOrDefault(offering, 0);
+        mPublisherOfferingCounts.put(offering, count + 1);
+        for (VmsLayerDependency dependency : offering.getDependencies()) {
+            addOfferingLocked(offering.getPublisherId(), dependency, changedLayers);
+        }
+        return count == 0;
+    }
 
-            mAvailableAssociatedLayers = Collections.unmodifiableSet(
-                    availableLayersSet
-                            .stream()
-                            .map(l -> new VmsAssociatedLayer(l,
-                                    mPotentialLayersAndPublishers.get(l)))
-                            .collect(Collectors.toSet()));
+    /**
+     * @return whether no client sets the offering anymore
+     */
+    @GuardedBy("mLock")
+    private boolean removePublisherOfferingLocked(VmsLayersOffering offering,
+            Set<VmsLayer> changedLayers) {
+        int count = mPublisherOfferingCounts.getOrDefault(offering, 0);
+        if (count == 0) {
+            Slogf.w(TAG, "Removing unknown offering: %s", offering);
+            return false;
+        }
+        if (count > 1) {
+            mPublisherOfferingCounts.put(offering, count - 1);
+        } else {
+            mPublisherOfferingCounts.remove(offering);
+        }
+        for (VmsLayerDependency dependency : offering.getDependencies()) {
+            removeOfferingLocked(offering.getPublisherId(), dependency, changedLayers);
         }
+        return count == 1;
     }
 
     @GuardedBy("mLock")
-    private void addLayerToAvailabilityCalculationLocked(VmsLayer layer,
-                                                         Set<VmsLayer> currentAvailableLayers,
-                                                         Set<VmsLayer> cyclicAvoidanceSet) {
-        if (DBG) {
-            Slogf.d(TAG, "addLayerToAvailabilityCalculationLocked: checking layer: " + layer);
-        }
-        // If we already know that this layer is supported then we are done.
-        if (currentAvailableLayers.contains(layer)) {
+    private void addOfferingLocked(int publisherId, VmsLayerDependency dependency,
+            Set<VmsLayer> changedLayers) {
+        SparseIntArray publisherCounts = mOfferingCounts.get(dependency);
+        if (publisherCounts == null) {
+            publisherCounts = new SparseIntArray();
+            mOfferingCounts.put(dependency, publisherCounts);
+        }
+        int count = publisherCounts.get(publisherId);
+        publisherCounts.put(publisherId, count + 1);
+        if (count > 0) {
             return;
         }
-        // If there is no offering for this layer we're done.
-        if (!mPotentialLayersAndDependencies.containsKey(layer)) {
+
+        VmsLayer layer = dependency.getLayer();
+        LayerNode node = getOrCreateNodeLocked(layer);
+        Set<VmsLayer> dependencies = dependency.getDependencies();
+        int dependencySetCount = node.mDependencySets.getOrDefault(dependencies, 0);
+        node.mDependencySets.put(dependencies, dependencySetCount + 1);
+        if (dependencySetCount == 0) {
+            for (VmsLayer dependencyLayer : dependencies) {
+                LayerNode dependencyNode = getOrCreateNodeLocked(dependencyLayer);
+                dependencyNode.mDependents.put(layer,
+                        dependencyNode.mDependents.getOrDefault(layer, 0) + 1);
+            }
+        }
+        node.mPublishers.put(publisherId, node.mPublishers.get(publisherId) + 1);
+        changedLayers.add(layer);
+    }
+
+    @GuardedBy("mLock")
+    private void removeOfferingLocked(int publisherId, VmsLayerDependency dependency,
+            Set<VmsLayer> changedLayers) {
+        SparseIntArray publisherCounts = mOfferingCounts.get(dependency);
+        int count = publisherCounts == null ? 0 : publisherCounts.get(publisherId);
+        if (count == 0) {
+            Slogf.w(TAG, "Removing unknown offering of %s by %d", dependency, publisherId);
             return;
         }
-        // Avoid cyclic dependency.
-        if (cyclicAvoidanceSet.contains(layer)) {
-            Slogf.e(TAG, "Detected a cyclic dependency: " + cyclicAvoidanceSet + " -> " + layer);
+        if (count > 1) {
+            publisherCounts.put(publisherId, count - 1);
             return;
         }
-        // A layer may have multiple dependency sets. The layer is available if any dependency
-        // set is satisfied
-        for (Set<VmsLayer> dependencies : mPotentialLayersAndDependencies.get(layer)) {
-            // If layer does not have any dependencies then add to supported.
-            if (dependencies == null || dependencies.isEmpty()) {
-                currentAvailableLayers.add(layer);
-                return;
+        publisherCounts.delete(publisherId);
+        if (publisherCounts.size() == 0) {
+            mOfferingCounts.remove(dependency);
+        }
+
+        VmsLayer layer = dependency.getLayer();
+        LayerNode node = mLayerNodes.get(layer);
+        Set<VmsLayer> dependencies = dependency.getDependencies();
+        int dependencySetCount = node.mDependencySets.get(dependencies);
+        if (dependencySetCount > 1) {
+            node.mDependencySets.put(dependencies, dependencySetCount - 1);
+        } else {
+            node.mDependencySets.remove(dependencies);
+            for (VmsLayer dependencyLayer : dependencies) {
+                LayerNode dependencyNode = mLayerNodes.get(dependencyLayer);
+                int dependentCount = dependencyNode.mDependents.get(layer);
+                if (dependentCount > 1) {
+                    dependencyNode.mDependents.put(layer, dependentCount - 1);
+                } else {
+                    dependencyNode.mDependents.remove(layer);
+                    removeNodeIfUnusedLocked(dependencyLayer, dependencyNode);
+                }
             }
-            // Add the layer to cyclic avoidance set
-            cyclicAvoidanceSet.add(layer);
+        }
+        int publisherCount = node.mPublishers.get(publisherId);
+        if (publisherCount > 1) {
+            node.mPublishers.put(publisherId, publisherCount - 1);
+        } else {
+            node.mPublishers.delete(publisherId);
+        }
+        changedLayers.add(layer);
+        // Availability of the removed layer is still recalculated through changedLayers.
+        removeNodeIfUnusedLocked(layer, node);
+    }
 
-            boolean isSupported = true;
-            for (VmsLayer dependency : dependencies) {
-                addLayerToAvailabilityCalculationLocked(dependency,
-                        currentAvailableLayers,
-                        cyclicAvoidanceSet);
+    @GuardedBy("mLock")
+    private LayerNode getOrCreateNodeLocked(VmsLayer layer) {
+        LayerNode node = mLayerNodes.get(layer);
+        if (node == null) {
+            node = new LayerNode();
+            mLayerNodes.put(layer, node);
+        }
+        return node;
+    }
+
+    @GuardedBy("mLock")
+    private void removeNodeIfUnusedLocked(VmsLayer layer, LayerNode node) {
+        if (node.mDependencySets.isEmpty() && node.mDependents.isEmpty()) {
+            mLayerNodes.remove(layer);
+        }
+    }
 
-                if (!currentAvailableLayers.contains(dependency)) {
-                    isSupported = false;
+    /**
+     * Recalculates the availability of the changed layers and of every layer depending on them,
+     * directly or not. No other layer can change availability.
+     */
+    @GuardedBy("mLock")
+    private void calculateLayersLocked(Set<VmsLayer> changedLayers) {
+        Set<VmsLayer> affectedLayers = new ArraySet<>(changedLayers);
+        ArrayDeque<VmsLayer> pendingLayers = new ArrayDeque<>(changedLayers);
+        while (!pendingLayers.isEmpty()) {
+            LayerNode node = mLayerNodes.get(pendingLayers.poll());
+            if (node == null) {
+                continue;
+            }
+            node.mAvailable = false;
+            for (int i = 0; i < node.mDependents.size(); i++) {
+                VmsLayer dependent = node.mDependents.keyAt(i);
+                if (affectedLayers.add(dependent)) {
+                    pendingLayers.add(dependent);
+                }
+            }
+        }
+        if (DBG) Slogf.d(TAG, "Recalculating availability of %s", affectedLayers);
+
+        // Layers only become available once one of their dependency sets is, so cyclic
+        // dependencies are never satisfied.
+        pendingLayers.addAll(affectedLayers);
+        while (!pendingLayers.isEmpty()) {
+            LayerNode node = mLayerNodes.get(pendingLayers.poll());
+            if (node == null || node.mAvailable || !isSatisfiedLocked(node)) {
+                continue;
+            }
+            node.mAvailable = true;
+            for (int i = 0; i < node.mDependents.size(); i++) {
+                VmsLayer dependent = node.mDependents.keyAt(i);
+                if (affectedLayers.contains(dependent)) {
+                    pendingLayers.add(dependent);
+                }
+            }
+        }
+
+        for (VmsLayer layer : affectedLayers) {
+            LayerNode node = mLayerNodes.get(layer);
+            if (node != null && node.mAvailable) {
+                mAvailableLayerMap.put(layer, new VmsAssociatedLayer(layer, node.getPublishers()));
+            } else {
+                mAvailableLayerMap.remove(layer);
+            }
+        }
+        mAvailableAssociatedLayers = Collections.unmodifiableSet(
+                new ArraySet<>(mAvailableLayerMap.values()));
+    }
+
+    @GuardedBy("mLock")
+    private boolean isSatisfiedLocked(LayerNode node) {
+        // A layer may have multiple dependency sets. The layer is available if any dependency
+        // set is satisfied
+        for (int i = 0; i < node.mDependencySets.size(); i++) {
+            boolean isSatisfied = true;
+            for (VmsLayer dependency : node.mDependencySets.keyAt(i)) {
+                LayerNode dependencyNode = mLayerNodes.get(dependency);
+                if (dependencyNode == null || !dependencyNode.mAvailable) {
+                    isSatisfied = false;
                     break;
                 }
             }
-            cyclicAvoidanceSet.remove(layer);
+            if (isSatisfied) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Offerings of a layer, and the layers depending on it. */
+    private static final class LayerNode {
+        // Number of publishers offering the layer with each set of dependencies.
+        final ArrayMap<Set<VmsLayer>, Integer> mDependencySets = new ArrayMap<>();
+        // Number of sets of dependencies the layer is offered with by each publisher.
+        final SparseIntArray mPublishers = new SparseIntArray();
+        // Number of sets of dependencies of each layer which contain this layer.
+        final ArrayMap<VmsLayer, Integer> mDependents = new ArrayMap<>();
+        boolean mAvailable;
 
-            if (isSupported) {
-                currentAvailableLayers.add(layer);
-                return;
+        Set<Integer> getPublishers() {
+            Set<Integer> publishers = new ArraySet<>(mPublishers.size());
+            for (int i = 0; i < mPublishers.size(); i++) {
+                publishers.add(mPublishers.keyAt(i));
             }
+            return publishers;
         }
     }
 }
@@ -0,0 +1,383 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.car.vms;
+
+import static com.android.car.internal.ExcludeFromCodeCoverageGeneratedReport.DUMP_INFO;
+
+import android.annotation.IntDef;
+import android.annotation.Nullable;
+import android.car.builtin.util.Slogf;
+import android.car.vms.VmsLayer;
+import android.os.SystemClock;
+import android.util.ArrayMap;
+
+import com.android.car.CarLog;
+import com.android.car.internal.ExcludeFromCodeCoverageGeneratedReport;
+import com.android.car.internal.util.FunctionalUtils.ThrowingConsumer;
+import com.android.car.internal.util.IndentingPrintWriter;
+import com.android.car.stats.CarStatsService;
+import com.android.internal.annotations.GuardedBy;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Delivers Vehicle Map Service packets to subscribers.
+ *
+ * <p>With {@link #POLICY_DIRECT}, packets are delivered on the publisher's thread one subscriber
+ * after the other. With any other policy, each subscriber has a bounded queue drained on a
+ * shared thread pool, so a slow subscriber only delays itself, and the policy decides what
+ * happens when its queue is full.
+ *
+ * <p>Packets are only delivered to subscribers added with {@link #addSubscriber(VmsClientInfo)}
+ * and not removed since, as publishers may route packets with a stale list of subscribers.
+ */
+final class VmsSubscriberDispatcher {
+    private static final boolean DBG = false;
+    private static final String TAG = CarLog.tagFor(VmsSubscriberDispatcher.class);
+
+    /** Packets are delivered on the publisher's thread. */
+    static final int POLICY_DIRECT = 0;
+    /** Only the latest packet of each layer and provider is kept in the queue. */
+    static final int POLICY_LATEST_ONLY = 1;
+    /** The oldest packet is dropped when the queue is full. */
+    static final int POLICY_DROP_OLDEST = 2;
+    /** The publisher waits for space in the queue, and the packet is dropped on timeout. */
+    static final int POLICY_BLOCK = 3;
+
+    @IntDef(prefix = {"POLICY_"}, value = {
+            POLICY_DIRECT,
+            POLICY_LATEST_ONLY,
+            POLICY_DROP_OLDEST,
+            POLICY_BLOCK,
+    })
+    @Retention(RetentionPolicy.SOURCE)
+    @interface DeliveryPolicy {}
+
+    private static final int THREAD_POOL_SIZE = 4;
+
+    private final CarStatsService mStatsService;
+
+    private final Object mLock = new Object();
+    @GuardedBy("mLock")
+    private final ArrayMap<VmsClientInfo, SubscriberQueue> mQueues = new ArrayMap<>();
+    @GuardedBy("mLock")
+    @DeliveryPolicy
+    private int mPolicy = POLICY_DIRECT;
+    @GuardedBy("mLock")
+    private int mQueueCapacity = 1;
+    @GuardedBy("mLock")
+    private long mBlockTimeoutMs;
+    @GuardedBy("mLock")
+    private ExecutorService mExecutor;
+
+    VmsSubscriberDispatcher(CarStatsService statsService) {
+        mStatsService = statsService;
+    }
+
+    /**
+     * Sets how packets are delivered from now on.
+     *
+     * @param policy         delivery policy
+     * @param queueCapacity  maximum number of packets queued per subscriber
+     * @param blockTimeoutMs how long a publisher waits for space with {@link #POLICY_BLOCK}
+     */
+    void setPolicy(@DeliveryPolicy int policy, int queueCapacity, long blockTimeoutMs) {
+        if (policy < POLICY_DIRECT || policy > POLICY_BLOCK) {
+            Slogf.w(TAG, "Unknown delivery policy %d, delivering directly", policy);
+            policy = POLICY_DIRECT;
+        }
+        synchronized (mLock) {
+            mPolicy = policy;
+            mQueueCapacity = Math.max(queueCapacity, 1);
+            mBlockTimeoutMs = Math.max(blockTimeoutMs, 0);
+            if (policy != POLICY_DIRECT && mExecutor == null) {
+                mExecutor = Executors.newFixedThreadPool(THREAD_POOL_SIZE);
+            }
+        }
+    }
+
+    /**
+     * Stops the threads draining the subscriber queues, dropping the queued packets, and
+     * delivers directly until the policy is set again.
+     */
+    void release() {
+        ExecutorService executor;
+        List<Delivery> dropped = new ArrayList<>();
+        synchronized (mLock) {
+            executor = mExecutor;
+            mExecutor = null;
+            mPolicy = POLICY_DIRECT;
+            for (int i = 0; i < mQueues.size(); i++) {
+                SubscriberQueue queue = mQueues.valueAt(i);
+                dropped.addAll(queue.mPending);
+                queue.mPending.clear();
+                // Drain tasks that didn't start are discarded by the executor shutdown.
+                queue.mDraining = false;
+            }
+            // Wake up publishers blocked on the queues.
+            mLock.notifyAll();
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        completeAll(dropped);
+    }
+
+    /**
+     * Starts delivering packets to the subscriber.
+     */
+    void addSubscriber(VmsClientInfo subscriber) {
+        synchronized (mLock) {
+            if (!mQueues.containsKey(subscriber)) {
+                mQueues.put(subscriber, new SubscriberQueue(subscriber));
+            }
+        }
+    }
+
+    /**
+     * Delivers a packet to a subscriber according to the delivery policy.
+     *
+     * <p>The packet is dropped if the subscriber was not added or was removed.
+     *
+     * @param delivery   sends the packet to the subscriber
+     * @param onComplete run once the packet was delivered or dropped, if not {@code null}
+     */
+    void dispatch(VmsClientInfo subscriber, int providerId, VmsLayer layer, int packetLength,
+            ThrowingConsumer<VmsClientInfo> delivery, @Nullable Runnable onComplete) {
+        Delivery packet = new Delivery(providerId, layer, packetLength, delivery, onComplete);
+        List<Delivery> dropped = new ArrayList<>();
+        SubscriberQueue queue;
+        boolean direct;
+        boolean startDraining = false;
+        ExecutorService executor;
+        synchronized (mLock) {
+            executor = mExecutor;
+            queue = mQueues.get(subscriber);
+            direct = mPolicy == POLICY_DIRECT;
+            if (queue != null && !direct
+                    && enqueueLocked(queue, packet, dropped) && !queue.mDraining) {
+                queue.mDraining = true;
+                startDraining = true;
+            }
+        }
+        // Shared memory of dropped packets is closed outside of the lock.
+        completeAll(dropped);
+        if (queue == null) {
+            if (DBG) Slogf.d(TAG, "Dropped packet for removed subscriber: %s", layer);
+            packet.complete();
+            return;
+        }
+        if (direct) {
+            deliver(subscriber, packet);
+            return;
+        }
+        if (startDraining) {
+            executor.execute(() -> drain(queue));
+        }
+    }
+
+    /**
+     * Stops delivering to the subscriber, dropping any packet still queued for it.
+     */
+    void removeSubscriber(VmsClientInfo subscriber) {
+        ArrayDeque<Delivery> pending;
+        synchronized (mLock) {
+            SubscriberQueue queue = mQueues.remove(subscriber);
+            if (queue == null) {
+                return;
+            }
+            queue.mRemoved = true;
+            pending = new ArrayDeque<>(queue.mPending);
+            queue.mPending.clear();
+            // Wake up publishers blocked on the queue.
+            mLock.notifyAll();
+        }
+        completeAll(pending);
+    }
+
+    /**
+     * Adds the packet to the queue, dropping packets as required by the policy.
+     *
+     * @param dropped packets dropped from the queue, to complete once the lock is released
+     * @return whether the packet was queued
+     */
+    @GuardedBy("mLock")
+    private boolean enqueueLocked(SubscriberQueue queue, Delivery packet,
+            List<Delivery> dropped) {
+        switch (mPolicy) {
+            case POLICY_LATEST_ONLY:
+                Iterator<Delivery> iterator = queue.mPending.iterator();
+                while (iterator.hasNext()) {
+                    Delivery pending = iterator.next();
+                    if (pending.mProviderId == packet.mProviderId
+                            && pending.mLayer.equals(packet.mLayer)) {
+                        iterator.remove();
+                        dropLocked(queue, pending, dropped);
+                    }
+                }
+                if (queue.mPending.size() >= mQueueCapacity) {
+                    dropLocked(queue, queue.mPending.poll(), dropped);
+                }
+                break;
+            case POLICY_DROP_OLDEST:
+                if (queue.mPending.size() >= mQueueCapacity) {
+                    dropLocked(queue, queue.mPending.poll(), dropped);
+                }
+                break;
+            case POLICY_BLOCK:
+                long deadline = SystemClock.uptimeMillis() + mBlockTimeoutMs;
+                while (queue.mPending.size() >= mQueueCapacity && !queue.mRemoved
+                        && mPolicy == POLICY_BLOCK) {
+                    long remainingMs = deadline - SystemClock.uptimeMillis();
+                    if (remainingMs <= 0) {
+                        dropLocked(queue, packet, dropped);
+                        return false;
+                    }
+                    try {
+                        mLock.wait(remainingMs);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        dropLocked(queue, packet, dropped);
+                        return false;
+                    }
+                }
+                // Removed or released while waiting.
+                if (queue.mRemoved || mPolicy != POLICY_BLOCK) {
+                    dropped.add(packet);
+                    return false;
+                }
+                break;
+            default:
+                break;
+        }
+        queue.mPending.add(packet);
+        queue.mMaxDepth = Math.max(queue.mMaxDepth, queue.mPending.size());
+        mStatsService.getVmsClientLogger(queue.mSubscriber.getUid())
+                .logDeliveryQueueDepth(queue.mPending.size());
+        return true;
+    }
+
+    @GuardedBy("mLock")
+    private void dropLocked(SubscriberQueue queue, Delivery packet, List<Delivery> dropped) {
+        queue.mNumDropped++;
+        mStatsService.getVmsClientLogger(queue.mSubscriber.getUid())
+                .logDeliveryQueueDropped(packet.mLayer, packet.mPacketLength);
+        if (DBG) {
+            Slogf.d(TAG, "Dropped packet for %s: %s", queue.mSubscriber.getPackageName(),
+                    packet.mLayer);
+        }
+        dropped.add(packet);
+    }
+
+    private static void completeAll(Iterable<Delivery> packets) {
+        for (Delivery packet : packets) {
+            packet.complete();
+        }
+    }
+
+    private void drain(SubscriberQueue queue) {
+        while (true) {
+            Delivery packet;
+            synchronized (mLock) {
+                packet = queue.mPending.poll();
+                if (packet == null) {
+                    queue.mDraining = false;
+                    return;
+                }
+                mStatsService.getVmsClientLogger(queue.mSubscriber.getUid())
+                        .logDeliveryQueueDepth(queue.mPending.size());
+                // Make room for publishers blocked on this queue.
+                mLock.notifyAll();
+            }
+            deliver(queue.mSubscriber, packet);
+        }
+    }
+
+    private void deliver(VmsClientInfo subscriber, Delivery packet) {
+        try {
+            packet.mDelivery.accept(subscriber);
+            mStatsService.getVmsClientLogger(subscriber.getUid())
+                    .logPacketReceived(packet.mLayer, packet.mPacketLength);
+        } catch (RuntimeException e) {
+            mStatsService.getVmsClientLogger(subscriber.getUid())
+                    .logPacketDropped(packet.mLayer, packet.mPacketLength);
+            Slogf.e(TAG, e, "Unable to publish to listener: %s", subscriber.getPackageName());
+        } finally {
+            packet.complete();
+        }
+    }
+
+    @ExcludeFromCodeCoverageGeneratedReport(reason = DUMP_INFO)
+    void dump(IndentingPrintWriter writer) {
+        synchronized (mLock) {
+            writer.printf("Delivery policy: %d (queue capacity: %d, block timeout: %d ms)\n",
+                    mPolicy, mQueueCapacity, mBlockTimeoutMs);
+            writer.increaseIndent();
+            for (int i = 0; i < mQueues.size(); i++) {
+                SubscriberQueue queue = mQueues.valueAt(i);
+                writer.printf("%s: depth=%d maxDepth=%d dropped=%d%s\n",
+                        queue.mSubscriber.getPackageName(), queue.mPending.size(),
+                        queue.mMaxDepth, queue.mNumDropped, queue.mDraining ? " draining" : "");
+            }
+            writer.decreaseIndent();
+        }
+    }
+
+    private static final class SubscriberQueue {
+        final VmsClientInfo mSubscriber;
+        final ArrayDeque<Delivery> mPending = new ArrayDeque<>();
+        boolean mDraining;
+        boolean mRemoved;
+        int mMaxDepth;
+        long mNumDropped;
+
+        SubscriberQueue(VmsClientInfo subscriber) {
+            mSubscriber = subscriber;
+        }
+    }
+
+    private static final class Delivery {
+        final int mProviderId;
+        final VmsLayer mLayer;
+        final int mPacketLength;
+        final ThrowingConsumer<VmsClientInfo> mDelivery;
+        @Nullable
+        final Runnable mOnComplete;
+
+        Delivery(int providerId, VmsLayer layer, int packetLength,
+                ThrowingConsumer<VmsClientInfo> delivery, @Nullable Runnable onComplete) {
+            mProviderId = providerId;
+            mLayer = layer;
+            mPacketLength = packetLength;
+            mDelivery = delivery;
+            mOnComplete = onComplete;
+        }
+
+        void complete() {
+            if (mOnComplete != null) {
+                mOnComplete.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.car.vms;
+
+import android.car.vms.VmsLayer;
+import android.util.ArrayMap;
+import android.util.ArraySet;
+import android.util.SparseArray;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index from (layer, provider ID) to the clients subscribed to it.
+ *
+ * <p>Every subscriber array is computed when a client changes, merging monitoring clients, layer
+ * subscribers and provider-specific subscribers, so looking up the subscribers of a packet does
+ * not allocate and does not need any lock. Only the routes of the layers the client subscribes
+ * to, before or after the change, are recomputed; all of them if its monitoring changes.
+ *
+ * <p>{@link #updateClient} and {@link #removeClient} must be called under a single lock, while
+ * {@link #getSubscribers} can be called from any thread.
+ */
+final class VmsSubscriberRoutingTable {
+    private static final VmsClientInfo[] NO_SUBSCRIBERS = new VmsClientInfo[0];
+
+    // Subscriptions of each client, as last applied to the index.
+    private final Map<VmsClientInfo, ClientSubscriptions> mClientSubscriptions =
+            new ArrayMap<>();
+    private final Set<VmsClientInfo> mMonitoringClients = new ArraySet<>();
+    private final Map<VmsLayer, Set<VmsClientInfo>> mLayerSubscribers = new ArrayMap<>();
+    private final Map<VmsLayer, SparseArray<Set<VmsClientInfo>>> mLayerAndProviderSubscribers =
+            new ArrayMap<>();
+
+    // Replaced on each change, never modified once published.
+    private volatile Routes mRoutes = new Routes(NO_SUBSCRIBERS, new ArrayMap<>());
+
+    /**
+     * Updates the routes of {@code client} to its current subscriptions and monitoring state,
+     * adding the client if needed.
+     */
+    void updateClient(VmsClientInfo client) {
+        ClientSubscriptions previous = mClientSubscriptions.get(client);
+        ClientSubscriptions current = new ClientSubscriptions(client.isMonitoringEnabled(),
+                client.getLayerSubscriptions(), client.getLayerAndProviderSubscriptions());
+        mClientSubscriptions.put(client, current);
+        applyChange(client, previous, current);
+    }
+
+    /** Removes {@code client} from all the routes. */
+    void removeClient(VmsClientInfo client) {
+        ClientSubscriptions previous = mClientSubscriptions.remove(client);
+        if (previous != null) {
+            applyChange(client, previous, ClientSubscriptions.NONE);
+        }
+    }
+
+    /**
+     * Returns the clients subscribed to the layer from the provider.
+     *
+     * <p>The returned array must not be modified.
+     */
+    VmsClientInfo[] getSubscribers(int providerId, VmsLayer layer) {
+        Routes routes = mRoutes;
+        LayerRoute route = routes.mLayerRoutes.get(layer);
+        if (route == null) {
+            return routes.mMonitoringSubscribers;
+        }
+        return route.mProviderSubscribers.get(providerId, route.mAnyProviderSubscribers);
+    }
+
+    private void applyChange(VmsClientInfo client, ClientSubscriptions previous,
+            ClientSubscriptions current) {
+        if (previous == null) {
+            previous = ClientSubscriptions.NONE;
+        }
+        Set<VmsLayer> changedLayers = new ArraySet<>();
+        removeSubscriptions(client, previous, changedLayers);
+        addSubscriptions(client, current, changedLayers);
+
+        Routes routes = mRoutes;
+        VmsClientInfo[] monitoringSubscribers = routes.mMonitoringSubscribers;
+        if (previous.mMonitoring != current.mMonitoring) {
+            // Monitoring clients receive every layer, so every route changes.
+            monitoringSubscribers = toArray(mMonitoringClients);
+            changedLayers.addAll(routes.mLayerRoutes.keySet());
+        } else if (changedLayers.isEmpty()) {
+            return;
+        }
+        Map<VmsLayer, LayerRoute> layerRoutes = new ArrayMap<>(routes.mLayerRoutes.size());
+        layerRoutes.putAll(routes.mLayerRoutes);
+        for (VmsLayer layer : changedLayers) {
+            LayerRoute route = buildLayerRoute(layer);
+            if (route == null) {
+                layerRoutes.remove(layer);
+            } else {
+                layerRoutes.put(layer, route);
+            }
+        }
+        mRoutes = new Routes(monitoringSubscribers, layerRoutes);
+    }
+
+    private void addSubscriptions(VmsClientInfo client, ClientSubscriptions subscriptions,
+            Set<VmsLayer> changedLayers) {
+        if (subscriptions.mMonitoring) {
+            mMonitoringClients.add(client);
+        }
+        for (VmsLayer layer : subscriptions.mLayers) {
+            mLayerSubscribers.computeIfAbsent(layer, ignored -> new ArraySet<>()).add(client);
+            changedLayers.add(layer);
+        }
+        for (Map.Entry<VmsLayer, Set<Integer>> entry :
+                subscriptions.mLayerAndProviders.entrySet()) {
+            SparseArray<Set<VmsClientInfo>> providerSubscribers =
+                    mLayerAndProviderSubscribers.computeIfAbsent(entry.getKey(),
+                            ignored -> new SparseArray<>());
+            for (int providerId : entry.getValue()) {
+                Set<VmsClientInfo> subscribers = providerSubscribers.get(providerId);
+                if (subscribers == null) {
+                    subscribers = new ArraySet<>();
+                    providerSubscribers.put(providerId, subscribers);
+                }
+                subscribers.add(client);
+            }
+            changedLayers.add(entry.getKey());
+        }
+    }
+
+    private void removeSubscriptions(VmsClientInfo client, ClientSubscriptions subscriptions,
+            Set<VmsLayer> changedLayers) {
+        if (subscriptions.mMonitoring) {
+            mMonitoringClients.remove(client);
+        }
+        for (VmsLayer layer : subscriptions.mLayers) {
+            Set<VmsClientInfo> subscribers = mLayerSubscribers.get(layer);
+            if (subscribers != null && subscribers.remove(client) && subscribers.isEmpty()) {
+                mLayerSubscribers.remove(layer);
+            }
+            changedLayers.add(layer);
+        }
+        for (Map.Entry<VmsLayer, Set<Integer>> entry :
+                subscriptions.mLayerAndProviders.entrySet()) {
+            SparseArray<Set<VmsClientInfo>> providerSubscribers =
+                    mLayerAndProviderSubscribers.get(entry.getKey());
+            if (providerSubscribers == null) {
+                continue;
+            }
+            for (int providerId : entry.getValue()) {
+                Set<VmsClientInfo> subscribers = providerSubscribers.get(providerId);
+                if (subscribers != null && subscribers.remove(client) && subscribers.isEmpty()) {
+                    providerSubscribers.remove(providerId);
+                }
+            }
+            if (providerSubscribers.size() == 0) {
+                mLayerAndProviderSubscribers.remove(entry.getKey());
+            }
+            changedLayers.add(entry.getKey());
+        }
+    }
+
+    /** Returns the route of the layer from the index, or {@code null} if nobody subscribes. */
+    private LayerRoute buildLayerRoute(VmsLayer layer) {
+        Set<VmsClientInfo> layerSubscribers = mLayerSubscribers.get(layer);
+        SparseArray<Set<VmsClientInfo>> providerSubscribers =
+                mLayerAndProviderSubscribers.get(layer);
+        if (layerSubscribers == null && providerSubscribers == null) {
+            return null;
+        }
+        Set<VmsClientInfo> anyProviderSubscribers = new ArraySet<>(mMonitoringClients);
+        if (layerSubscribers != null) {
+            anyProviderSubscribers.addAll(layerSubscribers);
+        }
+
+        SparseArray<VmsClientInfo[]> providerRoutes = new SparseArray<>();
+        if (providerSubscribers != null) {
+            for (int i = 0; i < providerSubscribers.size(); i++) {
+                Set<VmsClientInfo> subscribers = new ArraySet<>(anyProviderSubscribers);
+                subscribers.addAll(providerSubscribers.valueAt(i));
+                providerRoutes.put(providerSubscribers.keyAt(i), toArray(subscribers));
+            }
+        }
+        return new LayerRoute(toArray(anyProviderSubscribers), providerRoutes);
+    }
+
+    private static VmsClientInfo[] toArray(Set<VmsClientInfo> clients) {
+        return clients.isEmpty() ? NO_SUBSCRIBERS : clients.toArray(new VmsClientInfo[0]);
+    }
+
+    private static final class ClientSubscriptions {
+        static final ClientSubscriptions NONE = new ClientSubscriptions(/* monitoring= */ false,
+                Collections.emptySet(), Collections.emptyMap());
+
+        final boolean mMonitoring;
+        final Set<VmsLayer> mLayers;
+        final Map<VmsLayer, Set<Integer>> mLayerAndProviders;
+
+        ClientSubscriptions(boolean monitoring, Set<VmsLayer> layers,
+                Map<VmsLayer, Set<Integer>> layerAndProviders) {
+            mMonitoring = monitoring;
+            mLayers = layers;
+            mLayerAndProviders = layerAndProviders;
+        }
+    }
+
+    private static final class Routes {
+        // Subscribers of layers without any subscription, i.e. monitoring clients.
+        final VmsClientInfo[] mMonitoringSubscribers;
+        final Map<VmsLayer, LayerRoute> mLayerRoutes;
+
+        Routes(VmsClientInfo[] monitoringSubscribers, Map<VmsLayer, LayerRoute> layerRoutes) {
+            mMonitoringSubscribers = monitoringSubscribers;
+            mLayerRoutes = layerRoutes;
+        }
+    }
+
+    private static final class LayerRoute {
+        // Subscribers of the layer regardless of the provider.
+        final VmsClientInfo[] mAnyProviderSubscribers;
+        // Subscribers of the layer for specific providers, including mAnyProviderSubscribers.
+        final SparseArray<VmsClientInfo[]> mProviderSubscribers;
+
+        LayerRoute(VmsClientInfo[] anyProviderSubscribers,
+                SparseArray<VmsClientInfo[]> providerSubscribers) {
+            mAnyProviderSubscribers = anyProviderSubscribers;
+            mProviderSubscribers = providerSubscribers;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.car.vms;
+
+import android.annotation.Nullable;
+import android.car.vms.VmsAssociatedLayer;
+import android.car.vms.VmsLayer;
+import android.car.vms.VmsSubscriptionState;
+import android.util.ArrayMap;
+import android.util.ArraySet;
+import android.util.SparseIntArray;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Fuses the subscriptions of every Vehicle Map Service client.
+ *
+ * <p>Subscriptions are counted per layer and provider, so a client subscribing or unsubscribing
+ * only updates its own layers, and the fused state is only rebuilt when a layer or provider
+ * gains its first subscriber or loses its last one.
+ *
+ * <p>Not thread-safe.
+ */
+final class VmsSubscriptionAggregator {
+    // Number of clients subscribed to each layer from any provider.
+    private final ArrayMap<VmsLayer, Integer> mLayerCounts = new ArrayMap<>();
+    // Number of clients subscribed to each layer from each provider.
+    private final ArrayMap<VmsLayer, SparseIntArray> mLayerAndProviderCounts = new ArrayMap<>();
+    private boolean mChanged;
+
+    /**
+     * Adds the subscriptions of a client.
+     */
+    void add(Set<VmsLayer> layers, Map<VmsLayer, Set<Integer>> layerAndProviders) {
+        for (VmsLayer layer : layers) {
+            int count = mLayerCounts.getOrDefault(layer, 0);
+            mLayerCounts.put(layer, count + 1);
+            mChanged |= count == 0;
+        }
+        for (Map.Entry<VmsLayer, Set<Integer>> entry : layerAndProviders.entrySet()) {
+            SparseIntArray providerCounts = mLayerAndProviderCounts.get(entry.getKey());
+            if (providerCounts == null) {
+                providerCounts = new SparseIntArray();
+                mLayerAndProviderCounts.put(entry.getKey(), providerCounts);
+            }
+            for (int providerId : entry.getValue()) {
+                int count = providerCounts.get(providerId);
+                providerCounts.put(providerId, count + 1);
+                mChanged |= count == 0;
+            }
+        }
+    }
+
+    /**
+     * Removes the subscriptions of a client, as previously added.
+     */
+    void remove(Set<VmsLayer> layers, Map<VmsLayer, Set<Integer>> layerAndProviders) {
+        for (VmsLayer layer : layers) {
+            int count = mLayerCounts.getOrDefault(layer, 0);
+            if (count > 1) {
+                mLayerCounts.put(layer, count - 1);
+            } else if (count == 1) {
+                mLayerCounts.remove(layer);
+                mChanged = true;
+            }
+        }
+        for (Map.Entry<VmsLayer, Set<Integer>> entry : layerAndProviders.entrySet()) {
+            SparseIntArray providerCounts = mLayerAndProviderCounts.get(entry.getKey());
+            if (providerCounts == null) {
+                continue;
+            }
+            for (int providerId : entry.getValue()) {
+                int count = providerCounts.get(providerId);
+                if (count > 1) {
+                    providerCounts.put(providerId, count - 1);
+                } else if (count == 1) {
+                    providerCounts.delete(providerId);
+                    mChanged = true;
+                }
+            }
+            if (providerCounts.size() == 0) {
+                mLayerAndProviderCounts.remove(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Returns the fused subscription state if it may have changed since the last call.
+     *
+     * @return the fused subscriptions, or {@code null} if no layer or provider gained its first
+     *         subscriber or lost its last one
+     */
+    @Nullable
+    VmsSubscriptionState getStateIfChanged(int sequenceNumber) {
+        if (!mChanged) {
+            return null;
+        }
+        mChanged = false;
+
+        Set<VmsLayer> layers = new ArraySet<>(mLayerCounts.keySet());
+        Set<VmsAssociatedLayer> associatedLayers = new ArraySet<>();
+        for (int i = 0; i < mLayerAndProviderCounts.size(); i++) {
+            VmsLayer layer = mLayerAndProviderCounts.keyAt(i);
+            // Global layer subscriptions include every provider.
+            if (mLayerCounts.containsKey(layer)) {
+                continue;
+            }
+            SparseIntArray providerCounts = mLayerAndProviderCounts.valueAt(i);
+            Set<Integer> providerIds = new ArraySet<>(providerCounts.size());
+            for (int j = 0; j < providerCounts.size(); j++) {
+                providerIds.add(providerCounts.keyAt(j));
+            }
+            associatedLayers.add(new VmsAssociatedLayer(layer, providerIds));
+        }
+        return new VmsSubscriptionState(sequenceNumber, layers, associatedLayers);
+    }
+}
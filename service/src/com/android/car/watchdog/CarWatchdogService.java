@@ -80,6 +80,8 @@ import android.util.proto.ProtoOutputStream;
 import com.android.car.CarLocalServices;
 import com.android.car.CarLog;
 import com.android.car.CarServiceBase;
+import com.android.car.garagemode.GarageModeService;
+import com.android.car.garagemode.GarageModeWork;
 import com.android.car.internal.ExcludeFromCodeCoverageGeneratedReport;
 import com.android.car.internal.util.ArrayUtils;
 import com.android.car.internal.util.IndentingPrintWriter;
@@ -112,6 +114,9 @@ public final class CarWatchdogService extends ICarWatchdogService.Stub implement
 
     private static final String FALLBACK_DATA_SYSTEM_CAR_DIR_PATH = "/data/system/car";
     private static final String WATCHDOG_DIR_NAME = "watchdog";
+    private static final String DATABASE_SHRINK_WORK_NAME = "CarWatchdogService.shrinkDatabase";
+    // Used until the Garage Mode work scheduler learns the actual duration of the shrink.
+    private static final long DATABASE_SHRINK_ESTIMATED_DURATION_MS = 1_000;
 
     private static final TimeSource SYSTEM_INSTANCE = new TimeSource() {
         @Override
@@ -159,7 +164,7 @@ public final class CarWatchdogService extends ICarWatchdogService.Stub implement
                                 ? GarageMode.GARAGE_MODE_ON : GarageMode.GARAGE_MODE_OFF;
                     }
                     mWatchdogPerfHandler.onGarageModeChange(garageMode);
-                    if (garageMode == GarageMode.GARAGE_MODE_ON) {
+                    if (garageMode == GarageMode.GARAGE_MODE_ON && !isDatabaseShrinkScheduled()) {
                         mWatchdogStorage.shrinkDatabase();
                     }
                     notifyGarageModeChange(garageMode);
@@ -273,6 +278,10 @@ public final class CarWatchdogService extends ICarWatchdogService.Stub implement
     private @GarageMode int mCurrentGarageMode;
     @GuardedBy("mLock")
     private boolean mIsDisplayEnabled;
+    // Whether the database is shrunk by the Garage Mode work scheduler, rather than on the
+    // GARAGE_MODE_ON broadcast.
+    @GuardedBy("mLock")
+    private boolean mIsDatabaseShrinkScheduled;
 
     public CarWatchdogService(Context context, Context carServiceBuiltinPackageContext) {
         this(context, carServiceBuiltinPackageContext,
@@ -331,6 +340,7 @@ public final class CarWatchdogService extends ICarWatchdogService.Stub implement
         subscribePowerManagementService();
         subscribeUserStateChange();
         subscribeBroadcastReceiver();
+        registerGarageModeWork();
         mCarWatchdogDaemonHelper.addOnConnectionChangeListener(mConnectionListener);
         mCarWatchdogDaemonHelper.connect();
         // To make sure the main handler is ready for responding to car watchdog daemon, registering
@@ -346,6 +356,7 @@ public final class CarWatchdogService extends ICarWatchdogService.Stub implement
     public void release() {
         mContext.unregisterReceiver(mBroadcastReceiver);
         unsubscribePowerManagementService();
+        unregisterGarageModeWork();
         mWatchdogPerfHandler.release();
         mWatchdogStorage.release();
         unregisterFromDaemon();
@@ -739,6 +750,41 @@ public final class CarWatchdogService extends ICarWatchdogService.Stub implement
         powerService.removePowerPolicyListener(mCarDisplayPowerPolicyListener);
     }
 
+    private void registerGarageModeWork() {
+        GarageModeService garageModeService = CarLocalServices.getService(GarageModeService.class);
+        if (garageModeService == null) {
+            Slogf.w(TAG, "Cannot get GarageModeService, shrinking the database on GARAGE_MODE_ON");
+            return;
+        }
+        // The shrink is a few SQL statements that cannot be interrupted, so the cancellation
+        // signal is not checked.
+        garageModeService.registerWork(new GarageModeWork(DATABASE_SHRINK_WORK_NAME,
+                /* priority= */ 0, DATABASE_SHRINK_ESTIMATED_DURATION_MS,
+                GarageModeWork.IO_CLASS_LIGHT, signal -> mWatchdogStorage.shrinkDatabase()));
+        synchronized (mLock) {
+            mIsDatabaseShrinkScheduled = true;
+        }
+    }
+
+    private void unregisterGarageModeWork() {
+        synchronized (mLock) {
+            if (!mIsDatabaseShrinkScheduled) {
+                return;
+            }
+            mIsDatabaseShrinkScheduled = false;
+        }
+        GarageModeService garageModeService = CarLocalServices.getService(GarageModeService.class);
+        if (garageModeService != null) {
+            garageModeService.unregisterWork(DATABASE_SHRINK_WORK_NAME);
+        }
+    }
+
+    private boolean isDatabaseShrinkScheduled() {
+        synchronized (mLock) {
+            return mIsDatabaseShrinkScheduled;
+        }
+    }
+
     private void subscribeUserStateChange() {
         CarUserService userService = CarLocalServices.getService(CarUserService.class);
         if (userService == null) {
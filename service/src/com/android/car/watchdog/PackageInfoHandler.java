@@ -34,6 +34,7 @@ import android.util.SparseArray;
 import android.util.SparseBooleanArray;
 
 import com.android.car.CarLog;
+import com.android.car.CarServiceUtils;
 import com.android.car.internal.util.IntArray;
 import com.android.internal.annotations.GuardedBy;
 
@@ -209,7 +210,10 @@ public final class PackageInfoHandler {
 
     @GuardedBy("mLock")
     private void populateSharedPackagesLocked(int uid, String genericPackageName) {
-        String[] packages = mPackageManager.getPackagesForUid(uid);
+        String[] packages = CarServiceUtils.getPackagesForUid(mPackageManager, uid);
+        if (packages == null) {
+            return;
+        }
         for (String pkg : packages) {
             mGenericPackageNameByPackage.put(pkg, genericPackageName);
         }
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.car;
+
+import static android.car.OccupantZoneCache.GROUP_AUDIO;
+import static android.car.OccupantZoneCache.GROUP_DISPLAY;
+import static android.car.OccupantZoneCache.GROUP_USER;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public final class OccupantZoneCacheTest {
+
+    private static final int QUERY_1 = 1;
+    private static final int QUERY_2 = 2;
+
+    private final OccupantZoneCache mCache = new OccupantZoneCache();
+    private final AtomicInteger mNumRemoteQueries = new AtomicInteger();
+
+    @Test
+    public void testGet_disabled_alwaysQueriesService() throws Exception {
+        get(QUERY_1, GROUP_DISPLAY, 10);
+        get(QUERY_1, GROUP_DISPLAY, 10);
+
+        assertThat(mNumRemoteQueries.get()).isEqualTo(2);
+        assertThat(mCache.getHitRatio()).isEqualTo(0f);
+    }
+
+    @Test
+    public void testGet_enabled_cachesResult() throws Exception {
+        mCache.setEnabled(true);
+
+        assertThat(get(QUERY_1, GROUP_DISPLAY, 10)).isEqualTo(10);
+        assertThat(get(QUERY_1, GROUP_DISPLAY, 10)).isEqualTo(10);
+        assertThat(get(QUERY_1, GROUP_DISPLAY, 20)).isEqualTo(20);
+
+        assertThat(mNumRemoteQueries.get()).isEqualTo(2);
+        assertThat(mCache.getHitRatio()).isWithin(1e-6f).of(1f / 3);
+    }
+
+    @Test
+    public void testGet_cachesNullResult() throws Exception {
+        mCache.setEnabled(true);
+
+        mCache.get(QUERY_1, GROUP_DISPLAY, 0, 0, () -> {
+            mNumRemoteQueries.incrementAndGet();
+            return null;
+        });
+        Object result = mCache.get(QUERY_1, GROUP_DISPLAY, 0, 0, () -> {
+            mNumRemoteQueries.incrementAndGet();
+            return new Object();
+        });
+
+        assertThat(result).isNull();
+        assertThat(mNumRemoteQueries.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testInvalidate_userChange_onlyDropsUserResults() throws Exception {
+        mCache.setEnabled(true);
+        get(QUERY_1, GROUP_DISPLAY, 10);
+        get(QUERY_2, GROUP_USER, 10);
+
+        mCache.invalidate(CarOccupantZoneManager.ZONE_CONFIG_CHANGE_FLAG_USER);
+        get(QUERY_1, GROUP_DISPLAY, 10);
+        get(QUERY_2, GROUP_USER, 10);
+
+        assertThat(mNumRemoteQueries.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void testInvalidate_displayChange_dropsAllResults() throws Exception {
+        mCache.setEnabled(true);
+        get(QUERY_1, GROUP_AUDIO, 10);
+        get(QUERY_2, GROUP_USER, 10);
+
+        mCache.invalidate(CarOccupantZoneManager.ZONE_CONFIG_CHANGE_FLAG_DISPLAY);
+        get(QUERY_1, GROUP_AUDIO, 10);
+        get(QUERY_2, GROUP_USER, 10);
+
+        assertThat(mNumRemoteQueries.get()).isEqualTo(4);
+    }
+
+    @Test
+    public void testGet_changeDuringQuery_resultNotCached() throws Exception {
+        mCache.setEnabled(true);
+
+        mCache.get(QUERY_1, GROUP_USER, 0, 0, () -> {
+            mNumRemoteQueries.incrementAndGet();
+            // The config changes after the car service computed the result.
+            mCache.invalidate(CarOccupantZoneManager.ZONE_CONFIG_CHANGE_FLAG_USER);
+            return 1;
+        });
+        get(QUERY_1, GROUP_USER, 0);
+
+        assertThat(mNumRemoteQueries.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testSetEnabled_false_dropsResults() throws Exception {
+        mCache.setEnabled(true);
+        get(QUERY_1, GROUP_DISPLAY, 10);
+
+        mCache.setEnabled(false);
+        mCache.setEnabled(true);
+        get(QUERY_1, GROUP_DISPLAY, 10);
+
+        assertThat(mNumRemoteQueries.get()).isEqualTo(2);
+    }
+
+    private int get(int queryId, int group, int arg) throws Exception {
+        return mCache.get(queryId, group, arg, /* arg2= */ 0, () -> {
+            mNumRemoteQueries.incrementAndGet();
+            return arg;
+        });
+    }
+}
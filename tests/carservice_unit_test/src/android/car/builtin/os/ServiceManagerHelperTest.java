@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.car.builtin.os;
+
+import static com.android.dx.mockito.inline.extended.ExtendedMockito.doAnswer;
+import static com.android.dx.mockito.inline.extended.ExtendedMockito.doReturn;
+import static com.android.dx.mockito.inline.extended.ExtendedMockito.doThrow;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+
+import android.car.test.mocks.AbstractExtendedMockitoTestCase;
+import android.os.Binder;
+import android.os.IBinder;
+import android.os.IServiceCallback;
+import android.os.RemoteException;
+import android.os.ServiceManager;
+import android.os.SystemClock;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public final class ServiceManagerHelperTest extends AbstractExtendedMockitoTestCase {
+
+    private static final long TIMEOUT_MS = 10_000;
+    private static final long SHORT_TIMEOUT_MS = 100;
+    private static final long WAIT_MS = 1_000;
+
+    @Override
+    protected void onSessionBuilder(CustomMockitoSessionBuilder session) {
+        session.spyStatic(ServiceManager.class);
+    }
+
+    @Test
+    public void testWaitForServiceRegistration_notified() throws Exception {
+        String name = "car_test_notified";
+        CompletableFuture<IServiceCallback> callback = mockRegisterForNotifications(name);
+        AtomicReference<IBinder> service = new AtomicReference<>();
+        doAnswer(invocation -> service.get()).when(() -> ServiceManager.checkService(name));
+        CompletableFuture<Boolean> registered = CompletableFuture.supplyAsync(() -> {
+            try {
+                return ServiceManagerHelper.waitForServiceRegistration(name, TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        // The registration can happen before or after the helper looks the service up again.
+        service.set(new Binder());
+        callback.get(WAIT_MS, TimeUnit.MILLISECONDS).onRegistration(name, service.get());
+
+        assertThat(registered.get(WAIT_MS, TimeUnit.MILLISECONDS)).isTrue();
+    }
+
+    @Test
+    public void testWaitForServiceRegistration_registeredBeforeWatching() throws Exception {
+        String name = "car_test_registered";
+        mockRegisterForNotifications(name);
+        doReturn(new Binder()).when(() -> ServiceManager.checkService(name));
+
+        long startMs = SystemClock.uptimeMillis();
+        boolean registered = ServiceManagerHelper.waitForServiceRegistration(name, TIMEOUT_MS);
+
+        assertThat(registered).isTrue();
+        assertThat(SystemClock.uptimeMillis() - startMs).isLessThan(TIMEOUT_MS);
+    }
+
+    @Test
+    public void testWaitForServiceRegistration_timeout() throws Exception {
+        String name = "car_test_timeout";
+        mockRegisterForNotifications(name);
+        doReturn(null).when(() -> ServiceManager.checkService(name));
+
+        long startMs = SystemClock.uptimeMillis();
+        boolean registered = ServiceManagerHelper.waitForServiceRegistration(name,
+                SHORT_TIMEOUT_MS);
+
+        assertThat(registered).isFalse();
+        assertThat(SystemClock.uptimeMillis() - startMs).isAtLeast(SHORT_TIMEOUT_MS);
+    }
+
+    @Test
+    public void testWaitForServiceRegistration_notificationsUnavailable() throws Exception {
+        String name = "car_test_unavailable";
+        doThrow(new RemoteException()).when(
+                () -> ServiceManager.registerForNotifications(eq(name), any()));
+
+        long startMs = SystemClock.uptimeMillis();
+        boolean registered = ServiceManagerHelper.waitForServiceRegistration(name,
+                SHORT_TIMEOUT_MS);
+
+        assertThat(registered).isFalse();
+        assertThat(SystemClock.uptimeMillis() - startMs).isAtLeast(SHORT_TIMEOUT_MS);
+    }
+
+    private static CompletableFuture<IServiceCallback> mockRegisterForNotifications(
+            String name) {
+        CompletableFuture<IServiceCallback> callback = new CompletableFuture<>();
+        doAnswer(invocation -> {
+            callback.complete(invocation.getArgument(1));
+            return null;
+        }).when(() -> ServiceManager.registerForNotifications(eq(name), any()));
+        return callback;
+    }
+}
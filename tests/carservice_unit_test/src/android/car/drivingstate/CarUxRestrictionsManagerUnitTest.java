@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.car.drivingstate;
+
+import static android.car.drivingstate.CarUxRestrictions.UX_RESTRICTIONS_BASELINE;
+import static android.car.drivingstate.CarUxRestrictions.UX_RESTRICTIONS_FULLY_RESTRICTED;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.car.Car;
+import android.content.Context;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.view.Display;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public final class CarUxRestrictionsManagerUnitTest {
+
+    private static final int DISPLAY_ID = Display.DEFAULT_DISPLAY;
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final CarUxRestrictions mUnrestricted = createRestrictions(
+            /* reqOpt= */ false, UX_RESTRICTIONS_BASELINE, /* timestamp= */ 1);
+    private final CarUxRestrictions mFullyRestricted = createRestrictions(
+            /* reqOpt= */ true, UX_RESTRICTIONS_FULLY_RESTRICTED, /* timestamp= */ 2);
+
+    @Mock private Context mContext;
+    @Mock private Car mCar;
+    @Mock private IBinder mBinder;
+    @Mock private ICarUxRestrictionsManager mService;
+
+    private CarUxRestrictionsManager mManager;
+
+    @Before
+    public void setUp() throws Exception {
+        when(mCar.getContext()).thenReturn(mContext);
+        when(mCar.getEventHandler()).thenReturn(mMainHandler);
+        when(mBinder.queryLocalInterface(anyString())).thenReturn(mService);
+        when(mService.getCurrentUxRestrictions(DISPLAY_ID)).thenReturn(mUnrestricted);
+        mManager = new CarUxRestrictionsManager(mCar, mBinder);
+    }
+
+    @Test
+    public void testGetCurrentCarUxRestrictions_queriesServiceOnce() throws Exception {
+        assertThat(mManager.getCurrentCarUxRestrictions(DISPLAY_ID)).isEqualTo(mUnrestricted);
+        assertThat(mManager.getCurrentCarUxRestrictions(DISPLAY_ID)).isEqualTo(mUnrestricted);
+
+        verify(mService).getCurrentUxRestrictions(DISPLAY_ID);
+        verify(mService).registerUxRestrictionsChangeListener(any(), eq(DISPLAY_ID));
+    }
+
+    @Test
+    public void testGetCurrentCarUxRestrictions_afterChange_returnsNewRestrictions()
+            throws Exception {
+        mManager.getCurrentCarUxRestrictions(DISPLAY_ID);
+
+        captureCacheListener().onUxRestrictionsChanged(mFullyRestricted);
+
+        assertThat(mManager.getCurrentCarUxRestrictions(DISPLAY_ID)).isEqualTo(mFullyRestricted);
+        verify(mService).getCurrentUxRestrictions(DISPLAY_ID);
+    }
+
+    @Test
+    public void testGetCurrentCarUxRestrictions_olderChange_ignored() throws Exception {
+        when(mService.getCurrentUxRestrictions(DISPLAY_ID)).thenReturn(mFullyRestricted);
+        mManager.getCurrentCarUxRestrictions(DISPLAY_ID);
+
+        captureCacheListener().onUxRestrictionsChanged(mUnrestricted);
+
+        assertThat(mManager.getCurrentCarUxRestrictions(DISPLAY_ID)).isEqualTo(mFullyRestricted);
+    }
+
+    @Test
+    public void testGetCurrentCarUxRestrictions_clientListenerChange_updatesCache()
+            throws Exception {
+        mManager.getCurrentCarUxRestrictions(DISPLAY_ID);
+        mManager.setListener(DISPLAY_ID, restrictions -> { });
+        ArgumentCaptor<ICarUxRestrictionsChangeListener> captor =
+                ArgumentCaptor.forClass(ICarUxRestrictionsChangeListener.class);
+        verify(mService, times(2)).registerUxRestrictionsChangeListener(captor.capture(),
+                eq(DISPLAY_ID));
+
+        // The client listener may be notified before the cache listener.
+        captor.getAllValues().get(1).onUxRestrictionsChanged(mFullyRestricted);
+
+        assertThat(mManager.getCurrentCarUxRestrictions(DISPLAY_ID)).isEqualTo(mFullyRestricted);
+    }
+
+    @Test
+    public void testGetCurrentCarUxRestrictions_afterCarDisconnected_queriesServiceAgain()
+            throws Exception {
+        mManager.getCurrentCarUxRestrictions(DISPLAY_ID);
+
+        mManager.onCarDisconnected();
+        mManager.getCurrentCarUxRestrictions(DISPLAY_ID);
+
+        verify(mService, times(2)).getCurrentUxRestrictions(DISPLAY_ID);
+    }
+
+    private ICarUxRestrictionsChangeListener captureCacheListener() throws Exception {
+        ArgumentCaptor<ICarUxRestrictionsChangeListener> captor =
+                ArgumentCaptor.forClass(ICarUxRestrictionsChangeListener.class);
+        verify(mService).registerUxRestrictionsChangeListener(captor.capture(), eq(DISPLAY_ID));
+        return captor.getValue();
+    }
+
+    private static CarUxRestrictions createRestrictions(boolean reqOpt, int restrictions,
+            long timestamp) {
+        return new CarUxRestrictions.Builder(reqOpt, restrictions, timestamp).build();
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.car.vms;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.junit.Assert.assertThrows;
+
+import android.os.Parcel;
+import android.os.SharedMemory;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+@RunWith(AndroidJUnit4.class)
+@SmallTest
+public class VmsPacketRingBufferTest {
+    private static final int SLOT_COUNT = 4;
+    private static final int MAX_PACKET_SIZE = 16;
+
+    private static final byte[] PACKET1 = {1, 2, 3};
+    private static final byte[] PACKET2 = {4, 5, 6, 7};
+    private static final byte[] PACKET3 = {8};
+
+    private VmsPacketRingBuffer mWriter;
+    private VmsPacketRingBuffer mReader;
+
+    @Before
+    public void setUp() {
+        mWriter = VmsPacketRingBuffer.create("VmsPacketRingBufferTest", SLOT_COUNT,
+                MAX_PACKET_SIZE);
+        mReader = VmsPacketRingBuffer.map(duplicate(mWriter.getSharedMemory()));
+    }
+
+    @After
+    public void tearDown() {
+        mReader.close();
+        mWriter.close();
+    }
+
+    @Test
+    public void testCreate_InvalidSlotCount() {
+        assertThrows(IllegalArgumentException.class,
+                () -> VmsPacketRingBuffer.create("test", 1, MAX_PACKET_SIZE));
+        assertThrows(IllegalArgumentException.class,
+                () -> VmsPacketRingBuffer.create("test", VmsPacketRingBuffer.MAX_SLOT_COUNT + 1,
+                        MAX_PACKET_SIZE));
+    }
+
+    @Test
+    public void testCreate_InvalidMaxPacketSize() {
+        assertThrows(IllegalArgumentException.class,
+                () -> VmsPacketRingBuffer.create("test", SLOT_COUNT, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> VmsPacketRingBuffer.create("test", SLOT_COUNT,
+                        VmsPacketRingBuffer.MAX_PACKET_SIZE + 1));
+    }
+
+    @Test
+    public void testMap_InvalidRingBuffer() throws Exception {
+        SharedMemory shm = SharedMemory.create("test", 64);
+
+        assertThrows(IllegalArgumentException.class, () -> VmsPacketRingBuffer.map(shm));
+    }
+
+    @Test
+    public void testWrite_PacketTooLarge() {
+        assertThrows(IllegalArgumentException.class,
+                () -> mWriter.write(new byte[MAX_PACKET_SIZE + 1]));
+    }
+
+    @Test
+    public void testWrite_ReadOnly() {
+        assertThrows(IllegalStateException.class, () -> mReader.write(PACKET1));
+    }
+
+    @Test
+    public void testWrite_SequenceNumbers() {
+        assertThat(mWriter.write(PACKET1)).isEqualTo(1);
+        assertThat(mWriter.write(PACKET2)).isEqualTo(2);
+        assertThat(mWriter.write(PACKET3)).isEqualTo(3);
+    }
+
+    @Test
+    public void testReadPending_SinglePacket() {
+        long sequence = mWriter.write(PACKET1);
+
+        assertPackets(mReader.readPending(sequence), PACKET1);
+        assertThat(mReader.getNumDropped()).isEqualTo(0);
+    }
+
+    @Test
+    public void testReadPending_MultiplePackets() {
+        mWriter.write(PACKET1);
+        mReader.readPending(1);
+        mWriter.write(PACKET2);
+        long sequence = mWriter.write(PACKET3);
+
+        assertPackets(mReader.readPending(sequence), PACKET2, PACKET3);
+        assertThat(mReader.readPending(sequence)).isEmpty();
+        assertThat(mReader.getNumDropped()).isEqualTo(0);
+    }
+
+    @Test
+    public void testReadPending_EmptyPacket() {
+        long sequence = mWriter.write(new byte[0]);
+
+        assertPackets(mReader.readPending(sequence), new byte[0]);
+    }
+
+    @Test
+    public void testReadPending_OverwrittenPacketsDropped() {
+        mWriter.write(PACKET1);
+        mReader.readPending(1);
+        long sequence = 0;
+        for (int i = 0; i < SLOT_COUNT + 2; i++) {
+            sequence = mWriter.write(PACKET2);
+        }
+
+        assertThat(mReader.readPending(sequence)).hasSize(SLOT_COUNT);
+        assertThat(mReader.getNumDropped()).isEqualTo(2);
+    }
+
+    @Test
+    public void testReadPending_FirstSignalSkipsEarlierPackets() {
+        mWriter.write(PACKET1);
+        long sequence = mWriter.write(PACKET2);
+
+        assertPackets(mReader.readPending(sequence), PACKET2);
+        assertThat(mReader.getNumDropped()).isEqualTo(0);
+    }
+
+    @Test
+    public void testReadLatest() {
+        mWriter.write(PACKET1);
+        mReader.readPending(1);
+        mWriter.write(PACKET2);
+        long sequence = mWriter.write(PACKET3);
+
+        assertThat(mReader.readLatest(sequence)).isEqualTo(PACKET3);
+        assertThat(mReader.readLatest(sequence)).isNull();
+        assertThat(mReader.getNumDropped()).isEqualTo(1);
+    }
+
+    @Test
+    public void testReadLatest_Overwritten() {
+        mWriter.write(PACKET1);
+        mReader.readPending(1);
+        long sequence = mWriter.write(PACKET2);
+        for (int i = 0; i < SLOT_COUNT; i++) {
+            mWriter.write(PACKET3);
+        }
+
+        assertThat(mReader.readLatest(sequence)).isNull();
+    }
+
+    @Test
+    public void testReadPending_AfterClose() {
+        long sequence = mWriter.write(PACKET1);
+        mReader.close();
+
+        assertThat(mReader.readPending(sequence)).isEmpty();
+    }
+
+    private static void assertPackets(List<byte[]> packets, byte[]... expectedPackets) {
+        assertThat(packets).hasSize(expectedPackets.length);
+        for (int i = 0; i < expectedPackets.length; i++) {
+            assertThat(packets.get(i)).isEqualTo(expectedPackets[i]);
+        }
+    }
+
+    private static SharedMemory duplicate(SharedMemory shm) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            shm.writeToParcel(parcel, 0);
+            parcel.setDataPosition(0);
+            return SharedMemory.CREATOR.createFromParcel(parcel);
+        } finally {
+            parcel.recycle();
+        }
+    }
+}
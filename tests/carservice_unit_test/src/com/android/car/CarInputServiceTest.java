@@ -290,6 +290,65 @@ public final class CarInputServiceTest extends AbstractExtendedMockitoTestCase {
                 any(KeyEvent.class), eq(CarOccupantZoneManager.DISPLAY_TYPE_MAIN), anyInt());
     }
 
+    @Test
+    public void testOnRotaryEvent_injectingRotaryVolumeEvent_batchedClicks() {
+        when(mMockResources.getBoolean(R.bool.config_batchRotaryVolumeClicks)).thenReturn(true);
+        mCarInputService.init();
+        CarInputService.KeyEventListener listener = mock(CarInputService.KeyEventListener.class);
+        when(listener.onRepeatedKeyEvent(any(KeyEvent.class), anyInt(), anyInt(), anyInt()))
+                .thenReturn(true);
+        mCarInputService.registerKeyEventListener(listener,
+                List.of(KeyEvent.KEYCODE_VOLUME_UP, KeyEvent.KEYCODE_VOLUME_DOWN));
+        RotaryEvent event = new RotaryEvent(
+                /* inputType= */ CarInputManager.INPUT_TYPE_ROTARY_VOLUME,
+                /* clockwise= */ true,
+                /* uptimeMillisForClicks= */ new long[]{1, 1});
+        when(mCaptureController.onRotaryEvent(
+                same(CarOccupantZoneManager.DISPLAY_TYPE_MAIN), same(event))).thenReturn(false);
+
+        mCarInputService.onRotaryEvent(event, CarOccupantZoneManager.DISPLAY_TYPE_MAIN);
+
+        ArgumentCaptor<KeyEvent> captor = ArgumentCaptor.forClass(KeyEvent.class);
+        verify(listener).onRepeatedKeyEvent(captor.capture(), eq(2),
+                eq(CarOccupantZoneManager.DISPLAY_TYPE_MAIN), eq(DRIVER_SEAT));
+        assertThat(captor.getValue().getKeyCode()).isEqualTo(KeyEvent.KEYCODE_VOLUME_UP);
+        verify(listener, never()).onKeyEvent(any(KeyEvent.class), anyInt(), anyInt());
+        verify(mCaptureController, never()).onKeyEvent(anyInt(), any(KeyEvent.class));
+    }
+
+    @Test
+    public void testOnRotaryEvent_injectingRotaryVolumeEvent_batchedClicksHeldByCaptureClient() {
+        when(mMockResources.getBoolean(R.bool.config_batchRotaryVolumeClicks)).thenReturn(true);
+        mCarInputService.init();
+        CarInputService.KeyEventListener listener = mock(CarInputService.KeyEventListener.class);
+        when(listener.onRepeatedKeyEvent(any(KeyEvent.class), anyInt(), anyInt(), anyInt()))
+                .thenReturn(true);
+        mCarInputService.registerKeyEventListener(listener,
+                List.of(KeyEvent.KEYCODE_VOLUME_UP, KeyEvent.KEYCODE_VOLUME_DOWN));
+        RotaryEvent event = new RotaryEvent(
+                /* inputType= */ CarInputManager.INPUT_TYPE_ROTARY_VOLUME,
+                /* clockwise= */ true,
+                /* uptimeMillisForClicks= */ new long[]{1, 1});
+        when(mCaptureController.onRotaryEvent(
+                same(CarOccupantZoneManager.DISPLAY_TYPE_MAIN), same(event))).thenReturn(false);
+        when(mCaptureController.hasKeyEventCapturer(CarOccupantZoneManager.DISPLAY_TYPE_MAIN,
+                KeyEvent.KEYCODE_VOLUME_UP)).thenReturn(true);
+        when(mCaptureController.onKeyEvent(anyInt(), any(KeyEvent.class))).thenReturn(true);
+
+        mCarInputService.onRotaryEvent(event, CarOccupantZoneManager.DISPLAY_TYPE_MAIN);
+
+        // The capture client receives a key event pair per click, as without batching.
+        ArgumentCaptor<KeyEvent> captor = ArgumentCaptor.forClass(KeyEvent.class);
+        verify(mCaptureController, times(4)).onKeyEvent(
+                eq(CarOccupantZoneManager.DISPLAY_TYPE_MAIN), captor.capture());
+        assertThat(captor.getAllValues().get(0).getKeyCode())
+                .isEqualTo(KeyEvent.KEYCODE_VOLUME_UP);
+        verify(listener, never()).onRepeatedKeyEvent(any(KeyEvent.class), anyInt(), anyInt(),
+                anyInt());
+        verify(mDefaultKeyEventMainListener, never())
+                .onKeyEvent(any(KeyEvent.class), anyInt(), anyInt());
+    }
+
     @Test
     public void testRequestInputEventCapture_delegatesToCaptureController() {
         ICarInputCallback callback = mock(ICarInputCallback.class);
@@ -439,6 +498,37 @@ public final class CarInputServiceTest extends AbstractExtendedMockitoTestCase {
                 PASSENGER_SEAT);
     }
 
+    @Test
+    public void onKeyEvent_afterUnregisteringOneOfSeveralListeners_routesToRemainingListeners() {
+        KeyEvent homeEvent = new KeyEvent(KeyEvent.ACTION_DOWN, KeyEvent.KEYCODE_HOME);
+        KeyEvent oneEvent = new KeyEvent(KeyEvent.ACTION_DOWN, KeyEvent.KEYCODE_1);
+        KeyEvent twoEvent = new KeyEvent(KeyEvent.ACTION_DOWN, KeyEvent.KEYCODE_2);
+        CarInputService.KeyEventListener listener1 = mock(CarInputService.KeyEventListener.class);
+        CarInputService.KeyEventListener listener2 = mock(CarInputService.KeyEventListener.class);
+        CarInputService.KeyEventListener listener3 = mock(CarInputService.KeyEventListener.class);
+        mCarInputService.registerKeyEventListener(listener1,
+                List.of(KeyEvent.KEYCODE_0, KeyEvent.KEYCODE_HOME));
+        mCarInputService.registerKeyEventListener(listener2, List.of(KeyEvent.KEYCODE_1));
+        // Leaves deleted entries in the listeners, which the routing snapshot must not keep.
+        mCarInputService.unregisterKeyEventListener(listener1);
+        mCarInputService.registerKeyEventListener(listener3, List.of(KeyEvent.KEYCODE_2));
+
+        mCarInputService.onKeyEvent(homeEvent, CarOccupantZoneManager.DISPLAY_TYPE_MAIN,
+                PASSENGER_SEAT);
+        mCarInputService.onKeyEvent(oneEvent, CarOccupantZoneManager.DISPLAY_TYPE_MAIN,
+                PASSENGER_SEAT);
+        mCarInputService.onKeyEvent(twoEvent, CarOccupantZoneManager.DISPLAY_TYPE_MAIN,
+                PASSENGER_SEAT);
+
+        verify(listener1, never()).onKeyEvent(any(), anyInt(), anyInt());
+        verify(mDefaultKeyEventMainListener).onKeyEvent(homeEvent,
+                CarOccupantZoneManager.DISPLAY_TYPE_MAIN, PASSENGER_SEAT);
+        verify(listener2).onKeyEvent(oneEvent, CarOccupantZoneManager.DISPLAY_TYPE_MAIN,
+                PASSENGER_SEAT);
+        verify(listener3).onKeyEvent(twoEvent, CarOccupantZoneManager.DISPLAY_TYPE_MAIN,
+                PASSENGER_SEAT);
+    }
+
     @Test
     public void onKeyEvent_withSingleListener_callsListener() {
         KeyEvent event = new KeyEvent(KeyEvent.ACTION_DOWN, KeyEvent.KEYCODE_HOME);
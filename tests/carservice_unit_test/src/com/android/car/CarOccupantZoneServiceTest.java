@@ -874,6 +874,32 @@ public class CarOccupantZoneServiceTest {
                 new int[]{CarOccupantZoneManager.DISPLAY_TYPE_MAIN});
     }
 
+    @Test
+    public void testTopologyUpdatedAfterDisplayAdd() {
+        mService.init();
+        long version = mService.getTopologyVersion();
+        assertThat(mService.getDisplayForOccupant(/* occupantZoneId= */ 2,
+                CarOccupantZoneManager.DISPLAY_TYPE_MAIN)).isEqualTo(Display.INVALID_DISPLAY);
+
+        mockDisplay(mDisplayManager, mDisplay3, 3, 13);
+        when(mDisplayManager.getDisplays()).thenReturn(new Display[]{
+                mDisplay0,
+                mDisplay1,
+                mDisplay2,
+                mDisplay3,
+                mDisplay4,
+                mDisplay5
+        });
+        mService.mDisplayListener.onDisplayAdded(3);
+
+        assertThat(mService.getTopologyVersion()).isGreaterThan(version);
+        assertThat(mService.getDisplayForOccupant(/* occupantZoneId= */ 2,
+                CarOccupantZoneManager.DISPLAY_TYPE_MAIN)).isEqualTo(3);
+        assertThat(mService.getUserForDisplayId(3))
+                .isEqualTo(CarOccupantZoneManager.INVALID_USER_ID);
+        assertThat(mService.getAllOccupantZones()).hasSize(4);
+    }
+
     private void assertUserForThreeZones(int user0, int user1, int user2) {
         // key : zone id
         SparseArray<OccupantConfig> configs = mService.getActiveOccupantConfigs();
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.car;
+
+import static com.android.car.CarServiceImpl.CAR_SERVICE_INIT_TIMING_MIN_DURATION_MS;
+import static com.android.car.CarServiceImpl.CAR_SERVICE_INIT_TIMING_TAG;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.junit.Assert.assertThrows;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+
+import android.car.builtin.os.TraceHelper;
+import android.util.ArrayMap;
+
+import com.android.car.util.LimitedTimingsTraceLog;
+
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public final class CarServiceInitSchedulerTest {
+
+    private static final long TIMEOUT_MS = 1_000;
+
+    private final CarSystemService mService1 = mock(CarSystemService.class);
+    private final CarSystemService mService2 = mock(CarSystemService.class);
+    private final CarSystemService mService3 = mock(CarSystemService.class);
+    private final CarSystemService[] mServices = {mService1, mService2, mService3};
+    private final ArrayMap<CarSystemService, CarSystemService[]> mDependencies = new ArrayMap<>();
+    private final List<CarSystemService> mInitOrder =
+            Collections.synchronizedList(new ArrayList<>());
+    private final LimitedTimingsTraceLog mTraceLog = new LimitedTimingsTraceLog(
+            CAR_SERVICE_INIT_TIMING_TAG, TraceHelper.TRACE_TAG_CAR_SERVICE,
+            CAR_SERVICE_INIT_TIMING_MIN_DURATION_MS);
+
+    @Test
+    public void testInitAll_noThreadPool_initializesInOrder() {
+        mDependencies.put(mService2, new CarSystemService[] {mService1});
+
+        new CarServiceInitScheduler(mServices, mDependencies, /* threadPoolSize= */ 0)
+                .initAll(mTraceLog);
+
+        InOrder inOrder = inOrder(mService1, mService2, mService3);
+        inOrder.verify(mService1).init();
+        inOrder.verify(mService2).init();
+        inOrder.verify(mService3).init();
+    }
+
+    @Test
+    public void testInitAll_threadPool_runsIndependentServiceInParallel() throws Exception {
+        // mService2 only waits for mService1, so mService3 is initialized while it blocks.
+        CountDownLatch service3Initialized = new CountDownLatch(1);
+        mDependencies.put(mService2, new CarSystemService[] {mService1});
+        recordInit(mService1);
+        doAnswer(invocation -> {
+            assertThat(service3Initialized.await(TIMEOUT_MS, TimeUnit.MILLISECONDS)).isTrue();
+            mInitOrder.add(mService2);
+            return null;
+        }).when(mService2).init();
+        doAnswer(invocation -> {
+            mInitOrder.add(mService3);
+            service3Initialized.countDown();
+            return null;
+        }).when(mService3).init();
+
+        CarServiceInitScheduler scheduler = new CarServiceInitScheduler(mServices, mDependencies,
+                /* threadPoolSize= */ 2);
+        scheduler.initAll(mTraceLog);
+
+        assertThat(mInitOrder).containsExactly(mService1, mService3, mService2).inOrder();
+        assertThat(scheduler.getCriticalPath()).contains(mService1);
+    }
+
+    @Test
+    public void testInitAll_threadPool_waitsForDependencies() {
+        mDependencies.put(mService2, new CarSystemService[] {mService1});
+        mDependencies.put(mService3, new CarSystemService[] {mService2});
+        recordInit(mService1);
+        recordInit(mService2);
+        recordInit(mService3);
+
+        new CarServiceInitScheduler(mServices, mDependencies, /* threadPoolSize= */ 2)
+                .initAll(mTraceLog);
+
+        assertThat(mInitOrder).containsExactly(mService1, mService2, mService3).inOrder();
+    }
+
+    @Test
+    public void testInitAll_threadPool_rethrowsInitFailure() {
+        mDependencies.put(mService2, new CarSystemService[] {mService1});
+        doThrow(new IllegalStateException("init failed")).when(mService2).init();
+        CarServiceInitScheduler scheduler = new CarServiceInitScheduler(mServices, mDependencies,
+                /* threadPoolSize= */ 2);
+
+        assertThrows(IllegalStateException.class, () -> scheduler.initAll(mTraceLog));
+    }
+
+    @Test
+    public void testConstructor_dependencyInitializedLater_throws() {
+        mDependencies.put(mService1, new CarSystemService[] {mService2});
+
+        assertThrows(IllegalArgumentException.class, () -> new CarServiceInitScheduler(
+                mServices, mDependencies, /* threadPoolSize= */ 2));
+    }
+
+    private void recordInit(CarSystemService service) {
+        doAnswer(invocation -> {
+            mInitOrder.add(service);
+            return null;
+        }).when(service).init();
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.car;
+
+import static android.car.drivingstate.CarUxRestrictions.UX_RESTRICTIONS_BASELINE;
+import static android.car.drivingstate.CarUxRestrictions.UX_RESTRICTIONS_FULLY_RESTRICTED;
+import static android.car.drivingstate.CarUxRestrictions.UX_RESTRICTIONS_NO_VIDEO;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.car.drivingstate.CarUxRestrictions;
+import android.car.drivingstate.ICarUxRestrictionsChangeListener;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public final class CarUxRestrictionsClientDispatcherTest {
+
+    private static final long TIMEOUT_MS = 5_000;
+
+    @Test
+    public void testDispatch_sequential() {
+        CarUxRestrictionsClientDispatcher dispatcher = new CarUxRestrictionsClientDispatcher(0);
+        RecordingListener listener = new RecordingListener(/* blockFirstCall= */ false);
+        dispatcher.addClient(listener);
+
+        dispatcher.dispatch(listener, createRestrictions(UX_RESTRICTIONS_NO_VIDEO));
+        dispatcher.dispatch(listener, createRestrictions(UX_RESTRICTIONS_BASELINE));
+
+        assertThat(listener.getReceivedRestrictions()).containsExactly(
+                UX_RESTRICTIONS_NO_VIDEO, UX_RESTRICTIONS_BASELINE).inOrder();
+    }
+
+    @Test
+    public void testDispatch_slowClientDoesNotDelayOthers() throws Exception {
+        CarUxRestrictionsClientDispatcher dispatcher = new CarUxRestrictionsClientDispatcher(2);
+        RecordingListener slowListener = new RecordingListener(/* blockFirstCall= */ true);
+        RecordingListener fastListener = new RecordingListener(/* blockFirstCall= */ false);
+        dispatcher.addClient(slowListener);
+        dispatcher.addClient(fastListener);
+
+        dispatcher.dispatch(slowListener, createRestrictions(UX_RESTRICTIONS_NO_VIDEO));
+        dispatcher.dispatch(fastListener, createRestrictions(UX_RESTRICTIONS_NO_VIDEO));
+
+        assertThat(fastListener.awaitCalls(1)).isTrue();
+        slowListener.unblock();
+        assertThat(slowListener.awaitCalls(1)).isTrue();
+    }
+
+    @Test
+    public void testDispatch_dropsSupersededRestrictionsForSlowClient() throws Exception {
+        CarUxRestrictionsClientDispatcher dispatcher = new CarUxRestrictionsClientDispatcher(1);
+        RecordingListener slowListener = new RecordingListener(/* blockFirstCall= */ true);
+        dispatcher.addClient(slowListener);
+
+        dispatcher.dispatch(slowListener, createRestrictions(UX_RESTRICTIONS_NO_VIDEO));
+        assertThat(slowListener.awaitEntered()).isTrue();
+        dispatcher.dispatch(slowListener, createRestrictions(UX_RESTRICTIONS_FULLY_RESTRICTED));
+        dispatcher.dispatch(slowListener, createRestrictions(UX_RESTRICTIONS_BASELINE));
+        slowListener.unblock();
+
+        assertThat(slowListener.awaitCalls(2)).isTrue();
+        assertThat(slowListener.getReceivedRestrictions()).containsExactly(
+                UX_RESTRICTIONS_NO_VIDEO, UX_RESTRICTIONS_BASELINE).inOrder();
+    }
+
+    @Test
+    public void testDispatch_removedClient_ignored() {
+        CarUxRestrictionsClientDispatcher dispatcher = new CarUxRestrictionsClientDispatcher(0);
+        RecordingListener listener = new RecordingListener(/* blockFirstCall= */ false);
+        RecordingListener unknownListener = new RecordingListener(/* blockFirstCall= */ false);
+        dispatcher.addClient(listener);
+        dispatcher.removeClient(listener.asBinder());
+
+        // The dispatching thread can still see clients that were just removed.
+        dispatcher.dispatch(listener, createRestrictions(UX_RESTRICTIONS_NO_VIDEO));
+        dispatcher.dispatch(unknownListener, createRestrictions(UX_RESTRICTIONS_NO_VIDEO));
+
+        assertThat(listener.getReceivedRestrictions()).isEmpty();
+        assertThat(unknownListener.getReceivedRestrictions()).isEmpty();
+    }
+
+    @Test
+    public void testRelease_stopsDelivery() throws Exception {
+        CarUxRestrictionsClientDispatcher dispatcher = new CarUxRestrictionsClientDispatcher(1);
+        RecordingListener listener = new RecordingListener(/* blockFirstCall= */ false);
+        dispatcher.addClient(listener);
+        dispatcher.dispatch(listener, createRestrictions(UX_RESTRICTIONS_NO_VIDEO));
+        assertThat(listener.awaitCalls(1)).isTrue();
+
+        dispatcher.release();
+        dispatcher.dispatch(listener, createRestrictions(UX_RESTRICTIONS_BASELINE));
+        dispatcher.addClient(listener);
+        dispatcher.dispatch(listener, createRestrictions(UX_RESTRICTIONS_FULLY_RESTRICTED));
+
+        assertThat(listener.awaitCalls(2)).isTrue();
+        assertThat(listener.getReceivedRestrictions()).containsExactly(
+                UX_RESTRICTIONS_NO_VIDEO, UX_RESTRICTIONS_FULLY_RESTRICTED).inOrder();
+        dispatcher.release();
+    }
+
+    private static CarUxRestrictions createRestrictions(int restrictions) {
+        return new CarUxRestrictions.Builder(restrictions != UX_RESTRICTIONS_BASELINE,
+                restrictions, /* time= */ 0).build();
+    }
+
+    private static final class RecordingListener extends ICarUxRestrictionsChangeListener.Stub {
+        private final Object mLock = new Object();
+        private final List<Integer> mReceivedRestrictions = new ArrayList<>();
+        private final CountDownLatch mEnteredLatch = new CountDownLatch(1);
+        private final CountDownLatch mBlockLatch;
+
+        RecordingListener(boolean blockFirstCall) {
+            mBlockLatch = new CountDownLatch(blockFirstCall ? 1 : 0);
+        }
+
+        @Override
+        public void onUxRestrictionsChanged(CarUxRestrictions restrictions) {
+            mEnteredLatch.countDown();
+            try {
+                mBlockLatch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (mLock) {
+                mReceivedRestrictions.add(restrictions.getActiveRestrictions());
+                mLock.notifyAll();
+            }
+        }
+
+        void unblock() {
+            mBlockLatch.countDown();
+        }
+
+        boolean awaitEntered() throws InterruptedException {
+            return mEnteredLatch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        }
+
+        boolean awaitCalls(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+            synchronized (mLock) {
+                while (mReceivedRestrictions.size() < count) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    mLock.wait(remaining);
+                }
+                return true;
+            }
+        }
+
+        List<Integer> getReceivedRestrictions() {
+            synchronized (mLock) {
+                return new ArrayList<>(mReceivedRestrictions);
+            }
+        }
+    }
+}
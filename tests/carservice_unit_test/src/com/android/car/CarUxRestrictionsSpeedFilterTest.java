@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.car;
+
+import static android.car.drivingstate.CarUxRestrictionsConfiguration.Builder.SpeedRange.MAX_SPEED;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.junit.Assert.assertThrows;
+
+import org.junit.Test;
+
+public final class CarUxRestrictionsSpeedFilterTest {
+
+    private static final float HYSTERESIS = 0.5f;
+
+    @Test
+    public void testShouldEvaluate_nothingEvaluatedYet() {
+        CarUxRestrictionsSpeedFilter filter = createFilter();
+
+        assertThat(filter.shouldEvaluate(3f)).isTrue();
+    }
+
+    @Test
+    public void testShouldEvaluate_sameBand() {
+        CarUxRestrictionsSpeedFilter filter = createFilter();
+        filter.onEvaluated(5f);
+
+        assertThat(filter.shouldEvaluate(5.5f)).isFalse();
+        assertThat(filter.shouldEvaluate(9.99f)).isFalse();
+    }
+
+    @Test
+    public void testShouldEvaluate_fasterBandIsImmediate() {
+        CarUxRestrictionsSpeedFilter filter = createFilter();
+        filter.onEvaluated(9f);
+
+        assertThat(filter.shouldEvaluate(10f)).isTrue();
+    }
+
+    @Test
+    public void testShouldEvaluate_slowerBandWithinHysteresis() {
+        CarUxRestrictionsSpeedFilter filter = createFilter();
+        filter.onEvaluated(6f);
+
+        assertThat(filter.shouldEvaluate(4.6f)).isFalse();
+    }
+
+    @Test
+    public void testShouldEvaluate_slowerBandBeyondHysteresis() {
+        CarUxRestrictionsSpeedFilter filter = createFilter();
+        filter.onEvaluated(6f);
+
+        assertThat(filter.shouldEvaluate(4.4f)).isTrue();
+    }
+
+    @Test
+    public void testShouldEvaluate_maxSpeedIsHighestBand() {
+        CarUxRestrictionsSpeedFilter filter = createFilter();
+        filter.onEvaluated(MAX_SPEED);
+
+        assertThat(filter.shouldEvaluate(42f)).isFalse();
+        assertThat(filter.shouldEvaluate(9f)).isTrue();
+    }
+
+    @Test
+    public void testShouldEvaluate_afterInvalidate() {
+        CarUxRestrictionsSpeedFilter filter = createFilter();
+        filter.onEvaluated(6f);
+
+        filter.invalidate();
+
+        assertThat(filter.shouldEvaluate(6.5f)).isTrue();
+    }
+
+    @Test
+    public void testShouldEvaluate_noBoundaries() {
+        CarUxRestrictionsSpeedFilter filter = new CarUxRestrictionsSpeedFilter(HYSTERESIS);
+        filter.setBoundaries(new float[0]);
+        filter.onEvaluated(0f);
+
+        assertThat(filter.shouldEvaluate(30f)).isFalse();
+    }
+
+    @Test
+    public void testConstructor_negativeHysteresis() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new CarUxRestrictionsSpeedFilter(-1f));
+    }
+
+    private static CarUxRestrictionsSpeedFilter createFilter() {
+        CarUxRestrictionsSpeedFilter filter = new CarUxRestrictionsSpeedFilter(HYSTERESIS);
+        // Unsorted with duplicates, as collected from several displays and modes.
+        filter.setBoundaries(new float[]{10f, 0f, 5f, 5f, 0f});
+        return filter;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.car;
+
+import static android.car.drivingstate.CarDrivingStateEvent.DRIVING_STATE_IDLING;
+import static android.car.drivingstate.CarDrivingStateEvent.DRIVING_STATE_MOVING;
+import static android.car.drivingstate.CarDrivingStateEvent.DRIVING_STATE_PARKED;
+import static android.car.drivingstate.CarUxRestrictions.UX_RESTRICTIONS_BASELINE;
+import static android.car.drivingstate.CarUxRestrictions.UX_RESTRICTIONS_FULLY_RESTRICTED;
+import static android.car.drivingstate.CarUxRestrictions.UX_RESTRICTIONS_NO_VIDEO;
+import static android.car.drivingstate.CarUxRestrictionsConfiguration.Builder.SpeedRange.MAX_SPEED;
+import static android.car.drivingstate.CarUxRestrictionsManager.UX_RESTRICTION_MODE_BASELINE;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.car.drivingstate.CarUxRestrictions;
+import android.car.drivingstate.CarUxRestrictionsConfiguration;
+import android.car.drivingstate.CarUxRestrictionsConfiguration.Builder;
+import android.car.drivingstate.CarUxRestrictionsConfiguration.DrivingStateRestrictions;
+
+import org.junit.Test;
+
+public final class CarUxRestrictionsSpeedLookupTest {
+
+    private static final String MODE_PASSENGER = "passenger";
+
+    private static final float[] SPEEDS = new float[]{
+            0f, 0.5f, 1f, 4.99f, 5f, 5.01f, 9.99f, 10f, 42f, 1000f, MAX_SPEED};
+
+    @Test
+    public void testGetUxRestrictions_matchesConfiguration() {
+        CarUxRestrictionsConfiguration config = createConfig();
+        CarUxRestrictionsSpeedLookup lookup = new CarUxRestrictionsSpeedLookup(config);
+
+        for (String mode : new String[]{UX_RESTRICTION_MODE_BASELINE, MODE_PASSENGER,
+                "unknown_mode"}) {
+            for (int drivingState : new int[]{DRIVING_STATE_PARKED, DRIVING_STATE_IDLING,
+                    DRIVING_STATE_MOVING}) {
+                for (float speed : SPEEDS) {
+                    CarUxRestrictions expected = config.getUxRestrictions(drivingState, speed,
+                            mode);
+                    CarUxRestrictions actual = lookup.getUxRestrictions(drivingState, speed,
+                            mode);
+
+                    assertThat(actual.isSameRestrictions(expected)).isTrue();
+                    assertThat(actual.getMaxRestrictedStringLength())
+                            .isEqualTo(expected.getMaxRestrictedStringLength());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testGetUxRestrictions_sameRangeReturnsSameInstance() {
+        CarUxRestrictionsSpeedLookup lookup = new CarUxRestrictionsSpeedLookup(createConfig());
+
+        CarUxRestrictions first = lookup.getUxRestrictions(DRIVING_STATE_MOVING, 5f,
+                UX_RESTRICTION_MODE_BASELINE);
+        CarUxRestrictions second = lookup.getUxRestrictions(DRIVING_STATE_MOVING, 7.5f,
+                UX_RESTRICTION_MODE_BASELINE);
+
+        assertThat(second).isSameInstanceAs(first);
+    }
+
+    @Test
+    public void testGetUxRestrictions_equivalentRestrictionsAreInterned() {
+        CarUxRestrictionsSpeedLookup lookup = new CarUxRestrictionsSpeedLookup(createConfig());
+
+        CarUxRestrictions parked = lookup.getUxRestrictions(DRIVING_STATE_PARKED, 0f,
+                UX_RESTRICTION_MODE_BASELINE);
+        CarUxRestrictions slowMoving = lookup.getUxRestrictions(DRIVING_STATE_MOVING, 1f,
+                UX_RESTRICTION_MODE_BASELINE);
+
+        assertThat(slowMoving).isSameInstanceAs(parked);
+    }
+
+    @Test
+    public void testGetUxRestrictions_maxSpeedUsesHighestRange() {
+        CarUxRestrictionsSpeedLookup lookup = new CarUxRestrictionsSpeedLookup(createConfig());
+
+        CarUxRestrictions restrictions = lookup.getUxRestrictions(DRIVING_STATE_MOVING,
+                MAX_SPEED, UX_RESTRICTION_MODE_BASELINE);
+
+        assertThat(restrictions.getActiveRestrictions())
+                .isEqualTo(UX_RESTRICTIONS_FULLY_RESTRICTED);
+    }
+
+    private static CarUxRestrictionsConfiguration createConfig() {
+        return new Builder()
+                .setMaxStringLength(10)
+                .setUxRestrictions(DRIVING_STATE_PARKED, false, UX_RESTRICTIONS_BASELINE)
+                .setUxRestrictions(DRIVING_STATE_IDLING, false, UX_RESTRICTIONS_BASELINE)
+                .setUxRestrictions(DRIVING_STATE_MOVING, new Builder.SpeedRange(0f, 5f),
+                        false, UX_RESTRICTIONS_BASELINE)
+                .setUxRestrictions(DRIVING_STATE_MOVING, new Builder.SpeedRange(5f, 10f),
+                        true, UX_RESTRICTIONS_NO_VIDEO)
+                .setUxRestrictions(DRIVING_STATE_MOVING, new Builder.SpeedRange(10f),
+                        true, UX_RESTRICTIONS_FULLY_RESTRICTED)
+                // Passenger mode only relaxes low speeds and falls back to baseline above.
+                .setUxRestrictions(DRIVING_STATE_MOVING, new DrivingStateRestrictions()
+                        .setMode(MODE_PASSENGER)
+                        .setSpeedRange(new Builder.SpeedRange(0f, 7f))
+                        .setDistractionOptimizationRequired(false)
+                        .setRestrictions(UX_RESTRICTIONS_BASELINE))
+                .build();
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.car;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public final class LazyCarServiceTest {
+
+    private final CarSystemService mService = mock(CarSystemService.class);
+    private final AtomicInteger mNumConstructions = new AtomicInteger();
+    private final LazyCarService<CarSystemService> mLazyService = new LazyCarService<>(
+            CarSystemService.class, () -> {
+                mNumConstructions.incrementAndGet();
+                return mService;
+            });
+
+    @After
+    public void tearDown() {
+        CarLocalServices.removeServiceForTest(CarSystemService.class);
+    }
+
+    @Test
+    public void testGetIfCreated_notCreated_returnsNull() {
+        assertThat(mLazyService.getIfCreated()).isNull();
+        assertThat(mNumConstructions.get()).isEqualTo(0);
+    }
+
+    @Test
+    public void testGet_createsAndInitializesOnce() {
+        assertThat(mLazyService.get("test")).isSameInstanceAs(mService);
+        assertThat(mLazyService.get("test")).isSameInstanceAs(mService);
+
+        assertThat(mNumConstructions.get()).isEqualTo(1);
+        assertThat(mLazyService.getIfCreated()).isSameInstanceAs(mService);
+        assertThat(CarLocalServices.getService(CarSystemService.class)).isSameInstanceAs(mService);
+        InOrder inOrder = inOrder(mService);
+        inOrder.verify(mService).init();
+        inOrder.verify(mService).onInitComplete();
+    }
+
+    @Test
+    public void testRelease_releasesCreatedService() {
+        mLazyService.get("test");
+
+        mLazyService.release();
+
+        verify(mService).release();
+        assertThat(mLazyService.getIfCreated()).isNull();
+    }
+}
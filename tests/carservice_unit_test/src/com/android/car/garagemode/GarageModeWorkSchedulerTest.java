@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.car.garagemode;
+
+import static com.android.car.garagemode.GarageModeWork.IO_CLASS_HEAVY;
+import static com.android.car.garagemode.GarageModeWork.IO_CLASS_LIGHT;
+import static com.android.car.garagemode.GarageModeWork.IO_CLASS_NONE;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+
+import com.android.compatibility.common.util.PollingCheck;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public final class GarageModeWorkSchedulerTest {
+
+    private static final long WAIT_TIMEOUT_MS = 1_000;
+    private static final long NO_DEADLINE = -1;
+
+    private final HandlerThread mHandlerThread =
+            new HandlerThread(GarageModeWorkSchedulerTest.class.getSimpleName());
+    private final HandlerThread mDeadlineHandlerThread =
+            new HandlerThread(GarageModeWorkSchedulerTest.class.getSimpleName() + "Deadline");
+    private final List<String> mRunWork = Collections.synchronizedList(new ArrayList<>());
+    private GarageModeWorkScheduler mScheduler;
+
+    @Before
+    public void setUp() {
+        mHandlerThread.start();
+        mDeadlineHandlerThread.start();
+        mScheduler = new GarageModeWorkScheduler(new Handler(mHandlerThread.getLooper()),
+                new Handler(mDeadlineHandlerThread.getLooper()));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mHandlerThread.quitSafely();
+        mHandlerThread.join();
+        mDeadlineHandlerThread.quitSafely();
+        mDeadlineHandlerThread.join();
+    }
+
+    @Test
+    public void testStart_runsByPriorityThenIoClass() throws Exception {
+        mScheduler.registerWork(createWork("heavy", /* priority= */ 1, IO_CLASS_HEAVY, 0));
+        mScheduler.registerWork(createWork("light", /* priority= */ 1, IO_CLASS_LIGHT, 0));
+        mScheduler.registerWork(createWork("urgent", /* priority= */ 2, IO_CLASS_HEAVY, 0));
+        mScheduler.registerWork(createWork("background", /* priority= */ 0, IO_CLASS_NONE, 0));
+
+        mScheduler.start(NO_DEADLINE);
+        waitForWorkDone();
+
+        assertThat(mRunWork).containsExactly("urgent", "light", "heavy", "background")
+                .inOrder();
+    }
+
+    @Test
+    public void testStart_skipsWorkNotFittingBeforeDeadline() throws Exception {
+        mScheduler.registerWork(createWork("long", /* priority= */ 1, IO_CLASS_NONE,
+                /* estimatedDurationMs= */ 60_000));
+        mScheduler.registerWork(createWork("short", /* priority= */ 0, IO_CLASS_NONE,
+                /* estimatedDurationMs= */ 10));
+
+        mScheduler.start(SystemClock.elapsedRealtime() + 10_000);
+        waitForWorkDone();
+
+        assertThat(mRunWork).containsExactly("short");
+    }
+
+    @Test
+    public void testStart_plansWithActualDuration() throws Exception {
+        GarageModeWork work = createWork("overestimated", /* priority= */ 0, IO_CLASS_NONE,
+                /* estimatedDurationMs= */ 60_000);
+        mScheduler.registerWork(work);
+
+        mScheduler.start(NO_DEADLINE);
+        waitForWorkDone();
+
+        assertThat(mScheduler.getPlannedDurationMs(work)).isLessThan(60_000L);
+    }
+
+    @Test
+    public void testStart_averagesEstimateWithActualDurationOverRuns() throws Exception {
+        long[] durationsMs = {400, 0, 0};
+        int[] run = {0};
+        GarageModeWork work = new GarageModeWork("slowing down", /* priority= */ 0,
+                /* estimatedDurationMs= */ 60_000, IO_CLASS_NONE,
+                signal -> SystemClock.sleep(durationsMs[run[0]++]));
+        mScheduler.registerWork(work);
+        long[] estimatesMs = new long[durationsMs.length];
+
+        for (int i = 0; i < durationsMs.length; i++) {
+            mScheduler.start(NO_DEADLINE);
+            waitForWorkDone();
+            estimatesMs[i] = mScheduler.getPlannedDurationMs(work);
+        }
+
+        // The first run replaces the estimate, the next ones average with it.
+        assertThat(estimatesMs[0]).isAtLeast(durationsMs[0]);
+        assertThat(estimatesMs[0]).isLessThan(60_000L);
+        assertThat(estimatesMs[1]).isAtLeast(estimatesMs[0] / 2);
+        assertThat(estimatesMs[1]).isLessThan(estimatesMs[0]);
+        assertThat(estimatesMs[2]).isAtLeast(estimatesMs[1] / 2);
+        assertThat(estimatesMs[2]).isLessThan(estimatesMs[1]);
+    }
+
+    @Test
+    public void testCancel_cancelsRunningWork() throws Exception {
+        CountDownLatch workStarted = new CountDownLatch(1);
+        CountDownLatch workCancelled = new CountDownLatch(1);
+        mScheduler.registerWork(new GarageModeWork("blocking", /* priority= */ 1, 0,
+                IO_CLASS_NONE, signal -> {
+                    signal.setOnCancelListener(workCancelled::countDown);
+                    workStarted.countDown();
+                    try {
+                        workCancelled.await(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }));
+        mScheduler.registerWork(createWork("next", /* priority= */ 0, IO_CLASS_NONE, 0));
+        mScheduler.start(NO_DEADLINE);
+        assertThat(workStarted.await(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS)).isTrue();
+
+        mScheduler.cancel();
+
+        assertThat(workCancelled.await(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS)).isTrue();
+        assertThat(mScheduler.isRunning()).isFalse();
+        assertThat(mRunWork).doesNotContain("next");
+    }
+
+    @Test
+    public void testStart_cancelsRunningWorkAtDeadline() throws Exception {
+        CountDownLatch workCancelled = new CountDownLatch(1);
+        mScheduler.registerWork(new GarageModeWork("underestimated", /* priority= */ 1,
+                /* estimatedDurationMs= */ 0, IO_CLASS_NONE, signal -> {
+                    signal.setOnCancelListener(workCancelled::countDown);
+                    try {
+                        workCancelled.await(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }));
+        mScheduler.registerWork(createWork("next", /* priority= */ 0, IO_CLASS_NONE, 0));
+
+        mScheduler.start(SystemClock.elapsedRealtime() + 100);
+
+        assertThat(workCancelled.await(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS)).isTrue();
+        assertThat(mScheduler.isRunning()).isFalse();
+        assertThat(mRunWork).doesNotContain("next");
+    }
+
+    @Test
+    public void testUnregisterWork() throws Exception {
+        mScheduler.registerWork(createWork("work", /* priority= */ 0, IO_CLASS_NONE, 0));
+
+        mScheduler.unregisterWork("work");
+        mScheduler.start(NO_DEADLINE);
+
+        assertThat(mScheduler.isRunning()).isFalse();
+        assertThat(mRunWork).isEmpty();
+    }
+
+    private GarageModeWork createWork(String name, int priority, int ioClass,
+            long estimatedDurationMs) {
+        return new GarageModeWork(name, priority, estimatedDurationMs, ioClass,
+                signal -> mRunWork.add(name));
+    }
+
+    private void waitForWorkDone() throws Exception {
+        PollingCheck.check("Garage Mode work should be done", WAIT_TIMEOUT_MS,
+                () -> !mScheduler.isRunning());
+    }
+}
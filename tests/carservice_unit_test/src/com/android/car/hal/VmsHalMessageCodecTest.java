@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.car.hal;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.junit.Assert.assertThrows;
+
+import android.car.VehicleAreaType;
+import android.car.vms.VmsAssociatedLayer;
+import android.car.vms.VmsAvailableLayers;
+import android.car.vms.VmsLayer;
+import android.car.vms.VmsLayerDependency;
+import android.car.vms.VmsSubscriptionState;
+import android.hardware.automotive.vehicle.VehicleProperty;
+import android.hardware.automotive.vehicle.VehiclePropertyStatus;
+import android.hardware.automotive.vehicle.VmsMessageType;
+import android.util.ArraySet;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Set;
+
+public final class VmsHalMessageCodecTest {
+    private static final long SEED = 0x564d53;
+    private static final int ITERATIONS = 500;
+    private static final VmsLayer LAYER = new VmsLayer(1, 2, 3);
+
+    private final VmsHalMessageCodec mCodec = new VmsHalMessageCodec();
+    private final VmsHalMessageCodec.Message mMessage = new VmsHalMessageCodec.Message();
+    private final Random mRandom = new Random(SEED);
+
+    @Test
+    public void testEncodeStartSession() {
+        assertThat(mCodec.encodeStartSession(123, 456)).asList()
+                .containsExactly(VmsMessageType.START_SESSION, 123, 456).inOrder();
+    }
+
+    @Test
+    public void testEncodeData() {
+        assertThat(mCodec.encodeData(LAYER, 12)).asList()
+                .containsExactly(VmsMessageType.DATA, 1, 2, 3, 12).inOrder();
+    }
+
+    @Test
+    public void testEncodeSubscriptionState() {
+        VmsSubscriptionState state = new VmsSubscriptionState(7, Set.of(LAYER),
+                Set.of(new VmsAssociatedLayer(new VmsLayer(4, 5, 6), Set.of(12))));
+
+        assertThat(mCodec.encodeSubscriptionState(VmsMessageType.SUBSCRIPTIONS_CHANGE, state))
+                .asList().containsExactly(VmsMessageType.SUBSCRIPTIONS_CHANGE, 7, 1, 1, 1, 2, 3,
+                        4, 5, 6, 1, 12).inOrder();
+    }
+
+    @Test
+    public void testEncode_returnsNewArrays() {
+        int[] first = mCodec.encodeData(LAYER, 12);
+        int[] second = mCodec.encodeData(LAYER, 34);
+
+        assertThat(first).isNotSameInstanceAs(second);
+        assertThat(first).asList().containsExactly(VmsMessageType.DATA, 1, 2, 3, 12).inOrder();
+    }
+
+    @Test
+    public void testMessage_readFrom() {
+        HalPropValue value = new HalPropValueBuilder(/* isAidl= */ true).build(
+                VehicleProperty.VEHICLE_MAP_SERVICE, VehicleAreaType.VEHICLE_AREA_TYPE_GLOBAL,
+                /* timestamp= */ 0, VehiclePropertyStatus.AVAILABLE,
+                new int[]{VmsMessageType.SUBSCRIBE_TO_PUBLISHER, 1, 2, 3, 12});
+
+        mMessage.readFrom(value);
+
+        assertThat(mMessage.size()).isEqualTo(5);
+        assertThat(mMessage.getMessageType()).isEqualTo(VmsMessageType.SUBSCRIBE_TO_PUBLISHER);
+        assertThat(mMessage.getLayer()).isEqualTo(LAYER);
+        assertThat(mMessage.getPublisherId()).isEqualTo(12);
+    }
+
+    @Test
+    public void testMessage_reusedForSmallerMessage() {
+        mMessage.set(new int[]{VmsMessageType.DATA, 1, 2, 3, 12});
+        mMessage.set(new int[]{VmsMessageType.SUBSCRIBE, 1, 2, 3});
+
+        assertThat(mMessage.getLayer()).isEqualTo(LAYER);
+        assertThrows(IndexOutOfBoundsException.class, () -> mMessage.getPublisherId());
+    }
+
+    @Test
+    public void testMessage_empty() {
+        mMessage.set(new int[0]);
+
+        assertThrows(IndexOutOfBoundsException.class, () -> mMessage.getMessageType());
+    }
+
+    @Test
+    public void testRoundTrip_subscriptionState() {
+        for (int i = 0; i < ITERATIONS; i++) {
+            VmsSubscriptionState state = new VmsSubscriptionState(mRandom.nextInt(),
+                    randomLayers(), randomAssociatedLayers());
+
+            mMessage.set(mCodec.encodeSubscriptionState(VmsMessageType.SUBSCRIPTIONS_RESPONSE,
+                    state));
+
+            assertThat(mMessage.getMessageType()).isEqualTo(
+                    VmsMessageType.SUBSCRIPTIONS_RESPONSE);
+            assertThat(VmsHalMessageCodec.decodeSubscriptionState(mMessage)).isEqualTo(state);
+        }
+    }
+
+    @Test
+    public void testRoundTrip_availableLayers() {
+        for (int i = 0; i < ITERATIONS; i++) {
+            VmsAvailableLayers availableLayers = new VmsAvailableLayers(mRandom.nextInt(),
+                    randomAssociatedLayers());
+
+            mMessage.set(mCodec.encodeAvailableLayers(VmsMessageType.AVAILABILITY_CHANGE,
+                    availableLayers));
+
+            assertThat(mMessage.getMessageType()).isEqualTo(VmsMessageType.AVAILABILITY_CHANGE);
+            assertThat(VmsHalMessageCodec.decodeAvailableLayers(mMessage))
+                    .isEqualTo(availableLayers);
+        }
+    }
+
+    @Test
+    public void testRoundTrip_offering() {
+        for (int i = 0; i < ITERATIONS; i++) {
+            int publisherId = mRandom.nextInt();
+            Set<VmsLayerDependency> offering = randomOffering();
+
+            mMessage.set(mCodec.encodeOffering(publisherId, offering));
+
+            assertThat(mMessage.getMessageType()).isEqualTo(VmsMessageType.OFFERING);
+            assertThat(VmsHalMessageCodec.decodeOffering(mMessage)).isEqualTo(offering);
+        }
+    }
+
+    @Test
+    public void testRoundTrip_data() {
+        for (int i = 0; i < ITERATIONS; i++) {
+            VmsLayer layer = randomLayer();
+            int publisherId = mRandom.nextInt();
+
+            mMessage.set(mCodec.encodeData(layer, publisherId));
+
+            assertThat(mMessage.getLayer()).isEqualTo(layer);
+            assertThat(mMessage.getPublisherId()).isEqualTo(publisherId);
+        }
+    }
+
+    @Test
+    public void testDecode_truncatedMessagesOnlyThrowIndexOutOfBounds() {
+        for (int i = 0; i < ITERATIONS; i++) {
+            int[] encoded = mCodec.encodeOffering(mRandom.nextInt(), randomOffering());
+            int length = mRandom.nextInt(encoded.length);
+            mMessage.set(Arrays.copyOf(encoded, length));
+
+            assertThrows(IndexOutOfBoundsException.class,
+                    () -> VmsHalMessageCodec.decodeOffering(mMessage));
+        }
+    }
+
+    @Test
+    public void testDecode_randomValuesOnlyThrowIndexOutOfBounds() {
+        for (int i = 0; i < ITERATIONS; i++) {
+            int[] values = new int[mRandom.nextInt(32)];
+            for (int j = 0; j < values.length; j++) {
+                // Small values, so that counts are sometimes plausible.
+                values[j] = mRandom.nextInt(8) - 2;
+            }
+            mMessage.set(values);
+
+            decodeIgnoringIndexOutOfBounds(() -> VmsHalMessageCodec.decodeOffering(mMessage));
+            decodeIgnoringIndexOutOfBounds(
+                    () -> VmsHalMessageCodec.decodeSubscriptionState(mMessage));
+            decodeIgnoringIndexOutOfBounds(
+                    () -> VmsHalMessageCodec.decodeAvailableLayers(mMessage));
+        }
+    }
+
+    private static void decodeIgnoringIndexOutOfBounds(Runnable decode) {
+        try {
+            decode.run();
+        } catch (IndexOutOfBoundsException expected) {
+            // Any other exception fails the test.
+        }
+    }
+
+    private VmsLayer randomLayer() {
+        return new VmsLayer(mRandom.nextInt(), mRandom.nextInt(), mRandom.nextInt());
+    }
+
+    private Set<VmsLayer> randomLayers() {
+        int count = mRandom.nextInt(5);
+        Set<VmsLayer> layers = new ArraySet<>(count);
+        for (int i = 0; i < count; i++) {
+            layers.add(randomLayer());
+        }
+        return layers;
+    }
+
+    private Set<VmsAssociatedLayer> randomAssociatedLayers() {
+        int count = mRandom.nextInt(5);
+        Set<VmsAssociatedLayer> associatedLayers = new ArraySet<>(count);
+        for (int i = 0; i < count; i++) {
+            int numProviders = mRandom.nextInt(4);
+            Set<Integer> providerIds = new ArraySet<>(numProviders);
+            for (int j = 0; j < numProviders; j++) {
+                providerIds.add(mRandom.nextInt());
+            }
+            associatedLayers.add(new VmsAssociatedLayer(randomLayer(), providerIds));
+        }
+        return associatedLayers;
+    }
+
+    private Set<VmsLayerDependency> randomOffering() {
+        int count = mRandom.nextInt(5) + 1;
+        Set<VmsLayerDependency> offering = new ArraySet<>(count);
+        for (int i = 0; i < count; i++) {
+            offering.add(new VmsLayerDependency(randomLayer(), randomLayers()));
+        }
+        return offering;
+    }
+}
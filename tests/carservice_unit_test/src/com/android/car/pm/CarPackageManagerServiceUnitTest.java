@@ -23,6 +23,7 @@ import static android.content.pm.PackageManager.MATCH_DEFAULT_ONLY;
 import static android.os.Process.INVALID_UID;
 
 import static com.android.dx.mockito.inline.extended.ExtendedMockito.doReturn;
+import static com.android.dx.mockito.inline.extended.ExtendedMockito.verify;
 
 import static com.google.common.truth.Truth.assertThat;
 import static com.google.common.truth.Truth.assertWithMessage;
@@ -53,10 +54,12 @@ import android.os.UserHandle;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import androidx.test.platform.app.InstrumentationRegistry;
 
+import com.android.car.CarLocalServices;
 import com.android.car.CarOccupantZoneService;
 import com.android.car.CarUxRestrictionsManagerService;
 import com.android.car.am.CarActivityService;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -90,6 +93,8 @@ public class CarPackageManagerServiceUnitTest extends AbstractExtendedMockitoTes
     private CarOccupantZoneService mMockCarOccupantZoneService;
     @Mock
     private PendingIntent mMockPendingIntent;
+    @Mock
+    private PackageMetadataCache mMockPackageMetadataCache;
 
     public CarPackageManagerServiceUnitTest() {
         super(CarPackageManagerService.TAG);
@@ -118,6 +123,11 @@ public class CarPackageManagerServiceUnitTest extends AbstractExtendedMockitoTes
                 mMockUxrService, mMockActivityService, mMockCarOccupantZoneService);
     }
 
+    @After
+    public void tearDown() {
+        CarLocalServices.removeServiceForTest(PackageMetadataCache.class);
+    }
+
     @Test
     public void testParseConfigList_SingleActivity() {
         String config = "com.android.test/.TestActivity";
@@ -225,6 +235,42 @@ public class CarPackageManagerServiceUnitTest extends AbstractExtendedMockitoTes
                 .isSameInstanceAs(Version);
     }
 
+    @Test
+    public void testGetTargetCarVersion_fromPackageMetadataCache() {
+        String pkgName = "dr.evil";
+        CarVersion version = CarVersion.forMajorAndMinorVersions(66, 6);
+        when(mMockPackageMetadataCache.getTargetCarVersion(pkgName, mUserHandle.getIdentifier()))
+                .thenReturn(version);
+        mockQueryPermission(/* granted= */ true);
+        addPackageMetadataCache();
+
+        assertWithMessage("getTargetCarVersion(%s)", pkgName)
+                .that(mService.getTargetCarVersion(mUserHandle, pkgName))
+                .isSameInstanceAs(version);
+    }
+
+    @Test
+    public void testGetTargetCarVersion_fromPackageMetadataCache_noPermission() {
+        String pkgName = "dr.evil";
+        when(mMockPackageMetadataCache.getTargetCarVersion(pkgName, mUserHandle.getIdentifier()))
+                .thenReturn(CarVersion.forMajorAndMinorVersions(66, 6));
+        mockQueryPermission(/* granted= */ false);
+        addPackageMetadataCache();
+
+        assertThrows(SecurityException.class,
+                () -> mService.getTargetCarVersion(mUserHandle, pkgName));
+    }
+
+    @Test
+    public void testGetTargetCarVersion_fromPackageMetadataCache_noApp() {
+        mockQueryPermission(/* granted= */ true);
+        addPackageMetadataCache();
+
+        ServiceSpecificException e = assertThrows(ServiceSpecificException.class,
+                () -> mService.getTargetCarVersion(mUserHandle, "meaning.of.life"));
+        assertWithMessage("exception code").that(e.errorCode).isEqualTo(ERROR_CODE_NO_PACKAGE);
+    }
+
     @Test
     public void testGetTargetCarVersion_self_ok() throws Exception {
         String pkgName = "dr.evil";
@@ -315,6 +361,11 @@ public class CarPackageManagerServiceUnitTest extends AbstractExtendedMockitoTes
         when(mUserContext.checkCallingOrSelfPermission(QUERY_ALL_PACKAGES)).thenReturn(result);
     }
 
+    private void addPackageMetadataCache() {
+        CarLocalServices.removeServiceForTest(PackageMetadataCache.class);
+        CarLocalServices.addService(PackageMetadataCache.class, mMockPackageMetadataCache);
+    }
+
     private void mockCallingUser() {
         doReturn(mUserHandle).when(() -> Binder.getCallingUserHandle());
     }
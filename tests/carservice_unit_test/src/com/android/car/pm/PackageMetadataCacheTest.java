@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.car.pm;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.car.CarVersion;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.PackageManager.NameNotFoundException;
+import android.net.Uri;
+import android.os.UserHandle;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public final class PackageMetadataCacheTest {
+
+    private static final String PACKAGE_NAME = "com.android.car.test";
+    private static final int UID = 1010123;
+    private static final int USER_ID = 10;
+
+    private final Context mContext = mock(Context.class);
+    private final PackageManager mPackageManager = mock(PackageManager.class);
+    private PackageMetadataCache mCache;
+    private BroadcastReceiver mReceiver;
+
+    @Before
+    public void setUp() {
+        when(mContext.getPackageManager()).thenReturn(mPackageManager);
+        when(mPackageManager.getPackagesForUid(UID)).thenReturn(new String[] {PACKAGE_NAME});
+        mCache = new PackageMetadataCache(mContext);
+        mCache.init();
+        ArgumentCaptor<BroadcastReceiver> receiverCaptor =
+                ArgumentCaptor.forClass(BroadcastReceiver.class);
+        verify(mContext, atLeastOnce()).registerReceiverForAllUsers(receiverCaptor.capture(),
+                any(IntentFilter.class), any(), any());
+        mReceiver = receiverCaptor.getValue();
+    }
+
+    @Test
+    public void testGetPackagesForUid_cached() {
+        assertThat(mCache.getPackagesForUid(UID)).asList().containsExactly(PACKAGE_NAME);
+        assertThat(mCache.getPackagesForUid(UID)).asList().containsExactly(PACKAGE_NAME);
+
+        verify(mPackageManager).getPackagesForUid(UID);
+    }
+
+    @Test
+    public void testGetPackagesForUid_invalidatedByPackageChange() {
+        mCache.getPackagesForUid(UID);
+
+        mReceiver.onReceive(mContext, createPackageIntent(Intent.ACTION_PACKAGE_REPLACED));
+        mCache.getPackagesForUid(UID);
+
+        verify(mPackageManager, times(2)).getPackagesForUid(UID);
+    }
+
+    @Test
+    public void testGetTargetCarVersion_cached() throws Exception {
+        ApplicationInfo info = new ApplicationInfo();
+        info.packageName = PACKAGE_NAME;
+        info.targetSdkVersion = 33;
+        when(mPackageManager.getApplicationInfoAsUser(eq(PACKAGE_NAME), anyInt(),
+                any(UserHandle.class))).thenReturn(info);
+
+        CarVersion version = mCache.getTargetCarVersion(PACKAGE_NAME, USER_ID);
+
+        assertThat(version).isEqualTo(CarVersion.forMajorAndMinorVersions(33, 0));
+        assertThat(mCache.getTargetCarVersion(PACKAGE_NAME, USER_ID)).isSameInstanceAs(version);
+        verify(mPackageManager).getApplicationInfoAsUser(PACKAGE_NAME,
+                PackageManager.GET_META_DATA, UserHandle.of(USER_ID));
+    }
+
+    @Test
+    public void testGetTargetCarVersion_notInstalled_notCached() throws Exception {
+        ApplicationInfo info = new ApplicationInfo();
+        info.packageName = PACKAGE_NAME;
+        info.targetSdkVersion = 33;
+        when(mPackageManager.getApplicationInfoAsUser(eq(PACKAGE_NAME), anyInt(),
+                any(UserHandle.class))).thenThrow(new NameNotFoundException()).thenReturn(info);
+
+        assertThat(mCache.getTargetCarVersion(PACKAGE_NAME, USER_ID)).isNull();
+        // Installed, but the broadcast was not received yet.
+        assertThat(mCache.getTargetCarVersion(PACKAGE_NAME, USER_ID))
+                .isEqualTo(CarVersion.forMajorAndMinorVersions(33, 0));
+    }
+
+    @Test
+    public void testGetTargetCarVersion_invalidatedByUserRemoval() throws Exception {
+        ApplicationInfo info = new ApplicationInfo();
+        info.packageName = PACKAGE_NAME;
+        when(mPackageManager.getApplicationInfoAsUser(eq(PACKAGE_NAME), anyInt(),
+                any(UserHandle.class))).thenReturn(info);
+        mCache.getTargetCarVersion(PACKAGE_NAME, USER_ID);
+
+        mReceiver.onReceive(mContext, new Intent(Intent.ACTION_USER_REMOVED)
+                .putExtra(Intent.EXTRA_USER_HANDLE, USER_ID));
+        mCache.getTargetCarVersion(PACKAGE_NAME, USER_ID);
+
+        verify(mPackageManager, times(2)).getApplicationInfoAsUser(eq(PACKAGE_NAME), anyInt(),
+                any(UserHandle.class));
+    }
+
+    private static Intent createPackageIntent(String action) {
+        return new Intent(action, Uri.fromParts("package", PACKAGE_NAME, /* fragment= */ null))
+                .putExtra(Intent.EXTRA_UID, UID);
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.car.power;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.os.Binder;
+import android.os.Handler;
+import android.os.HandlerExecutor;
+import android.os.HandlerThread;
+import android.os.IBinder;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public final class ListenerCompletionTrackerTest {
+
+    private static final long TIMEOUT_MS = 60_000;
+    private static final long SHORT_TIMEOUT_MS = 10;
+    private static final long WAIT_MS = 1_000;
+
+    private final HandlerThread mHandlerThread = new HandlerThread("ListenerCompletionTracker");
+    private final IBinder mListener1 = new Binder();
+    private final IBinder mListener2 = new Binder();
+    private final AtomicInteger mNumCompletionTasks = new AtomicInteger();
+    private final Runnable mCompletionTask = mNumCompletionTasks::incrementAndGet;
+
+    private ListenerCompletionTracker mTracker;
+
+    @Before
+    public void setUp() {
+        mHandlerThread.start();
+        mTracker = new ListenerCompletionTracker(new Handler(mHandlerThread.getLooper()),
+                Runnable::run);
+        mTracker.startRound("SUSPEND_ENTER");
+        mTracker.addPendingListener(mListener1, "listener1");
+        mTracker.addPendingListener(mListener2, "listener2");
+    }
+
+    @After
+    public void tearDown() {
+        mHandlerThread.quitSafely();
+    }
+
+    @Test
+    public void testWaitForCompletion_completesOnLastListener() throws Exception {
+        CompletableFuture<Boolean> future = mTracker.waitForCompletion(mCompletionTask,
+                /* taskAtInterval= */ null, TIMEOUT_MS, /* intervalMs= */ -1);
+
+        mTracker.onListenerCompleted(mListener1);
+
+        assertThat(future.isDone()).isFalse();
+
+        mTracker.onListenerCompleted(mListener2);
+
+        assertThat(future.get(WAIT_MS, TimeUnit.MILLISECONDS)).isTrue();
+        assertThat(mNumCompletionTasks.get()).isEqualTo(1);
+        assertThat(mTracker.hasPendingListeners()).isFalse();
+    }
+
+    @Test
+    public void testWaitForCompletion_timeout() throws Exception {
+        CompletableFuture<Boolean> future = mTracker.waitForCompletion(mCompletionTask,
+                /* taskAtInterval= */ null, SHORT_TIMEOUT_MS, /* intervalMs= */ -1);
+
+        assertThat(future.get(WAIT_MS, TimeUnit.MILLISECONDS)).isFalse();
+        assertThat(mNumCompletionTasks.get()).isEqualTo(1);
+
+        // Late completions don't run the task again.
+        mTracker.onListenerCompleted(mListener1);
+        mTracker.onListenerCompleted(mListener2);
+
+        assertThat(mNumCompletionTasks.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testClearPendingListeners_completesWait() throws Exception {
+        CompletableFuture<Boolean> future = mTracker.waitForCompletion(mCompletionTask,
+                /* taskAtInterval= */ null, TIMEOUT_MS, /* intervalMs= */ -1);
+
+        mTracker.clearPendingListeners();
+
+        assertThat(future.get(WAIT_MS, TimeUnit.MILLISECONDS)).isTrue();
+        assertThat(mNumCompletionTasks.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testCancelWaits_doesNotRunTask() throws Exception {
+        CompletableFuture<Boolean> future = mTracker.waitForCompletion(mCompletionTask,
+                /* taskAtInterval= */ null, TIMEOUT_MS, /* intervalMs= */ -1);
+
+        mTracker.cancelWaits();
+        mTracker.onListenerCompleted(mListener1);
+        mTracker.onListenerCompleted(mListener2);
+
+        assertThat(future.isCancelled()).isTrue();
+        assertThat(mNumCompletionTasks.get()).isEqualTo(0);
+    }
+
+    @Test
+    public void testWaitForCompletion_runsTaskAtInterval() throws Exception {
+        AtomicInteger numIntervals = new AtomicInteger();
+        CompletableFuture<Boolean> future = mTracker.waitForCompletion(mCompletionTask,
+                numIntervals::incrementAndGet, TIMEOUT_MS, SHORT_TIMEOUT_MS);
+
+        Thread.sleep(SHORT_TIMEOUT_MS * 5);
+        mTracker.removePendingListener(mListener1);
+        mTracker.removePendingListener(mListener2);
+
+        assertThat(future.get(WAIT_MS, TimeUnit.MILLISECONDS)).isTrue();
+        assertThat(numIntervals.get()).isGreaterThan(0);
+    }
+
+    @Test
+    public void testWaitForCompletion_runsTasksOnTaskExecutor() throws Exception {
+        HandlerThread taskThread = new HandlerThread("ListenerCompletionTrackerTasks");
+        taskThread.start();
+        try {
+            ListenerCompletionTracker tracker = new ListenerCompletionTracker(
+                    new Handler(mHandlerThread.getLooper()),
+                    new HandlerExecutor(new Handler(taskThread.getLooper())));
+            tracker.startRound("SUSPEND_ENTER");
+            tracker.addPendingListener(mListener1, "listener1");
+            CompletableFuture<Thread> intervalThread = new CompletableFuture<>();
+            CompletableFuture<Thread> completionThread = new CompletableFuture<>();
+
+            CompletableFuture<Boolean> future = tracker.waitForCompletion(
+                    () -> completionThread.complete(Thread.currentThread()),
+                    () -> intervalThread.complete(Thread.currentThread()), SHORT_TIMEOUT_MS * 5,
+                    SHORT_TIMEOUT_MS);
+
+            assertThat(future.get(WAIT_MS, TimeUnit.MILLISECONDS)).isFalse();
+            assertThat(intervalThread.get(WAIT_MS, TimeUnit.MILLISECONDS))
+                    .isSameInstanceAs(taskThread);
+            assertThat(completionThread.get(WAIT_MS, TimeUnit.MILLISECONDS))
+                    .isSameInstanceAs(taskThread);
+        } finally {
+            taskThread.quitSafely();
+        }
+    }
+}
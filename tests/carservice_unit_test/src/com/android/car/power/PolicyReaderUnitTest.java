@@ -45,6 +45,7 @@ import android.car.hardware.power.CarPowerPolicy;
 import android.content.res.Resources;
 import android.hardware.automotive.vehicle.VehicleApPowerStateReport;
 import android.platform.test.annotations.RequiresFlagsDisabled;
+import android.util.AtomicFile;
 
 import androidx.test.platform.app.InstrumentationRegistry;
 
@@ -53,11 +54,13 @@ import com.android.car.carservice_unittest.R;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.File;
 import java.io.InputStream;
 
 public final class PolicyReaderUnitTest {
     private static final String TAG = PolicyReaderUnitTest.class.getSimpleName();
 
+    private static final String CAR_SERVICE_BUILD = "test/fingerprint:1";
     private static final String POLICY_ID_NOT_EXIST = "policy_id_not_exist";
     private static final String POLICY_ID_OTHER_OFF = "policy_id_other_off";
     private static final String POLICY_ID_OTHER_ON = "policy_id_other_on";
@@ -283,6 +286,59 @@ public final class PolicyReaderUnitTest {
         assertInvalidXml(R.raw.invalid_system_power_policy_incorrect_default_power_policy_group_id);
     }
 
+    @Test
+    @RequiresFlagsDisabled(Flags.FLAG_CAR_POWER_POLICY_REFACTORING)
+    public void testReadPowerPolicyWithCache_readsCompiledPolicies() throws Exception {
+        AtomicFile compiledPoliciesFile = createCompiledPoliciesFile();
+        byte[] xml = readRawResource(R.raw.valid_power_policy);
+        PolicyReader compilingPolicyReader = new PolicyReader();
+        compilingPolicyReader.init(mFeatureFlags, compiledPoliciesFile, CAR_SERVICE_BUILD);
+        compilingPolicyReader.readPowerPolicyWithCache(xml);
+
+        mPolicyReader.init(mFeatureFlags, compiledPoliciesFile, CAR_SERVICE_BUILD);
+        mPolicyReader.readPowerPolicyWithCache(xml);
+
+        assertValidPolicyPart();
+        assertValidPolicyGroupPart();
+        assertSystemPowerPolicy(NO_USER_INTERACTION_POLICY_ID, SYSTEM_POWER_POLICY_MODIFIED);
+        assertDefaultPolicies();
+    }
+
+    @Test
+    @RequiresFlagsDisabled(Flags.FLAG_CAR_POWER_POLICY_REFACTORING)
+    public void testReadPowerPolicyWithCache_changedXml_ignoresCompiledPolicies()
+            throws Exception {
+        AtomicFile compiledPoliciesFile = createCompiledPoliciesFile();
+        PolicyReader compilingPolicyReader = new PolicyReader();
+        compilingPolicyReader.init(mFeatureFlags, compiledPoliciesFile, CAR_SERVICE_BUILD);
+        compilingPolicyReader.readPowerPolicyWithCache(readRawResource(R.raw.valid_power_policy));
+
+        mPolicyReader.init(mFeatureFlags, compiledPoliciesFile, CAR_SERVICE_BUILD);
+        mPolicyReader.readPowerPolicyWithCache(
+                readRawResource(R.raw.valid_power_policy_default_policy_group));
+
+        assertThat(mPolicyReader.getDefaultPowerPolicyGroup()).isEqualTo("mixed_policy_group");
+    }
+
+    @Test
+    @RequiresFlagsDisabled(Flags.FLAG_CAR_POWER_POLICY_REFACTORING)
+    public void testReadPowerPolicyWithCache_updatedCarService_compilesAgain() throws Exception {
+        AtomicFile compiledPoliciesFile = createCompiledPoliciesFile();
+        byte[] xml = readRawResource(R.raw.valid_power_policy);
+        PolicyReader compilingPolicyReader = new PolicyReader();
+        compilingPolicyReader.init(mFeatureFlags, compiledPoliciesFile, CAR_SERVICE_BUILD);
+        compilingPolicyReader.readPowerPolicyWithCache(xml);
+        byte[] compiledPolicies = compiledPoliciesFile.readFully();
+
+        mPolicyReader.init(mFeatureFlags, compiledPoliciesFile, "updated:" + CAR_SERVICE_BUILD);
+        mPolicyReader.readPowerPolicyWithCache(xml);
+
+        // The policies were compiled again, and cached for the new build.
+        assertThat(compiledPoliciesFile.readFully()).isNotEqualTo(compiledPolicies);
+        assertValidPolicyPart();
+        assertSystemPowerPolicy(NO_USER_INTERACTION_POLICY_ID, SYSTEM_POWER_POLICY_MODIFIED);
+    }
+
     @Test
     @RequiresFlagsDisabled(Flags.FLAG_CAR_POWER_POLICY_REFACTORING)
     public void testDefaultPolicies() throws Exception {
@@ -440,6 +496,19 @@ public final class PolicyReaderUnitTest {
         assertPolicyIdentical(expectedPolicy, actualPolicy);
     }
 
+    private byte[] readRawResource(int id) throws Exception {
+        try (InputStream inputStream = mResources.openRawResource(id)) {
+            return inputStream.readAllBytes();
+        }
+    }
+
+    private static AtomicFile createCompiledPoliciesFile() throws Exception {
+        File file = File.createTempFile("compiled_power_policies", null);
+        file.delete();
+        file.deleteOnExit();
+        return new AtomicFile(file);
+    }
+
     private void readPowerPolicyXml(int id) throws Exception {
         try (InputStream inputStream = mResources.openRawResource(id)) {
             mPolicyReader.readPowerPolicyFromXml(inputStream);
@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.car.power;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.car.hardware.power.CarPowerManager;
+import android.car.hardware.power.ICarPowerStateListener;
+import android.os.Binder;
+import android.os.IBinder;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public final class PowerListenerNotifierTest {
+
+    private static final long TIMEOUT_MS = 1_000;
+    private static final long LATENCY_BUDGET_MS = 10;
+    private static final int STATE = CarPowerManager.STATE_SUSPEND_EXIT;
+    private static final long EXPIRATION_TIME_MS = -1;
+
+    // Listeners in another process, notified on the thread pool.
+    private final ICarPowerStateListener mListener1 = createListener(mock(IBinder.class));
+    private final ICarPowerStateListener mListener2 = createListener(mock(IBinder.class));
+
+    private PowerListenerNotifier mNotifier;
+
+    @After
+    public void tearDown() {
+        if (mNotifier != null) {
+            mNotifier.release();
+        }
+    }
+
+    @Test
+    public void testNotifyListeners_serial_notifiesAll() throws Exception {
+        mNotifier = new PowerListenerNotifier(/* threadPoolSize= */ 0,
+                LATENCY_BUDGET_MS);
+
+        mNotifier.notifyListeners(List.of(mListener1, mListener2), List.of("l1", "l2"), STATE,
+                EXPIRATION_TIME_MS, TIMEOUT_MS);
+
+        verify(mListener1).onStateChanged(STATE, EXPIRATION_TIME_MS);
+        verify(mListener2).onStateChanged(STATE, EXPIRATION_TIME_MS);
+    }
+
+    @Test
+    public void testNotifyListeners_parallel_slowListenerDoesNotBlockOthers() throws Exception {
+        // mListener1 only returns once mListener2 was notified, which requires parallel calls.
+        CountDownLatch listener2Notified = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            assertThat(listener2Notified.await(TIMEOUT_MS, TimeUnit.MILLISECONDS)).isTrue();
+            return null;
+        }).when(mListener1).onStateChanged(STATE, EXPIRATION_TIME_MS);
+        doAnswer(invocation -> {
+            listener2Notified.countDown();
+            return null;
+        }).when(mListener2).onStateChanged(STATE, EXPIRATION_TIME_MS);
+        mNotifier = new PowerListenerNotifier(/* threadPoolSize= */ 2,
+                LATENCY_BUDGET_MS);
+
+        mNotifier.notifyListeners(List.of(mListener1, mListener2), List.of("l1", "l2"), STATE,
+                EXPIRATION_TIME_MS, TIMEOUT_MS);
+
+        assertThat(listener2Notified.getCount()).isEqualTo(0);
+        verify(mListener1).onStateChanged(STATE, EXPIRATION_TIME_MS);
+    }
+
+    @Test
+    public void testNotifyListeners_overBudget_isCounted() throws Exception {
+        doAnswer(invocation -> {
+            Thread.sleep(LATENCY_BUDGET_MS * 3);
+            return null;
+        }).when(mListener1).onStateChanged(STATE, EXPIRATION_TIME_MS);
+        mNotifier = new PowerListenerNotifier(/* threadPoolSize= */ 0,
+                LATENCY_BUDGET_MS);
+
+        mNotifier.notifyListeners(List.of(mListener1, mListener2), List.of("l1", "l2"), STATE,
+                EXPIRATION_TIME_MS, TIMEOUT_MS);
+
+        assertThat(mNotifier.getNumOverBudget("l1")).isEqualTo(1);
+        assertThat(mNotifier.getNumOverBudget("l2")).isEqualTo(0);
+    }
+
+    @Test
+    public void testNotifyListeners_parallel_timedOutListenerReceivesStatesInOrder()
+            throws Exception {
+        int nextState = CarPowerManager.STATE_ON;
+        CountDownLatch releaseListener1 = new CountDownLatch(1);
+        CountDownLatch nextStateReceived = new CountDownLatch(1);
+        List<Integer> receivedStates = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> {
+            receivedStates.add(invocation.getArgument(0));
+            releaseListener1.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            return null;
+        }).when(mListener1).onStateChanged(STATE, EXPIRATION_TIME_MS);
+        doAnswer(invocation -> {
+            receivedStates.add(invocation.getArgument(0));
+            nextStateReceived.countDown();
+            return null;
+        }).when(mListener1).onStateChanged(nextState, EXPIRATION_TIME_MS);
+        mNotifier = new PowerListenerNotifier(/* threadPoolSize= */ 2, LATENCY_BUDGET_MS);
+
+        mNotifier.notifyListeners(List.of(mListener1, mListener2), List.of("l1", "l2"), STATE,
+                EXPIRATION_TIME_MS, /* timeoutMs= */ 10);
+        mNotifier.notifyListeners(List.of(mListener1, mListener2), List.of("l1", "l2"),
+                nextState, EXPIRATION_TIME_MS, /* timeoutMs= */ 10);
+        releaseListener1.countDown();
+
+        assertThat(nextStateReceived.await(TIMEOUT_MS, TimeUnit.MILLISECONDS)).isTrue();
+        assertThat(receivedStates).containsExactly(STATE, nextState).inOrder();
+    }
+
+    @Test
+    public void testNotifyListeners_parallel_localListenersNotifiedOnCallingThread()
+            throws Exception {
+        ICarPowerStateListener localListener1 = createListener(new Binder());
+        ICarPowerStateListener localListener2 = createListener(new Binder());
+        Thread callingThread = Thread.currentThread();
+        List<ICarPowerStateListener> notifiedListeners = new ArrayList<>();
+        doAnswer(invocation -> {
+            assertThat(Thread.currentThread()).isSameInstanceAs(callingThread);
+            notifiedListeners.add(localListener1);
+            return null;
+        }).when(localListener1).onStateChanged(STATE, EXPIRATION_TIME_MS);
+        doAnswer(invocation -> {
+            assertThat(Thread.currentThread()).isSameInstanceAs(callingThread);
+            notifiedListeners.add(localListener2);
+            return null;
+        }).when(localListener2).onStateChanged(STATE, EXPIRATION_TIME_MS);
+        mNotifier = new PowerListenerNotifier(/* threadPoolSize= */ 2, LATENCY_BUDGET_MS);
+
+        mNotifier.notifyListeners(List.of(localListener1, mListener1, localListener2),
+                List.of("local1", "l1", "local2"), STATE, EXPIRATION_TIME_MS, TIMEOUT_MS);
+
+        assertThat(notifiedListeners).containsExactly(localListener1, localListener2).inOrder();
+        verify(mListener1).onStateChanged(STATE, EXPIRATION_TIME_MS);
+    }
+
+    @Test
+    public void testNotifyListeners_afterRelease_notifiesAll() throws Exception {
+        mNotifier = new PowerListenerNotifier(/* threadPoolSize= */ 2, LATENCY_BUDGET_MS);
+        mNotifier.notifyListeners(List.of(mListener1, mListener2), List.of("l1", "l2"), STATE,
+                EXPIRATION_TIME_MS, TIMEOUT_MS);
+
+        mNotifier.release();
+        mNotifier.notifyListeners(List.of(mListener1, mListener2), List.of("l1", "l2"), STATE,
+                EXPIRATION_TIME_MS, TIMEOUT_MS);
+
+        verify(mListener1, times(2)).onStateChanged(STATE, EXPIRATION_TIME_MS);
+        verify(mListener2, times(2)).onStateChanged(STATE, EXPIRATION_TIME_MS);
+    }
+
+    private static ICarPowerStateListener createListener(IBinder binder) {
+        ICarPowerStateListener listener = mock(ICarPowerStateListener.class);
+        when(listener.asBinder()).thenReturn(binder);
+        return listener;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.car.power;
+
+import static android.car.hardware.power.PowerComponent.AUDIO;
+import static android.car.hardware.power.PowerComponent.DISPLAY;
+import static android.car.hardware.power.PowerComponent.WIFI;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import android.car.hardware.power.CarPowerPolicyFilter;
+import android.car.hardware.power.ICarPowerPolicyListener;
+import android.os.Binder;
+
+import org.junit.Test;
+
+public final class PowerPolicyListenerIndexTest {
+
+    private final PowerPolicyListenerIndex mIndex = new PowerPolicyListenerIndex();
+    private final ICarPowerPolicyListener mAudioListener = createListener();
+    private final ICarPowerPolicyListener mAudioWifiListener = createListener();
+
+    @Test
+    public void testGetListeners_onlyAffectedListeners() {
+        mIndex.addListener(mAudioListener, createFilter(AUDIO));
+        mIndex.addListener(mAudioWifiListener, createFilter(AUDIO, WIFI));
+
+        assertThat(mIndex.getListeners(new int[] {WIFI})).containsExactly(mAudioWifiListener);
+        assertThat(mIndex.getListeners(new int[] {DISPLAY})).isEmpty();
+    }
+
+    @Test
+    public void testGetListeners_listenerOfSeveralComponents_returnedOnce() {
+        mIndex.addListener(mAudioListener, createFilter(AUDIO));
+        mIndex.addListener(mAudioWifiListener, createFilter(AUDIO, WIFI));
+
+        assertThat(mIndex.getListeners(new int[] {AUDIO, WIFI}))
+                .containsExactly(mAudioListener, mAudioWifiListener);
+    }
+
+    @Test
+    public void testAddListener_replacesFilter() {
+        mIndex.addListener(mAudioListener, createFilter(AUDIO));
+
+        mIndex.addListener(mAudioListener, createFilter(WIFI));
+
+        assertThat(mIndex.getListeners(new int[] {AUDIO})).isEmpty();
+        assertThat(mIndex.getListeners(new int[] {WIFI})).containsExactly(mAudioListener);
+    }
+
+    @Test
+    public void testRemoveListener() {
+        mIndex.addListener(mAudioListener, createFilter(AUDIO));
+        mIndex.addListener(mAudioWifiListener, createFilter(AUDIO, WIFI));
+
+        mIndex.removeListener(mAudioWifiListener);
+
+        assertThat(mIndex.getListeners(new int[] {AUDIO, WIFI})).containsExactly(mAudioListener);
+    }
+
+    @Test
+    public void testClear() {
+        mIndex.addListener(mAudioListener, createFilter(AUDIO));
+        mIndex.addListener(mAudioWifiListener, createFilter(AUDIO, WIFI));
+
+        mIndex.clear();
+
+        assertThat(mIndex.getListeners(new int[] {AUDIO, WIFI})).isEmpty();
+    }
+
+    private static ICarPowerPolicyListener createListener() {
+        ICarPowerPolicyListener listener = mock(ICarPowerPolicyListener.class);
+        when(listener.asBinder()).thenReturn(new Binder());
+        return listener;
+    }
+
+    private static CarPowerPolicyFilter createFilter(int... components) {
+        return new CarPowerPolicyFilter.Builder().setComponents(components).build();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.car.power;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.car.internal.util.IndentingPrintWriter;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+public final class PowerTransitionProfilerTest {
+
+    private final PowerTransitionProfiler mProfiler = new PowerTransitionProfiler();
+
+    @Test
+    public void testDump_nestedSpans() {
+        mProfiler.startTransition("ON");
+        mProfiler.traceBegin("apply power policy");
+        mProfiler.traceBegin("WIFI on");
+        mProfiler.traceEnd();
+        mProfiler.traceEnd();
+        mProfiler.traceBegin("resume user service");
+        mProfiler.traceEnd();
+        mProfiler.finishTransition();
+
+        String dump = dump();
+
+        assertThat(dump).contains("ON: +0");
+        assertThat(dump).containsMatch("\n +apply power policy: .*\n +WIFI on: ");
+        assertThat(dump).contains("resume user service: ");
+        assertThat(dump).doesNotContain("running");
+    }
+
+    @Test
+    public void testTraceBegin_outsideTransition_ignored() {
+        mProfiler.traceBegin("apply power policy");
+        mProfiler.traceEnd();
+
+        assertThat(mProfiler.getTransitionStateNames()).isEmpty();
+        assertThat(dump()).doesNotContain("apply power policy");
+    }
+
+    @Test
+    public void testTraceBegin_otherThread_ignored() throws Exception {
+        mProfiler.startTransition("ON");
+        Thread thread = new Thread(() -> {
+            mProfiler.traceBegin("binder call");
+            mProfiler.traceEnd();
+        });
+        thread.start();
+        thread.join();
+        mProfiler.finishTransition();
+
+        assertThat(dump()).doesNotContain("binder call");
+    }
+
+    @Test
+    public void testStartTransition_keepsLastTransitions() {
+        for (int i = 0; i <= PowerTransitionProfiler.MAX_TRANSITIONS; i++) {
+            mProfiler.startTransition("STATE_" + i);
+            mProfiler.finishTransition();
+        }
+
+        assertThat(mProfiler.getTransitionStateNames())
+                .hasSize(PowerTransitionProfiler.MAX_TRANSITIONS);
+        assertThat(mProfiler.getTransitionStateNames()).doesNotContain("STATE_0");
+        assertThat(mProfiler.getTransitionStateNames())
+                .contains("STATE_" + PowerTransitionProfiler.MAX_TRANSITIONS);
+    }
+
+    private String dump() {
+        StringWriter stringWriter = new StringWriter();
+        try (IndentingPrintWriter writer = new IndentingPrintWriter(stringWriter, "  ")) {
+            mProfiler.dump(writer);
+        }
+        return stringWriter.toString();
+    }
+}
@@ -333,6 +333,20 @@ public class CarStatsServiceTest {
                         + "10102,2,3,4,2,1,0,0,0,0\n");
     }
 
+    @Test
+    public void testLogDeliveryQueue() {
+        VmsClientLogger logger = mCarStatsService.getVmsClientLogger(CLIENT_UID);
+        logger.logDeliveryQueueDepth(3);
+        logger.logDeliveryQueueDepth(1);
+        logger.logDeliveryQueueDropped(LAYER, 5);
+
+        validateDumpsys("10101,test.package,0,0,0,0,0\n",
+                "10101,1,2,3,0,0,0,0,5,1\n"
+                        + "\n"
+                        + "uid,packageName,queueDepth,maxQueueDepth,queueDroppedPackets\n"
+                        + "10101,test.package,1,3,1\n");
+    }
+
 
     private void validateConnectionStats(String vmsConnectionStats) {
         validateDumpsys(vmsConnectionStats + "\n", "");
@@ -142,6 +142,14 @@ public class UidPackageMapperTest {
                 .containsExactly("com.android.a", "com.android.b");
     }
 
+    @Test
+    public void testGetPackagesForUid_notBroadcastYet() {
+        mUidMapper.init();
+        when(mMockPackageManager.getPackagesForUid(5)).thenReturn(new String[] {"com.android.n"});
+
+        assertThat(mUidMapper.getPackagesForUid(5)).containsExactly("com.android.n");
+    }
+
     @Test
     public void testOnAppRemoved() {
         mUidMapper.init();
@@ -613,7 +613,11 @@ public final class CarUserServiceTest extends BaseCarUserServiceTestCase {
 
     @Test
     public void testOnUserLifecycleEvent_notifyReceiver_targetVersionCheck() throws Exception {
-        // Arrange: add receivers.
+        // Arrange: add receivers, whose target version is checked when they are added.
+        when(mCarPackageManagerService.getTargetCarVersion("package1"))
+                .thenReturn(CarVersion.VERSION_CODES.TIRAMISU_0);
+        when(mCarPackageManagerService.getTargetCarVersion("package2"))
+                .thenReturn(CarVersion.VERSION_CODES.TIRAMISU_1);
         mCarUserService.setLifecycleListenerForApp("package1",
                 new UserLifecycleEventFilter.Builder()
                         .addEventType(CarUserManager.USER_LIFECYCLE_EVENT_TYPE_CREATED).build(),
@@ -623,11 +627,6 @@ public final class CarUserServiceTest extends BaseCarUserServiceTestCase {
                         .addEventType(CarUserManager.USER_LIFECYCLE_EVENT_TYPE_CREATED).build(),
                 mAnotherLifecycleEventReceiver);
 
-        when(mCarPackageManagerService.getTargetCarVersion("package1"))
-                .thenReturn(CarVersion.VERSION_CODES.TIRAMISU_0);
-        when(mCarPackageManagerService.getTargetCarVersion("package2"))
-                .thenReturn(CarVersion.VERSION_CODES.TIRAMISU_1);
-
         // Act: User created event occurs.
         sendUserLifecycleEvent(/* fromUser */ 0, mRegularUserId,
                 CarUserManager.USER_LIFECYCLE_EVENT_TYPE_CREATED);
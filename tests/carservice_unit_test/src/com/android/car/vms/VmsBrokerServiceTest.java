@@ -21,11 +21,13 @@ import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.same;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -44,6 +46,7 @@ import android.car.vms.VmsRegistrationInfo;
 import android.car.vms.VmsSubscriptionState;
 import android.content.Context;
 import android.content.pm.PackageManager;
+import android.content.res.Resources;
 import android.os.Binder;
 import android.os.IBinder;
 import android.os.RemoteException;
@@ -54,6 +57,8 @@ import android.util.Pair;
 
 import androidx.test.filters.SmallTest;
 
+import com.android.car.R;
+import com.android.car.internal.util.IndentingPrintWriter;
 import com.android.car.stats.CarStatsService;
 import com.android.car.stats.VmsClientLogger;
 
@@ -66,6 +71,7 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.io.StringWriter;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Map;
@@ -3248,6 +3254,144 @@ public class VmsBrokerServiceTest {
         verifyNoMoreInteractions(mLargePacket);
     }
 
+    @Test
+    public void testRegisterPacketRingBuffer_UnknownOffering() throws Exception {
+        setupLargePacket();
+        registerClient(mClientToken1, mClientCallback1);
+        int providerId = mBrokerService.registerProvider(mClientToken1, PROVIDER_INFO1);
+
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> mBrokerService.registerPacketRingBuffer(
+                        mClientToken1, providerId, LAYER1, mLargePacket));
+
+        verify(mLargePacket).close();
+    }
+
+    @Test
+    public void testPublishPacketRingBufferFrame_NoRingBuffer() throws Exception {
+        registerClient(mClientToken1, mClientCallback1);
+        int providerId = mBrokerService.registerProvider(mClientToken1, PROVIDER_INFO1);
+        mBrokerService.setProviderOfferings(mClientToken1, providerId, asList(
+                new VmsLayerDependency(LAYER1)
+        ));
+
+        assertThrows(
+                IllegalStateException.class,
+                () -> mBrokerService.publishPacketRingBufferFrame(
+                        mClientToken1, providerId, LAYER1, 1, PAYLOAD.length));
+    }
+
+    @Test
+    public void testPublishPacketRingBufferFrame_SendsRingBufferOnce() throws Exception {
+        setupLargePacket();
+        registerClient(mClientToken1, mClientCallback1);
+        int providerId = mBrokerService.registerProvider(mClientToken1, PROVIDER_INFO1);
+        mBrokerService.setProviderOfferings(mClientToken1, providerId, asList(
+                new VmsLayerDependency(LAYER1)
+        ));
+        mBrokerService.registerPacketRingBuffer(mClientToken1, providerId, LAYER1, mLargePacket);
+        registerClient(mClientToken2, mClientCallback2);
+        mBrokerService.setSubscriptions(mClientToken2, asList(
+                new VmsAssociatedLayer(LAYER1, emptySet())
+        ));
+
+        mBrokerService.publishPacketRingBufferFrame(mClientToken1, providerId, LAYER1, 1,
+                PAYLOAD.length);
+        mBrokerService.publishPacketRingBufferFrame(mClientToken1, providerId, LAYER1, 2,
+                PAYLOAD.length);
+
+        verify(mClientLog1, times(2)).logPacketSent(LAYER1, PAYLOAD.length);
+        verify(mClientLog2, times(2)).logPacketReceived(LAYER1, PAYLOAD.length);
+        verify(mClientCallback2).onPacketRingBufferAvailable(providerId, LAYER1, mLargePacket);
+        verify(mClientCallback2).onPacketRingBufferFrameAvailable(providerId, LAYER1, 1);
+        verify(mClientCallback2).onPacketRingBufferFrameAvailable(providerId, LAYER1, 2);
+        verify(mClientCallback1, never()).onPacketRingBufferFrameAvailable(anyInt(), any(),
+                anyLong());
+        verify(mLargePacket, never()).close();
+    }
+
+    @Test
+    public void testPublishPacketRingBufferFrame_NotOwner() throws Exception {
+        setupLargePacket();
+        registerClient(mClientToken1, mClientCallback1);
+        int providerId = mBrokerService.registerProvider(mClientToken1, PROVIDER_INFO1);
+        mBrokerService.setProviderOfferings(mClientToken1, providerId, asList(
+                new VmsLayerDependency(LAYER1)
+        ));
+        mBrokerService.registerPacketRingBuffer(mClientToken1, providerId, LAYER1, mLargePacket);
+        registerClient(mClientToken2, mClientCallback2, true);
+
+        assertThrows(
+                IllegalStateException.class,
+                () -> mBrokerService.publishPacketRingBufferFrame(
+                        mClientToken2, providerId, LAYER1, 1, PAYLOAD.length));
+    }
+
+    @Test
+    public void testUnregisterClient_RemovesPacketRingBufferSubscriber() throws Exception {
+        setupLargePacket();
+        registerClient(mClientToken1, mClientCallback1);
+        int providerId = mBrokerService.registerProvider(mClientToken1, PROVIDER_INFO1);
+        mBrokerService.setProviderOfferings(mClientToken1, providerId, asList(
+                new VmsLayerDependency(LAYER1)
+        ));
+        mBrokerService.registerPacketRingBuffer(mClientToken1, providerId, LAYER1, mLargePacket);
+        registerClient(mClientToken2, mClientCallback2);
+        mBrokerService.setSubscriptions(mClientToken2, asList(
+                new VmsAssociatedLayer(LAYER1, emptySet())
+        ));
+        mBrokerService.publishPacketRingBufferFrame(mClientToken1, providerId, LAYER1, 1,
+                PAYLOAD.length);
+        verify(mClientCallback2).onPacketRingBufferAvailable(providerId, LAYER1, mLargePacket);
+
+        unregisterClient(mClientToken2);
+
+        assertThat(dumpBrokerService()).contains("subscribers=0");
+        verify(mLargePacket, never()).close();
+    }
+
+    @Test
+    public void testUnregisterClient_ClosesPacketRingBuffer() throws Exception {
+        setupLargePacket();
+        registerClient(mClientToken1, mClientCallback1);
+        int providerId = mBrokerService.registerProvider(mClientToken1, PROVIDER_INFO1);
+        mBrokerService.setProviderOfferings(mClientToken1, providerId, asList(
+                new VmsLayerDependency(LAYER1)
+        ));
+        mBrokerService.registerPacketRingBuffer(mClientToken1, providerId, LAYER1, mLargePacket);
+
+        unregisterClient(mClientToken1);
+
+        verify(mLargePacket).close();
+    }
+
+    @Test
+    public void testSetProviderOfferings_AvailabilityNotificationDebounced() throws Exception {
+        Resources resources = Mockito.mock(Resources.class);
+        when(mContext.getResources()).thenReturn(resources);
+        when(resources.getInteger(R.integer.config_vmsAvailabilityNotificationDelayMs))
+                .thenReturn(50);
+        mBrokerService.init();
+        registerClient(mClientToken1, mClientCallback1);
+        int providerId = mBrokerService.registerProvider(mClientToken1, PROVIDER_INFO1);
+
+        mBrokerService.setProviderOfferings(mClientToken1, providerId, asList(
+                new VmsLayerDependency(LAYER1)
+        ));
+        mBrokerService.setProviderOfferings(mClientToken1, providerId, asList(
+                new VmsLayerDependency(LAYER1),
+                new VmsLayerDependency(LAYER2)
+        ));
+
+        VmsAvailableLayers expectedLayers = new VmsAvailableLayers(2, asSet(
+                new VmsAssociatedLayer(LAYER1, asSet(providerId)),
+                new VmsAssociatedLayer(LAYER2, asSet(providerId)))
+        );
+        verify(mClientCallback1, timeout(1000)).onLayerAvailabilityChanged(expectedLayers);
+        verify(mClientCallback1).onLayerAvailabilityChanged(any());
+    }
+
     private void registerClient(IBinder token, IVmsClientCallback callback) {
         registerClient(token, callback, false);
     }
@@ -3333,4 +3477,12 @@ public class VmsBrokerServiceTest {
     private static <T> Set<T> asSet(T... values) {
         return new HashSet<T>(Arrays.asList(values));
     }
+
+    private String dumpBrokerService() {
+        StringWriter stringWriter = new StringWriter();
+        try (IndentingPrintWriter writer = new IndentingPrintWriter(stringWriter, "  ")) {
+            mBrokerService.dump(writer);
+        }
+        return stringWriter.toString();
+    }
 }
@@ -248,4 +248,81 @@ public class VmsLayerAvailabilityTest extends AndroidTestCase {
         assertThat(new HashSet<>(mLayersAvailability.getAvailableLayers().getAssociatedLayers()))
                 .isEqualTo(expectedAvailableAssociatedLayers);
     }
+
+    public void testUpdateOfferings_DependencyAddedLater() {
+        assertTrue(mLayersAvailability.updateOfferings(PUBLISHER_ID_1, null,
+                Collections.singleton(X_DEPENDS_ON_Y)));
+        assertThat(mLayersAvailability.getAvailableLayers().getAssociatedLayers()).isEmpty();
+
+        assertTrue(mLayersAvailability.updateOfferings(PUBLISHER_ID_2, null,
+                Collections.singleton(Y_DEPENDS_ON_Z)));
+        assertThat(mLayersAvailability.getAvailableLayers().getAssociatedLayers()).isEmpty();
+
+        assertTrue(mLayersAvailability.updateOfferings(PUBLISHER_ID_1,
+                Collections.singleton(X_DEPENDS_ON_Y),
+                Arrays.asList(X_DEPENDS_ON_Y, Z_DEPENDS_ON_NOTHING)));
+
+        Set<VmsAssociatedLayer> expectedAvailableAssociatedLayers = new HashSet<>(Arrays.asList(
+                new VmsAssociatedLayer(LAYER_X, PUBLISHERS_1),
+                new VmsAssociatedLayer(LAYER_Y, PUBLISHERS_2),
+                new VmsAssociatedLayer(LAYER_Z, PUBLISHERS_1)));
+        assertThat(mLayersAvailability.getAvailableLayers().getAssociatedLayers())
+                .isEqualTo(expectedAvailableAssociatedLayers);
+        assertThat(mLayersAvailability.getAvailableLayers().getSequence()).isEqualTo(3);
+    }
+
+    public void testUpdateOfferings_DependencyRemoved() {
+        mLayersAvailability.updateOfferings(PUBLISHER_ID_1, null,
+                Arrays.asList(X_DEPENDS_ON_Y, Z_DEPENDS_ON_NOTHING));
+        mLayersAvailability.updateOfferings(PUBLISHER_ID_2, null,
+                Collections.singleton(Y_DEPENDS_ON_Z));
+
+        mLayersAvailability.updateOfferings(PUBLISHER_ID_1,
+                Arrays.asList(X_DEPENDS_ON_Y, Z_DEPENDS_ON_NOTHING),
+                Collections.singleton(X_DEPENDS_ON_Y));
+
+        assertThat(mLayersAvailability.getAvailableLayers().getAssociatedLayers()).isEmpty();
+    }
+
+    public void testUpdateOfferings_Unchanged() {
+        mLayersAvailability.updateOfferings(PUBLISHER_ID_1, null,
+                Collections.singleton(Z_DEPENDS_ON_NOTHING));
+
+        assertFalse(mLayersAvailability.updateOfferings(PUBLISHER_ID_1,
+                Collections.singleton(Z_DEPENDS_ON_NOTHING),
+                Collections.singleton(Z_DEPENDS_ON_NOTHING)));
+        assertThat(mLayersAvailability.getAvailableLayers().getSequence()).isEqualTo(1);
+    }
+
+    public void testUpdateOfferings_SameOfferingFromMultipleClients() {
+        VmsLayersOffering offering = new VmsLayersOffering(
+                Collections.singleton(Z_DEPENDS_ON_NOTHING), PUBLISHER_ID_1);
+        mLayersAvailability.updateOfferings(PUBLISHER_ID_1, null,
+                Collections.singleton(Z_DEPENDS_ON_NOTHING));
+
+        assertFalse(mLayersAvailability.updateOfferings(PUBLISHER_ID_1, null,
+                Collections.singleton(Z_DEPENDS_ON_NOTHING)));
+        assertFalse(mLayersAvailability.removeOfferings(Collections.singleton(offering)));
+        assertThat(mLayersAvailability.getAvailableLayers().getAssociatedLayers())
+                .containsExactly(new VmsAssociatedLayer(LAYER_Z, PUBLISHERS_1));
+
+        assertTrue(mLayersAvailability.removeOfferings(Collections.singleton(offering)));
+        assertThat(mLayersAvailability.getAvailableLayers().getAssociatedLayers()).isEmpty();
+        assertThat(mLayersAvailability.getAvailableLayers().getSequence()).isEqualTo(2);
+    }
+
+    public void testUpdateOfferings_CyclicDependencyBroken() {
+        mLayersAvailability.updateOfferings(PUBLISHER_ID_1, null,
+                Arrays.asList(X_DEPENDS_ON_Z, Z_DEPENDS_ON_X));
+        assertThat(mLayersAvailability.getAvailableLayers().getAssociatedLayers()).isEmpty();
+
+        mLayersAvailability.updateOfferings(PUBLISHER_ID_2, null,
+                Collections.singleton(Z_DEPENDS_ON_NOTHING));
+
+        Set<VmsAssociatedLayer> expectedAvailableAssociatedLayers = new HashSet<>(Arrays.asList(
+                new VmsAssociatedLayer(LAYER_X, PUBLISHERS_1),
+                new VmsAssociatedLayer(LAYER_Z, PUBLISHERS_1_AND_2)));
+        assertThat(mLayersAvailability.getAvailableLayers().getAssociatedLayers())
+                .isEqualTo(expectedAvailableAssociatedLayers);
+    }
 }
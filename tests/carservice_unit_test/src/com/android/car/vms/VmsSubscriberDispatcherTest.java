@@ -0,0 +1,273 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.car.vms;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.car.vms.IVmsClientCallback;
+import android.car.vms.VmsLayer;
+import android.os.IBinder;
+
+import com.android.car.internal.util.FunctionalUtils.ThrowingConsumer;
+import com.android.car.stats.CarStatsService;
+import com.android.car.stats.VmsClientLogger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public final class VmsSubscriberDispatcherTest {
+
+    private static final long TIMEOUT_MS = 5_000;
+    private static final int UID = 123;
+    private static final int PROVIDER_ID = 12;
+    private static final VmsLayer LAYER_1 = new VmsLayer(1, 1, 1);
+    private static final VmsLayer LAYER_2 = new VmsLayer(2, 1, 1);
+    private static final int PACKET_LENGTH = 8;
+
+    private final CarStatsService mStatsService = mock(CarStatsService.class);
+    private final VmsClientLogger mClientLogger = mock(VmsClientLogger.class);
+    private final VmsClientInfo mSubscriber = new VmsClientInfo(UID, "test.package",
+            mock(IVmsClientCallback.class), /* legacyClient= */ false,
+            mock(IBinder.DeathRecipient.class));
+    private final RecordingDelivery mDelivery = new RecordingDelivery();
+
+    private VmsSubscriberDispatcher mDispatcher;
+
+    @Before
+    public void setUp() {
+        when(mStatsService.getVmsClientLogger(anyInt())).thenReturn(mClientLogger);
+        mDispatcher = new VmsSubscriberDispatcher(mStatsService);
+        mDispatcher.addSubscriber(mSubscriber);
+    }
+
+    @After
+    public void tearDown() {
+        mDispatcher.release();
+    }
+
+    @Test
+    public void testDispatch_direct() {
+        AtomicInteger completed = new AtomicInteger();
+
+        dispatch(LAYER_1, 1, completed::incrementAndGet);
+
+        assertThat(mDelivery.getDelivered()).containsExactly(1);
+        assertThat(completed.get()).isEqualTo(1);
+        verify(mClientLogger).logPacketReceived(LAYER_1, PACKET_LENGTH);
+    }
+
+    @Test
+    public void testDispatch_direct_failedDelivery() {
+        AtomicInteger completed = new AtomicInteger();
+
+        mDispatcher.dispatch(mSubscriber, PROVIDER_ID, LAYER_1, PACKET_LENGTH,
+                subscriber -> {
+                    throw new IllegalStateException();
+                }, completed::incrementAndGet);
+
+        assertThat(completed.get()).isEqualTo(1);
+        verify(mClientLogger).logPacketDropped(LAYER_1, PACKET_LENGTH);
+    }
+
+    @Test
+    public void testDispatch_dropOldest() throws Exception {
+        mDispatcher.setPolicy(VmsSubscriberDispatcher.POLICY_DROP_OLDEST, /* queueCapacity= */ 2,
+                /* blockTimeoutMs= */ 0);
+        mDelivery.blockFirstDelivery();
+
+        dispatch(LAYER_1, 1, null);
+        assertThat(mDelivery.awaitEntered()).isTrue();
+        dispatch(LAYER_1, 2, null);
+        dispatch(LAYER_1, 3, null);
+        dispatch(LAYER_1, 4, null);
+        mDelivery.unblock();
+
+        assertThat(mDelivery.awaitDelivered(3)).isTrue();
+        assertThat(mDelivery.getDelivered()).containsExactly(1, 3, 4).inOrder();
+        verify(mClientLogger).logDeliveryQueueDropped(LAYER_1, PACKET_LENGTH);
+    }
+
+    @Test
+    public void testDispatch_latestOnly() throws Exception {
+        mDispatcher.setPolicy(VmsSubscriberDispatcher.POLICY_LATEST_ONLY,
+                /* queueCapacity= */ 4, /* blockTimeoutMs= */ 0);
+        mDelivery.blockFirstDelivery();
+
+        dispatch(LAYER_1, 1, null);
+        assertThat(mDelivery.awaitEntered()).isTrue();
+        dispatch(LAYER_1, 2, null);
+        dispatch(LAYER_2, 3, null);
+        dispatch(LAYER_1, 4, null);
+        mDelivery.unblock();
+
+        assertThat(mDelivery.awaitDelivered(3)).isTrue();
+        assertThat(mDelivery.getDelivered()).containsExactly(1, 3, 4).inOrder();
+    }
+
+    @Test
+    public void testDispatch_blockTimesOut() throws Exception {
+        mDispatcher.setPolicy(VmsSubscriberDispatcher.POLICY_BLOCK, /* queueCapacity= */ 1,
+                /* blockTimeoutMs= */ 10);
+        mDelivery.blockFirstDelivery();
+        AtomicInteger completed = new AtomicInteger();
+
+        dispatch(LAYER_1, 1, null);
+        assertThat(mDelivery.awaitEntered()).isTrue();
+        dispatch(LAYER_1, 2, null);
+        dispatch(LAYER_1, 3, completed::incrementAndGet);
+
+        assertThat(completed.get()).isEqualTo(1);
+        verify(mClientLogger).logDeliveryQueueDropped(LAYER_1, PACKET_LENGTH);
+        mDelivery.unblock();
+        assertThat(mDelivery.awaitDelivered(2)).isTrue();
+        assertThat(mDelivery.getDelivered()).containsExactly(1, 2).inOrder();
+    }
+
+    @Test
+    public void testRemoveSubscriber_completesPendingPackets() throws Exception {
+        mDispatcher.setPolicy(VmsSubscriberDispatcher.POLICY_DROP_OLDEST, /* queueCapacity= */ 4,
+                /* blockTimeoutMs= */ 0);
+        mDelivery.blockFirstDelivery();
+        AtomicInteger completed = new AtomicInteger();
+
+        dispatch(LAYER_1, 1, null);
+        assertThat(mDelivery.awaitEntered()).isTrue();
+        dispatch(LAYER_1, 2, completed::incrementAndGet);
+        mDispatcher.removeSubscriber(mSubscriber);
+        mDelivery.unblock();
+
+        assertThat(completed.get()).isEqualTo(1);
+        verify(mClientLogger, timeout(TIMEOUT_MS)).logPacketReceived(LAYER_1, PACKET_LENGTH);
+        assertThat(mDelivery.getDelivered()).containsExactly(1);
+    }
+
+    @Test
+    public void testDispatch_unknownSubscriber_dropped() {
+        VmsClientInfo unknownSubscriber = new VmsClientInfo(UID, "unknown.package",
+                mock(IVmsClientCallback.class), /* legacyClient= */ false,
+                mock(IBinder.DeathRecipient.class));
+        AtomicInteger completed = new AtomicInteger();
+
+        mDispatcher.dispatch(unknownSubscriber, PROVIDER_ID, LAYER_1, PACKET_LENGTH,
+                mDelivery.forPacket(1), completed::incrementAndGet);
+
+        assertThat(completed.get()).isEqualTo(1);
+        assertThat(mDelivery.getDelivered()).isEmpty();
+    }
+
+    @Test
+    public void testDispatch_afterRemoveSubscriber_dropped() throws Exception {
+        mDispatcher.setPolicy(VmsSubscriberDispatcher.POLICY_DROP_OLDEST, /* queueCapacity= */ 4,
+                /* blockTimeoutMs= */ 0);
+        AtomicInteger completed = new AtomicInteger();
+        mDispatcher.removeSubscriber(mSubscriber);
+
+        // A publisher routing with a stale list of subscribers.
+        dispatch(LAYER_1, 1, completed::incrementAndGet);
+        dispatch(LAYER_1, 2, completed::incrementAndGet);
+
+        assertThat(completed.get()).isEqualTo(2);
+        assertThat(mDelivery.getDelivered()).isEmpty();
+    }
+
+    @Test
+    public void testRelease_completesPendingPacketsAndDeliversDirectly() throws Exception {
+        mDispatcher.setPolicy(VmsSubscriberDispatcher.POLICY_DROP_OLDEST, /* queueCapacity= */ 4,
+                /* blockTimeoutMs= */ 0);
+        mDelivery.blockFirstDelivery();
+        AtomicInteger completed = new AtomicInteger();
+        dispatch(LAYER_1, 1, null);
+        assertThat(mDelivery.awaitEntered()).isTrue();
+        dispatch(LAYER_1, 2, completed::incrementAndGet);
+
+        mDispatcher.release();
+        mDelivery.unblock();
+        dispatch(LAYER_1, 3, completed::incrementAndGet);
+
+        assertThat(completed.get()).isEqualTo(2);
+        assertThat(mDelivery.getDelivered()).contains(3);
+        assertThat(mDelivery.getDelivered()).doesNotContain(2);
+    }
+
+    private void dispatch(VmsLayer layer, int packet, Runnable onComplete) {
+        mDispatcher.dispatch(mSubscriber, PROVIDER_ID, layer, PACKET_LENGTH,
+                mDelivery.forPacket(packet), onComplete);
+    }
+
+    private static final class RecordingDelivery {
+        private final Object mLock = new Object();
+        private final List<Integer> mDelivered = new ArrayList<>();
+        private final CountDownLatch mEnteredLatch = new CountDownLatch(1);
+        private CountDownLatch mBlockLatch = new CountDownLatch(0);
+
+        void blockFirstDelivery() {
+            mBlockLatch = new CountDownLatch(1);
+        }
+
+        void unblock() {
+            mBlockLatch.countDown();
+        }
+
+        ThrowingConsumer<VmsClientInfo> forPacket(int packet) {
+            return subscriber -> {
+                mEnteredLatch.countDown();
+                mBlockLatch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                synchronized (mLock) {
+                    mDelivered.add(packet);
+                    mLock.notifyAll();
+                }
+            };
+        }
+
+        boolean awaitEntered() throws InterruptedException {
+            return mEnteredLatch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        }
+
+        boolean awaitDelivered(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+            synchronized (mLock) {
+                while (mDelivered.size() < count) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    mLock.wait(remaining);
+                }
+                return true;
+            }
+        }
+
+        List<Integer> getDelivered() {
+            synchronized (mLock) {
+                return new ArrayList<>(mDelivered);
+            }
+        }
+    }
+}
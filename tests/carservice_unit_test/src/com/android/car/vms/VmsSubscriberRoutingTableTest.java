@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.car.vms;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.mock;
+
+import android.car.vms.IVmsClientCallback;
+import android.car.vms.VmsAssociatedLayer;
+import android.car.vms.VmsLayer;
+import android.os.IBinder;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+public final class VmsSubscriberRoutingTableTest {
+
+    private static final VmsLayer LAYER_1 = new VmsLayer(1, 1, 1);
+    private static final VmsLayer LAYER_2 = new VmsLayer(2, 1, 1);
+    private static final int PROVIDER_ID_1 = 12;
+    private static final int PROVIDER_ID_2 = 34;
+
+    private final VmsSubscriberRoutingTable mTable = new VmsSubscriberRoutingTable();
+
+    @Test
+    public void testGetSubscribers_empty() {
+        assertThat(mTable.getSubscribers(PROVIDER_ID_1, LAYER_1)).isEmpty();
+    }
+
+    @Test
+    public void testGetSubscribers_layerSubscription() {
+        VmsClientInfo client = createClient();
+        client.setSubscriptions(Collections.singletonList(
+                new VmsAssociatedLayer(LAYER_1, Collections.emptySet())));
+
+        mTable.updateClient(client);
+
+        assertThat(mTable.getSubscribers(PROVIDER_ID_1, LAYER_1)).asList().containsExactly(client);
+        assertThat(mTable.getSubscribers(PROVIDER_ID_2, LAYER_1)).asList().containsExactly(client);
+        assertThat(mTable.getSubscribers(PROVIDER_ID_1, LAYER_2)).isEmpty();
+    }
+
+    @Test
+    public void testGetSubscribers_layerAndProviderSubscription() {
+        VmsClientInfo client = createClient();
+        client.setSubscriptions(Collections.singletonList(
+                new VmsAssociatedLayer(LAYER_1, Collections.singleton(PROVIDER_ID_1))));
+
+        mTable.updateClient(client);
+
+        assertThat(mTable.getSubscribers(PROVIDER_ID_1, LAYER_1)).asList().containsExactly(client);
+        assertThat(mTable.getSubscribers(PROVIDER_ID_2, LAYER_1)).isEmpty();
+    }
+
+    @Test
+    public void testGetSubscribers_monitoringClientReceivesEverything() {
+        VmsClientInfo monitor = createClient();
+        monitor.setMonitoringEnabled(true);
+        VmsClientInfo subscriber = createClient();
+        subscriber.setSubscriptions(Collections.singletonList(
+                new VmsAssociatedLayer(LAYER_1, Collections.singleton(PROVIDER_ID_1))));
+
+        mTable.updateClient(monitor);
+        mTable.updateClient(subscriber);
+
+        assertThat(mTable.getSubscribers(PROVIDER_ID_1, LAYER_1)).asList()
+                .containsExactly(monitor, subscriber);
+        assertThat(mTable.getSubscribers(PROVIDER_ID_2, LAYER_1)).asList()
+                .containsExactly(monitor);
+        assertThat(mTable.getSubscribers(PROVIDER_ID_1, LAYER_2)).asList()
+                .containsExactly(monitor);
+    }
+
+    @Test
+    public void testGetSubscribers_noDuplicates() {
+        VmsClientInfo client = createClient();
+        client.setMonitoringEnabled(true);
+        client.setSubscriptions(Arrays.asList(
+                new VmsAssociatedLayer(LAYER_1, Collections.emptySet()),
+                new VmsAssociatedLayer(LAYER_2,
+                        new HashSet<>(Arrays.asList(PROVIDER_ID_1, PROVIDER_ID_2)))));
+
+        mTable.updateClient(client);
+
+        assertThat(mTable.getSubscribers(PROVIDER_ID_1, LAYER_1)).asList().containsExactly(client);
+        assertThat(mTable.getSubscribers(PROVIDER_ID_2, LAYER_2)).asList().containsExactly(client);
+    }
+
+    @Test
+    public void testUpdateClient_changedSubscription() {
+        VmsClientInfo client = createClient();
+        VmsClientInfo other = createClient();
+        client.setSubscriptions(Collections.singletonList(
+                new VmsAssociatedLayer(LAYER_1, Collections.emptySet())));
+        other.setSubscriptions(Collections.singletonList(
+                new VmsAssociatedLayer(LAYER_1, Collections.emptySet())));
+        mTable.updateClient(client);
+        mTable.updateClient(other);
+
+        client.setSubscriptions(Collections.singletonList(
+                new VmsAssociatedLayer(LAYER_2, Collections.singleton(PROVIDER_ID_1))));
+        mTable.updateClient(client);
+
+        assertThat(mTable.getSubscribers(PROVIDER_ID_1, LAYER_1)).asList().containsExactly(other);
+        assertThat(mTable.getSubscribers(PROVIDER_ID_1, LAYER_2)).asList()
+                .containsExactly(client);
+        assertThat(mTable.getSubscribers(PROVIDER_ID_2, LAYER_2)).isEmpty();
+    }
+
+    @Test
+    public void testUpdateClient_monitoringDisabled() {
+        VmsClientInfo monitor = createClient();
+        monitor.setMonitoringEnabled(true);
+        VmsClientInfo subscriber = createClient();
+        subscriber.setSubscriptions(Collections.singletonList(
+                new VmsAssociatedLayer(LAYER_1, Collections.singleton(PROVIDER_ID_1))));
+        mTable.updateClient(monitor);
+        mTable.updateClient(subscriber);
+
+        monitor.setMonitoringEnabled(false);
+        mTable.updateClient(monitor);
+
+        assertThat(mTable.getSubscribers(PROVIDER_ID_1, LAYER_1)).asList()
+                .containsExactly(subscriber);
+        assertThat(mTable.getSubscribers(PROVIDER_ID_2, LAYER_1)).isEmpty();
+        assertThat(mTable.getSubscribers(PROVIDER_ID_1, LAYER_2)).isEmpty();
+    }
+
+    @Test
+    public void testRemoveClient() {
+        VmsClientInfo client = createClient();
+        client.setMonitoringEnabled(true);
+        client.setSubscriptions(Arrays.asList(
+                new VmsAssociatedLayer(LAYER_1, Collections.emptySet()),
+                new VmsAssociatedLayer(LAYER_2, Collections.singleton(PROVIDER_ID_1))));
+        VmsClientInfo other = createClient();
+        other.setSubscriptions(Collections.singletonList(
+                new VmsAssociatedLayer(LAYER_2, Collections.singleton(PROVIDER_ID_1))));
+        mTable.updateClient(client);
+        mTable.updateClient(other);
+
+        mTable.removeClient(client);
+
+        assertThat(mTable.getSubscribers(PROVIDER_ID_1, LAYER_1)).isEmpty();
+        assertThat(mTable.getSubscribers(PROVIDER_ID_1, LAYER_2)).asList().containsExactly(other);
+        assertThat(mTable.getSubscribers(PROVIDER_ID_2, LAYER_2)).isEmpty();
+    }
+
+    @Test
+    public void testGetSubscribers_returnsPublishedArrayUntilChange() {
+        VmsClientInfo client = createClient();
+        client.setSubscriptions(Collections.singletonList(
+                new VmsAssociatedLayer(LAYER_1, Collections.emptySet())));
+        mTable.updateClient(client);
+        VmsClientInfo[] subscribers = mTable.getSubscribers(PROVIDER_ID_1, LAYER_1);
+
+        mTable.removeClient(client);
+
+        assertThat(subscribers).asList().containsExactly(client);
+        assertThat(mTable.getSubscribers(PROVIDER_ID_1, LAYER_1)).isEmpty();
+    }
+
+    private static VmsClientInfo createClient() {
+        return new VmsClientInfo(/* uid= */ 123, "test.package", mock(IVmsClientCallback.class),
+                /* legacyClient= */ false, mock(IBinder.DeathRecipient.class));
+    }
+}
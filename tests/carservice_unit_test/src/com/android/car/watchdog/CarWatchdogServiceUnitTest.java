@@ -112,6 +112,7 @@ import android.content.pm.PackageManager;
 import android.content.res.Resources;
 import android.net.Uri;
 import android.os.Binder;
+import android.os.CancellationSignal;
 import android.os.FileUtils;
 import android.os.IBinder;
 import android.os.ServiceManager;
@@ -130,6 +131,8 @@ import com.android.car.CarServiceUtils;
 import com.android.car.CarStatsLog;
 import com.android.car.CarUxRestrictionsManagerService;
 import com.android.car.admin.NotificationHelper;
+import com.android.car.garagemode.GarageModeService;
+import com.android.car.garagemode.GarageModeWork;
 import com.android.car.internal.ICarServiceHelper;
 import com.android.car.power.CarPowerManagementService;
 import com.android.car.systeminterface.SystemInterface;
@@ -196,6 +199,7 @@ public final class CarWatchdogServiceUnitTest extends AbstractExtendedMockitoTes
     @Mock private WatchdogProcessHandler mMockWatchdogProcessHandler;
     @Mock private WatchdogPerfHandler mMockWatchdogPerfHandler;
     @Mock private CarWatchdogDaemonHelper mMockCarWatchdogDaemonHelper;
+    @Mock private GarageModeService mMockGarageModeService;
 
     @Captor private ArgumentCaptor<ICarPowerStateListener> mICarPowerStateListenerCaptor;
     @Captor private ArgumentCaptor<ICarPowerPolicyListener> mICarPowerPolicyListenerCaptor;
@@ -397,6 +401,27 @@ public final class CarWatchdogServiceUnitTest extends AbstractExtendedMockitoTes
         verify(mSpiedWatchdogStorage).shrinkDatabase();
     }
 
+    @Test
+    public void testGarageModeWork_shrinksDatabase() throws Exception {
+        doReturn(mMockGarageModeService)
+                .when(() -> CarLocalServices.getService(GarageModeService.class));
+        CarWatchdogService service = new CarWatchdogService(mMockContext,
+                mMockBuiltinPackageContext, mSpiedWatchdogStorage, mTimeSource,
+                mMockWatchdogProcessHandler, mMockWatchdogPerfHandler);
+        service.setCarWatchdogDaemonHelper(mMockCarWatchdogDaemonHelper);
+        service.init();
+        ArgumentCaptor<GarageModeWork> workCaptor = ArgumentCaptor.forClass(GarageModeWork.class);
+        verify(mMockGarageModeService).registerWork(workCaptor.capture());
+
+        workCaptor.getValue().getTask().accept(new CancellationSignal());
+
+        verify(mSpiedWatchdogStorage).shrinkDatabase();
+
+        service.release();
+
+        verify(mMockGarageModeService).unregisterWork(workCaptor.getValue().getName());
+    }
+
     @Test
     public void testGarageModeStateChangeToOff() throws Exception {
         mBroadcastReceiver.onReceive(mMockContext,